@@ -0,0 +1,83 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Footprint and lookup latency of {@link CompactUserRepository} against
+ * {@link InMemoryUserRepository}, holding the same users.
+ * <p>
+ * Lookups are sampled, so the report has their latency percentiles rather
+ * than an average. The heap retained by the filled repository is measured
+ * after a full collection and printed once per fork:
+ * <pre>
+ * $ ./gradlew :benchmarks:jmh -Pjmh.includes=CompactUserRepositoryBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CompactUserRepositoryBenchmark {
+
+    @Param({"compact", "in-memory"})
+    public String repository;
+
+    @Param({"1000000"})
+    public int users;
+
+    private UserRepository userRepository;
+
+    @Setup
+    public void setUp() {
+        final long before = retainedHeapBytes();
+        userRepository = "compact".equals(repository)
+                ? new CompactUserRepository()
+                : new InMemoryUserRepository(users);
+        for (int i = 0; i < users; i++) {
+            userRepository.save(new User("user" + i, "password", "user" + i + "@woowahan.com"));
+        }
+        final long retained = retainedHeapBytes() - before;
+        System.out.printf("%n%s repository of %d users retains %d MiB of heap, %d bytes per user%n",
+                repository, users, retained >> 20, retained / users);
+    }
+
+    private static long retainedHeapBytes() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private int randomUser() {
+        return ThreadLocalRandom.current().nextInt(users);
+    }
+
+    @Benchmark
+    public Optional<User> findByAccount() {
+        return userRepository.findByAccount("user" + randomUser());
+    }
+
+    @Benchmark
+    public Optional<User> findByEmail() {
+        return userRepository.findByEmail("user" + randomUser() + "@woowahan.com");
+    }
+
+    @Benchmark
+    public Optional<User> findById() {
+        return userRepository.findById((long) randomUser() + 2);
+    }
+}
@@ -0,0 +1,74 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lookups and registrations in {@link InMemoryUserRepository}. The
+ * repository is refilled before each iteration, so registrations do not
+ * make it grow across the whole run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InMemoryUserRepositoryBenchmark {
+
+    @Param({"100000"})
+    public int users;
+
+    private InMemoryUserRepository userRepository;
+    private final AtomicLong registrations = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        userRepository = new InMemoryUserRepository(users);
+        for (int i = 0; i < users; i++) {
+            userRepository.save(new User("user" + i, "password", "user" + i + "@woowahan.com"));
+        }
+    }
+
+    private static int randomUser(final int users) {
+        return ThreadLocalRandom.current().nextInt(users);
+    }
+
+    @Benchmark
+    public Optional<User> findByAccount() {
+        return userRepository.findByAccount("user" + randomUser(users));
+    }
+
+    @Benchmark
+    public Optional<User> findByEmail() {
+        return userRepository.findByEmail("user" + randomUser(users) + "@woowahan.com");
+    }
+
+    @Benchmark
+    public Optional<User> findById() {
+        return userRepository.findById((long) randomUser(users) + 2);
+    }
+
+    @Benchmark
+    public Optional<User> saveIfAbsentNewAccount() {
+        final long registration = registrations.incrementAndGet();
+        return userRepository.saveIfAbsent(
+                new User("new" + registration, "password", "new" + registration + "@woowahan.com"));
+    }
+
+    @Benchmark
+    public Optional<User> saveIfAbsentTakenAccount() {
+        final int user = randomUser(users);
+        return userRepository.saveIfAbsent(new User("user" + user, "password", "user" + user + "@woowahan.com"));
+    }
+}
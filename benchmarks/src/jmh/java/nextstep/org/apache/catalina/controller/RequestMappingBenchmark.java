@@ -0,0 +1,86 @@
+package nextstep.org.apache.catalina.controller;
+
+import nextstep.jwp.controller.LoginController;
+import nextstep.jwp.controller.RegisterController;
+import nextstep.jwp.db.InMemoryUserRepository;
+import nextstep.jwp.security.PasswordEncoder;
+import nextstep.jwp.security.PasswordService;
+import org.apache.catalina.controller.Controller;
+import org.apache.catalina.controller.MetricsController;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.controller.StaticResources;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.coyote.http11.Http11InputBuffer;
+import org.apache.coyote.http11.HttpRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Choosing the controller of a request, and finding a static resource once
+ * it is cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RequestMappingBenchmark {
+
+    private RequestMapping requestMapping;
+    private PasswordService passwordService;
+    private HttpRequest mappedRequest;
+    private HttpRequest staticRequest;
+
+    @Setup
+    public void setUp() throws IOException {
+        final var userRepository = new InMemoryUserRepository();
+        passwordService = new PasswordService(new PasswordEncoder(), 1, 1);
+        requestMapping = new RequestMapping()
+                .add("/login", new LoginController(userRepository, passwordService))
+                .add("/register", new RegisterController(userRepository, passwordService))
+                .add("/metrics", new MetricsController(new MetricRegistry()));
+        mappedRequest = request("GET /login?account=gugu HTTP/1.1");
+        staticRequest = request("GET /css/styles.css HTTP/1.1");
+        StaticResources.find("/index.html");
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordService.close();
+    }
+
+    private static HttpRequest request(final String requestLine) throws IOException {
+        final byte[] bytes = (requestLine + "\r\nHost: localhost:8080\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        return HttpRequest.parse(new Http11InputBuffer(new ByteArrayInputStream(bytes)));
+    }
+
+    @Benchmark
+    public Controller mappedRoute() {
+        return requestMapping.getController(mappedRequest);
+    }
+
+    @Benchmark
+    public Controller staticRoute() {
+        return requestMapping.getController(staticRequest);
+    }
+
+    @Benchmark
+    public String routeLabel() {
+        return requestMapping.getRoute(staticRequest);
+    }
+
+    @Benchmark
+    public Optional<byte[]> staticCacheHit() {
+        return StaticResources.find("/index.html");
+    }
+}
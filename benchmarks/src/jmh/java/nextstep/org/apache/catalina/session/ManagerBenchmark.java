@@ -0,0 +1,73 @@
+package nextstep.org.apache.catalina.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.Manager;
+import org.apache.catalina.session.OffHeapManager;
+import org.apache.catalina.session.StandardManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session lookups in each {@link Manager} implementation, the work done for
+ * every request carrying a session cookie.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ManagerBenchmark {
+
+    @Param({"standard", "offheap"})
+    public String manager;
+
+    @Param({"10000"})
+    public int sessions;
+
+    private Manager sessionManager;
+    private String[] ids;
+    private final String missingId = UUID.randomUUID().toString();
+
+    @Setup
+    public void setUp() {
+        sessionManager = "offheap".equals(manager) ? new OffHeapManager() : new StandardManager();
+        ids = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            final HttpSession session = sessionManager.createSession();
+            session.setAttribute("user", "gugu");
+            ids[i] = session.getId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ((Lifecycle) sessionManager).stop();
+    }
+
+    @Benchmark
+    public Object findSessionHit() throws IOException {
+        final String id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        return sessionManager.findSession(id).getAttribute("user");
+    }
+
+    @Benchmark
+    public HttpSession findSessionMiss() throws IOException {
+        return sessionManager.findSession(missingId);
+    }
+
+    @Benchmark
+    public void createAndRemoveSession() {
+        sessionManager.remove(sessionManager.createSession());
+    }
+}
@@ -0,0 +1,109 @@
+package nextstep.org.apache.catalina.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.Manager;
+import org.apache.catalina.session.OffHeapManager;
+import org.apache.catalina.session.StandardManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap footprint and GC pauses of {@link OffHeapManager} against
+ * {@link StandardManager}, each holding a million long-lived sessions while
+ * requests look them up and a share of them is replaced by new ones.
+ * <p>
+ * The heap retained by the filled manager is printed once per fork. The gc
+ * profiler configured for the benchmarks reports the collections and their
+ * time next to the sampled latency, whose high percentiles show the pauses
+ * the requests ran into:
+ * <pre>
+ * $ ./gradlew :benchmarks:jmh -Pjmh.includes=ManagerHeapBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=4g", "-XX:+UseG1GC"})
+public class ManagerHeapBenchmark {
+
+    private static final int ATTRIBUTE_BYTES = 256;
+    // one request in this many ends a session and starts another
+    private static final int CHURN = 16;
+
+    @Param({"standard", "offheap"})
+    public String manager;
+
+    @Param({"1000000"})
+    public int sessions;
+
+    private Manager sessionManager;
+    private String[] ids;
+
+    @Setup
+    public void setUp() {
+        final long before = retainedHeapBytes();
+        sessionManager = "offheap".equals(manager) ? new OffHeapManager() : new StandardManager();
+        ((Lifecycle) sessionManager).start();
+        ids = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            ids[i] = createSession().getId();
+        }
+        final long retained = retainedHeapBytes() - before;
+        System.out.printf("%n%s manager of %d sessions retains %d MiB of heap, %d bytes per session%n",
+                manager, sessions, retained >> 20, retained / sessions);
+    }
+
+    private HttpSession createSession() {
+        final HttpSession session = sessionManager.createSession();
+        session.setAttribute("user", "gugu");
+        session.setAttribute("cart", new byte[ATTRIBUTE_BYTES]);
+        return session;
+    }
+
+    private static long retainedHeapBytes() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ((Lifecycle) sessionManager).stop();
+    }
+
+    /**
+     * Look up a random session and read it, as a request with a session
+     * cookie does; every so often, replace it with a new session instead.
+     */
+    @Benchmark
+    public Object request() throws IOException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int index = random.nextInt(ids.length);
+        final HttpSession session = sessionManager.findSession(ids[index]);
+        if (session == null || random.nextInt(CHURN) == 0) {
+            if (session != null) {
+                session.invalidate();
+            }
+            ids[index] = createSession().getId();
+            return ids[index];
+        }
+        return session.getAttribute("user");
+    }
+}
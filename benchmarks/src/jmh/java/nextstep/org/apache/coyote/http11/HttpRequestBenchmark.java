@@ -0,0 +1,83 @@
+package nextstep.org.apache.coyote.http11;
+
+import org.apache.coyote.http11.Http11InputBuffer;
+import org.apache.coyote.http11.HttpHeaders;
+import org.apache.coyote.http11.HttpRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a request off the connection and looking up its headers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpRequestBenchmark {
+
+    private static final byte[] GET_REQUEST = String.join("\r\n",
+            "GET /index.html HTTP/1.1",
+            "Host: localhost:8080",
+            "Connection: keep-alive",
+            "Cache-Control: max-age=0",
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/117.0",
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8",
+            "Accept-Encoding: gzip, deflate, br",
+            "Accept-Language: ko-KR,ko;q=0.9,en-US;q=0.8,en;q=0.7",
+            "Cookie: yummy_cookie=choco; tasty_cookie=strawberry; JSESSIONID=656cef62-e3c4-40bc-a8df-94732920ed46",
+            "",
+            "").getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final byte[] POST_REQUEST = String.join("\r\n",
+            "POST /register HTTP/1.1",
+            "Host: localhost:8080",
+            "Connection: keep-alive",
+            "Content-Length: 58",
+            "Content-Type: application/x-www-form-urlencoded",
+            "Accept: */*",
+            "",
+            "account=gugu&password=password&email=hkkang%40woowahan.com").getBytes(StandardCharsets.ISO_8859_1);
+
+    private HttpHeaders headers;
+
+    @Setup
+    public void setUp() throws IOException {
+        headers = parse(GET_REQUEST).getHeaders();
+    }
+
+    private static HttpRequest parse(final byte[] request) throws IOException {
+        return HttpRequest.parse(new Http11InputBuffer(new ByteArrayInputStream(request)));
+    }
+
+    @Benchmark
+    public HttpRequest parseGet() throws IOException {
+        return parse(GET_REQUEST);
+    }
+
+    @Benchmark
+    public String parsePostWithParameters() throws IOException {
+        return parse(POST_REQUEST).getParameter("email");
+    }
+
+    @Benchmark
+    public String parseSessionCookie() throws IOException {
+        return parse(GET_REQUEST).getRequestedSessionId();
+    }
+
+    @Benchmark
+    public void headerLookup(final Blackhole blackhole) {
+        blackhole.consume(headers.get("Host"));
+        blackhole.consume(headers.get("cookie"));
+        blackhole.consume(headers.get("Content-Length"));
+    }
+}
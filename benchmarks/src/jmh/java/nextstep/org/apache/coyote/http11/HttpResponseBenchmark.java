@@ -0,0 +1,39 @@
+package nextstep.org.apache.coyote.http11;
+
+import org.apache.catalina.controller.StaticResources;
+import org.apache.coyote.http11.HttpResponse;
+import org.apache.coyote.http11.SetCookie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing responses to the bytes written to the connection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpResponseBenchmark {
+
+    private static final String SESSION_ID = "656cef62-e3c4-40bc-a8df-94732920ed46";
+
+    @Benchmark
+    public byte[] staticPage() {
+        final var response = new HttpResponse();
+        StaticResources.render(response, "/index.html");
+        return response.toBytes();
+    }
+
+    @Benchmark
+    public byte[] redirectWithSessionCookie() {
+        final var response = new HttpResponse();
+        response.sendRedirect("/index.html");
+        response.addCookie(SetCookie.sessionCookie(SESSION_ID));
+        return response.toBytes();
+    }
+}
@@ -0,0 +1,157 @@
+package nextstep.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One keep-alive HTTP/1.1 connection of the load generator. Requests may be
+ * written several ahead of the responses read; responses are read in order.
+ */
+class ClientConnection implements AutoCloseable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1_000;
+    private static final int READ_TIMEOUT_MILLIS = 10_000;
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final InetSocketAddress address;
+    private final byte[] lineBuffer = new byte[MAX_LINE_LENGTH];
+    private Socket socket;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+    private boolean closeRequested;
+
+    ClientConnection(final InetSocketAddress address) {
+        this.address = address;
+    }
+
+    void connect() throws IOException {
+        close();
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+        socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+        inputStream = new BufferedInputStream(socket.getInputStream());
+        outputStream = new BufferedOutputStream(socket.getOutputStream());
+        closeRequested = false;
+    }
+
+    boolean isOpen() {
+        return socket != null && !closeRequested;
+    }
+
+    /**
+     * Buffer a request; it is sent on the next {@link #flush()}.
+     */
+    void write(final byte[] request) throws IOException {
+        outputStream.write(request);
+    }
+
+    void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    /**
+     * Read the next response through the end of its body.
+     *
+     * @return the status code
+     * @throws EOFException if the server closed the connection first
+     */
+    int readResponse() throws IOException {
+        final String statusLine = readLine();
+        if (statusLine == null) {
+            throw new EOFException("connection closed by the server");
+        }
+        final int status = parseStatus(statusLine);
+        long contentLength = -1;
+        String line;
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            final int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            final String name = line.substring(0, colon).trim();
+            final String value = line.substring(colon + 1).trim();
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                contentLength = Long.parseLong(value);
+            } else if ("Connection".equalsIgnoreCase(name) && "close".equalsIgnoreCase(value)) {
+                closeRequested = true;
+            }
+        }
+        if (contentLength < 0) {
+            // no length: the body runs to the end of the connection
+            inputStream.transferTo(OutputStream.nullOutputStream());
+            closeRequested = true;
+        } else {
+            skipFully(contentLength);
+        }
+        return status;
+    }
+
+    private int parseStatus(final String statusLine) throws IOException {
+        final int start = statusLine.indexOf(' ');
+        if (start < 0 || statusLine.length() < start + 4) {
+            throw new IOException("malformed status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(start + 1, start + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("malformed status line: " + statusLine);
+        }
+    }
+
+    private String readLine() throws IOException {
+        int length = 0;
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            if (b == '\n') {
+                if (length > 0 && lineBuffer[length - 1] == '\r') {
+                    length--;
+                }
+                return new String(lineBuffer, 0, length, StandardCharsets.ISO_8859_1);
+            }
+            if (length == lineBuffer.length) {
+                throw new IOException("header line too long");
+            }
+            lineBuffer[length++] = (byte) b;
+        }
+        if (length == 0) {
+            return null;
+        }
+        throw new EOFException("connection closed in the middle of a line");
+    }
+
+    private void skipFully(final long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            final long skipped = inputStream.skip(remaining);
+            if (skipped > 0) {
+                remaining -= skipped;
+                continue;
+            }
+            if (inputStream.read() == -1) {
+                throw new EOFException("connection closed in the middle of a body");
+            }
+            remaining--;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // the connection is given up either way
+        }
+        socket = null;
+    }
+}
@@ -0,0 +1,246 @@
+package nextstep.loadtest;
+
+import org.apache.catalina.metrics.Histogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends GET requests over many keep-alive connections for a fixed time and
+ * measures their latency.
+ * <p>
+ * In the closed-loop model each connection sends its next request as soon
+ * as a response comes back, so the load follows the speed of the server.
+ * In the open-loop model requests are due on a fixed schedule at the given
+ * rate, whatever the server does, and the latency of each request is
+ * measured from the time it was due rather than from the time it was sent.
+ * A stalled server therefore shows up in the percentiles as all the requests
+ * that should have been sent meanwhile, instead of as a single slow one
+ * (coordinated omission).
+ * <p>
+ * Up to the pipeline depth of requests are written on a connection before
+ * their responses are read. When the server closes a connection, the
+ * requests not answered yet are sent again on a new one, keeping their
+ * original start times.
+ */
+public class LoadGenerator {
+
+    private final InetSocketAddress address;
+    private int connections = 16;
+    private int pipelineDepth = 1;
+    private long warmupNanos = TimeUnit.SECONDS.toNanos(2);
+    private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+    private double requestsPerSecond;
+
+    public LoadGenerator(final InetSocketAddress address) {
+        this.address = address;
+    }
+
+    public void setConnections(final int connections) {
+        this.connections = connections;
+    }
+
+    public void setPipelineDepth(final int pipelineDepth) {
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    public void setWarmupMillis(final long warmupMillis) {
+        this.warmupNanos = TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+    }
+
+    public void setDurationMillis(final long durationMillis) {
+        this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+    }
+
+    /**
+     * @param requestsPerSecond rate of the open-loop schedule over all the
+     *                          connections, or 0 for the closed-loop model
+     */
+    public void setRequestsPerSecond(final double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Send requests for the path until the warmup and the measured duration
+     * are over. Requests due during the warmup are not measured.
+     */
+    public LoadReport run(final String path) throws InterruptedException {
+        final byte[] request = ("GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + address.getHostString() + ":" + address.getPort() + "\r\n"
+                + "Connection: keep-alive\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        final long startTime = System.nanoTime();
+        final var run = new Run(request, startTime);
+        final List<Thread> threads = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            final var thread = new Thread(run::drive, "load-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final String model = requestsPerSecond > 0 ? String.format("open@%.0f/s", requestsPerSecond) : "closed";
+        return new LoadReport(path, model, connections, pipelineDepth, run.latencies, run.errors.sum(),
+                Math.max(0, run.connects.sum() - connections), durationNanos);
+    }
+
+    private class Run {
+
+        private final byte[] request;
+        private final long startTime;
+        private final long measureFrom;
+        private final long endTime;
+        private final long intervalNanos;
+        private final AtomicLong schedule = new AtomicLong();
+        private final Histogram latencies = new Histogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder connects = new LongAdder();
+
+        Run(final byte[] request, final long startTime) {
+            this.request = request;
+            this.startTime = startTime;
+            this.measureFrom = startTime + warmupNanos;
+            this.endTime = measureFrom + durationNanos;
+            this.intervalNanos = requestsPerSecond > 0 ? (long) (1e9 / requestsPerSecond) : 0;
+        }
+
+        /**
+         * @return the time the next request of the open-loop schedule is due,
+         * claiming it if it is due by <code>now</code>; or 0 once the run is
+         * over
+         */
+        private long claimDue(final long now) {
+            while (true) {
+                final long next = schedule.get();
+                final long due = startTime + next * intervalNanos;
+                if (due >= endTime) {
+                    return 0;
+                }
+                if (due > now) {
+                    return -due;
+                }
+                if (schedule.compareAndSet(next, next + 1)) {
+                    return due;
+                }
+            }
+        }
+
+        void drive() {
+            final var outstanding = new ArrayDeque<Long>(pipelineDepth);
+            try (final var connection = new ClientConnection(address)) {
+                while (true) {
+                    if (!send(connection, outstanding)) {
+                        break;
+                    }
+                    receive(connection, outstanding);
+                }
+            }
+        }
+
+        /**
+         * Write requests until the pipeline is full or, in the open-loop
+         * model, no more are due.
+         *
+         * @return false once the run is over and no request is outstanding
+         */
+        private boolean send(final ClientConnection connection, final ArrayDeque<Long> outstanding) {
+            long now = System.nanoTime();
+            while (outstanding.size() < pipelineDepth) {
+                if (now >= endTime) {
+                    break;
+                }
+                if (intervalNanos == 0) {
+                    outstanding.add(now);
+                    write(connection, outstanding);
+                    continue;
+                }
+                final long due = claimDue(now);
+                if (due == 0) {
+                    break;
+                }
+                if (due < 0) {
+                    if (!outstanding.isEmpty()) {
+                        break;
+                    }
+                    LockSupport.parkNanos(-due - now);
+                    now = System.nanoTime();
+                    continue;
+                }
+                outstanding.add(due);
+                write(connection, outstanding);
+            }
+            return !outstanding.isEmpty();
+        }
+
+        private void write(final ClientConnection connection, final ArrayDeque<Long> outstanding) {
+            try {
+                if (!connection.isOpen()) {
+                    reconnect(connection, outstanding.size() - 1);
+                }
+                connection.write(request);
+                connection.flush();
+            } catch (IOException e) {
+                retry(connection, outstanding);
+            }
+        }
+
+        private void receive(final ClientConnection connection, final ArrayDeque<Long> outstanding) {
+            try {
+                final int status = connection.readResponse();
+                final long startedAt = outstanding.poll();
+                if (startedAt < measureFrom) {
+                    return;
+                }
+                if (status >= 400) {
+                    errors.increment();
+                    return;
+                }
+                latencies.recordNanos(System.nanoTime() - startedAt);
+            } catch (IOException e) {
+                retry(connection, outstanding);
+            }
+        }
+
+        /**
+         * Open a new connection and send every outstanding request again.
+         * Gives up on them, as errors when the server cannot be reached, and
+         * silently once the run is over.
+         */
+        private void retry(final ClientConnection connection, final ArrayDeque<Long> outstanding) {
+            if (System.nanoTime() >= endTime) {
+                outstanding.clear();
+                connection.close();
+                return;
+            }
+            try {
+                reconnect(connection, outstanding.size());
+            } catch (IOException e) {
+                for (final Long startedAt : outstanding) {
+                    if (startedAt >= measureFrom) {
+                        errors.increment();
+                    }
+                }
+                outstanding.clear();
+                connection.close();
+            }
+        }
+
+        private void reconnect(final ClientConnection connection, final int resend) throws IOException {
+            connects.increment();
+            connection.connect();
+            for (int i = 0; i < resend; i++) {
+                connection.write(request);
+            }
+            connection.flush();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package nextstep.loadtest;
+
+import org.apache.catalina.metrics.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of one load generator run: the throughput and latency percentiles
+ * of the requests measured.
+ */
+public class LoadReport {
+
+    static final String HEADER = String.format("%-24s %-14s %-12s %6s %5s %10s %9s %9s %9s %9s %9s %7s %8s",
+            "mode", "path", "model", "conns", "pipe", "requests", "req/s", "p50(ms)", "p99(ms)", "p999(ms)",
+            "max(ms)", "errors", "reconns");
+
+    private String mode = "-";
+    private final String path;
+    private final String model;
+    private final int connections;
+    private final int pipelineDepth;
+    private final Histogram latencies;
+    private final long errors;
+    private final long reconnects;
+    private final long durationNanos;
+
+    LoadReport(final String path, final String model, final int connections, final int pipelineDepth,
+               final Histogram latencies, final long errors, final long reconnects, final long durationNanos) {
+        this.path = path;
+        this.model = model;
+        this.connections = connections;
+        this.pipelineDepth = pipelineDepth;
+        this.latencies = latencies;
+        this.errors = errors;
+        this.reconnects = reconnects;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @param mode name of the server configuration the run was made against
+     */
+    public LoadReport withMode(final String mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    public long getRequests() {
+        return latencies.getCount();
+    }
+
+    public double getThroughput() {
+        return latencies.getCount() * 1e9 / durationNanos;
+    }
+
+    /**
+     * @return the latency under which the percentage of the requests
+     * completed, in microseconds
+     */
+    public long getLatencyAtPercentile(final double percentile) {
+        return latencies.getValueAtPercentile(percentile);
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return connections opened again after the server closed one
+     */
+    public long getReconnects() {
+        return reconnects;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-24s %-14s %-12s %6d %5d %10d %9.0f %9.3f %9.3f %9.3f %9.3f %7d %8d",
+                mode, path, model, connections, pipelineDepth, getRequests(), getThroughput(),
+                millis(getLatencyAtPercentile(50)), millis(getLatencyAtPercentile(99)),
+                millis(getLatencyAtPercentile(99.9)), millis(getLatencyAtPercentile(100)), errors, reconnects);
+    }
+
+    private static double millis(final long micros) {
+        return micros / (double) TimeUnit.MILLISECONDS.toMicros(1);
+    }
+}
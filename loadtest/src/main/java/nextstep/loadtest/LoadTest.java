@@ -0,0 +1,111 @@
+package nextstep.loadtest;
+
+import nextstep.jwp.controller.LoginController;
+import nextstep.jwp.controller.RegisterController;
+import nextstep.jwp.db.InMemoryUserRepository;
+import nextstep.jwp.security.PasswordEncoder;
+import nextstep.jwp.security.PasswordService;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.controller.MetricsController;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.catalina.session.StandardManager;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the server in process on an ephemeral port in each connector mode and
+ * loads it over loopback, with a static and a dynamic path, in the closed-loop
+ * model and, when a rate is given, the open-loop model.
+ * <p>
+ * Configured with system properties: <code>loadtest.connections</code>,
+ * <code>loadtest.pipeline</code>, <code>loadtest.warmup.ms</code>,
+ * <code>loadtest.duration.ms</code>, <code>loadtest.rate</code> (requests per
+ * second of the open-loop runs), <code>loadtest.paths</code> (comma
+ * separated) and <code>loadtest.report</code> (file the report is also
+ * written to).
+ */
+public class LoadTest {
+
+    private static final int ACCEPT_COUNT = 1024;
+
+    public static void main(final String[] args) throws InterruptedException, IOException {
+        final int connections = Integer.getInteger("loadtest.connections", 64);
+        final double rate = Double.parseDouble(System.getProperty("loadtest.rate", "0"));
+        final String[] paths = System.getProperty("loadtest.paths", "/index.html,/metrics").split(",");
+        final List<LoadReport> reports = new ArrayList<>();
+        for (final Map.Entry<String, Integer> mode : modes(connections).entrySet()) {
+            final var connector = startConnector(mode.getValue());
+            try {
+                final var loadGenerator = loadGenerator(connector.getLocalPort(), connections);
+                for (final String path : paths) {
+                    reports.add(loadGenerator.run(path).withMode(mode.getKey()));
+                    if (rate > 0) {
+                        loadGenerator.setRequestsPerSecond(rate);
+                        reports.add(loadGenerator.run(path).withMode(mode.getKey()));
+                        loadGenerator.setRequestsPerSecond(0);
+                    }
+                }
+            } finally {
+                connector.stop();
+            }
+        }
+        report(reports);
+    }
+
+    /**
+     * The connector modes compared, by the number of worker threads they
+     * get. A pool at least as large as the client connections gives every
+     * connection a thread of its own, as a thread-per-connection server does.
+     */
+    private static Map<String, Integer> modes(final int connections) {
+        final Map<String, Integer> modes = new LinkedHashMap<>();
+        modes.put("pooled-" + Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors());
+        modes.put("pooled-200", 200);
+        modes.put("thread-per-connection", Math.max(connections * Integer.getInteger("loadtest.pipeline", 1), 1));
+        return modes;
+    }
+
+    private static Connector startConnector(final int threads) {
+        final var passwordService = new PasswordService(new PasswordEncoder(), 1, 16);
+        final var userRepository = new InMemoryUserRepository();
+        final var metricRegistry = new MetricRegistry();
+        final var requestMapping = new RequestMapping()
+                .add("/login", new LoginController(userRepository, passwordService))
+                .add("/register", new RegisterController(userRepository, passwordService))
+                .add("/metrics", new MetricsController(metricRegistry));
+        final var connector = new Connector(0, ACCEPT_COUNT, threads, requestMapping, new StandardManager(),
+                metricRegistry);
+        connector.start();
+        return connector;
+    }
+
+    private static LoadGenerator loadGenerator(final int port, final int connections) {
+        final var loadGenerator = new LoadGenerator(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        loadGenerator.setConnections(connections);
+        loadGenerator.setPipelineDepth(Integer.getInteger("loadtest.pipeline", 1));
+        loadGenerator.setWarmupMillis(Long.getLong("loadtest.warmup.ms", 2_000L));
+        loadGenerator.setDurationMillis(Long.getLong("loadtest.duration.ms", 10_000L));
+        return loadGenerator;
+    }
+
+    private static void report(final List<LoadReport> reports) throws IOException {
+        final StringBuilder out = new StringBuilder(LoadReport.HEADER).append('\n');
+        for (final LoadReport report : reports) {
+            out.append(report).append('\n');
+        }
+        System.out.print(out);
+        final String reportFile = System.getProperty("loadtest.report");
+        if (reportFile != null) {
+            Files.writeString(Path.of(reportFile), out);
+        }
+    }
+}
@@ -1,11 +1,432 @@
 package nextstep;
 
+import nextstep.jwp.controller.LoginController;
+import nextstep.jwp.controller.RegisterController;
+import nextstep.jwp.db.BloomFilterUserRepository;
+import nextstep.jwp.db.CachingUserRepository;
+import nextstep.jwp.db.CompactUserRepository;
+import nextstep.jwp.db.ConnectionPool;
+import nextstep.jwp.db.InMemoryUserRepository;
+import nextstep.jwp.db.JdbcUserRepository;
+import nextstep.jwp.db.TracingUserRepository;
+import nextstep.jwp.db.UserRepository;
+import nextstep.jwp.importer.UserImporter;
+import nextstep.jwp.security.PasswordEncoder;
+import nextstep.jwp.security.PasswordService;
+import org.apache.catalina.connector.RequestClass;
+import org.apache.catalina.controller.MetricsController;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.controller.TraceController;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.catalina.session.FileStore;
+import org.apache.catalina.session.OffHeapManager;
+import org.apache.catalina.session.ReplicatedManager;
+import org.apache.catalina.session.StandardManager;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.net.SSLHostConfig;
+import org.apache.catalina.valves.AccessLogPattern;
+import org.apache.catalina.valves.AsyncFileAccessLog;
+import org.apache.catalina.valves.ResponseCache;
+import org.apache.catalina.valves.SlowRequestTracer;
+import org.apache.coyote.http11.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 public class Application {
 
+    private static final Logger log = LoggerFactory.getLogger(Application.class);
+
+    private static final String DATA_DIRECTORY_PROPERTY = "jwp.data.dir";
+    private static final String JDBC_URL_PROPERTY = "jwp.jdbc.url";
+    private static final String COMPACT_USERS_PROPERTY = "jwp.users.compact";
+    private static final String IMPORT_FILE_PROPERTY = "jwp.import.file";
+    private static final String ACCESS_LOG_DIRECTORY_PROPERTY = "jwp.accesslog.dir";
+    private static final String TRACE_THRESHOLD_PROPERTY = "jwp.trace.threshold.ms";
+    private static final String KEYSTORE_PROPERTY = "jwp.ssl.keystore";
+    private static final String ADMIN_PORT_PROPERTY = "jwp.admin.port";
+    private static final String ADMIN_PUBLIC_PROPERTY = "jwp.admin.public";
+    private static final String FAIR_SCHEDULING_PROPERTY = "jwp.scheduling.fair";
+    private static final String CACHE_ROUTES_PROPERTY = "jwp.cache.routes";
+    private static final String SESSION_STORE_PROPERTY = "jwp.session.store";
+    private static final String SESSION_NODE_PROPERTY = "jwp.session.node";
+    private static final String SESSION_OFF_HEAP_PROPERTY = "jwp.session.offheap";
+    private static final String SESSION_ATTRIBUTE_CLASSES = "nextstep.jwp.model.*";
+    private static final int DEFAULT_REPLICATION_PORT = 9100;
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_MAX_THREADS = 200;
+    private static final int DEFAULT_ADMIN_THREADS = 2;
+    private static final int DEFAULT_CONNECTION_TIMEOUT = 20_000;
+    private static final int DEFAULT_STATIC_WEIGHT = 4;
+    private static final int DEFAULT_DYNAMIC_WEIGHT = 1;
+    private static final long DEFAULT_CACHE_BYTES = 16L * 1024 * 1024;
+    private static final int CONNECTION_POOL_SIZE = 10;
+    private static final int USER_CACHE_SIZE = 10_000;
+    private static final long DEFAULT_EXPECTED_ACCOUNTS = 1_000_000L;
+    private static final double DEFAULT_ACCOUNT_FILTER_FPP = 0.01;
+    private static final long DEFAULT_ACCOUNT_FILTER_REBUILD_MILLIS = 60_000L;
+    private static final int DEFAULT_HASH_QUEUE_CAPACITY = 256;
+    private static final int DEFAULT_EXPECTED_USERS = 16;
+    private static final double DEFAULT_IMPORT_RATE = 1_000;
+
+    private static final List<Runnable> shutdownHooks = new ArrayList<>();
+    private static final MetricRegistry metricRegistry = new MetricRegistry();
+
     public static void main(String[] args) {
-        final var tomcat = new Tomcat();
-        tomcat.start();
+        final UserRepository userRepository = createUserRepository();
+        final PasswordService passwordService = createPasswordService();
+        importUsers(userRepository);
+        final SlowRequestTracer tracer = createTracer();
+        final UserRepository servedUserRepository =
+                tracer != null ? new TracingUserRepository(userRepository) : userRepository;
+        final var requestMapping = new RequestMapping()
+                .add("/login", new LoginController(servedUserRepository, passwordService))
+                .add("/register", new RegisterController(servedUserRepository, passwordService));
+        final Integer adminPort = Integer.getInteger(ADMIN_PORT_PROPERTY);
+        final var tomcat = new Tomcat(requestMapping, metricRegistry);
+        if (adminPort != null) {
+            tomcat.addConnector(adminPort, Integer.getInteger("jwp.admin.threads", DEFAULT_ADMIN_THREADS),
+                    addAdminControllers(new RequestMapping(), tracer));
+        } else if (Boolean.getBoolean(ADMIN_PUBLIC_PROPERTY)) {
+            addAdminControllers(requestMapping, tracer);
+        }
+        tomcat.setPort(Integer.getInteger("jwp.port", DEFAULT_PORT));
+        final int maxThreads = Integer.getInteger("jwp.threads", DEFAULT_MAX_THREADS);
+        tomcat.setMaxThreads(maxThreads);
+        configureScheduling(tomcat, maxThreads);
+        tomcat.setTracer(tracer);
+        tomcat.setHttp2Enabled(Boolean.getBoolean("jwp.http2"));
+        tomcat.setRequestTimeoutMillis(Long.getLong("jwp.request.timeout.ms", 0L));
+        tomcat.setConnectionTimeoutMillis(Integer.getInteger("jwp.connection.timeout.ms", DEFAULT_CONNECTION_TIMEOUT));
+        configureAccessLog(tomcat);
+        configureSsl(tomcat);
+        configureResponseCache(tomcat);
+        configureSessions(tomcat);
+        try {
+            tomcat.start();
+            tomcat.await();
+        } finally {
+            tomcat.stop();
+            shutdownHooks.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Metrics and traces go on the admin connector, so that they stay
+     * reachable when the public worker pool is saturated. Without one they
+     * are only served on the public port if that is asked for explicitly,
+     * as they tell who requested what.
+     */
+    private static RequestMapping addAdminControllers(final RequestMapping requestMapping,
+                                                      final SlowRequestTracer tracer) {
+        requestMapping.add("/metrics", new MetricsController(metricRegistry));
+        if (tracer != null) {
+            requestMapping.add("/admin/traces", new TraceController(tracer));
+        }
+        return requestMapping;
+    }
+
+    /**
+     * Schedule static and dynamic requests apart when fair scheduling is on.
+     * By default static resources get four times the share of the dynamic
+     * requests, which may take at most three quarters of the threads, so a
+     * burst of slow logins cannot hold up the pages around them.
+     */
+    private static void configureScheduling(final Tomcat tomcat, final int maxThreads) {
+        if (!Boolean.getBoolean(FAIR_SCHEDULING_PROPERTY)) {
+            return;
+        }
+        tomcat.setRequestClasses(
+                new RequestClass("static", Integer.getInteger("jwp.scheduling.static.weight", DEFAULT_STATIC_WEIGHT),
+                        Integer.getInteger("jwp.scheduling.static.threads", maxThreads)),
+                new RequestClass("dynamic", Integer.getInteger("jwp.scheduling.dynamic.weight", DEFAULT_DYNAMIC_WEIGHT),
+                        Integer.getInteger("jwp.scheduling.dynamic.threads", Math.max(1, maxThreads * 3 / 4))));
+    }
+
+    private static void configureAccessLog(final Tomcat tomcat) {
+        final String directory = System.getProperty(ACCESS_LOG_DIRECTORY_PROPERTY);
+        if (directory == null) {
+            return;
+        }
+        final var accessLog = new AsyncFileAccessLog(Path.of(directory), "access_log",
+                System.getProperty("jwp.accesslog.pattern", AccessLogPattern.COMMON));
+        metricRegistry.functionCounter("access_log_dropped_total",
+                "Access log entries dropped because the buffer was full.", accessLog::getDropped);
+        shutdownHooks.add(accessLog::close);
+        tomcat.setAccessLog(accessLog);
+    }
+
+    /**
+     * Cache the anonymous GET responses of the listed routes, such as
+     * <code>/login,/register</code>, when there are any.
+     */
+    private static void configureResponseCache(final Tomcat tomcat) {
+        final String routes = System.getProperty(CACHE_ROUTES_PROPERTY);
+        if (routes == null || routes.isBlank()) {
+            return;
+        }
+        final var responseCache = new ResponseCache(Long.getLong("jwp.cache.bytes", DEFAULT_CACHE_BYTES),
+                ForkJoinPool.commonPool());
+        for (final String route : routes.trim().split("\\s*,\\s*")) {
+            responseCache.addRoute(route);
+        }
+        final String varyHeaders = System.getProperty("jwp.cache.vary", "");
+        if (!varyHeaders.isBlank()) {
+            responseCache.setVaryHeaders(List.of(varyHeaders.trim().split("\\s*,\\s*")));
+        }
+        responseCache.setTtlMillis(Long.getLong("jwp.cache.ttl.ms", 1_000L));
+        responseCache.setStaleWhileRevalidateMillis(Long.getLong("jwp.cache.stale.ms", 5_000L));
+        metricRegistry.functionCounter("response_cache_hits_total", "Responses served fresh from the cache.",
+                responseCache::getHits);
+        metricRegistry.functionCounter("response_cache_stale_hits_total",
+                "Stale responses served from the cache while being revalidated.", responseCache::getStaleHits);
+        metricRegistry.functionCounter("response_cache_misses_total", "Cacheable requests not found in the cache.",
+                responseCache::getMisses);
+        metricRegistry.functionCounter("response_cache_coalesced_total",
+                "Misses answered with the response of a concurrent one.", responseCache::getCoalesced);
+        metricRegistry.functionCounter("response_cache_evictions_total", "Responses evicted to fit the cache.",
+                responseCache::getEvictions);
+        metricRegistry.gauge("response_cache_bytes", "Bytes of the responses in the cache.",
+                responseCache::getBytes);
+        tomcat.setResponseCache(responseCache);
+    }
+
+    /**
+     * Keep sessions off the heap, replicate them to the other nodes of a
+     * cluster or persist them to a file, as configured; by default they are
+     * kept in memory and lost on restart.
+     * <p>
+     * Replication is on when the node is named, with the other nodes listed
+     * as <code>name=host:port</code> pairs separated by commas in
+     * <code>jwp.session.peers</code>.
+     */
+    private static void configureSessions(final Tomcat tomcat) {
+        final String store = System.getProperty(SESSION_STORE_PROPERTY);
+        final String nodeName = System.getProperty(SESSION_NODE_PROPERTY);
+        if (Boolean.getBoolean(SESSION_OFF_HEAP_PROPERTY)) {
+            if (store != null || nodeName != null) {
+                throw new IllegalArgumentException("off-heap sessions can be neither persisted nor replicated");
+            }
+            final var manager = new OffHeapManager();
+            metricRegistry.gauge("sessions_off_heap_bytes", "Bytes reserved off the heap for sessions.",
+                    manager::getReservedBytes);
+            tomcat.setManager(manager);
+            return;
+        }
+        if (store == null && nodeName == null) {
+            return;
+        }
+        final StandardManager manager = nodeName != null ? createReplicatedManager(nodeName) : new StandardManager();
+        if (store != null) {
+            manager.setStore(new FileStore(Path.of(store)));
+        }
+        tomcat.setManager(manager);
+    }
+
+    private static ReplicatedManager createReplicatedManager(final String nodeName) {
+        final var manager = new ReplicatedManager(nodeName,
+                Integer.getInteger("jwp.session.replication.port", DEFAULT_REPLICATION_PORT));
+        try {
+            manager.setBindAddress(InetAddress.getByName(
+                    System.getProperty("jwp.session.replication.bind", "127.0.0.1")));
+        } catch (UnknownHostException e) {
+            throw new UncheckedIOException(e);
+        }
+        manager.setAllowedAttributeClasses(SESSION_ATTRIBUTE_CLASSES);
+        final String peers = System.getProperty("jwp.session.peers", "");
+        for (final String peer : peers.isBlank() ? new String[0] : peers.trim().split("\\s*,\\s*")) {
+            final int equals = peer.indexOf('=');
+            final int colon = peer.lastIndexOf(':');
+            if (equals <= 0 || colon < equals) {
+                throw new IllegalArgumentException("Invalid session peer, expected name=host:port: " + peer);
+            }
+            manager.addPeer(peer.substring(0, equals), new InetSocketAddress(peer.substring(equals + 1, colon),
+                    Integer.parseInt(peer.substring(colon + 1))));
+        }
+        metricRegistry.functionCounter("session_replication_sent_total", "Session changes sent to the peers.",
+                manager::getSentMessages);
+        metricRegistry.functionCounter("session_replication_received_total", "Session changes received from peers.",
+                manager::getReceivedMessages);
+        metricRegistry.functionCounter("session_replication_fetched_total", "Sessions fetched from their owner.",
+                manager::getFetchedSessions);
+        metricRegistry.functionCounter("session_replication_rejected_total",
+                "Replication connections refused for not coming from a peer.", manager::getRejectedConnections);
+        return manager;
+    }
+
+    /**
+     * Serve HTTPS instead of HTTP when a keystore is given.
+     */
+    private static void configureSsl(final Tomcat tomcat) {
+        final String keystore = System.getProperty(KEYSTORE_PROPERTY);
+        if (keystore == null) {
+            return;
+        }
+        final var sslHostConfig = new SSLHostConfig(Path.of(keystore),
+                System.getProperty("jwp.ssl.keystore.password", ""));
+        sslHostConfig.setKeystoreType(System.getProperty("jwp.ssl.keystore.type", "PKCS12"));
+        sslHostConfig.setSessionCacheSize(Integer.getInteger("jwp.ssl.session.cache", 20_480));
+        sslHostConfig.setSessionTimeoutSeconds(Integer.getInteger("jwp.ssl.session.timeout", 86_400));
+        tomcat.setSSLHostConfig(sslHostConfig);
+    }
+
+    /**
+     * Trace requests slower than the configured threshold, and a sample of
+     * the others, when a threshold is set.
+     */
+    private static SlowRequestTracer createTracer() {
+        final Long thresholdMillis = Long.getLong(TRACE_THRESHOLD_PROPERTY);
+        if (thresholdMillis == null) {
+            return null;
+        }
+        final var tracer = new SlowRequestTracer(TimeUnit.MILLISECONDS.toNanos(thresholdMillis),
+                Double.parseDouble(System.getProperty("jwp.trace.sample", "0")),
+                Integer.getInteger("jwp.trace.capacity", SlowRequestTracer.DEFAULT_CAPACITY));
+        metricRegistry.functionCounter("slow_requests_traced_total", "Requests traced for going over the threshold.",
+                tracer::getSlowRequests);
+        metricRegistry.functionCounter("sampled_requests_traced_total", "Requests traced by sampling.",
+                tracer::getSampledRequests);
+        return tracer;
+    }
+
+    /**
+     * Load the users of the configured file in the background, so that the
+     * server takes requests while the import runs. Its password hashing runs
+     * on a pool of its own, a quarter of the processors by default, and is
+     * rate limited, so that it leaves the request threads and the common pool
+     * alone.
+     */
+    private static void importUsers(final UserRepository userRepository) {
+        final String importFile = System.getProperty(IMPORT_FILE_PROPERTY);
+        if (importFile == null) {
+            return;
+        }
+        final var pool = new ForkJoinPool(Integer.getInteger("jwp.import.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 4)));
+        final var userImporter = new UserImporter(userRepository, pool);
+        userImporter.setPasswordEncoder(createPasswordEncoder());
+        userImporter.setRateLimit(Double.parseDouble(System.getProperty("jwp.import.rate",
+                String.valueOf(DEFAULT_IMPORT_RATE))));
+        final var thread = new Thread(() -> {
+            try {
+                userImporter.importFrom(Path.of(importFile));
+            } catch (IOException e) {
+                log.error("failed to import users from {}", importFile, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                pool.shutdown();
+            }
+        }, "user-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static PasswordEncoder createPasswordEncoder() {
+        return new PasswordEncoder(Integer.getInteger("jwp.password.iterations", PasswordEncoder.DEFAULT_ITERATIONS));
+    }
+
+    /**
+     * Password hashing gets as many threads as there are processors by
+     * default, since it is pure computation.
+     */
+    private static PasswordService createPasswordService() {
+        final var passwordService = new PasswordService(createPasswordEncoder(),
+                Integer.getInteger("jwp.password.threads", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("jwp.password.queue", DEFAULT_HASH_QUEUE_CAPACITY));
+        passwordService.setVerificationCacheTtlMillis(Long.getLong("jwp.password.cache.ttl", 0L));
+        metricRegistry.functionCounter("password_hash_tasks_total", "Password hashing tasks submitted.",
+                passwordService::getSubmitted);
+        metricRegistry.functionCounter("password_hash_rejected_total",
+                "Password hashing tasks refused because the queue was full.", passwordService::getRejected);
+        metricRegistry.functionCounter("password_hash_cache_hits_total",
+                "Password verifications answered from the cache.", passwordService::getCacheHits);
+        metricRegistry.functionCounter("password_hash_seconds_total", "Time spent hashing passwords.",
+                () -> passwordService.getHashNanos() / 1e9);
+        metricRegistry.gauge("password_hash_queue_size", "Password hashing tasks waiting for a thread.",
+                passwordService::getQueueSize);
+        metricRegistry.gauge("password_hash_threads_busy", "Password hashing threads at work.",
+                passwordService::getActiveThreads);
+        shutdownHooks.add(passwordService::close);
+        return passwordService;
+    }
+
+    private static UserRepository createUserRepository() {
+        final String jdbcUrl = System.getProperty(JDBC_URL_PROPERTY);
+        if (jdbcUrl != null) {
+            final var connectionPool = new ConnectionPool(jdbcUrl, System.getProperty("jwp.jdbc.user", "sa"),
+                    System.getProperty("jwp.jdbc.password", ""), CONNECTION_POOL_SIZE);
+            connectionPool.setTimeoutBound(timeoutMillis -> {
+                Deadline.checkCurrent();
+                return Deadline.remainingMillis(timeoutMillis);
+            });
+            shutdownHooks.add(connectionPool::close);
+            final var jdbcUserRepository = new JdbcUserRepository(connectionPool);
+            jdbcUserRepository.createTable();
+            final var cachingUserRepository = new CachingUserRepository(jdbcUserRepository, USER_CACHE_SIZE,
+                    ForkJoinPool.commonPool());
+            final var bloomFilterUserRepository = new BloomFilterUserRepository(cachingUserRepository,
+                    Long.getLong("jwp.accounts.expected", DEFAULT_EXPECTED_ACCOUNTS),
+                    Double.parseDouble(System.getProperty("jwp.accounts.filter.fpp",
+                            String.valueOf(DEFAULT_ACCOUNT_FILTER_FPP))));
+            // other nodes sharing the database register accounts this filter does not see
+            bloomFilterUserRepository.startRebuilding(
+                    Long.getLong("jwp.accounts.filter.rebuild.ms", DEFAULT_ACCOUNT_FILTER_REBUILD_MILLIS));
+            shutdownHooks.add(bloomFilterUserRepository::stopRebuilding);
+            registerMetrics(connectionPool, cachingUserRepository, bloomFilterUserRepository);
+            return bloomFilterUserRepository;
+        }
+        if (Boolean.getBoolean(COMPACT_USERS_PROPERTY)) {
+            final var compactUserRepository = new CompactUserRepository();
+            metricRegistry.gauge("users", "Users stored.", compactUserRepository::size);
+            metricRegistry.gauge("users_memory_bytes", "Bytes of the pages holding users.",
+                    compactUserRepository::getMemoryBytes);
+            metricRegistry.gauge("users_garbage_bytes", "Bytes of pages left by updated users.",
+                    compactUserRepository::getGarbageBytes);
+            return compactUserRepository;
+        }
+        final var inMemoryUserRepository = new InMemoryUserRepository(
+                Integer.getInteger("jwp.users.expected", DEFAULT_EXPECTED_USERS));
+        final String dataDirectory = System.getProperty(DATA_DIRECTORY_PROPERTY);
+        if (dataDirectory != null) {
+            inMemoryUserRepository.enablePersistence(Path.of(dataDirectory));
+            shutdownHooks.add(inMemoryUserRepository::disablePersistence);
+        }
+        return inMemoryUserRepository;
+    }
+
+    private static void registerMetrics(final ConnectionPool connectionPool,
+                                        final CachingUserRepository cachingUserRepository,
+                                        final BloomFilterUserRepository bloomFilterUserRepository) {
+        metricRegistry.gauge("db_connections_idle", "Idle database connections.",
+                connectionPool::getIdleConnections);
+        metricRegistry.functionCounter("user_cache_hits_total", "User lookups answered by the cache.",
+                cachingUserRepository::getHits);
+        metricRegistry.functionCounter("user_cache_misses_total", "User lookups passed to the database.",
+                cachingUserRepository::getMisses);
+        metricRegistry.functionCounter("user_cache_evictions_total", "Users evicted from the cache.",
+                cachingUserRepository::getEvictions);
+        metricRegistry.gauge("user_cache_size", "Users in the cache.", cachingUserRepository::size);
+        metricRegistry.functionCounter("account_filter_rejected_total",
+                "Lookups of accounts the filter knows do not exist.", bloomFilterUserRepository::getRejectedLookups);
+        metricRegistry.functionCounter("account_filter_passed_total",
+                "Lookups the filter passed to the repository.", bloomFilterUserRepository::getPassedLookups);
+        metricRegistry.functionCounter("account_filter_false_positives_total",
+                "Passed lookups of accounts that did not exist.", bloomFilterUserRepository::getFalsePositives);
+        metricRegistry.gauge("account_filter_estimated_false_positive_rate",
+                "False positive rate estimated from the bits set.",
+                () -> bloomFilterUserRepository.getFilter().getEstimatedFalsePositiveRate());
+        metricRegistry.gauge("account_filter_memory_bytes", "Bytes of the account filter bits.",
+                () -> bloomFilterUserRepository.getFilter().getMemoryBytes());
     }
 }
@@ -0,0 +1,103 @@
+package nextstep.jwp.controller;
+
+import jakarta.servlet.http.HttpSession;
+import nextstep.jwp.db.UserRepository;
+import nextstep.jwp.model.LoginUser;
+import nextstep.jwp.model.User;
+import nextstep.jwp.security.PasswordService;
+import org.apache.catalina.controller.AbstractController;
+import org.apache.catalina.controller.StaticResources;
+import org.apache.coyote.http11.AsyncContext;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+import org.apache.coyote.http11.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+public class LoginController extends AbstractController {
+
+    private static final Logger log = LoggerFactory.getLogger(LoginController.class);
+
+    static final String USER_ATTRIBUTE = "user";
+
+    private final UserRepository userRepository;
+    private final PasswordService passwordService;
+
+    public LoginController(final UserRepository userRepository, final PasswordService passwordService) {
+        this.userRepository = userRepository;
+        this.passwordService = passwordService;
+    }
+
+    @Override
+    protected void doGet(final HttpRequest request, final HttpResponse response) {
+        if (isLoggedIn(request)) {
+            response.sendRedirect("/index.html");
+            return;
+        }
+        if (request.getParameter("account") != null) {
+            login(request, response);
+            return;
+        }
+        StaticResources.render(response, "/login.html");
+    }
+
+    @Override
+    protected void doPost(final HttpRequest request, final HttpResponse response) {
+        if (isLoggedIn(request)) {
+            response.sendRedirect("/index.html");
+            return;
+        }
+        login(request, response);
+    }
+
+    private boolean isLoggedIn(final HttpRequest request) {
+        final HttpSession session = request.getSession(false);
+        return session != null && session.getAttribute(USER_ATTRIBUTE) != null;
+    }
+
+    /**
+     * Verify the password on the password service and answer once it is
+     * done, back on a request worker, leaving the worker free in the
+     * meantime.
+     */
+    private void login(final HttpRequest request, final HttpResponse response) {
+        final String account = request.getParameter("account");
+        final String password = request.getParameter("password");
+        final Optional<User> user = Optional.ofNullable(account)
+                .flatMap(userRepository::findByAccount);
+        if (password == null) {
+            response.sendRedirect("/401.html");
+            return;
+        }
+        final AsyncContext asyncContext = request.startAsync(response);
+        // unknown accounts are hashed too, so as not to answer them faster
+        final CompletableFuture<Boolean> verification = passwordService.verify(user.orElse(null), password);
+        asyncContext.onCancel(() -> verification.cancel(false));
+        verification.whenCompleteAsync((matches, e) -> {
+            if (asyncContext.isCancelled()) {
+                return;
+            }
+            try {
+                if (e != null) {
+                    log.warn("password verification unavailable: {}", e.getMessage());
+                    StaticResources.renderError(response, HttpStatus.SERVICE_UNAVAILABLE);
+                } else if (matches) {
+                    log.info("user : {}", user.get().getAccount());
+                    request.getSession(true).setAttribute(USER_ATTRIBUTE, LoginUser.of(user.get()));
+                    response.sendRedirect("/index.html");
+                } else {
+                    response.sendRedirect("/401.html");
+                }
+            } catch (RuntimeException failure) {
+                log.error(failure.getMessage(), failure);
+                response.reset();
+                StaticResources.renderError(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            } finally {
+                asyncContext.complete();
+            }
+        }, asyncContext::start);
+    }
+}
@@ -0,0 +1,79 @@
+package nextstep.jwp.controller;
+
+import nextstep.jwp.db.UserRepository;
+import nextstep.jwp.model.User;
+import nextstep.jwp.security.PasswordService;
+import org.apache.catalina.controller.AbstractController;
+import org.apache.catalina.controller.StaticResources;
+import org.apache.coyote.http11.AsyncContext;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+import org.apache.coyote.http11.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+
+public class RegisterController extends AbstractController {
+
+    private static final Logger log = LoggerFactory.getLogger(RegisterController.class);
+
+    private final UserRepository userRepository;
+    private final PasswordService passwordService;
+
+    public RegisterController(final UserRepository userRepository, final PasswordService passwordService) {
+        this.userRepository = userRepository;
+        this.passwordService = passwordService;
+    }
+
+    @Override
+    protected void doGet(final HttpRequest request, final HttpResponse response) {
+        StaticResources.render(response, "/register.html");
+    }
+
+    @Override
+    protected void doPost(final HttpRequest request, final HttpResponse response) {
+        final String account = request.getParameter("account");
+        final String password = request.getParameter("password");
+        final String email = request.getParameter("email");
+        if (isBlank(account) || isBlank(password) || isBlank(email)) {
+            StaticResources.renderError(response, HttpStatus.BAD_REQUEST);
+            return;
+        }
+        final AsyncContext asyncContext = request.startAsync(response);
+        final CompletableFuture<String> encoding = passwordService.encode(password);
+        asyncContext.onCancel(() -> encoding.cancel(false));
+        encoding.whenCompleteAsync((encoded, e) -> {
+            if (asyncContext.isCancelled()) {
+                return;
+            }
+            try {
+                if (e != null) {
+                    log.warn("password hashing unavailable: {}", e.getMessage());
+                    StaticResources.renderError(response, HttpStatus.SERVICE_UNAVAILABLE);
+                } else {
+                    register(new User(account, encoded, email), response);
+                }
+            } catch (RuntimeException failure) {
+                log.error(failure.getMessage(), failure);
+                response.reset();
+                StaticResources.renderError(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            } finally {
+                asyncContext.complete();
+            }
+        }, asyncContext::start);
+    }
+
+    private void register(final User user, final HttpResponse response) {
+        if (userRepository.saveIfAbsent(user).isEmpty()) {
+            response.setStatus(HttpStatus.CONFLICT);
+            StaticResources.render(response, "/register.html");
+            return;
+        }
+        response.sendRedirect("/index.html");
+    }
+
+    private boolean isBlank(final String value) {
+        return value == null || value.isBlank();
+    }
+}
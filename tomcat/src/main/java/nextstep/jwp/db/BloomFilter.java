@@ -0,0 +1,138 @@
+package nextstep.jwp.db;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter of strings, safe for concurrent use without locking.
+ * <p>
+ * The number of bits and of hash functions are derived from the expected
+ * number of elements and the wanted false positive rate. Bits are set with a
+ * compare-and-set on the word that holds them, so a concurrent
+ * {@link #mightContain(String)} never misses an element whose
+ * {@link #put(String)} has returned.
+ */
+public class BloomFilter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashFunctions;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final LongAdder insertions = new LongAdder();
+
+    public BloomFilter(final long expectedInsertions, final double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        }
+        final double ln2 = Math.log(2);
+        final long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        final int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = (long) wordCount << 6;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * ln2));
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    public void put(final String value) {
+        final long hash1 = hash(value);
+        final long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < hashFunctions; i++) {
+            setBit(Math.floorMod(hash1 + i * hash2, bitSize));
+        }
+        insertions.increment();
+    }
+
+    /**
+     * @return <code>false</code> if the value was certainly never put,
+     * <code>true</code> if it probably was
+     */
+    public boolean mightContain(final String value) {
+        final long hash1 = hash(value);
+        final long hash2 = mix(hash1 ^ 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < hashFunctions; i++) {
+            final long bit = Math.floorMod(hash1 + i * hash2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setBit(final long bit) {
+        final int index = (int) (bit >>> 6);
+        final long mask = 1L << bit;
+        long word;
+        do {
+            word = words.get(index);
+            if ((word & mask) != 0) {
+                return;
+            }
+        } while (!words.compareAndSet(index, word, word | mask));
+    }
+
+    private static long hash(final String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public long getMemoryBytes() {
+        return bitSize / Byte.SIZE;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public double getConfiguredFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    public long getSetBits() {
+        long count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * Estimate the current false positive rate from the fraction of bits set,
+     * which grows past the configured rate once more elements than expected
+     * have been put.
+     */
+    public double getEstimatedFalsePositiveRate() {
+        return Math.pow((double) getSetBits() / bitSize, hashFunctions);
+    }
+}
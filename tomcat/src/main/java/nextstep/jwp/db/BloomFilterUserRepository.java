@@ -0,0 +1,199 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Repository that answers lookups of accounts that certainly do not exist
+ * without reaching the repository behind it.
+ * <p>
+ * A {@link BloomFilter} of every account is built from the underlying
+ * repository and updated on each save made through this one. It only knows
+ * about accounts saved through this instance, so another writer to the same
+ * store, such as another node sharing a database, must be followed by a
+ * {@link #rebuild(long)}, or {@link #startRebuilding(long) rebuilds} must
+ * run on an interval: until the next one, accounts saved by another node are
+ * not found here. Saves made while a rebuild runs go to both the old and the
+ * new filter, so none is lost in the swap.
+ */
+public class BloomFilterUserRepository implements UserRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(BloomFilterUserRepository.class);
+
+    private final UserRepository repository;
+    private final double falsePositiveRate;
+    private volatile BloomFilter filter;
+    private volatile BloomFilter rebuilding;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private volatile boolean saturationReported;
+    private ScheduledExecutorService rebuilder;
+
+    public BloomFilterUserRepository(final UserRepository repository, final long expectedInsertions,
+                                     final double falsePositiveRate) {
+        this.repository = repository;
+        this.falsePositiveRate = falsePositiveRate;
+        rebuild(expectedInsertions);
+    }
+
+    /**
+     * Replace the filter with one sized for the given number of accounts and
+     * filled from the underlying repository.
+     */
+    public synchronized void rebuild(final long expectedInsertions) {
+        final long startTime = System.currentTimeMillis();
+        final BloomFilter next = new BloomFilter(expectedInsertions, falsePositiveRate);
+        rebuilding = next;
+        repository.forEachAccount(next::put);
+        filter = next;
+        rebuilding = null;
+        saturationReported = false;
+        log.info("built account filter of {} accounts, {} KiB, in {} ms", next.getInsertions(),
+                next.getMemoryBytes() / 1024, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Rebuild the filter every interval in the background, sized for at
+     * least twice the accounts it holds by then. A rebuild that fails keeps
+     * the current filter until the next one.
+     */
+    public synchronized void startRebuilding(final long intervalMillis) {
+        if (rebuilder != null) {
+            return;
+        }
+        rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "account-filter-rebuilder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuilder.scheduleWithFixedDelay(this::scheduledRebuild, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopRebuilding() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+            rebuilder = null;
+        }
+    }
+
+    private void scheduledRebuild() {
+        final BloomFilter current = filter;
+        try {
+            rebuild(Math.max(current.getExpectedInsertions(), current.getInsertions() * 2));
+        } catch (RuntimeException e) {
+            rebuilding = null;
+            log.warn("failed to rebuild account filter, keeping the current one", e);
+        }
+    }
+
+    @Override
+    public Optional<User> findByAccount(final String account) {
+        if (account == null) {
+            return Optional.empty();
+        }
+        if (!filter.mightContain(account)) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        passed.increment();
+        final Optional<User> user = repository.findByAccount(account);
+        if (user.isEmpty()) {
+            falsePositives.increment();
+        }
+        return user;
+    }
+
+    @Override
+    public User save(final User user) {
+        final User saved = repository.save(user);
+        add(saved.getAccount());
+        return saved;
+    }
+
+    @Override
+    public Optional<User> saveIfAbsent(final User user) {
+        final Optional<User> inserted = repository.saveIfAbsent(user);
+        inserted.ifPresent(saved -> add(saved.getAccount()));
+        return inserted;
+    }
+
+    @Override
+    public List<User> saveAllIfAbsent(final List<User> users) {
+        final List<User> inserted = repository.saveAllIfAbsent(users);
+        for (final User saved : inserted) {
+            add(saved.getAccount());
+        }
+        return inserted;
+    }
+
+    /**
+     * Put the account in the filter, and in the one being rebuilt if any. The
+     * rebuilt filter is read first: if there is none, either no rebuild has
+     * started yet, and it will find the account in the repository, or it has
+     * finished and its filter is the current one.
+     */
+    private void add(final String account) {
+        final BloomFilter next = rebuilding;
+        final BloomFilter current = filter;
+        current.put(account);
+        if (next != null && next != current) {
+            next.put(account);
+        }
+        if (!saturationReported && current.getInsertions() > current.getExpectedInsertions()) {
+            saturationReported = true;
+            log.warn("account filter holds more than the {} accounts it was sized for, "
+                    + "its false positive rate is rising", current.getExpectedInsertions());
+        }
+    }
+
+    @Override
+    public Optional<User> findById(final Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Optional<User> findByEmail(final String email) {
+        return repository.findByEmail(email);
+    }
+
+    @Override
+    public void forEachAccount(final Consumer<String> consumer) {
+        repository.forEachAccount(consumer);
+    }
+
+    public BloomFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return lookups answered by the filter alone
+     */
+    public long getRejectedLookups() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return lookups passed on to the underlying repository
+     */
+    public long getPassedLookups() {
+        return passed.sum();
+    }
+
+    /**
+     * @return passed lookups for which the account turned out not to exist
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+}
@@ -0,0 +1,235 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded read-through cache of users by account in front of another
+ * repository.
+ * <p>
+ * Both found and missing accounts are cached, the latter for a shorter time
+ * so that a new registration on another node shows up quickly. An entry that
+ * has lived most of its time to live is still served, but refreshed in the
+ * background, so that accounts in regular use never wait for the underlying
+ * repository. When the cache is full, the oldest entries are evicted first.
+ * Writes go to the underlying repository and then replace the cached entry.
+ */
+public class CachingUserRepository implements UserRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingUserRepository.class);
+
+    private static final long DEFAULT_TTL_MILLIS = 60_000L;
+    private static final long DEFAULT_NEGATIVE_TTL_MILLIS = 5_000L;
+    private static final double REFRESH_AHEAD_RATIO = 0.8;
+
+    private final UserRepository repository;
+    private final int maxSize;
+    private final Clock clock;
+    private final Executor refresher;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long ttlMillis = DEFAULT_TTL_MILLIS;
+    private long negativeTtlMillis = DEFAULT_NEGATIVE_TTL_MILLIS;
+
+    public CachingUserRepository(final UserRepository repository, final int maxSize, final Executor refresher) {
+        this(repository, maxSize, refresher, Clock.systemUTC());
+    }
+
+    public CachingUserRepository(final UserRepository repository, final int maxSize, final Executor refresher,
+                                 final Clock clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.repository = repository;
+        this.maxSize = maxSize;
+        this.refresher = refresher;
+        this.clock = clock;
+    }
+
+    public void setTtlMillis(final long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public void setNegativeTtlMillis(final long negativeTtlMillis) {
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    @Override
+    public Optional<User> findByAccount(final String account) {
+        if (account == null) {
+            return Optional.empty();
+        }
+        final long now = clock.millis();
+        final Entry entry = entries.get(account);
+        if (entry != null && now < entry.expiresAt) {
+            hits.increment();
+            if (now >= entry.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+                refreshInBackground(entry);
+            }
+            return entry.user;
+        }
+        misses.increment();
+        final Optional<User> user = repository.findByAccount(account);
+        put(account, user);
+        return user;
+    }
+
+    /**
+     * Reload the entry without blocking the caller. The result only replaces
+     * the entry if nothing else replaced it meanwhile, so that a slow reload
+     * cannot overwrite a newer save.
+     */
+    private void refreshInBackground(final Entry entry) {
+        try {
+            refresher.execute(() -> {
+                try {
+                    entries.replace(entry.account, entry, newEntry(entry.account,
+                            repository.findByAccount(entry.account)));
+                } catch (RuntimeException e) {
+                    log.warn("failed to refresh cached user {}", entry.account, e);
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.debug("refresh of cached user {} rejected", entry.account, e);
+            entry.refreshing.set(false);
+        }
+    }
+
+    private Entry newEntry(final String account, final Optional<User> user) {
+        final long now = clock.millis();
+        final long ttl = user.isPresent() ? ttlMillis : negativeTtlMillis;
+        return new Entry(account, user, now + (long) (ttl * REFRESH_AHEAD_RATIO), now + ttl);
+    }
+
+    private void put(final String account, final Optional<User> user) {
+        final Entry entry = newEntry(account, user);
+        final Entry previous = entries.put(account, entry);
+        if (previous != null) {
+            return;
+        }
+        insertionOrder.offer(entry);
+        queued.incrementAndGet();
+        size.incrementAndGet();
+        evictOldest();
+    }
+
+    /**
+     * Evict entries in insertion order until the cache fits. Invalidated
+     * entries leave stale positions in the queue, which are dropped on the way;
+     * the queue is also kept within twice the maximum size so that they cannot
+     * pile up.
+     */
+    private void evictOldest() {
+        while (size.get() > maxSize || queued.get() > 2 * maxSize) {
+            final Entry oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (entries.remove(oldest.account) != null) {
+                size.decrementAndGet();
+                evictions.increment();
+            }
+        }
+    }
+
+    @Override
+    public User save(final User user) {
+        final User saved = repository.save(user);
+        put(saved.getAccount(), Optional.of(saved));
+        return saved;
+    }
+
+    @Override
+    public Optional<User> saveIfAbsent(final User user) {
+        final Optional<User> inserted = repository.saveIfAbsent(user);
+        if (inserted.isPresent()) {
+            put(user.getAccount(), inserted);
+        } else {
+            invalidate(user.getAccount());
+        }
+        return inserted;
+    }
+
+    @Override
+    public List<User> saveAllIfAbsent(final List<User> users) {
+        final List<User> inserted = repository.saveAllIfAbsent(users);
+        for (final User user : users) {
+            invalidate(user.getAccount());
+        }
+        return inserted;
+    }
+
+    public void invalidate(final String account) {
+        if (entries.remove(account) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    @Override
+    public Optional<User> findById(final Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Optional<User> findByEmail(final String email) {
+        return repository.findByEmail(email);
+    }
+
+    @Override
+    public void forEachAccount(final Consumer<String> consumer) {
+        repository.forEachAccount(consumer);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static final class Entry {
+
+        private final String account;
+        private final Optional<User> user;
+        private final long refreshAt;
+        private final long expiresAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(final String account, final Optional<User> user, final long refreshAt, final long expiresAt) {
+            this.account = account;
+            this.user = user;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Users packed into large byte pages instead of one object graph per user,
+ * for tens of millions of accounts.
+ * <p>
+ * Each user is one record appended to a page: the id, then the UTF-8 bytes of
+ * the account, password and email, each preceded by its length. Accounts,
+ * ids and emails are found through open-addressing tables of primitive hashes
+ * and record addresses, and a {@link User} is only materialized for the
+ * record a lookup returns. Records are never moved; an update appends a new
+ * record and the old one becomes garbage, counted by
+ * {@link #getGarbageBytes()}.
+ * <p>
+ * Writes are serialized by a {@link StampedLock}. Lookups read optimistically
+ * without taking it and only fall back to the read lock when a write ran
+ * concurrently.
+ */
+public class CompactUserRepository implements UserRepository {
+
+    static final int PAGE_SIZE = 1 << 20;
+    private static final long EMPTY = -1L;
+    private static final int ID_BYTES = Long.BYTES;
+    private static final int LENGTH_BYTES = Short.BYTES;
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+    private static final int ACCOUNT = 0;
+    private static final int EMAIL = 2;
+    private static final int FIELDS = 3;
+
+    private final StampedLock lock = new StampedLock();
+    private byte[][] pages = new byte[0][];
+    private int pageOffset = PAGE_SIZE;
+    private final HashIndex accounts = new HashIndex();
+    private final HashIndex ids = new HashIndex();
+    private final HashIndex emails = new HashIndex();
+    private long sequence = 1L;
+    private long usedBytes;
+    private long garbageBytes;
+
+    public CompactUserRepository() {
+        save(new User(1L, "gugu", "password", "hkkang@woowahan.com"));
+    }
+
+    @Override
+    public User save(final User user) {
+        final byte[] account = encode(user.getAccount());
+        final byte[] email = encode(user.getEmail());
+        final long stamp = lock.writeLock();
+        try {
+            final int accountHash = hash(account);
+            final int accountSlot = findText(accounts, accountHash, account, ACCOUNT);
+            final long previous = accountSlot < 0 ? EMPTY : accounts.addresses[accountSlot];
+            final long id;
+            if (user.getId() != null) {
+                id = user.getId();
+                final int idSlot = findId(id);
+                if (idSlot >= 0 && ids.addresses[idSlot] != previous) {
+                    throw new IllegalArgumentException("id " + id + " belongs to another account");
+                }
+                if (previous != EMPTY && readId(previous) != id) {
+                    throw new IllegalArgumentException("account " + user.getAccount() + " has another id");
+                }
+            } else if (previous != EMPTY) {
+                id = readId(previous);
+            } else {
+                id = sequence++;
+            }
+            final int emailHash = hash(email);
+            final int emailSlot = findText(emails, emailHash, email, EMAIL);
+            if (emailSlot >= 0 && emails.addresses[emailSlot] != previous) {
+                throw new IllegalArgumentException("email " + user.getEmail() + " belongs to another account");
+            }
+            sequence = Math.max(sequence, id + 1);
+            final long address = append(id, account, encode(user.getPassword()), email);
+            if (previous == EMPTY) {
+                accounts.insert(accountHash, address);
+            } else {
+                accounts.addresses[accountSlot] = address;
+                garbageBytes += recordLength(previous);
+                removeId(readId(previous));
+                removeText(emails, fieldOffset(previous, EMAIL), previous);
+            }
+            ids.insert(hash(id), address);
+            // the email was either free or the previous record's, removed above
+            emails.insert(emailHash, address);
+            return user.getId() == null ? user.withId(id) : user;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Optional<User> saveIfAbsent(final User user) {
+        final long stamp = lock.writeLock();
+        try {
+            return Optional.ofNullable(insert(user));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Insert a batch under a single acquisition of the write lock.
+     */
+    @Override
+    public List<User> saveAllIfAbsent(final List<User> users) {
+        final List<User> inserted = new ArrayList<>(users.size());
+        final long stamp = lock.writeLock();
+        try {
+            for (final User user : users) {
+                final User saved = insert(user);
+                if (saved != null) {
+                    inserted.add(saved);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return inserted;
+    }
+
+    /**
+     * Called with the write lock held.
+     *
+     * @return the inserted user, or <code>null</code> if its account or email
+     * is taken
+     */
+    private User insert(final User user) {
+        final byte[] account = encode(user.getAccount());
+        final byte[] email = encode(user.getEmail());
+        final int accountHash = hash(account);
+        final int emailHash = hash(email);
+        if (findText(accounts, accountHash, account, ACCOUNT) >= 0 || findText(emails, emailHash, email, EMAIL) >= 0) {
+            return null;
+        }
+        final long id = sequence++;
+        final long address = append(id, account, encode(user.getPassword()), email);
+        accounts.insert(accountHash, address);
+        ids.insert(hash(id), address);
+        emails.insert(emailHash, address);
+        return user.withId(id);
+    }
+
+    @Override
+    public Optional<User> findByAccount(final String account) {
+        if (account == null) {
+            return Optional.empty();
+        }
+        return lookup(accounts, encode(account), ACCOUNT);
+    }
+
+    @Override
+    public Optional<User> findByEmail(final String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return lookup(emails, encode(email), EMAIL);
+    }
+
+    @Override
+    public Optional<User> findById(final Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        final long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                final User user = materializeById(id);
+                if (lock.validate(stamp)) {
+                    return Optional.ofNullable(user);
+                }
+            } catch (RuntimeException e) {
+                // torn read of a concurrent write, retried under the read lock
+            }
+        }
+        final long readStamp = lock.readLock();
+        try {
+            return Optional.ofNullable(materializeById(id));
+        } finally {
+            lock.unlockRead(readStamp);
+        }
+    }
+
+    private User materializeById(final long id) {
+        final int slot = findId(id);
+        return slot < 0 ? null : materialize(ids.addresses[slot]);
+    }
+
+    /**
+     * Find a record by one of its text fields, first without locking. If a
+     * write ran meanwhile, what was read may be inconsistent, even out of
+     * bounds, so it is thrown away and the lookup is repeated under the read
+     * lock.
+     */
+    private Optional<User> lookup(final HashIndex index, final byte[] key, final int field) {
+        final int hash = hash(key);
+        final long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                final User user = materialize(index, hash, key, field);
+                if (lock.validate(stamp)) {
+                    return Optional.ofNullable(user);
+                }
+            } catch (RuntimeException e) {
+                // torn read of a concurrent write, retried under the read lock
+            }
+        }
+        final long readStamp = lock.readLock();
+        try {
+            return Optional.ofNullable(materialize(index, hash, key, field));
+        } finally {
+            lock.unlockRead(readStamp);
+        }
+    }
+
+    private User materialize(final HashIndex index, final int hash, final byte[] key, final int field) {
+        final int slot = findText(index, hash, key, field);
+        return slot < 0 ? null : materialize(index.addresses[slot]);
+    }
+
+    private User materialize(final long address) {
+        final byte[] page = pages[(int) (address >>> 32)];
+        final int offset = (int) address;
+        final long id = readLong(page, offset);
+        int position = offset + ID_BYTES;
+        final String[] fields = new String[FIELDS];
+        for (int i = 0; i < fields.length; i++) {
+            final int length = readLength(page, position);
+            fields[i] = new String(page, position + LENGTH_BYTES, length, StandardCharsets.UTF_8);
+            position += LENGTH_BYTES + length;
+        }
+        return new User(id, fields[0], fields[1], fields[2]);
+    }
+
+    @Override
+    public void forEachAccount(final Consumer<String> consumer) {
+        final long stamp = lock.readLock();
+        try {
+            for (final long address : accounts.addresses) {
+                if (address != EMPTY) {
+                    final byte[] page = pages[(int) (address >>> 32)];
+                    final int offset = fieldOffset(address, ACCOUNT);
+                    consumer.accept(new String(page, offset + LENGTH_BYTES, readLength(page, offset),
+                            StandardCharsets.UTF_8));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long append(final long id, final byte[] account, final byte[] password, final byte[] email) {
+        final int length = ID_BYTES + FIELDS * LENGTH_BYTES + account.length + password.length + email.length;
+        if (pageOffset + length > PAGE_SIZE) {
+            pages = Arrays.copyOf(pages, pages.length + 1);
+            pages[pages.length - 1] = new byte[PAGE_SIZE];
+            pageOffset = 0;
+        }
+        final byte[] page = pages[pages.length - 1];
+        final long address = ((long) (pages.length - 1) << 32) | pageOffset;
+        int position = pageOffset;
+        writeLong(page, position, id);
+        position += ID_BYTES;
+        for (final byte[] field : new byte[][]{account, password, email}) {
+            page[position] = (byte) (field.length >>> 8);
+            page[position + 1] = (byte) field.length;
+            System.arraycopy(field, 0, page, position + LENGTH_BYTES, field.length);
+            position += LENGTH_BYTES + field.length;
+        }
+        pageOffset = position;
+        usedBytes += length;
+        return address;
+    }
+
+    private int recordLength(final long address) {
+        final byte[] page = pages[(int) (address >>> 32)];
+        final int start = (int) address;
+        int position = start + ID_BYTES;
+        for (int i = 0; i < FIELDS; i++) {
+            position += LENGTH_BYTES + readLength(page, position);
+        }
+        return position - start;
+    }
+
+    /**
+     * @return the offset of the length prefix of a field, numbered in record
+     * order: account, password, email
+     */
+    private int fieldOffset(final long address, final int field) {
+        final byte[] page = pages[(int) (address >>> 32)];
+        int position = (int) address + ID_BYTES;
+        for (int i = 0; i < field; i++) {
+            position += LENGTH_BYTES + readLength(page, position);
+        }
+        return position;
+    }
+
+    private long readId(final long address) {
+        return readLong(pages[(int) (address >>> 32)], (int) address);
+    }
+
+    private int findText(final HashIndex index, final int hash, final byte[] key, final int field) {
+        final int[] hashes = index.hashes;
+        final long[] addresses = index.addresses;
+        final int mask = addresses.length - 1;
+        int slot = hash & mask;
+        for (int probes = 0; probes < addresses.length && addresses[slot] != EMPTY; probes++) {
+            if (hashes[slot] == hash && fieldEquals(addresses[slot], field, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean fieldEquals(final long address, final int field, final byte[] key) {
+        final byte[] page = pages[(int) (address >>> 32)];
+        final int offset = fieldOffset(address, field);
+        if (readLength(page, offset) != key.length) {
+            return false;
+        }
+        return Arrays.equals(page, offset + LENGTH_BYTES, offset + LENGTH_BYTES + key.length, key, 0, key.length);
+    }
+
+    private int findId(final long id) {
+        final int hash = hash(id);
+        final int[] hashes = ids.hashes;
+        final long[] addresses = ids.addresses;
+        final int mask = addresses.length - 1;
+        int slot = hash & mask;
+        for (int probes = 0; probes < addresses.length && addresses[slot] != EMPTY; probes++) {
+            if (hashes[slot] == hash && readId(addresses[slot]) == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeId(final long id) {
+        final int slot = findId(id);
+        if (slot >= 0) {
+            ids.removeSlot(slot);
+        }
+    }
+
+    /**
+     * Remove the entry of the text field at the given offset if it still
+     * points at the given record.
+     */
+    private void removeText(final HashIndex index, final int offset, final long address) {
+        final byte[] page = pages[(int) (address >>> 32)];
+        final byte[] key = Arrays.copyOfRange(page, offset + LENGTH_BYTES,
+                offset + LENGTH_BYTES + readLength(page, offset));
+        final int slot = findText(index, hash(key), key, EMAIL);
+        if (slot >= 0 && index.addresses[slot] == address) {
+            index.removeSlot(slot);
+        }
+    }
+
+    private static byte[] encode(final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("field longer than " + MAX_FIELD_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int hash(final byte[] key) {
+        return mix(Arrays.hashCode(key));
+    }
+
+    private static int hash(final long id) {
+        return mix(Long.hashCode(id));
+    }
+
+    private static int mix(final int hash) {
+        final int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+
+    private static int readLength(final byte[] page, final int offset) {
+        return ((page[offset] & 0xFF) << 8) | (page[offset + 1] & 0xFF);
+    }
+
+    private static long readLong(final byte[] page, final int offset) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (page[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void writeLong(final byte[] page, final int offset, final long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            page[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    public int size() {
+        final long stamp = lock.readLock();
+        try {
+            return accounts.size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return bytes held by pages and index tables
+     */
+    public long getMemoryBytes() {
+        final long stamp = lock.readLock();
+        try {
+            return (long) pages.length * PAGE_SIZE + accounts.getMemoryBytes() + ids.getMemoryBytes()
+                    + emails.getMemoryBytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getUsedBytes() {
+        final long stamp = lock.readLock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getGarbageBytes() {
+        final long stamp = lock.readLock();
+        try {
+            return garbageBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Open-addressing table of hashes and record addresses. Lookups may run
+     * while a writer changes it, so the arrays are only ever replaced whole.
+     */
+    private static final class HashIndex {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private long[] addresses = new long[INITIAL_CAPACITY];
+        private int size;
+
+        private HashIndex() {
+            Arrays.fill(addresses, EMPTY);
+        }
+
+        private void insert(final int hash, final long address) {
+            if ((size + 1) * 4 > addresses.length * 3) {
+                resize();
+            }
+            place(hashes, addresses, hash, address);
+            size++;
+        }
+
+        private void resize() {
+            final int[] newHashes = new int[hashes.length * 2];
+            final long[] newAddresses = new long[addresses.length * 2];
+            Arrays.fill(newAddresses, EMPTY);
+            for (int i = 0; i < addresses.length; i++) {
+                if (addresses[i] != EMPTY) {
+                    place(newHashes, newAddresses, hashes[i], addresses[i]);
+                }
+            }
+            hashes = newHashes;
+            addresses = newAddresses;
+        }
+
+        private static void place(final int[] hashes, final long[] addresses, final int hash, final long address) {
+            final int mask = addresses.length - 1;
+            int slot = hash & mask;
+            while (addresses[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            addresses[slot] = address;
+        }
+
+        private void removeSlot(final int removed) {
+            final int mask = addresses.length - 1;
+            int hole = removed;
+            int slot = (hole + 1) & mask;
+            while (addresses[slot] != EMPTY) {
+                final int home = hashes[slot] & mask;
+                final boolean movable = hole <= slot
+                        ? home <= hole || home > slot
+                        : home <= hole && home > slot;
+                if (movable) {
+                    addresses[hole] = addresses[slot];
+                    hashes[hole] = hashes[slot];
+                    hole = slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            addresses[hole] = EMPTY;
+            size--;
+        }
+
+        private long getMemoryBytes() {
+            return (long) hashes.length * Integer.BYTES + (long) addresses.length * Long.BYTES;
+        }
+    }
+}
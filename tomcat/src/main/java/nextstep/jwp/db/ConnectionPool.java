@@ -0,0 +1,152 @@
+package nextstep.jwp.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Fixed-size pool of JDBC connections.
+ * <p>
+ * Connections are opened on demand up to the maximum size and kept open
+ * between uses, each with its own cache of prepared statements. A connection
+ * is only lent out for the duration of {@link #execute(SqlFunction)}, so it
+ * always comes back to the pool. A connection that was idle for a while is
+ * validated before it is lent again, and one that fails validation is
+ * replaced.
+ * <p>
+ * The wait for a connection can be bounded further with
+ * {@link #setTimeoutBound(LongUnaryOperator)}, such as by what is left of the
+ * request the pool is called for.
+ */
+public class ConnectionPool implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 5000L;
+    private static final long VALIDATION_IDLE_MILLIS = 30_000L;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+    private volatile LongUnaryOperator timeoutBound = LongUnaryOperator.identity();
+    private volatile boolean closed;
+
+    public ConnectionPool(final String url, final String user, final String password, final int maxSize) {
+        this(url, user, password, maxSize, DEFAULT_BORROW_TIMEOUT_MILLIS, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public ConnectionPool(final String url, final String user, final String password, final int maxSize,
+                          final long borrowTimeoutMillis, final int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.permits = new Semaphore(maxSize, true);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Set the function that bounds the borrow timeout, in milliseconds, each
+     * time a connection is waited for. It may throw to refuse the call, in
+     * which case no connection is taken.
+     */
+    public void setTimeoutBound(final LongUnaryOperator timeoutBound) {
+        this.timeoutBound = timeoutBound;
+    }
+
+    /**
+     * Run the function with a connection of the pool. The connection is in
+     * auto-commit mode unless the function changes it, in which case the
+     * function must restore it.
+     */
+    public <T> T execute(final SqlFunction<PooledConnection, T> function) throws SQLException {
+        final PooledConnection connection = borrow();
+        boolean broken = false;
+        try {
+            return function.apply(connection);
+        } catch (SQLException e) {
+            broken = !connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            throw e;
+        } finally {
+            giveBack(connection, broken);
+        }
+    }
+
+    private PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("connection pool is closed");
+        }
+        final long timeoutMillis = timeoutBound.applyAsLong(borrowTimeoutMillis);
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "no connection available within " + timeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("interrupted while waiting for a connection", e);
+        }
+        try {
+            PooledConnection connection;
+            while ((connection = idle.poll()) != null) {
+                if (connection.getIdleMillis() < VALIDATION_IDLE_MILLIS
+                        || connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return connection;
+                }
+                log.debug("discarding a connection that failed validation");
+                connection.close();
+            }
+            return open();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        final Connection connection = DriverManager.getConnection(url, user, password);
+        return new PooledConnection(connection, statementCacheSize);
+    }
+
+    private void giveBack(final PooledConnection connection, final boolean broken) {
+        if (broken || closed) {
+            connection.close();
+        } else {
+            connection.touch();
+            idle.offer(connection);
+        }
+        permits.release();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+}
@@ -1,27 +1,292 @@
 package nextstep.jwp.db;
 
 import nextstep.jwp.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-public class InMemoryUserRepository {
+/**
+ * Users keyed by account, with secondary indexes by id and by email.
+ * <p>
+ * The account map is the source of truth. The indexes only map a key to an
+ * account and are updated after it, so a lookup through an index resolves the
+ * account in the primary map and checks that the user found still has the
+ * key; an index entry that is not, or no longer, backed by the primary map is
+ * simply not seen. No lookup takes a lock.
+ */
+public class InMemoryUserRepository implements UserRepository {
 
-    private static final Map<String, User> database = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(InMemoryUserRepository.class);
 
-    static {
-        final User user = new User(1L, "gugu", "password", "hkkang@woowahan.com");
-        database.put(user.getAccount(), user);
+    private static final int DEFAULT_EXPECTED_USERS = 16;
+
+    private final Map<String, User> database;
+    private final Map<Long, String> accountsById;
+    private final Map<String, String> accountsByEmail;
+    private final AtomicLong sequence = new AtomicLong(1L);
+    private volatile UserStore store;
+
+    public InMemoryUserRepository() {
+        this(DEFAULT_EXPECTED_USERS);
+    }
+
+    /**
+     * @param expectedUsers number of users the maps are sized for up front,
+     *                      so that loading that many never rehashes them
+     */
+    public InMemoryUserRepository(final int expectedUsers) {
+        this.database = new ConcurrentHashMap<>(expectedUsers);
+        this.accountsById = new ConcurrentHashMap<>(expectedUsers);
+        this.accountsByEmail = new ConcurrentHashMap<>(expectedUsers);
+        restore(new User(1L, "gugu", "password", "hkkang@woowahan.com"));
+    }
+
+    /**
+     * Keep users in the given directory from now on: restore the users saved
+     * there before and log every later save, so that registrations survive a
+     * restart. Lookups keep reading the in-memory map only.
+     */
+    public synchronized void enablePersistence(final Path directory) {
+        if (store != null) {
+            throw new IllegalStateException("persistence is already enabled");
+        }
+        final long startTime = System.currentTimeMillis();
+        final UserStore opened = new UserStore(directory, database::values);
+        try {
+            opened.load(this::restore);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        store = opened;
+        log.info("restored {} users from {} in {} ms", database.size(), directory,
+                System.currentTimeMillis() - startTime);
+    }
+
+    public synchronized void disablePersistence() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            log.warn("failed to close the user store", e);
+        }
+        store = null;
+    }
+
+    private void restore(final User user) {
+        final User restored = user.getId() == null ? user.withId(sequence.getAndIncrement()) : user;
+        sequence.accumulateAndGet(restored.getId() + 1, Math::max);
+        final User previous = database.put(restored.getAccount(), restored);
+        index(restored, previous);
+    }
+
+    /**
+     * Save the user, replacing any user with the same account. A user without
+     * an id keeps the id of the user it replaces or gets a new one. With
+     * persistence enabled, returns once the save is durable; the user is
+     * visible to lookups slightly before that.
+     * <p>
+     * A new id and a new email are claimed in their index before the user is
+     * put in the account map, as {@link #saveIfAbsent(User)} does, so that a
+     * concurrent save or registration of another account cannot take them
+     * too.
+     */
+    @Override
+    public User save(final User user) {
+        return logged(() -> List.of(update(user)), saved -> {
+        }).get(0);
+    }
+
+    private User update(final User user) {
+        final User[] previous = new User[1];
+        final User saved = database.compute(user.getAccount(), (account, existing) -> {
+            previous[0] = existing;
+            final Long id;
+            if (user.getId() == null) {
+                id = existing != null ? existing.getId() : sequence.getAndIncrement();
+            } else {
+                id = user.getId();
+                if (existing != null && !existing.getId().equals(id)) {
+                    final String owner = accountsById.get(id);
+                    throw new IllegalArgumentException(owner != null && !owner.equals(account)
+                            ? "id " + id + " belongs to another account"
+                            : "account " + account + " has another id");
+                }
+            }
+            final boolean idClaimed = existing == null && claimKey(accountsById, id, account, "id " + id);
+            try {
+                if (existing == null || !existing.getEmail().equals(user.getEmail())) {
+                    claimKey(accountsByEmail, user.getEmail(), account, "email " + user.getEmail());
+                }
+            } catch (IllegalArgumentException e) {
+                if (idClaimed) {
+                    accountsById.remove(id, account);
+                }
+                throw e;
+            }
+            sequence.accumulateAndGet(id + 1, Math::max);
+            return user.getId() != null ? user : user.withId(id);
+        });
+        index(saved, previous[0]);
+        return saved;
+    }
+
+    /**
+     * Point the key of the index at the account.
+     *
+     * @return whether the key was free
+     * @throws IllegalArgumentException if the key belongs to another account
+     */
+    private <K> boolean claimKey(final Map<K, String> index, final K key, final String account,
+                                 final String description) {
+        final String owner = index.putIfAbsent(key, account);
+        if (owner != null && !owner.equals(account)) {
+            throw new IllegalArgumentException(description + " belongs to another account");
+        }
+        return owner == null;
     }
 
-    public static void save(User user) {
-        database.put(user.getAccount(), user);
+    @Override
+    public Optional<User> saveIfAbsent(final User user) {
+        final long id = sequence.getAndIncrement();
+        final List<User> inserted = logged(() -> {
+            final User claimed = claim(user, id);
+            return claimed == null ? List.of() : List.of(claimed);
+        }, this::release);
+        return inserted.isEmpty() ? Optional.empty() : Optional.of(inserted.get(0));
     }
 
-    public static Optional<User> findByAccount(String account) {
+    /**
+     * Insert every user whose account and email are free, with one block of
+     * ids reserved for the whole batch and, with persistence enabled, a
+     * single commit to the log.
+     */
+    @Override
+    public List<User> saveAllIfAbsent(final List<User> users) {
+        final long firstId = sequence.getAndAdd(users.size());
+        return logged(() -> {
+            final List<User> inserted = new ArrayList<>(users.size());
+            for (int i = 0; i < users.size(); i++) {
+                final User claimed = claim(users.get(i), firstId + i);
+                if (claimed != null) {
+                    inserted.add(claimed);
+                }
+            }
+            return inserted;
+        }, this::release);
+    }
+
+    /**
+     * Make the change and, with persistence enabled, log the users it saved
+     * and wait until they are durable. The change is made under the lock of
+     * the log, so that the saves of an account reach the log in the order
+     * they were made in memory, and a snapshot never misses a logged save.
+     *
+     * @param undo applied to each saved user if the log fails
+     * @return the users the change saved
+     */
+    private List<User> logged(final Supplier<List<User>> change, final Consumer<User> undo) {
+        final UserStore current = store;
+        if (current == null) {
+            return change.get();
+        }
+        final List<User> saved = new ArrayList<>();
+        try {
+            current.awaitDurable(current.apply(() -> {
+                saved.addAll(change.get());
+                return saved;
+            }));
+        } catch (IOException e) {
+            saved.forEach(undo);
+            throw new UncheckedIOException(e);
+        }
+        return saved;
+    }
+
+    /**
+     * Claim the email, then the account, for the user.
+     *
+     * @return the user with the given id, or <code>null</code> if its account
+     * or email is taken
+     */
+    private User claim(final User user, final long id) {
+        final String account = user.getAccount();
+        final String claimed = accountsByEmail.putIfAbsent(user.getEmail(), account);
+        if (claimed != null && !claimed.equals(account)) {
+            return null;
+        }
+        final User inserted = user.withId(id);
+        if (database.putIfAbsent(account, inserted) != null) {
+            if (claimed == null) {
+                accountsByEmail.remove(user.getEmail(), account);
+            }
+            return null;
+        }
+        accountsById.put(inserted.getId(), account);
+        return inserted;
+    }
+
+    private void release(final User inserted) {
+        final String account = inserted.getAccount();
+        database.remove(account, inserted);
+        accountsById.remove(inserted.getId(), account);
+        accountsByEmail.remove(inserted.getEmail(), account);
+    }
+
+    private void index(final User user, final User previous) {
+        accountsById.put(user.getId(), user.getAccount());
+        accountsByEmail.put(user.getEmail(), user.getAccount());
+        if (previous == null) {
+            return;
+        }
+        if (!previous.getId().equals(user.getId())) {
+            accountsById.remove(previous.getId(), previous.getAccount());
+        }
+        if (!previous.getEmail().equals(user.getEmail())) {
+            accountsByEmail.remove(previous.getEmail(), previous.getAccount());
+        }
+    }
+
+    @Override
+    public Optional<User> findByAccount(final String account) {
         return Optional.ofNullable(database.get(account));
     }
 
-    private InMemoryUserRepository() {}
+    @Override
+    public Optional<User> findById(final Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(accountsById.get(id))
+                .map(database::get)
+                .filter(user -> id.equals(user.getId()));
+    }
+
+    @Override
+    public Optional<User> findByEmail(final String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(accountsByEmail.get(email))
+                .map(database::get)
+                .filter(user -> Objects.equals(email, user.getEmail()));
+    }
+
+    @Override
+    public void forEachAccount(final Consumer<String> consumer) {
+        database.keySet().forEach(consumer);
+    }
 }
@@ -0,0 +1,236 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.exception.DataAccessException;
+import nextstep.jwp.model.User;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Users stored in a relational database, through a {@link ConnectionPool}.
+ * <p>
+ * Uniqueness of accounts and emails is left to the constraints of the table,
+ * so an insert that violates one of them is reported as a taken account
+ * rather than as an error.
+ */
+public class JdbcUserRepository implements UserRepository {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS users ("
+            + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+            + "account VARCHAR(100) NOT NULL UNIQUE, "
+            + "password VARCHAR(100) NOT NULL, "
+            + "email VARCHAR(100) NOT NULL UNIQUE)";
+    private static final String INSERT = "INSERT INTO users (account, password, email) VALUES (?, ?, ?)";
+    private static final String INSERT_WITH_ID = "INSERT INTO users (id, account, password, email) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE users SET password = ?, email = ? WHERE account = ?";
+    private static final String UPDATE_WITH_ID = UPDATE + " AND id = ?";
+    private static final String SELECT_NEXT_ID = "SELECT COALESCE(MAX(id), 0) + 1 FROM users";
+    private static final String RESTART_IDS = "ALTER TABLE users ALTER COLUMN id RESTART WITH ";
+    private static final String SELECT = "SELECT id, account, password, email FROM users WHERE ";
+    private static final String SELECT_BY_ACCOUNT = SELECT + "account = ?";
+    private static final String SELECT_BY_ID = SELECT + "id = ?";
+    private static final String SELECT_BY_EMAIL = SELECT + "email = ?";
+    private static final String SELECT_ACCOUNTS = "SELECT account FROM users";
+    private static final int ACCOUNT_FETCH_SIZE = 1000;
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    private final ConnectionPool connectionPool;
+
+    public JdbcUserRepository(final ConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    public void createTable() {
+        execute(connection -> {
+            try (final Statement statement = connection.getConnection().createStatement()) {
+                statement.execute(CREATE_TABLE);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public User save(final User user) {
+        while (true) {
+            final Optional<User> updated = execute(connection -> update(connection, user));
+            if (updated.isPresent()) {
+                return updated.get();
+            }
+            final Optional<User> inserted = saveIfAbsent(user);
+            if (inserted.isPresent()) {
+                return inserted.get();
+            }
+            // unless it clashed with another account, the insert lost to a
+            // concurrent one of the same account, which the update replaces
+            requireNoConflict(user);
+        }
+    }
+
+    /**
+     * @return the updated user, or empty if there is no user of the account
+     * with its id, or the email belongs to another account
+     */
+    private Optional<User> update(final PooledConnection connection, final User user) throws SQLException {
+        final PreparedStatement statement = connection.prepare(user.getId() == null ? UPDATE : UPDATE_WITH_ID);
+        statement.setString(1, user.getPassword());
+        statement.setString(2, user.getEmail());
+        statement.setString(3, user.getAccount());
+        if (user.getId() != null) {
+            statement.setLong(4, user.getId());
+        }
+        try {
+            if (statement.executeUpdate() == 0) {
+                return Optional.empty();
+            }
+        } catch (SQLException e) {
+            if (isConstraintViolation(e)) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+        return findOne(connection, SELECT_BY_ACCOUNT, user.getAccount());
+    }
+
+    /**
+     * Tell which constraint a failed save ran into, as the database only
+     * reports that one was violated.
+     */
+    private void requireNoConflict(final User user) {
+        final String account = user.getAccount();
+        if (user.getId() != null) {
+            final Optional<User> idOwner = findById(user.getId());
+            if (idOwner.isPresent() && !idOwner.get().getAccount().equals(account)) {
+                throw new IllegalArgumentException("id " + user.getId() + " belongs to another account");
+            }
+            final Optional<User> existing = findByAccount(account);
+            if (existing.isPresent() && !existing.get().getId().equals(user.getId())) {
+                throw new IllegalArgumentException("account " + account + " has another id");
+            }
+        }
+        final Optional<User> emailOwner = findByEmail(user.getEmail());
+        if (emailOwner.isPresent() && !emailOwner.get().getAccount().equals(account)) {
+            throw new IllegalArgumentException("email " + user.getEmail() + " belongs to another account");
+        }
+    }
+
+    @Override
+    public Optional<User> saveIfAbsent(final User user) {
+        return execute(connection -> {
+            try {
+                return Optional.of(insert(connection, user));
+            } catch (SQLException e) {
+                if (isConstraintViolation(e)) {
+                    return Optional.empty();
+                }
+                throw e;
+            }
+        });
+    }
+
+    private User insert(final PooledConnection connection, final User user) throws SQLException {
+        if (user.getId() != null) {
+            final PreparedStatement statement = connection.prepare(INSERT_WITH_ID);
+            statement.setLong(1, user.getId());
+            statement.setString(2, user.getAccount());
+            statement.setString(3, user.getPassword());
+            statement.setString(4, user.getEmail());
+            statement.executeUpdate();
+            restartIds(connection);
+            return user;
+        }
+        final PreparedStatement statement = connection.prepare(INSERT, Statement.RETURN_GENERATED_KEYS);
+        statement.setString(1, user.getAccount());
+        statement.setString(2, user.getPassword());
+        statement.setString(3, user.getEmail());
+        statement.executeUpdate();
+        try (final ResultSet keys = statement.getGeneratedKeys()) {
+            if (!keys.next()) {
+                throw new SQLException("no id generated for " + user.getAccount());
+            }
+            return user.withId(keys.getLong(1));
+        }
+    }
+
+    /**
+     * Move the identity past the ids inserted explicitly, which it does not
+     * skip by itself.
+     */
+    private void restartIds(final PooledConnection connection) throws SQLException {
+        final long nextId;
+        try (final ResultSet resultSet = connection.prepare(SELECT_NEXT_ID).executeQuery()) {
+            resultSet.next();
+            nextId = resultSet.getLong(1);
+        }
+        try (final Statement statement = connection.getConnection().createStatement()) {
+            statement.execute(RESTART_IDS + nextId);
+        }
+    }
+
+    private boolean isConstraintViolation(final SQLException e) {
+        final String state = e.getSQLState();
+        return state != null && state.startsWith(INTEGRITY_CONSTRAINT_VIOLATION);
+    }
+
+    @Override
+    public Optional<User> findByAccount(final String account) {
+        if (account == null) {
+            return Optional.empty();
+        }
+        return execute(connection -> findOne(connection, SELECT_BY_ACCOUNT, account));
+    }
+
+    @Override
+    public Optional<User> findById(final Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return execute(connection -> findOne(connection, SELECT_BY_ID, id));
+    }
+
+    @Override
+    public Optional<User> findByEmail(final String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return execute(connection -> findOne(connection, SELECT_BY_EMAIL, email));
+    }
+
+    @Override
+    public void forEachAccount(final Consumer<String> consumer) {
+        execute(connection -> {
+            final PreparedStatement statement = connection.prepare(SELECT_ACCOUNTS);
+            statement.setFetchSize(ACCOUNT_FETCH_SIZE);
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getString(1));
+                }
+            }
+            return null;
+        });
+    }
+
+    private Optional<User> findOne(final PooledConnection connection, final String sql, final Object key)
+            throws SQLException {
+        final PreparedStatement statement = connection.prepare(sql);
+        statement.setObject(1, key);
+        try (final ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                return Optional.empty();
+            }
+            return Optional.of(new User(resultSet.getLong("id"), resultSet.getString("account"),
+                    resultSet.getString("password"), resultSet.getString("email")));
+        }
+    }
+
+    private <T> T execute(final SqlFunction<PooledConnection, T> function) {
+        try {
+            return connectionPool.execute(function);
+        } catch (SQLException e) {
+            throw new DataAccessException(e.getMessage(), e);
+        }
+    }
+}
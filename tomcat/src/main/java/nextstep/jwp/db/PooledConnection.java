@@ -0,0 +1,104 @@
+package nextstep.jwp.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A connection lent by a {@link ConnectionPool}.
+ * <p>
+ * Statements prepared through it are cached per connection, keyed by their
+ * SQL, and reused by later borrowers instead of being parsed again; the least
+ * recently used statement is closed when the cache is full. Callers must not
+ * close the statements they get.
+ */
+public final class PooledConnection {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledConnection.class);
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private long lastUsedMillis = System.currentTimeMillis();
+
+    PooledConnection(final Connection connection, final int statementCacheSize) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public PreparedStatement prepare(final String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or
+     *                          {@link Statement#NO_GENERATED_KEYS}
+     */
+    public PreparedStatement prepare(final String sql, final int autoGeneratedKeys) throws SQLException {
+        final String key = autoGeneratedKeys + sql;
+        final PreparedStatement cached = statements.get(key);
+        if (cached != null) {
+            cached.clearParameters();
+            return cached;
+        }
+        final PreparedStatement statement = connection.prepareStatement(sql, autoGeneratedKeys);
+        statements.put(key, statement);
+        return statement;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    int getCachedStatements() {
+        return statements.size();
+    }
+
+    boolean isValid(final int timeoutSeconds) {
+        try {
+            return connection.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    long getIdleMillis() {
+        return System.currentTimeMillis() - lastUsedMillis;
+    }
+
+    void touch() {
+        lastUsedMillis = System.currentTimeMillis();
+    }
+
+    void close() {
+        statements.values().forEach(this::closeQuietly);
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("failed to close a connection", e);
+        }
+    }
+
+    private void closeQuietly(final Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.debug("failed to close a statement", e);
+        }
+    }
+}
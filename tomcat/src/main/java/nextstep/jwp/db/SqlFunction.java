@@ -0,0 +1,9 @@
+package nextstep.jwp.db;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface SqlFunction<T, R> {
+
+    R apply(T t) throws SQLException;
+}
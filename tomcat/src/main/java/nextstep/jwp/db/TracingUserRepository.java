@@ -0,0 +1,87 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.apache.catalina.valves.RequestTrace;
+import org.apache.catalina.valves.RequestTrace.Phase;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Repository that adds the time of each call to the repository phase of the
+ * trace of the request being served on the calling thread, if any.
+ */
+public class TracingUserRepository implements UserRepository {
+
+    private final UserRepository repository;
+
+    public TracingUserRepository(final UserRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public User save(final User user) {
+        final long start = RequestTrace.start();
+        try {
+            return repository.save(user);
+        } finally {
+            RequestTrace.end(Phase.REPOSITORY, start);
+        }
+    }
+
+    @Override
+    public Optional<User> saveIfAbsent(final User user) {
+        final long start = RequestTrace.start();
+        try {
+            return repository.saveIfAbsent(user);
+        } finally {
+            RequestTrace.end(Phase.REPOSITORY, start);
+        }
+    }
+
+    @Override
+    public List<User> saveAllIfAbsent(final List<User> users) {
+        final long start = RequestTrace.start();
+        try {
+            return repository.saveAllIfAbsent(users);
+        } finally {
+            RequestTrace.end(Phase.REPOSITORY, start);
+        }
+    }
+
+    @Override
+    public Optional<User> findByAccount(final String account) {
+        final long start = RequestTrace.start();
+        try {
+            return repository.findByAccount(account);
+        } finally {
+            RequestTrace.end(Phase.REPOSITORY, start);
+        }
+    }
+
+    @Override
+    public Optional<User> findById(final Long id) {
+        final long start = RequestTrace.start();
+        try {
+            return repository.findById(id);
+        } finally {
+            RequestTrace.end(Phase.REPOSITORY, start);
+        }
+    }
+
+    @Override
+    public Optional<User> findByEmail(final String email) {
+        final long start = RequestTrace.start();
+        try {
+            return repository.findByEmail(email);
+        } finally {
+            RequestTrace.end(Phase.REPOSITORY, start);
+        }
+    }
+
+    @Override
+    public void forEachAccount(final Consumer<String> consumer) {
+        repository.forEachAccount(consumer);
+    }
+}
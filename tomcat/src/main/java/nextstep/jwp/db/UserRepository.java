@@ -0,0 +1,66 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Storage of the users of the application.
+ * <p>
+ * Accounts and emails are unique. Users saved without an id get one from the
+ * repository.
+ */
+public interface UserRepository {
+
+    /**
+     * Save the user, replacing any user with the same account. A user without
+     * an id keeps the id of the user it replaces or gets a new one; a user
+     * with an id keeps it, and ids handed out later are above it.
+     *
+     * @return the saved user, with its id
+     * @throws IllegalArgumentException if the id or the email belongs to
+     *                                  another account, or the account has
+     *                                  another id
+     */
+    User save(User user);
+
+    /**
+     * Insert the user unless its account or email is already taken. Of any
+     * number of concurrent registrations of the same account or email, exactly
+     * one succeeds.
+     *
+     * @return the inserted user with its new id, or empty if the account or
+     * email is taken
+     */
+    Optional<User> saveIfAbsent(User user);
+
+    /**
+     * Insert each user unless its account or email is already taken, as
+     * {@link #saveIfAbsent(User)} does one at a time. Implementations may do
+     * it more cheaply in bulk.
+     *
+     * @return the inserted users with their new ids, in the given order
+     */
+    default List<User> saveAllIfAbsent(final List<User> users) {
+        final List<User> inserted = new ArrayList<>(users.size());
+        for (final User user : users) {
+            saveIfAbsent(user).ifPresent(inserted::add);
+        }
+        return inserted;
+    }
+
+    Optional<User> findByAccount(String account);
+
+    Optional<User> findById(Long id);
+
+    Optional<User> findByEmail(String email);
+
+    /**
+     * Pass the account of every user to the consumer, for example to build an
+     * index. Users saved concurrently may or may not be seen.
+     */
+    void forEachAccount(Consumer<String> consumer);
+}
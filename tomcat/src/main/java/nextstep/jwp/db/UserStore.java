@@ -0,0 +1,454 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Durable storage for users: a snapshot plus a write-ahead log of the saves
+ * made since the snapshot was taken.
+ * <p>
+ * {@link #append(User)} returns once the record is on disk. Concurrent callers
+ * are committed as a group: the first one to find no flush in progress writes
+ * every record queued so far and forces the file once, while the others wait
+ * for it. A caller that also holds the users in memory applies its change and
+ * queues the record together through {@link #apply(Supplier)}, so that the log
+ * has the changes in the order they were made.
+ * <p>
+ * When the log grows past the compaction threshold, it is rotated and a new
+ * snapshot is written by a background thread; until the snapshot is in place
+ * the rotated log is kept, and the log is not rotated again, so a crash at any
+ * point still replays to the same state.
+ */
+class UserStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(UserStore.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x4A555352;
+    private static final String SNAPSHOT_FILE = "users.snapshot";
+    private static final String LOG_FILE = "users.wal";
+    private static final String ROTATED_LOG_FILE = "users.wal.old";
+    private static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 4L * 1024 * 1024;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final Path rotatedLogFile;
+    private final Supplier<Collection<User>> users;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final ExecutorService compactor;
+    private List<byte[]> pending = new ArrayList<>();
+    private long appendedRecords;
+    private long durableRecords;
+    private boolean flushing;
+    private IOException failure;
+    private FileChannel channel;
+    private long logSize;
+    private long compactionThresholdBytes = DEFAULT_COMPACTION_THRESHOLD_BYTES;
+    private boolean compacting;
+    private long groupCommits;
+
+    /**
+     * @param users supplies every user currently held in memory, used as the
+     *              content of the next snapshot
+     */
+    UserStore(final Path directory, final Supplier<Collection<User>> users) {
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.logFile = directory.resolve(LOG_FILE);
+        this.rotatedLogFile = directory.resolve(ROTATED_LOG_FILE);
+        this.users = users;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "user-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void setCompactionThresholdBytes(final long compactionThresholdBytes) {
+        lock.lock();
+        try {
+            this.compactionThresholdBytes = compactionThresholdBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replay the snapshot, then the rotated log of an unfinished compaction,
+     * then the current log, and open the log for appending. A torn record at
+     * the end of the current log is cut off.
+     */
+    void load(final Consumer<User> consumer) throws IOException {
+        if (Files.exists(snapshotFile)) {
+            readSnapshot(consumer);
+        }
+        if (Files.exists(rotatedLogFile)) {
+            readLog(rotatedLogFile, consumer);
+        }
+        long validLength = 0;
+        if (Files.exists(logFile)) {
+            validLength = readLog(logFile, consumer);
+        }
+        lock.lock();
+        try {
+            channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.truncate(validLength);
+            channel.position(validLength);
+            logSize = validLength;
+            if (Files.exists(rotatedLogFile)) {
+                compacting = true;
+                compactor.execute(this::writeSnapshot);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void readSnapshot(final Consumer<User> consumer) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+        if (buffer.remaining() < 8 || buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("not a user snapshot: " + snapshotFile);
+        }
+        final int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            final User user = readRecord(buffer);
+            if (user == null) {
+                throw new IOException("corrupt user snapshot: " + snapshotFile);
+            }
+            consumer.accept(user);
+        }
+    }
+
+    private long readLog(final Path file, final Consumer<User> consumer) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (buffer.hasRemaining()) {
+            final int recordStart = buffer.position();
+            final User user = readRecord(buffer);
+            if (user == null) {
+                log.warn("ignoring {} bytes of torn records at the end of {}", buffer.limit() - recordStart, file);
+                return recordStart;
+            }
+            consumer.accept(user);
+        }
+        return buffer.limit();
+    }
+
+    private User readRecord(final ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < RECORD_HEADER_BYTES) {
+            return null;
+        }
+        final int length = buffer.getInt();
+        final int checksum = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            return null;
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.position(), length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array(), buffer.position(), length));
+        buffer.position(buffer.position() + length);
+        try {
+            final Long id = in.readBoolean() ? in.readLong() : null;
+            return new User(id, in.readUTF(), in.readUTF(), in.readUTF());
+        } catch (EOFException e) {
+            throw new IOException("record shorter than its length", e);
+        }
+    }
+
+    static byte[] encode(final User user) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeBoolean(user.getId() != null);
+            if (user.getId() != null) {
+                out.writeLong(user.getId());
+            }
+            out.writeUTF(user.getAccount());
+            out.writeUTF(user.getPassword());
+            out.writeUTF(user.getEmail());
+            final byte[] record = bytes.toByteArray();
+            final int length = record.length - RECORD_HEADER_BYTES;
+            final CRC32 crc = new CRC32();
+            crc.update(record, RECORD_HEADER_BYTES, length);
+            ByteBuffer.wrap(record).putInt(length).putInt((int) crc.getValue());
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Append a save to the log and wait until it is durable.
+     */
+    void append(final User user) throws IOException {
+        appendAll(List.of(user));
+    }
+
+    /**
+     * Append several saves to the log and wait until all are durable. They
+     * are committed in a single group, so a bulk load forces the file once per
+     * batch rather than once per user.
+     */
+    void appendAll(final Collection<User> users) throws IOException {
+        if (users.isEmpty()) {
+            return;
+        }
+        awaitDurable(apply(() -> users));
+    }
+
+    /**
+     * Make a change to the users in memory and queue the saves it made, under
+     * the lock of the log. Changes are thus logged in the order they were
+     * made, and a snapshot, which copies the users under the same lock, holds
+     * every change logged before it.
+     *
+     * @param change applies the change and returns the users it saved
+     * @return the number of records to wait for with {@link #awaitDurable}
+     * @throws IOException if the log is unavailable, in which case the change
+     *                     is not made
+     */
+    long apply(final Supplier<? extends Collection<User>> change) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            for (final User user : change.get()) {
+                pending.add(encode(user));
+                appendedRecords++;
+            }
+            return appendedRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the given number of records is durable, writing them as a
+     * group if no other caller is.
+     */
+    void awaitDurable(final long records) throws IOException {
+        lock.lock();
+        try {
+            while (durableRecords < records) {
+                checkOpen();
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    flush();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write and force every pending record. Called with the lock held; the lock
+     * is released while the file is written so that more records can queue up
+     * for the next group.
+     */
+    private void flush() {
+        final List<byte[]> batch = pending;
+        final long target = appendedRecords;
+        pending = new ArrayList<>();
+        flushing = true;
+        lock.unlock();
+        IOException error = null;
+        long written = 0;
+        try {
+            written = write(batch);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+        }
+        flushing = false;
+        if (error != null) {
+            log.error("failed to write the user log, refusing further writes", error);
+            failure = error;
+        } else {
+            durableRecords = target;
+            logSize += written;
+            groupCommits++;
+            if (logSize >= compactionThresholdBytes && !compacting) {
+                rotate();
+            }
+        }
+        flushed.signalAll();
+    }
+
+    private long write(final List<byte[]> batch) throws IOException {
+        final ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long length = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(batch.get(i));
+            length += buffers[i].remaining();
+        }
+        long remaining = length;
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        channel.force(false);
+        return length;
+    }
+
+    /**
+     * Move the log aside and snapshot the users. If the rotated log of a
+     * failed snapshot is still there, it is in no snapshot yet: it is kept
+     * and only the snapshot is tried again.
+     */
+    private void rotate() {
+        compacting = true;
+        if (Files.exists(rotatedLogFile)) {
+            compactor.execute(this::writeSnapshot);
+            return;
+        }
+        try {
+            channel.close();
+            Files.move(logFile, rotatedLogFile, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            logSize = 0;
+            compactor.execute(this::writeSnapshot);
+        } catch (IOException e) {
+            log.error("failed to rotate the user log, refusing further writes", e);
+            failure = e;
+            compacting = false;
+        }
+    }
+
+    /**
+     * Write every user to a new snapshot and drop the rotated log. The users
+     * are copied under the lock, after the rotation, so the snapshot contains
+     * at least everything in the rotated log.
+     */
+    private void writeSnapshot() {
+        final long startTime = System.nanoTime();
+        final Path tempFile = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try {
+            final List<User> snapshot;
+            lock.lock();
+            try {
+                snapshot = new ArrayList<>(users.get());
+            } finally {
+                lock.unlock();
+            }
+            try (final FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer header = ByteBuffer.allocate(8).putInt(SNAPSHOT_MAGIC).putInt(snapshot.size());
+                header.flip();
+                writeFully(out, header);
+                for (final User user : snapshot) {
+                    writeFully(out, ByteBuffer.wrap(encode(user)));
+                }
+                out.force(true);
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(rotatedLogFile);
+            log.info("compacted user log into a snapshot of {} users in {} ms", snapshot.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } catch (IOException | RuntimeException e) {
+            log.error("failed to write the user snapshot, keeping the rotated log", e);
+        } finally {
+            lock.lock();
+            try {
+                compacting = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writeFully(final FileChannel out, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("user log is unavailable", failure);
+        }
+        if (channel == null) {
+            throw new IOException("user log is not open");
+        }
+    }
+
+    long getGroupCommits() {
+        lock.lock();
+        try {
+            return groupCommits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDurableRecords() {
+        lock.lock();
+        try {
+            return durableRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for a running compaction to finish and close the log.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package nextstep.jwp.importer;
+
+import nextstep.jwp.model.User;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Line formats of user import files, one user per line.
+ * <p>
+ * CSV lines hold <code>account,password,email</code> in that order, fields
+ * optionally quoted with <code>"</code> and an embedded quote doubled; a first
+ * line naming the columns is skipped. NDJSON lines are flat JSON objects with
+ * string members <code>account</code>, <code>password</code> and
+ * <code>email</code>; other members are ignored. Parsing fails with an
+ * {@link IllegalArgumentException} naming what is wrong with the line.
+ */
+public enum ImportFormat {
+
+    CSV {
+        @Override
+        boolean isHeader(final String line) {
+            return line.trim().equalsIgnoreCase("account,password,email");
+        }
+
+        @Override
+        User parse(final String line) {
+            final List<String> fields = splitCsv(line);
+            if (fields.size() != 3) {
+                throw new IllegalArgumentException("expected 3 fields but found " + fields.size());
+            }
+            return toUser(fields.get(0), fields.get(1), fields.get(2));
+        }
+    },
+
+    NDJSON {
+        @Override
+        boolean isHeader(final String line) {
+            return false;
+        }
+
+        @Override
+        User parse(final String line) {
+            final Map<String, String> members = parseJsonObject(line);
+            return toUser(members.get("account"), members.get("password"), members.get("email"));
+        }
+    };
+
+    private static final int MAX_ACCOUNT_LENGTH = 64;
+    private static final int MAX_EMAIL_LENGTH = 254;
+
+    /**
+     * @return the format matching the extension of the file: NDJSON for
+     * <code>.ndjson</code> and <code>.jsonl</code>, CSV otherwise
+     */
+    public static ImportFormat of(final Path file) {
+        final String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        return CSV;
+    }
+
+    abstract boolean isHeader(String line);
+
+    abstract User parse(String line);
+
+    private static User toUser(final String account, final String password, final String email) {
+        if (account == null || account.isBlank() || account.length() > MAX_ACCOUNT_LENGTH) {
+            throw new IllegalArgumentException("invalid account");
+        }
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("missing password");
+        }
+        if (email == null || email.length() > MAX_EMAIL_LENGTH || email.indexOf('@') <= 0
+                || email.indexOf('@') == email.length() - 1) {
+            throw new IllegalArgumentException("invalid email");
+        }
+        return new User(account, password, email);
+    }
+
+    private static List<String> splitCsv(final String line) {
+        final List<String> fields = new ArrayList<>(3);
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Parse a flat JSON object, keeping its string members. Nested objects
+     * and arrays are not supported.
+     */
+    private static Map<String, String> parseJsonObject(final String line) {
+        final var cursor = new JsonCursor(line);
+        final Map<String, String> members = new HashMap<>();
+        cursor.expect('{');
+        if (cursor.peek() == '}') {
+            cursor.expect('}');
+            cursor.expectEnd();
+            return members;
+        }
+        while (true) {
+            final String name = cursor.string();
+            cursor.expect(':');
+            if (cursor.peek() == '"') {
+                members.put(name, cursor.string());
+            } else {
+                cursor.literal();
+            }
+            if (cursor.peek() == ',') {
+                cursor.expect(',');
+                continue;
+            }
+            cursor.expect('}');
+            cursor.expectEnd();
+            return members;
+        }
+    }
+
+    private static final class JsonCursor {
+
+        private final String text;
+        private int position;
+
+        private JsonCursor(final String text) {
+            this.text = text;
+        }
+
+        private char peek() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw new IllegalArgumentException("unexpected end of line");
+            }
+            return text.charAt(position);
+        }
+
+        private void expect(final char expected) {
+            if (peek() != expected) {
+                throw new IllegalArgumentException("expected '" + expected + "' at " + position);
+            }
+            position++;
+        }
+
+        private void expectEnd() {
+            skipWhitespace();
+            if (position != text.length()) {
+                throw new IllegalArgumentException("unexpected content at " + position);
+            }
+        }
+
+        private String string() {
+            expect('"');
+            final StringBuilder value = new StringBuilder();
+            while (position < text.length()) {
+                final char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                final char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("truncated unicode escape");
+                        }
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            }
+            throw new IllegalArgumentException("unterminated string");
+        }
+
+        /**
+         * Skip a number, <code>true</code>, <code>false</code> or
+         * <code>null</code>.
+         */
+        private void literal() {
+            final int start = position;
+            while (position < text.length() && ",}".indexOf(text.charAt(position)) < 0
+                    && !Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            if (position == start) {
+                throw new IllegalArgumentException("expected a value at " + start);
+            }
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
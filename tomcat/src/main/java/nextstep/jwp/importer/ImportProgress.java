@@ -0,0 +1,82 @@
+package nextstep.jwp.importer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a running or finished import, safe to read from any thread
+ * while the import runs.
+ */
+public class ImportProgress {
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder imported = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private volatile long endNanos;
+
+    void addLines(final long count) {
+        lines.add(count);
+    }
+
+    void addImported(final long count) {
+        imported.add(count);
+    }
+
+    void addDuplicates(final long count) {
+        duplicates.add(count);
+    }
+
+    void addInvalid(final long count) {
+        invalid.add(count);
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * @return lines read so far, headers and blank lines included
+     */
+    public long getLines() {
+        return lines.sum();
+    }
+
+    public long getImported() {
+        return imported.sum();
+    }
+
+    /**
+     * @return valid users skipped because their account or email was taken
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public long getInvalid() {
+        return invalid.sum();
+    }
+
+    public boolean isFinished() {
+        return endNanos != 0;
+    }
+
+    public long getElapsedMillis() {
+        final long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000;
+    }
+
+    /**
+     * @return users imported per second since the start
+     */
+    public double getThroughput() {
+        final long elapsedMillis = getElapsedMillis();
+        return elapsedMillis == 0 ? 0 : getImported() * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d lines, %d imported, %d duplicates, %d invalid in %d ms (%.0f users/s)",
+                getLines(), getImported(), getDuplicates(), getInvalid(), getElapsedMillis(), getThroughput());
+    }
+}
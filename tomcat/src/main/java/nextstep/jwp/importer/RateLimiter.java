@@ -0,0 +1,57 @@
+package nextstep.jwp.importer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the rate of some work, here users imported per
+ * second, so that a bulk job leaves room for live traffic.
+ * <p>
+ * Permits accrue continuously up to one second's worth, so a caller that has
+ * been idle may briefly go faster than the rate but never sustain it. A
+ * request for more permits than are available waits for the difference.
+ */
+public class RateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double permitsPerSecond;
+    private double available;
+    private long lastRefill;
+
+    /**
+     * @param permitsPerSecond the sustained rate; 0 or less means unlimited
+     */
+    public RateLimiter(final double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.available = Math.max(0, permitsPerSecond);
+        this.lastRefill = System.nanoTime();
+    }
+
+    public static RateLimiter unlimited() {
+        return new RateLimiter(0);
+    }
+
+    public synchronized void acquire(final int permits) throws InterruptedException {
+        if (permitsPerSecond <= 0) {
+            return;
+        }
+        refill();
+        available -= permits;
+        if (available >= 0) {
+            return;
+        }
+        final long waitNanos = (long) (-available / permitsPerSecond * NANOS_PER_SECOND);
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+        refill();
+    }
+
+    private void refill() {
+        final long now = System.nanoTime();
+        available = Math.min(permitsPerSecond, available + (now - lastRefill) * permitsPerSecond / NANOS_PER_SECOND);
+        lastRefill = now;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+}
@@ -0,0 +1,258 @@
+package nextstep.jwp.importer;
+
+import nextstep.jwp.db.UserRepository;
+import nextstep.jwp.model.User;
+import nextstep.jwp.security.PasswordEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Bulk loads users into a repository from a CSV or NDJSON stream.
+ * <p>
+ * The stream is read in batches of lines. Each batch is parsed and validated
+ * on a fork/join pool, split in halves until the pieces are small, while the
+ * next batches are read; a bounded number of batches is in flight so memory
+ * stays flat whatever the size of the file. Parsed batches are inserted in
+ * file order with {@link UserRepository#saveAllIfAbsent(List)}, after taking
+ * as many permits from the rate limiter as the batch has users, so that an
+ * import can run next to live traffic. Users whose account or email is taken
+ * are counted as duplicates and skipped, as are invalid lines.
+ * <p>
+ * Plaintext passwords are hashed as part of the parsing, on the fork/join
+ * pool, so that they never reach the repository or its log; passwords
+ * already encoded in the file are kept as they are.
+ */
+public class UserImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImporter.class);
+
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+    private static final int PARSE_THRESHOLD = 256;
+    private static final long DEFAULT_PROGRESS_INTERVAL_MILLIS = 5_000L;
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private final UserRepository userRepository;
+    private final ForkJoinPool pool;
+    private PasswordEncoder passwordEncoder = new PasswordEncoder();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private RateLimiter rateLimiter = RateLimiter.unlimited();
+    private long progressIntervalMillis = DEFAULT_PROGRESS_INTERVAL_MILLIS;
+    private volatile ImportProgress progress;
+
+    public UserImporter(final UserRepository userRepository) {
+        this(userRepository, ForkJoinPool.commonPool());
+    }
+
+    public UserImporter(final UserRepository userRepository, final ForkJoinPool pool) {
+        this.userRepository = userRepository;
+        this.pool = pool;
+    }
+
+    /**
+     * Set the encoder plaintext passwords of the file are hashed with, such
+     * as the one logins are checked with.
+     */
+    public void setPasswordEncoder(final PasswordEncoder passwordEncoder) {
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Limit the import to the given number of users per second; 0 or less
+     * means unlimited.
+     */
+    public void setRateLimit(final double usersPerSecond) {
+        this.rateLimiter = new RateLimiter(usersPerSecond);
+    }
+
+    public void setProgressIntervalMillis(final long progressIntervalMillis) {
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /**
+     * Import the file, in the format given by its extension.
+     */
+    public ImportProgress importFrom(final Path file) throws IOException, InterruptedException {
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader, ImportFormat.of(file));
+        }
+    }
+
+    /**
+     * Import every line of the reader and return once all are inserted.
+     */
+    public ImportProgress importFrom(final Reader reader, final ImportFormat format)
+            throws IOException, InterruptedException {
+        final var current = new ImportProgress();
+        progress = current;
+        final BufferedReader lines = reader instanceof BufferedReader
+                ? (BufferedReader) reader
+                : new BufferedReader(reader);
+        final int maxInFlight = Math.max(2, pool.getParallelism() * 2);
+        final Deque<ForkJoinTask<ParsedBatch>> inFlight = new ArrayDeque<>(maxInFlight);
+        long lineNumber = 0;
+        long lastReport = System.currentTimeMillis();
+        boolean first = true;
+        try {
+            List<String> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (first) {
+                    first = false;
+                    if (format.isHeader(line)) {
+                        current.addLines(1);
+                        continue;
+                    }
+                }
+                batch.add(line);
+                if (batch.size() < batchSize) {
+                    continue;
+                }
+                inFlight.addLast(pool.submit(new ParseTask(format, passwordEncoder, batch, lineNumber - batch.size() + 1)));
+                batch = new ArrayList<>(batchSize);
+                if (inFlight.size() >= maxInFlight) {
+                    insert(inFlight.removeFirst().join(), current);
+                }
+                if (System.currentTimeMillis() - lastReport >= progressIntervalMillis) {
+                    lastReport = System.currentTimeMillis();
+                    log.info("importing users: {}", current);
+                }
+            }
+            if (!batch.isEmpty()) {
+                inFlight.addLast(pool.submit(new ParseTask(format, passwordEncoder, batch, lineNumber - batch.size() + 1)));
+            }
+            while (!inFlight.isEmpty()) {
+                insert(inFlight.removeFirst().join(), current);
+            }
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+            current.finish();
+        }
+        log.info("imported users: {}", current);
+        return current;
+    }
+
+    private void insert(final ParsedBatch batch, final ImportProgress current) throws InterruptedException {
+        final long reported = current.getInvalid();
+        for (int i = 0; i < batch.errors.size() && reported + i < MAX_REPORTED_ERRORS; i++) {
+            log.warn("skipped invalid user: {}", batch.errors.get(i));
+        }
+        current.addLines(batch.lines);
+        current.addInvalid(batch.errors.size());
+        if (batch.users.isEmpty()) {
+            return;
+        }
+        rateLimiter.acquire(batch.users.size());
+        final int inserted = userRepository.saveAllIfAbsent(batch.users).size();
+        current.addImported(inserted);
+        current.addDuplicates(batch.users.size() - inserted);
+    }
+
+    /**
+     * @return the progress of the running import, or of the last one, or
+     * <code>null</code> if none has started
+     */
+    public ImportProgress getProgress() {
+        return progress;
+    }
+
+    private static final class ParsedBatch {
+
+        private final int lines;
+        private final List<User> users;
+        private final List<String> errors;
+
+        private ParsedBatch(final int lines, final List<User> users, final List<String> errors) {
+            this.lines = lines;
+            this.users = users;
+            this.errors = errors;
+        }
+    }
+
+    /**
+     * Parses a range of a batch of lines, forking halves until the range is
+     * below the threshold. Results keep the order of the lines.
+     */
+    private static final class ParseTask extends RecursiveTask<ParsedBatch> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ImportFormat format;
+        private final PasswordEncoder passwordEncoder;
+        private final List<String> lines;
+        private final long firstLineNumber;
+
+        private ParseTask(final ImportFormat format, final PasswordEncoder passwordEncoder, final List<String> lines,
+                          final long firstLineNumber) {
+            this.format = format;
+            this.passwordEncoder = passwordEncoder;
+            this.lines = lines;
+            this.firstLineNumber = firstLineNumber;
+        }
+
+        @Override
+        protected ParsedBatch compute() {
+            if (lines.size() <= PARSE_THRESHOLD) {
+                return parse();
+            }
+            final int middle = lines.size() / 2;
+            final var left = new ParseTask(format, passwordEncoder, lines.subList(0, middle), firstLineNumber);
+            final var right = new ParseTask(format, passwordEncoder, lines.subList(middle, lines.size()),
+                    firstLineNumber + middle);
+            left.fork();
+            final ParsedBatch rightResult = right.compute();
+            final ParsedBatch leftResult = left.join();
+            final List<User> users = new ArrayList<>(leftResult.users.size() + rightResult.users.size());
+            users.addAll(leftResult.users);
+            users.addAll(rightResult.users);
+            final List<String> errors = new ArrayList<>(leftResult.errors);
+            errors.addAll(rightResult.errors);
+            return new ParsedBatch(lines.size(), users, errors);
+        }
+
+        private ParsedBatch parse() {
+            final List<User> users = new ArrayList<>(lines.size());
+            final List<String> errors = new ArrayList<>();
+            for (int i = 0; i < lines.size(); i++) {
+                final String line = lines.get(i);
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    users.add(hashPassword(format.parse(line)));
+                } catch (IllegalArgumentException e) {
+                    errors.add("line " + (firstLineNumber + i) + ": " + e.getMessage());
+                }
+            }
+            return new ParsedBatch(lines.size(), users, errors);
+        }
+
+        private User hashPassword(final User user) {
+            if (PasswordEncoder.isEncoded(user.getPassword())) {
+                return user;
+            }
+            return new User(user.getAccount(), passwordEncoder.encode(user.getPassword()), user.getEmail());
+        }
+    }
+}
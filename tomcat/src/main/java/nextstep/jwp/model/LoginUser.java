@@ -0,0 +1,41 @@
+package nextstep.jwp.model;
+
+import java.io.Serializable;
+
+/**
+ * What a session keeps of the user logged in with it: the id and account,
+ * but never the password, since sessions are written to disk and sent to
+ * other nodes.
+ */
+public class LoginUser implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String account;
+
+    public LoginUser(Long id, String account) {
+        this.id = id;
+        this.account = account;
+    }
+
+    public static LoginUser of(User user) {
+        return new LoginUser(user.getId(), user.getAccount());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    @Override
+    public String toString() {
+        return "LoginUser{" +
+                "id=" + id +
+                ", account='" + account + '\'' +
+                '}';
+    }
+}
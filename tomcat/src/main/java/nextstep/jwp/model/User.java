@@ -1,6 +1,10 @@
 package nextstep.jwp.model;
 
-public class User {
+import java.io.Serializable;
+
+public class User implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final Long id;
     private final String account;
@@ -18,21 +22,32 @@ public class User {
         this(null, account, password, email);
     }
 
-    public boolean checkPassword(String password) {
-        return this.password.equals(password);
+    public User withId(Long id) {
+        return new User(id, account, password, email);
+    }
+
+    public Long getId() {
+        return id;
     }
 
     public String getAccount() {
         return account;
     }
 
+    public String getPassword() {
+        return password;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
     @Override
     public String toString() {
         return "User{" +
                 "id=" + id +
                 ", account='" + account + '\'' +
                 ", email='" + email + '\'' +
-                ", password='" + password + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,90 @@
+package nextstep.jwp.security;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Slow one-way hashing of passwords with PBKDF2.
+ * <p>
+ * Encoded passwords read <code>{pbkdf2}iterations$salt$hash</code>, salt and
+ * hash in Base64, so the iteration count can be raised without invalidating
+ * stored passwords. Stored values without the prefix are taken as plaintext
+ * left from before hashing was introduced and are compared in constant time.
+ */
+public class PasswordEncoder {
+
+    public static final int DEFAULT_ITERATIONS = 120_000;
+
+    private static final String PREFIX = "{pbkdf2}";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public PasswordEncoder() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public PasswordEncoder(final int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("iterations must be positive: " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    public String encode(final String rawPassword) {
+        final byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        final Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + iterations + '$' + base64.encodeToString(salt) + '$'
+                + base64.encodeToString(hash(rawPassword, salt, iterations));
+    }
+
+    public boolean matches(final String rawPassword, final String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+        if (!isEncoded(encodedPassword)) {
+            return MessageDigest.isEqual(rawPassword.getBytes(StandardCharsets.UTF_8),
+                    encodedPassword.getBytes(StandardCharsets.UTF_8));
+        }
+        final String[] parts = encodedPassword.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            final Base64.Decoder base64 = Base64.getDecoder();
+            final byte[] expected = base64.decode(parts[2]);
+            return MessageDigest.isEqual(expected, hash(rawPassword, base64.decode(parts[1]),
+                    Integer.parseInt(parts[0])));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public static boolean isEncoded(final String password) {
+        return password != null && password.startsWith(PREFIX);
+    }
+
+    private static byte[] hash(final String rawPassword, final byte[] salt, final int iterations) {
+        final var spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+}
@@ -0,0 +1,277 @@
+package nextstep.jwp.security;
+
+import nextstep.jwp.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hashes and verifies passwords on a bounded pool of its own, away from the
+ * threads serving requests.
+ * <p>
+ * Hashing is deliberately slow, so a burst of logins would otherwise occupy
+ * every request worker and stall unrelated requests such as static
+ * resources. Here at most <code>threads</code> hashes run at once and at most
+ * <code>queueCapacity</code> wait; beyond that the returned future fails at
+ * once with a {@link RejectedExecutionException}, which callers should answer
+ * as a temporary unavailability. A task whose future was cancelled while
+ * it waited, because its request gave up, is dropped without hashing.
+ * <p>
+ * Successful verifications can optionally be remembered for a short time, so
+ * that a client repeating its login is not hashed again. Entries are keyed by
+ * account and a digest of the stored and the given password, so a changed
+ * password never matches a remembered verification.
+ */
+public class PasswordService implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordService.class);
+
+    private static final int DEFAULT_VERIFICATION_CACHE_SIZE = 10_000;
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Clock clock;
+    private final Map<String, CachedVerification> verifications = new ConcurrentHashMap<>();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private volatile String dummyPassword;
+    private long verificationCacheTtlMillis;
+    private int verificationCacheSize = DEFAULT_VERIFICATION_CACHE_SIZE;
+
+    public PasswordService(final PasswordEncoder encoder, final int threads, final int queueCapacity) {
+        this(encoder, threads, queueCapacity, Clock.systemUTC());
+    }
+
+    public PasswordService(final PasswordEncoder encoder, final int threads, final int queueCapacity,
+                           final Clock clock) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("threads and queueCapacity must be positive: "
+                    + threads + ", " + queueCapacity);
+        }
+        this.encoder = encoder;
+        this.clock = clock;
+        final var threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    final var thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Remember successful verifications for the given time; 0, the default,
+     * disables the cache.
+     */
+    public void setVerificationCacheTtlMillis(final long verificationCacheTtlMillis) {
+        this.verificationCacheTtlMillis = verificationCacheTtlMillis;
+        if (verificationCacheTtlMillis <= 0) {
+            verifications.clear();
+        }
+    }
+
+    public void setVerificationCacheSize(final int verificationCacheSize) {
+        this.verificationCacheSize = verificationCacheSize;
+    }
+
+    /**
+     * @param user the user of the account logged in to, or <code>null</code>
+     *             if there is none; the password is then hashed all the
+     *             same, against a dummy hash, so that the answer takes as
+     *             long as for an existing account and does not tell which
+     *             accounts exist
+     * @return a future of whether the password is the one of the user
+     */
+    public CompletableFuture<Boolean> verify(final User user, final String rawPassword) {
+        if (rawPassword == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (user == null) {
+            return submit(() -> {
+                encoder.matches(rawPassword, dummyPassword());
+                return false;
+            });
+        }
+        final String stored = user.getPassword();
+        final String cacheKey = verificationCacheTtlMillis > 0
+                ? cacheKey(user.getAccount(), stored, rawPassword)
+                : null;
+        if (cacheKey != null && isRemembered(user.getAccount(), cacheKey)) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(true);
+        }
+        return submit(() -> {
+            final boolean matches = encoder.matches(rawPassword, stored);
+            if (matches && cacheKey != null) {
+                remember(user.getAccount(), cacheKey);
+            }
+            return matches;
+        });
+    }
+
+    /**
+     * @return a future of the encoded password, to be stored in place of the
+     * raw one
+     */
+    public CompletableFuture<String> encode(final String rawPassword) {
+        return submit(() -> encoder.encode(rawPassword));
+    }
+
+    private String dummyPassword() {
+        String dummy = dummyPassword;
+        if (dummy == null) {
+            // hashed once, with the iterations of real passwords
+            dummy = encoder.encode(UUID.randomUUID().toString());
+            dummyPassword = dummy;
+        }
+        return dummy;
+    }
+
+    private <T> CompletableFuture<T> submit(final Supplier<T> task) {
+        submitted.increment();
+        final var future = new CompletableFuture<T>();
+        try {
+            executor.execute(() -> {
+                if (future.isCancelled()) {
+                    return;
+                }
+                final long startTime = System.nanoTime();
+                final T result;
+                try {
+                    result = task.get();
+                } catch (RuntimeException e) {
+                    record(startTime);
+                    future.completeExceptionally(e);
+                    return;
+                }
+                record(startTime);
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void record(final long startTime) {
+        hashNanos.add(System.nanoTime() - startTime);
+        completed.increment();
+    }
+
+    private boolean isRemembered(final String account, final String cacheKey) {
+        final CachedVerification verification = verifications.get(account);
+        if (verification == null) {
+            return false;
+        }
+        if (verification.expiresAt <= clock.millis()) {
+            verifications.remove(account, verification);
+            return false;
+        }
+        return verification.key.equals(cacheKey);
+    }
+
+    private void remember(final String account, final String cacheKey) {
+        final long now = clock.millis();
+        if (verifications.size() >= verificationCacheSize) {
+            verifications.values().removeIf(verification -> verification.expiresAt <= now);
+            if (verifications.size() >= verificationCacheSize) {
+                return;
+            }
+        }
+        verifications.put(account, new CachedVerification(cacheKey, now + verificationCacheTtlMillis));
+    }
+
+    private static String cacheKey(final String account, final String stored, final String rawPassword) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(account.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(stored.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(rawPassword.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("password hashing did not finish in time, {} tasks dropped",
+                        executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return tasks refused because the queue was full
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return total time spent hashing, in nanoseconds
+     */
+    public long getHashNanos() {
+        return hashNanos.sum();
+    }
+
+    private static class CachedVerification {
+
+        private final String key;
+        private final long expiresAt;
+
+        private CachedVerification(final String key, final long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.apache.catalina;
+
+/**
+ * Common interface for component life cycle methods.  Catalina components
+ * may implement this interface in order to provide a consistent mechanism
+ * to start and stop the component.
+ * <p>
+ * A component must allow a call to <code>stop()</code> to be followed by a
+ * call to <code>start()</code> on the same instance.
+ */
+public interface Lifecycle {
+
+    /**
+     * Prepare for the beginning of active use of this component.
+     *
+     * @exception IllegalStateException if this component cannot be started
+     */
+    void start();
+
+    /**
+     * Gracefully terminate the active use of this component.  Once this
+     * method has been called, <code>start()</code> may be called again.
+     */
+    void stop();
+}
@@ -31,6 +31,17 @@ public interface Manager {
      */
     void add(HttpSession session);
 
+    /**
+     * Construct a new session with a newly generated session id, add it to
+     * this Manager and return it.
+     *
+     * @exception IllegalStateException if a new session cannot be
+     *  instantiated for any reason
+     *
+     * @return the new session
+     */
+    HttpSession createSession();
+
     /**
      * Return the active Session, associated with this Manager, with the
      * specified session id (if any); otherwise return <code>null</code>.
@@ -53,4 +64,11 @@ public interface Manager {
      * @param session Session to be removed
      */
     void remove(HttpSession session);
+
+    /**
+     * Return the number of active sessions
+     *
+     * @return number of sessions active
+     */
+    int getActiveSessions();
 }
@@ -0,0 +1,31 @@
+package org.apache.catalina;
+
+import org.apache.catalina.connector.Connector;
+
+import java.util.List;
+
+/**
+ * A <b>Service</b> is a group of one or more <b>Connectors</b> started and
+ * stopped together, such as a public port and an internal one for metrics
+ * and administration.
+ */
+public interface Service extends Lifecycle {
+
+    /**
+     * @return the name of this Service
+     */
+    String getName();
+
+    /**
+     * Add a new Connector to the set of defined Connectors. It is started
+     * at once if this Service is.
+     *
+     * @param connector The Connector to be added
+     */
+    void addConnector(Connector connector);
+
+    /**
+     * @return the set of Connectors associated with this Service
+     */
+    List<Connector> findConnectors();
+}
@@ -0,0 +1,33 @@
+package org.apache.catalina.connector;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a connection accepted by a connector. Its duration
+ * is the time the acceptor thread waited for the connection.
+ */
+@Name("org.apache.catalina.ConnectionAccept")
+@Label("Connection Accept")
+@Category({"Tomcat", "Connector"})
+@Description("A connection accepted by a connector")
+@StackTrace(false)
+class ConnectionAcceptEvent extends Event {
+
+    @Label("Remote Address")
+    String remoteAddress;
+
+    @Label("Remote Port")
+    int remotePort;
+
+    @Label("Local Port")
+    int localPort;
+
+    @Label("Queued Connections")
+    @Description("Accepted connections waiting for a worker thread")
+    int queuedConnections;
+}
@@ -0,0 +1,56 @@
+package org.apache.catalina.connector;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a connection closed after its request was served.
+ * Its duration is the time from the start of processing to the close, and its
+ * fields break that time down by phase, so that a slow request can be
+ * attributed to queueing, parsing, the controller or the write.
+ */
+@Name("org.apache.catalina.ConnectionClose")
+@Label("Connection Close")
+@Category({"Tomcat", "Connector"})
+@Description("A connection closed after serving its request")
+@StackTrace(false)
+public class ConnectionCloseEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytesRead;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+
+    @Label("Queue Time")
+    @Description("Time between the accept and the start of processing")
+    @Timespan
+    public long queueTime;
+
+    @Label("Parse Time")
+    @Timespan
+    public long parseTime;
+
+    @Label("Service Time")
+    @Description("Time from dispatch to the controller until the response was complete, asynchronous work included")
+    @Timespan
+    public long serviceTime;
+
+    @Label("Write Time")
+    @Timespan
+    public long writeTime;
+}
@@ -1,6 +1,17 @@
 package org.apache.catalina.connector;
 
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.Manager;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.catalina.metrics.RequestMetrics;
+import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.valves.AccessLog;
+import org.apache.catalina.valves.ResponseCache;
+import org.apache.catalina.valves.SlowRequestTracer;
 import org.apache.coyote.http11.Http11Processor;
+import org.apache.tomcat.util.net.SSLHostConfig;
+import org.apache.tomcat.util.net.SecureSocketFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -8,79 +19,365 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class Connector implements Runnable {
+/**
+ * Accepts connections on one port and processes them on a worker pool of its
+ * own, so that the connectors of a service do not take threads from each
+ * other. Its worker pool metrics are labelled with its name,
+ * <code>http-</code> and the port.
+ */
+public class Connector implements Runnable, Lifecycle {
 
     private static final Logger log = LoggerFactory.getLogger(Connector.class);
 
     private static final int DEFAULT_PORT = 8080;
     private static final int DEFAULT_ACCEPT_COUNT = 100;
+    private static final int DEFAULT_MAX_THREADS = 200;
+    private static final int DEFAULT_CONNECTION_TIMEOUT_MILLIS = 20_000;
 
-    private final ServerSocket serverSocket;
-    private boolean stopped;
+    private final String name;
+    private final int acceptCount;
+    private final int maxThreads;
+    private final RequestMapping requestMapping;
+    private final Manager manager;
+    private volatile ServerSocket serverSocket;
+    private volatile ThreadPoolExecutor executor;
+    private ThreadPoolExecutor http2Executor;
+    private final RequestMetrics requestMetrics;
+    private final MetricRegistry metricRegistry;
+    private AccessLog accessLog;
+    private SlowRequestTracer tracer;
+    private boolean http2Enabled;
+    private SSLHostConfig sslHostConfig;
+    private SecureSocketFactory secureSocketFactory;
+    private WeightedFairQueue fairQueue;
+    private long requestTimeoutMillis;
+    private int connectionTimeoutMillis = DEFAULT_CONNECTION_TIMEOUT_MILLIS;
+    private ScheduledThreadPoolExecutor deadlineTimer;
+    private ResponseCache responseCache;
+    private volatile boolean stopped;
 
     public Connector() {
         this(DEFAULT_PORT, DEFAULT_ACCEPT_COUNT);
     }
 
     public Connector(final int port, final int acceptCount) {
-        this.serverSocket = createServerSocket(port, acceptCount);
-        this.stopped = false;
+        this(port, acceptCount, new RequestMapping(), new StandardManager());
     }
 
-    private ServerSocket createServerSocket(final int port, final int acceptCount) {
+    public Connector(final int port, final int acceptCount, final RequestMapping requestMapping, final Manager manager) {
+        this(port, acceptCount, DEFAULT_MAX_THREADS, requestMapping, manager);
+    }
+
+    /**
+     * @param maxThreads number of worker threads processing requests;
+     *                   connections accepted while all are busy wait in the
+     *                   executor queue
+     */
+    public Connector(final int port, final int acceptCount, final int maxThreads,
+                     final RequestMapping requestMapping, final Manager manager) {
+        this(port, acceptCount, maxThreads, requestMapping, manager, new MetricRegistry());
+    }
+
+    /**
+     * @param metricRegistry registry the request and worker pool metrics of
+     *                       this connector are registered with
+     */
+    public Connector(final int port, final int acceptCount, final int maxThreads,
+                     final RequestMapping requestMapping, final Manager manager,
+                     final MetricRegistry metricRegistry) {
+        this.acceptCount = checkAcceptCount(acceptCount);
+        this.maxThreads = maxThreads > 0 ? maxThreads : DEFAULT_MAX_THREADS;
+        this.serverSocket = createServerSocket(checkPort(port));
+        this.name = "http-" + serverSocket.getLocalPort();
+        this.requestMapping = requestMapping;
+        this.manager = manager;
+        this.executor = createExecutor();
+        this.requestMetrics = new RequestMetrics(metricRegistry, name);
+        this.metricRegistry = metricRegistry;
+        this.stopped = true;
+        registerExecutorMetrics(metricRegistry);
+    }
+
+    private void registerExecutorMetrics(final MetricRegistry metricRegistry) {
+        metricRegistry.gaugeFamily("http_server_threads", "Worker threads started.", "connector")
+                .labels(name)
+                .set(() -> executor.getPoolSize());
+        metricRegistry.gaugeFamily("http_server_threads_busy", "Worker threads processing a connection.", "connector")
+                .labels(name)
+                .set(() -> executor.getActiveCount());
+        metricRegistry.gaugeFamily("http_server_queue_size", "Accepted connections waiting for a worker thread.",
+                        "connector")
+                .labels(name)
+                .set(() -> executor.getQueue().size());
+    }
+
+    private ThreadPoolExecutor createExecutor() {
+        return createExecutor(fairQueue != null ? fairQueue : new LinkedBlockingQueue<>(), "-exec-");
+    }
+
+    private ThreadPoolExecutor createExecutor(final BlockingQueue<Runnable> queue, final String threadPrefix) {
+        final var threadNumber = new AtomicInteger();
+        final var executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                queue, runnable -> {
+                    final var thread = new Thread(runnable, name + threadPrefix + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private ServerSocket createServerSocket(final int port) {
         try {
-            final int checkedPort = checkPort(port);
-            final int checkedAcceptCount = checkAcceptCount(acceptCount);
-            return new ServerSocket(checkedPort, checkedAcceptCount);
+            return new ServerSocket(port, acceptCount);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    public void start() {
-        var thread = new Thread(this);
+    public void setAccessLog(final AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    public void setTracer(final SlowRequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Accept HTTP/2 in cleartext, with prior knowledge or by upgrade. The
+     * streams of HTTP/2 connections run on a pool of their own, of the same
+     * size as the worker pool: each connection holds a worker to read its
+     * frames, so streams queued behind the readers would never run once
+     * there are as many connections as workers.
+     */
+    public void setHttp2Enabled(final boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    /**
+     * Terminate TLS on the accepted connections. With HTTP/2 enabled, ALPN
+     * offers <code>h2</code> ahead of <code>http/1.1</code>.
+     */
+    public void setSSLHostConfig(final SSLHostConfig sslHostConfig) {
+        this.sslHostConfig = sslHostConfig;
+    }
+
+    /**
+     * Answer the GET requests of the routes the cache is enabled for from it.
+     */
+    public void setResponseCache(final ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Give every request a deadline, counted from the accept of its
+     * connection: requests still waiting for a worker when it passes are
+     * answered with <code>503</code> without being serviced, and
+     * asynchronous ones are cancelled. Clients can ask for a shorter one
+     * with the {@link org.apache.coyote.http11.Deadline#HEADER} header,
+     * which is all that sets one when the timeout is 0, the default.
+     */
+    public void setRequestTimeoutMillis(final long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    /**
+     * Bound every blocking read of a connection, so that clients that
+     * connect and send nothing, or stop in the middle of a request, cannot
+     * hold on to a worker: idle connections are closed and incomplete
+     * requests answered with <code>408 Request Timeout</code>. Defaults to
+     * 20 seconds; 0 waits forever.
+     */
+    public void setConnectionTimeoutMillis(final int connectionTimeoutMillis) {
+        if (connectionTimeoutMillis < 0) {
+            throw new IllegalArgumentException(
+                    "connectionTimeoutMillis must not be negative: " + connectionTimeoutMillis);
+        }
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    /**
+     * Service requests by class, static resources apart from the requests
+     * mapped to controllers, with weighted fair queueing between the classes
+     * once a request is read; see {@link WeightedFairQueue}. Otherwise the
+     * worker pool takes connections and requests in the order they come.
+     *
+     * @throws IllegalStateException if the connector is running
+     */
+    public synchronized void setRequestClasses(final RequestClass staticClass, final RequestClass dynamicClass) {
+        if (!stopped) {
+            throw new IllegalStateException(name + " is running");
+        }
+        fairQueue = new WeightedFairQueue(staticClass, dynamicClass);
+        fairQueue.registerMetrics(metricRegistry, name);
+        executor.shutdown();
+        executor = createExecutor();
+    }
+
+    /**
+     * Start accepting connections. A stopped connector binds its port again
+     * and gets a new worker pool.
+     *
+     * @throws IllegalStateException if the connector is running
+     * @throws UncheckedIOException if the port cannot be bound again
+     */
+    @Override
+    public synchronized void start() {
+        if (!stopped) {
+            throw new IllegalStateException(name + " is already started");
+        }
+        if (sslHostConfig != null && secureSocketFactory == null) {
+            secureSocketFactory = createSecureSocketFactory();
+        }
+        if (serverSocket.isClosed()) {
+            serverSocket = createServerSocket(serverSocket.getLocalPort());
+        }
+        if (executor.isShutdown()) {
+            executor = createExecutor();
+        }
+        if (deadlineTimer == null || deadlineTimer.isShutdown()) {
+            deadlineTimer = createDeadlineTimer();
+        }
+        if (http2Enabled && (http2Executor == null || http2Executor.isShutdown())) {
+            http2Executor = createExecutor(new LinkedBlockingQueue<>(), "-h2-");
+        }
+        stopped = false;
+        var thread = new Thread(this, name + "-acceptor");
         thread.setDaemon(true);
         thread.start();
-        stopped = false;
         log.info("Web Application Server started {} port.", serverSocket.getLocalPort());
     }
 
+    private ScheduledThreadPoolExecutor createDeadlineTimer() {
+        final var timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final var thread = new Thread(runnable, name + "-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // requests mostly complete before their deadline
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private SecureSocketFactory createSecureSocketFactory() {
+        final List<String> applicationProtocols = http2Enabled ? List.of("h2", "http/1.1") : List.of("http/1.1");
+        final SecureSocketFactory factory;
+        try {
+            factory = new SecureSocketFactory(sslHostConfig, applicationProtocols);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        metricRegistry.functionCounter("tls_handshakes_total", "TLS handshakes completed.", factory::getHandshakes);
+        metricRegistry.functionCounter("tls_handshakes_resumed_total", "TLS handshakes that resumed a session.",
+                factory::getResumedHandshakes);
+        metricRegistry.functionCounter("tls_handshakes_failed_total", "TLS handshakes that failed.",
+                factory::getFailedHandshakes);
+        return factory;
+    }
+
     @Override
     public void run() {
         // 클라이언트가 연결될때까지 대기한다.
-        while (!stopped) {
-            connect();
+        final ServerSocket acceptingSocket = serverSocket;
+        while (!stopped && !acceptingSocket.isClosed()) {
+            connect(acceptingSocket);
         }
     }
 
-    private void connect() {
+    private void connect(final ServerSocket serverSocket) {
+        final var event = new ConnectionAcceptEvent();
+        event.begin();
         try {
-            process(serverSocket.accept());
+            final Socket connection = serverSocket.accept();
+            if (event.shouldCommit()) {
+                event.remoteAddress = String.valueOf(connection.getInetAddress());
+                event.remotePort = connection.getPort();
+                event.localPort = connection.getLocalPort();
+                event.queuedConnections = executor.getQueue().size();
+                event.commit();
+            }
+            process(connection);
         } catch (IOException e) {
-            log.error(e.getMessage(), e);
+            if (!stopped) {
+                log.error(e.getMessage(), e);
+            }
         }
     }
 
-    private void process(final Socket connection) {
-        if (connection == null) {
+    private void process(final Socket accepted) throws IOException {
+        if (accepted == null) {
             return;
         }
-        var processor = new Http11Processor(connection);
-        new Thread(processor).start();
+        // also bounds the TLS handshake, which reads through the accepted socket
+        accepted.setSoTimeout(connectionTimeoutMillis);
+        final Socket connection = secureSocketFactory != null ? secureSocketFactory.wrap(accepted) : accepted;
+        var processor = new Http11Processor(connection, requestMapping, manager, executor, requestMetrics);
+        processor.setAccessLog(accessLog);
+        processor.setTracer(tracer);
+        processor.setHttp2Enabled(http2Enabled);
+        processor.setHttp2Executor(http2Executor);
+        processor.setFairQueue(fairQueue);
+        processor.setRequestTimeout(requestTimeoutMillis, deadlineTimer);
+        processor.setResponseCache(responseCache);
+        executor.execute(processor);
     }
 
-    public void stop() {
+    /**
+     * Stop accepting connections and let the worker pool finish the ones
+     * accepted, without waiting for them; see {@link #awaitTermination}.
+     */
+    @Override
+    public synchronized void stop() {
         stopped = true;
         try {
             serverSocket.close();
         } catch (IOException e) {
             log.error(e.getMessage(), e);
         }
+        executor.shutdown();
+        if (deadlineTimer != null) {
+            // cancellations already scheduled still run
+            deadlineTimer.shutdown();
+        }
+        if (http2Executor != null) {
+            http2Executor.shutdown();
+        }
+    }
+
+    /**
+     * Wait for the connections accepted before {@link #stop()} to finish.
+     *
+     * @return whether they did before the timeout
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isStarted() {
+        return !stopped;
+    }
+
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
     }
 
+    /**
+     * Port 0 binds an ephemeral port, see {@link #getLocalPort()}.
+     */
     private int checkPort(final int port) {
-        final var MIN_PORT = 1;
+        final var MIN_PORT = 0;
         final var MAX_PORT = 65535;
 
         if (port < MIN_PORT || MAX_PORT < port) {
@@ -0,0 +1,52 @@
+package org.apache.catalina.connector;
+
+/**
+ * A class of requests scheduled together on the worker pool of a connector:
+ * its share of the pool when other classes are waiting too, and the most
+ * worker threads it may take at once whatever the others do.
+ *
+ * @see WeightedFairQueue
+ */
+public class RequestClass {
+
+    private final String name;
+    private final int weight;
+    private final int maxConcurrency;
+
+    /**
+     * @param weight         relative share of worker time while classes
+     *                       compete, e.g. 4 against 1 gives a class four
+     *                       fifths of it
+     * @param maxConcurrency most requests of the class serviced at once
+     * @throws IllegalArgumentException if the weight or the cap is not
+     *                                  positive
+     */
+    public RequestClass(final String name, final int weight, final int maxConcurrency) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight of " + name + " must be positive: " + weight);
+        }
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("concurrency of " + name + " must be positive: " + maxConcurrency);
+        }
+        this.name = name;
+        this.weight = weight;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(weight=" + weight + ", maxConcurrency=" + maxConcurrency + ")";
+    }
+}
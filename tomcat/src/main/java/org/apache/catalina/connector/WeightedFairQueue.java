@@ -0,0 +1,403 @@
+package org.apache.catalina.connector;
+
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.metrics.Histogram;
+import org.apache.catalina.metrics.MetricRegistry;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Work queue of a connector's worker pool that schedules requests by class,
+ * static resources apart from the requests mapped to controllers, rather
+ * than in the order they arrived.
+ * <p>
+ * Tasks handed to the pool as they are, new connections and completions of
+ * asynchronous requests, have a lane of their own: they are short, and
+ * reading a request is what classifies it. While classified requests can
+ * run, they alternate with them, so that a flood of new connections gets
+ * at most half of the workers freed rather than all of them.
+ * <p>
+ * A request classified with {@link #classify} waits in the lane of its
+ * class, and a free worker takes
+ * the head of the lane that has had the least worker time for its weight,
+ * as in start-time fair queueing, passing over lanes at their concurrency
+ * cap. The worker time of a request is estimated from a moving average of
+ * how long those of its class took, so a class of slow requests gets fewer
+ * of them through for the same weight. A lane that was empty starts again
+ * at the current virtual time rather than with the share it left unused.
+ */
+public class WeightedFairQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private static final double INITIAL_COST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double COST_SMOOTHING = 0.2;
+    // unclassified tasks taken in a row while classified requests wait
+    private static final int UNCLASSIFIED_BURST = 1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<Runnable> unclassified = new ArrayDeque<>();
+    private final Lane staticLane;
+    private final Lane dynamicLane;
+    private final Lane[] lanes;
+    private double virtualTime;
+    private int unclassifiedRun;
+    private int size;
+
+    /**
+     * @param staticClass  class of the requests for static resources
+     * @param dynamicClass class of the requests mapped to a controller
+     */
+    public WeightedFairQueue(final RequestClass staticClass, final RequestClass dynamicClass) {
+        this.staticLane = new Lane(staticClass);
+        this.dynamicLane = new Lane(dynamicClass);
+        this.lanes = new Lane[]{staticLane, dynamicLane};
+    }
+
+    /**
+     * Register the wait time and the queued and running requests of each
+     * class, labelled with the connector and the class.
+     */
+    public void registerMetrics(final MetricRegistry registry, final String connector) {
+        final var waits = registry.histogramFamily("http_server_queue_wait_seconds",
+                "Time from reading a request to a worker thread taking it up, by class.", "connector", "class");
+        final var queued = registry.gaugeFamily("http_server_class_queued",
+                "Requests read and waiting for a worker thread, by class.", "connector", "class");
+        final var running = registry.gaugeFamily("http_server_class_running",
+                "Requests being serviced, by class.", "connector", "class");
+        for (final Lane lane : lanes) {
+            final String name = lane.requestClass.getName();
+            lane.waits = waits.labels(connector, name);
+            queued.labels(connector, name).set(() -> queued(lane));
+            running.labels(connector, name).set(() -> running(lane));
+        }
+    }
+
+    /**
+     * Wrap the servicing of a request for the worker pool, in the class of
+     * its route.
+     *
+     * @param route as given by {@link RequestMapping#getRoute}
+     */
+    public Runnable classify(final String route, final Runnable task) {
+        return new Task(RequestMapping.STATIC_ROUTE.equals(route) ? staticLane : dynamicLane, task);
+    }
+
+    @Override
+    public boolean offer(final Runnable runnable) {
+        Objects.requireNonNull(runnable);
+        lock.lock();
+        try {
+            if (runnable instanceof Task) {
+                final Task task = (Task) runnable;
+                final Lane lane = task.lane;
+                if (lane.tasks.isEmpty()) {
+                    lane.tag = Math.max(lane.tag, virtualTime);
+                }
+                lane.tasks.add(task);
+            } else {
+                unclassified.add(runnable);
+            }
+            size++;
+            available.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(final Runnable runnable) {
+        offer(runnable);
+    }
+
+    @Override
+    public boolean offer(final Runnable runnable, final long timeout, final TimeUnit unit) {
+        return offer(runnable);
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Runnable next;
+            while ((next = next()) == null) {
+                available.await();
+            }
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Runnable next;
+            while ((next = next()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = available.awaitNanos(nanos);
+            }
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the next task a worker may run, or <code>null</code> if there
+     * is none or only requests of classes at their cap
+     */
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Runnable next() {
+        Lane next = null;
+        for (final Lane lane : lanes) {
+            if (!lane.tasks.isEmpty() && lane.running < lane.requestClass.getMaxConcurrency()
+                    && (next == null || lane.tag < next.tag)) {
+                next = lane;
+            }
+        }
+        if (!unclassified.isEmpty() && (next == null || unclassifiedRun < UNCLASSIFIED_BURST)) {
+            unclassifiedRun++;
+            size--;
+            return unclassified.poll();
+        }
+        if (next == null) {
+            return null;
+        }
+        unclassifiedRun = 0;
+        final Task task = next.tasks.poll();
+        size--;
+        next.running++;
+        virtualTime = next.tag;
+        next.tag += next.cost / next.requestClass.getWeight();
+        next.waits.recordNanos(System.nanoTime() - task.queuedAt);
+        return task;
+    }
+
+    private void completed(final Lane lane, final long elapsedNanos) {
+        lock.lock();
+        try {
+            lane.running--;
+            lane.cost += COST_SMOOTHING * (elapsedNanos - lane.cost);
+            if (!lane.tasks.isEmpty()) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            if (!unclassified.isEmpty()) {
+                return unclassified.peek();
+            }
+            for (final Lane lane : lanes) {
+                if (!lane.tasks.isEmpty()) {
+                    return lane.tasks.peek();
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        lock.lock();
+        try {
+            boolean removed = unclassified.remove(o);
+            for (int i = 0; !removed && i < lanes.length; i++) {
+                removed = lanes[i].tasks.remove(o);
+            }
+            if (removed) {
+                size--;
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            unclassified.clear();
+            for (final Lane lane : lanes) {
+                lane.tasks.clear();
+            }
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the tasks waiting, including requests of classes at their cap
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Runnable> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Runnable> collection, final int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && !unclassified.isEmpty()) {
+                collection.add(unclassified.poll());
+                drained++;
+            }
+            for (final Lane lane : lanes) {
+                while (drained < maxElements && !lane.tasks.isEmpty()) {
+                    collection.add(lane.tasks.poll());
+                    drained++;
+                }
+            }
+            size -= drained;
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return an iterator over a snapshot of the tasks waiting
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        final List<Runnable> snapshot;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(unclassified);
+            for (final Lane lane : lanes) {
+                snapshot.addAll(lane.tasks);
+            }
+        } finally {
+            lock.unlock();
+        }
+        final Iterator<Runnable> iterator = snapshot.iterator();
+        return new Iterator<>() {
+
+            private Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                WeightedFairQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    private int queued(final Lane lane) {
+        lock.lock();
+        try {
+            return lane.tasks.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int running(final Lane lane) {
+        lock.lock();
+        try {
+            return lane.running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Lane {
+
+        private final RequestClass requestClass;
+        private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+        private Histogram waits = new Histogram();
+        // virtual time at which the next request of the lane starts
+        private double tag;
+        private double cost = INITIAL_COST_NANOS;
+        private int running;
+
+        private Lane(final RequestClass requestClass) {
+            this.requestClass = requestClass;
+        }
+    }
+
+    private final class Task implements Runnable {
+
+        private final Lane lane;
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        private Task(final Lane lane, final Runnable task) {
+            this.lane = lane;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                completed(lane, System.nanoTime() - start);
+            }
+        }
+    }
+}
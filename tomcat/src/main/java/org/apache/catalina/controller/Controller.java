@@ -0,0 +1,12 @@
+package org.apache.catalina.controller;
+
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+
+/**
+ * Handles the requests mapped to it by a {@link RequestMapping}.
+ */
+public interface Controller {
+
+    void service(HttpRequest request, HttpResponse response) throws Exception;
+}
@@ -0,0 +1,25 @@
+package org.apache.catalina.controller;
+
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.coyote.http11.ContentType;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+
+/**
+ * Serves the metrics of the registry in the Prometheus text format, for a
+ * Prometheus server to scrape.
+ */
+public class MetricsController extends AbstractController {
+
+    private final MetricRegistry metricRegistry;
+
+    public MetricsController(final MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Override
+    protected void doGet(final HttpRequest request, final HttpResponse response) {
+        response.setContentType(ContentType.PROMETHEUS);
+        response.setBody(metricRegistry.scrape());
+    }
+}
@@ -0,0 +1,37 @@
+package org.apache.catalina.controller;
+
+import org.apache.coyote.http11.HttpRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps request paths to controllers. Requests for any other path are served
+ * as static resources.
+ */
+public class RequestMapping {
+
+    public static final String STATIC_ROUTE = "static";
+
+    private final Map<String, Controller> controllers = new ConcurrentHashMap<>();
+    private final Controller defaultController = new StaticResourceController();
+
+    public RequestMapping add(final String path, final Controller controller) {
+        controllers.put(path, controller);
+        return this;
+    }
+
+    public Controller getController(final HttpRequest request) {
+        return controllers.getOrDefault(request.getPath(), defaultController);
+    }
+
+    /**
+     * @return the mapped path the request was routed by, or
+     * {@link #STATIC_ROUTE} for static resources, so that metrics get one
+     * series per controller rather than one per requested file
+     */
+    public String getRoute(final HttpRequest request) {
+        final String path = request.getPath();
+        return controllers.containsKey(path) ? path : STATIC_ROUTE;
+    }
+}
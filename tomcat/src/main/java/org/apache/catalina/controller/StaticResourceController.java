@@ -0,0 +1,25 @@
+package org.apache.catalina.controller;
+
+import org.apache.coyote.http11.ContentType;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+
+/**
+ * Serves the files of the <code>static</code> directory, and a welcome
+ * message for the root path.
+ */
+public class StaticResourceController extends AbstractController {
+
+    private static final String WELCOME_MESSAGE = "Hello world!";
+
+    @Override
+    protected void doGet(final HttpRequest request, final HttpResponse response) {
+        final String path = request.getPath();
+        if ("/".equals(path)) {
+            response.setContentType(ContentType.HTML);
+            response.setBody(WELCOME_MESSAGE);
+            return;
+        }
+        StaticResources.render(response, path);
+    }
+}
@@ -0,0 +1,88 @@
+package org.apache.catalina.controller;
+
+import org.apache.coyote.http11.ContentType;
+import org.apache.coyote.http11.HttpResponse;
+import org.apache.coyote.http11.HttpStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Files served from the <code>static</code> directory of the classpath.
+ * <p>
+ * Classpath resources do not change while the server runs, so each file is
+ * read once and kept in memory.
+ */
+public final class StaticResources {
+
+    private static final String STATIC_DIRECTORY = "static";
+    private static final Map<String, byte[]> cache = new ConcurrentHashMap<>();
+    private static final LongAdder cacheHits = new LongAdder();
+    private static final LongAdder cacheMisses = new LongAdder();
+
+    public static Optional<byte[]> find(final String path) {
+        if (path.contains("..")) {
+            return Optional.empty();
+        }
+        final byte[] cached = cache.get(path);
+        if (cached != null) {
+            cacheHits.increment();
+            return Optional.of(cached);
+        }
+        cacheMisses.increment();
+        final Optional<byte[]> loaded = load(path);
+        loaded.ifPresent(bytes -> cache.putIfAbsent(path, bytes));
+        return loaded;
+    }
+
+    private static Optional<byte[]> load(final String path) {
+        final ClassLoader classLoader = StaticResources.class.getClassLoader();
+        try (final InputStream inputStream = classLoader.getResourceAsStream(STATIC_DIRECTORY + path)) {
+            if (inputStream == null) {
+                return Optional.empty();
+            }
+            return Optional.of(inputStream.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the file at <code>path</code> as the response body, or the not
+     * found page if there is no such file.
+     */
+    public static void render(final HttpResponse response, final String path) {
+        final Optional<byte[]> resource = find(path);
+        if (resource.isEmpty()) {
+            renderError(response, HttpStatus.NOT_FOUND);
+            return;
+        }
+        response.setContentType(ContentType.fromPath(path));
+        response.setBody(resource.get());
+    }
+
+    public static void renderError(final HttpResponse response, final HttpStatus status) {
+        response.setStatus(status);
+        response.setContentType(ContentType.HTML);
+        response.setBody(find("/" + status.getCode() + ".html").orElseGet(() -> new byte[0]));
+    }
+
+    public static long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return lookups that had to go to the classpath, including those of
+     * files that do not exist
+     */
+    public static long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    private StaticResources() {}
+}
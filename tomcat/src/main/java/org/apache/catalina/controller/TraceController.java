@@ -0,0 +1,25 @@
+package org.apache.catalina.controller;
+
+import org.apache.catalina.valves.SlowRequestTracer;
+import org.apache.coyote.http11.ContentType;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+
+/**
+ * Dumps the traces kept by the slow request tracer as text, the latest
+ * first.
+ */
+public class TraceController extends AbstractController {
+
+    private final SlowRequestTracer tracer;
+
+    public TraceController(final SlowRequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected void doGet(final HttpRequest request, final HttpResponse response) {
+        response.setContentType(ContentType.PLAIN);
+        response.setBody(tracer.dump());
+    }
+}
@@ -0,0 +1,135 @@
+package org.apache.catalina.core;
+
+import org.apache.catalina.Service;
+import org.apache.catalina.connector.Connector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Standard implementation of the <code>Service</code> interface.
+ * <p>
+ * The connectors are started and stopped concurrently, so that a service
+ * with several of them, or many services in one test run, come up and go
+ * down in the time of the slowest connector rather than of all of them. If
+ * one connector fails to start, those that did are stopped again. Stopping
+ * waits, up to the stop timeout, for the connections each connector had
+ * accepted to finish.
+ */
+public class StandardService implements Service {
+
+    private static final Logger log = LoggerFactory.getLogger(StandardService.class);
+
+    private static final long DEFAULT_STOP_TIMEOUT_MILLIS = 10_000L;
+
+    private final String name;
+    private final List<Connector> connectors = new CopyOnWriteArrayList<>();
+    private long stopTimeoutMillis = DEFAULT_STOP_TIMEOUT_MILLIS;
+    private boolean started;
+
+    public StandardService(final String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized void addConnector(final Connector connector) {
+        connectors.add(connector);
+        if (started) {
+            connector.start();
+        }
+    }
+
+    @Override
+    public List<Connector> findConnectors() {
+        return List.copyOf(connectors);
+    }
+
+    /**
+     * @param stopTimeoutMillis how long {@link #stop()} waits for the
+     *                          connections in progress to finish
+     */
+    public void setStopTimeoutMillis(final long stopTimeoutMillis) {
+        this.stopTimeoutMillis = stopTimeoutMillis;
+    }
+
+    public synchronized boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @throws IllegalStateException if the service is started, or a
+     *                               connector could not be started
+     */
+    @Override
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException(name + " is already started");
+        }
+        final List<Connector> startedConnectors = new CopyOnWriteArrayList<>();
+        try {
+            inParallel(connector -> {
+                connector.start();
+                startedConnectors.add(connector);
+            });
+        } catch (RuntimeException e) {
+            startedConnectors.forEach(Connector::stop);
+            throw new IllegalStateException(name + " failed to start: " + e.getMessage(), e);
+        }
+        started = true;
+        log.info("Service {} started with {} connectors.", name, connectors.size());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stopTimeoutMillis);
+        inParallel(connector -> {
+            connector.stop();
+            awaitTermination(connector, deadline);
+        });
+        log.info("Service {} stopped.", name);
+    }
+
+    private void awaitTermination(final Connector connector, final long deadline) {
+        try {
+            if (!connector.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                log.warn("{} still has connections in progress after {} ms", connector.getName(),
+                        stopTimeoutMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run the action on every connector at the same time and wait for all.
+     *
+     * @throws RuntimeException the first failure, once all are done
+     */
+    private void inParallel(final Consumer<Connector> action) {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(connectors.size());
+        for (final Connector connector : connectors) {
+            futures.add(CompletableFuture.runAsync(() -> action.accept(connector)));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.apache.catalina.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Value read from a supplier when the metrics are written, as the child of
+ * a labelled gauge family.
+ */
+public class Gauge {
+
+    private volatile DoubleSupplier value = () -> 0;
+
+    /**
+     * @param value read on every scrape; replaces the one set before
+     */
+    public void set(final DoubleSupplier value) {
+        this.value = value;
+    }
+
+    public double get() {
+        return value.getAsDouble();
+    }
+}
@@ -0,0 +1,110 @@
+package org.apache.catalina.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in microseconds, with log-linear buckets
+ * in the manner of HdrHistogram.
+ * <p>
+ * Values below 64 get a bucket each. Above that, every power of two is split
+ * into 32 buckets, so a value is known to within about 3% whatever its
+ * magnitude, from one microsecond up to about an hour, in under a thousand
+ * buckets. Recording is a shift and an atomic increment; nothing is
+ * allocated.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = TimeUnit.HOURS.toMicros(1);
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public void recordNanos(final long nanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void record(final long micros) {
+        final long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        buckets.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    private static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the largest value that falls in the bucket
+     */
+    private static long highestValue(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the recorded values, in microseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return the number of recorded values not above each bound, given in
+     * microseconds in increasing order. Values in a bucket that straddles a
+     * bound count for the next bound.
+     */
+    public long[] cumulativeCounts(final long[] upperBounds) {
+        final long[] counts = new long[upperBounds.length];
+        int bound = 0;
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS && bound < upperBounds.length; i++) {
+            while (bound < upperBounds.length && highestValue(i) > upperBounds[bound]) {
+                counts[bound++] = cumulative;
+            }
+            cumulative += buckets.get(i);
+        }
+        while (bound < upperBounds.length) {
+            counts[bound++] = cumulative;
+        }
+        return counts;
+    }
+
+    /**
+     * @return the value below which the given percentage of the recorded
+     * values fall, to the precision of the buckets
+     */
+    public long getValueAtPercentile(final double percentile) {
+        final long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += buckets.get(i);
+            if (cumulative >= target) {
+                return highestValue(i);
+            }
+        }
+        return MAX_VALUE;
+    }
+}
@@ -0,0 +1,263 @@
+package org.apache.catalina.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+/**
+ * Named metrics of the server, written out in the Prometheus text exposition
+ * format.
+ * <p>
+ * Counters and histograms are updated by the code they measure; gauges and
+ * function counters are read from a supplier only when the metrics are
+ * written, so they cost nothing in between. A labelled metric is a family of
+ * children, one per combination of label values, created on first use;
+ * callers on a hot path should keep the child rather than look it up each
+ * time. Registering a name again returns the metric already registered.
+ */
+public class MetricRegistry {
+
+    private static final double MICROS_PER_SECOND = 1_000_000.0;
+    private static final double[] LATENCY_BUCKETS_SECONDS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    // the bounds of LATENCY_BUCKETS_SECONDS, then one above every value for +Inf
+    private static final long[] LATENCY_BUCKETS_MICROS = LongStream.concat(
+            Arrays.stream(LATENCY_BUCKETS_SECONDS).mapToLong(seconds -> (long) (seconds * MICROS_PER_SECOND)),
+            LongStream.of(Long.MAX_VALUE)).toArray();
+
+    private final Map<String, Metric> metricsByName = new ConcurrentHashMap<>();
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+
+    public Counter counter(final String name, final String help) {
+        return counterFamily(name, help).labels();
+    }
+
+    public Family<Counter> counterFamily(final String name, final String help, final String... labelNames) {
+        return family(name, help, "counter", labelNames, Counter::new);
+    }
+
+    public Histogram histogram(final String name, final String help) {
+        return histogramFamily(name, help).labels();
+    }
+
+    /**
+     * Histograms are of durations; the name should end in
+     * <code>_seconds</code>, the unit they are written in.
+     */
+    public Family<Histogram> histogramFamily(final String name, final String help, final String... labelNames) {
+        return family(name, help, "histogram", labelNames, Histogram::new);
+    }
+
+    public void gauge(final String name, final String help, final DoubleSupplier value) {
+        register(new Sampled(name, help, "gauge", value));
+    }
+
+    /**
+     * Gauges of several instances of a component, such as the worker pools
+     * of the connectors, told apart by their labels.
+     */
+    public Family<Gauge> gaugeFamily(final String name, final String help, final String... labelNames) {
+        return family(name, help, "gauge", labelNames, Gauge::new);
+    }
+
+    /**
+     * Register a counter kept elsewhere, read when the metrics are written.
+     */
+    public void functionCounter(final String name, final String help, final DoubleSupplier value) {
+        register(new Sampled(name, help, "counter", value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Family<T> family(final String name, final String help, final String type, final String[] labelNames,
+                                 final Supplier<T> factory) {
+        return (Family<T>) register(new Family<>(name, help, type, labelNames, factory));
+    }
+
+    private Metric register(final Metric metric) {
+        final Metric existing = metricsByName.putIfAbsent(metric.name, metric);
+        if (existing == null) {
+            metrics.add(metric);
+            return metric;
+        }
+        if (!existing.type.equals(metric.type) || existing.getClass() != metric.getClass()) {
+            throw new IllegalArgumentException("metric " + metric.name + " is already registered as a "
+                    + existing.type);
+        }
+        return existing;
+    }
+
+    public String scrape() {
+        final StringBuilder out = new StringBuilder(4096);
+        for (final Metric metric : metrics) {
+            out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+            metric.writeTo(out);
+        }
+        return out.toString();
+    }
+
+    private abstract static class Metric {
+
+        protected final String name;
+        protected final String help;
+        protected final String type;
+
+        Metric(final String name, final String help, final String type) {
+            if (!name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+                throw new IllegalArgumentException("invalid metric name: " + name);
+            }
+            this.name = name;
+            this.help = help.replace("\\", "\\\\").replace("\n", "\\n");
+            this.type = type;
+        }
+
+        abstract void writeTo(StringBuilder out);
+    }
+
+    private static final class Sampled extends Metric {
+
+        private final DoubleSupplier value;
+
+        private Sampled(final String name, final String help, final String type, final DoubleSupplier value) {
+            super(name, help, type);
+            this.value = value;
+        }
+
+        @Override
+        void writeTo(final StringBuilder out) {
+            out.append(name).append(' ');
+            appendValue(out, value.getAsDouble());
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Children of a metric, one per combination of label values.
+     */
+    public static final class Family<T> extends Metric {
+
+        private final String[] labelNames;
+        private final Supplier<T> factory;
+        private final Map<List<String>, T> children = new ConcurrentHashMap<>();
+
+        private Family(final String name, final String help, final String type, final String[] labelNames,
+                       final Supplier<T> factory) {
+            super(name, help, type);
+            this.labelNames = labelNames.clone();
+            this.factory = factory;
+        }
+
+        /**
+         * @return the child for the given label values, in the order of the
+         * label names
+         */
+        public T labels(final String... labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException("expected " + labelNames.length + " label values for " + name
+                        + " but got " + labelValues.length);
+            }
+            final List<String> key = List.of(labelValues);
+            final T child = children.get(key);
+            if (child != null) {
+                return child;
+            }
+            return children.computeIfAbsent(key, ignored -> factory.get());
+        }
+
+        @Override
+        void writeTo(final StringBuilder out) {
+            for (final Map.Entry<List<String>, T> child : children.entrySet()) {
+                if (child.getValue() instanceof Counter) {
+                    out.append(name);
+                    appendLabels(out, child.getKey(), null);
+                    out.append(' ').append(((Counter) child.getValue()).get()).append('\n');
+                } else if (child.getValue() instanceof Gauge) {
+                    out.append(name);
+                    appendLabels(out, child.getKey(), null);
+                    out.append(' ');
+                    appendValue(out, ((Gauge) child.getValue()).get());
+                    out.append('\n');
+                } else {
+                    writeHistogram(out, child.getKey(), (Histogram) child.getValue());
+                }
+            }
+        }
+
+        private void writeHistogram(final StringBuilder out, final List<String> labelValues,
+                                    final Histogram histogram) {
+            // +Inf and _count come from the same read of the buckets as the
+            // bounds below them, so a value recorded meanwhile cannot make a
+            // bucket exceed the total
+            final long[] cumulative = histogram.cumulativeCounts(LATENCY_BUCKETS_MICROS);
+            final long count = cumulative[LATENCY_BUCKETS_SECONDS.length];
+            for (int i = 0; i < LATENCY_BUCKETS_SECONDS.length; i++) {
+                out.append(name).append("_bucket");
+                appendLabels(out, labelValues, String.valueOf(LATENCY_BUCKETS_SECONDS[i]));
+                out.append(' ').append(cumulative[i]).append('\n');
+            }
+            out.append(name).append("_bucket");
+            appendLabels(out, labelValues, "+Inf");
+            out.append(' ').append(count).append('\n');
+            out.append(name).append("_sum");
+            appendLabels(out, labelValues, null);
+            out.append(' ');
+            appendValue(out, histogram.getSum() / MICROS_PER_SECOND);
+            out.append('\n');
+            out.append(name).append("_count");
+            appendLabels(out, labelValues, null);
+            out.append(' ').append(count).append('\n');
+        }
+
+        private void appendLabels(final StringBuilder out, final List<String> labelValues, final String le) {
+            if (labelNames.length == 0 && le == null) {
+                return;
+            }
+            out.append('{');
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labelNames[i]).append("=\"");
+                appendEscaped(out, labelValues.get(i));
+                out.append('"');
+            }
+            if (le != null) {
+                if (labelNames.length > 0) {
+                    out.append(',');
+                }
+                out.append("le=\"").append(le).append('"');
+            }
+            out.append('}');
+        }
+
+        private static void appendEscaped(final StringBuilder out, final String value) {
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    out.append('\\').append(c);
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+    }
+
+    private static void appendValue(final StringBuilder out, final double value) {
+        if (Double.isNaN(value)) {
+            out.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            out.append(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+    }
+}
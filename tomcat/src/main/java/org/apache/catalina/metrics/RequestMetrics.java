@@ -0,0 +1,130 @@
+package org.apache.catalina.metrics;
+
+import org.apache.coyote.http11.HttpStatus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Metrics of the requests served by a connector: count and latency by route
+ * and status, connections open, and bytes received and sent.
+ * <p>
+ * The children of the labelled metrics are cached per route in arrays
+ * indexed by status, so recording a request allocates nothing once its
+ * route and status have been seen. Routes must come from a bounded set, such
+ * as the paths mapped to controllers, or the number of series grows without
+ * limit.
+ */
+public class RequestMetrics {
+
+    private final MetricRegistry.Family<Counter> requests;
+    private final MetricRegistry.Family<Histogram> durations;
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final Counter bytesReceived;
+    private final Counter bytesSent;
+    private final Counter bodiesSkipped;
+    private final Counter requestsExpired;
+
+    public RequestMetrics(final MetricRegistry registry) {
+        this(registry, null);
+    }
+
+    /**
+     * @param connector name of the connector whose connections are counted,
+     *                  as the label that keeps apart the connectors sharing
+     *                  a registry; <code>null</code> for an unlabelled gauge
+     */
+    public RequestMetrics(final MetricRegistry registry, final String connector) {
+        this.requests = registry.counterFamily("http_server_requests_total",
+                "Requests served.", "route", "status");
+        this.durations = registry.histogramFamily("http_server_request_duration_seconds",
+                "Time from reading a request to writing its response.", "route", "status");
+        this.bytesReceived = registry.counter("http_server_bytes_received_total",
+                "Bytes read from connections.");
+        this.bytesSent = registry.counter("http_server_bytes_sent_total",
+                "Bytes written to connections.");
+        this.bodiesSkipped = registry.counter("http_server_request_bodies_skipped_total",
+                "Requests answered before the body they announced with Expect: 100-continue was sent.");
+        this.requestsExpired = registry.counter("http_server_requests_expired_total",
+                "Requests given up on because their deadline passed.");
+        if (connector == null) {
+            registry.gauge("http_server_active_connections", "Connections being processed.",
+                    activeConnections::get);
+        } else {
+            registry.gaugeFamily("http_server_active_connections", "Connections being processed.", "connector")
+                    .labels(connector)
+                    .set(activeConnections::get);
+        }
+    }
+
+    public void connectionOpened() {
+        activeConnections.incrementAndGet();
+    }
+
+    public void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    public void addBytesReceived(final long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    public void addBytesSent(final long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    public void bodySkipped() {
+        bodiesSkipped.increment();
+    }
+
+    public void requestExpired() {
+        requestsExpired.increment();
+    }
+
+    public void record(final String route, final HttpStatus status, final long durationNanos) {
+        RouteMetrics routeMetrics = routes.get(route);
+        if (routeMetrics == null) {
+            routeMetrics = routes.computeIfAbsent(route, RouteMetrics::new);
+        }
+        routeMetrics.requests(status).increment();
+        routeMetrics.durations(status).recordNanos(durationNanos);
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    private final class RouteMetrics {
+
+        private final String route;
+        private final AtomicReferenceArray<Counter> requestsByStatus;
+        private final AtomicReferenceArray<Histogram> durationsByStatus;
+
+        private RouteMetrics(final String route) {
+            this.route = route;
+            this.requestsByStatus = new AtomicReferenceArray<>(HttpStatus.values().length);
+            this.durationsByStatus = new AtomicReferenceArray<>(HttpStatus.values().length);
+        }
+
+        private Counter requests(final HttpStatus status) {
+            Counter counter = requestsByStatus.get(status.ordinal());
+            if (counter == null) {
+                counter = requests.labels(route, String.valueOf(status.getCode()));
+                requestsByStatus.set(status.ordinal(), counter);
+            }
+            return counter;
+        }
+
+        private Histogram durations(final HttpStatus status) {
+            Histogram histogram = durationsByStatus.get(status.ordinal());
+            if (histogram == null) {
+                histogram = durations.labels(route, String.valueOf(status.getCode()));
+                durationsByStatus.set(status.ordinal(), histogram);
+            }
+            return histogram;
+        }
+    }
+}
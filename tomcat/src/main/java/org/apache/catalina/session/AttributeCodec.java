@@ -0,0 +1,214 @@
+package org.apache.catalina.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of session attributes.
+ * <p>
+ * Strings and boxed primitives, which make up almost every session attribute,
+ * are written with a one byte tag. Any other {@link Serializable} value falls
+ * back to Java serialization, and values that are not serializable are
+ * skipped.
+ * <p>
+ * Attributes that come from another node are deserialized through an
+ * {@link ObjectInputFilter} that only lets the JDK value types and the
+ * configured classes through, within bounds on depth and size; an attribute
+ * of any other class is dropped rather than instantiated.
+ */
+final class AttributeCodec {
+
+    private static final Logger log = LoggerFactory.getLogger(AttributeCodec.class);
+
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte SERIALIZED = 9;
+    private static final byte[] EMPTY = new byte[0];
+    private static final String JDK_VALUE_CLASSES = "java.lang.*;java.util.*;java.time.*;java.math.*";
+    private static final String LIMITS = "maxdepth=20;maxrefs=10000;maxarray=100000;maxbytes=1048576";
+
+    /**
+     * Filter letting only the JDK value types through.
+     */
+    static final ObjectInputFilter DEFAULT_FILTER = filter("");
+
+    /**
+     * @param allowedClasses patterns of the classes allowed besides the JDK
+     *                       value types, separated by <code>;</code>, such as
+     *                       <code>com.example.model.*</code>
+     */
+    static ObjectInputFilter filter(final String allowedClasses) {
+        final String allowed = allowedClasses.isBlank() ? JDK_VALUE_CLASSES : JDK_VALUE_CLASSES + ';' + allowedClasses;
+        return ObjectInputFilter.Config.createFilter(LIMITS + ';' + allowed + ";!*");
+    }
+
+    static byte[] encode(final Map<String, Object> attributes) throws IOException {
+        if (attributes.isEmpty()) {
+            return EMPTY;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        int count = 0;
+        for (final Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            if (encode(out, attribute.getKey(), attribute.getValue())) {
+                count++;
+            }
+        }
+        final byte[] encoded = bytes.toByteArray();
+        ByteBuffer.wrap(encoded).putInt(count);
+        return encoded;
+    }
+
+    private static boolean encode(final DataOutputStream out, final String name, final Object value)
+            throws IOException {
+        if (value instanceof String) {
+            writeString(out, name);
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            writeString(out, name);
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            writeString(out, name);
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            writeString(out, name);
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Serializable) {
+            final byte[] serialized = serialize(value);
+            if (serialized.length == 0) {
+                return false;
+            }
+            writeString(out, name);
+            out.writeByte(SERIALIZED);
+            out.writeInt(serialized.length);
+            out.write(serialized);
+        } else {
+            log.debug("skip non-serializable session attribute: {}", name);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Decode attributes this node encoded itself.
+     */
+    static Map<String, Object> decode(final byte[] encoded) throws IOException {
+        return decode(encoded, null);
+    }
+
+    /**
+     * Decode attributes with serialized values restricted by the filter, or
+     * not at all if it is <code>null</code>.
+     */
+    static Map<String, Object> decode(final byte[] encoded, final ObjectInputFilter filter) throws IOException {
+        if (encoded.length == 0) {
+            return Collections.emptyMap();
+        }
+        final ByteBuffer in = ByteBuffer.wrap(encoded);
+        final int count = in.getInt();
+        // each attribute takes at least a name length and a type
+        if (count < 0 || count > in.remaining() / (Integer.BYTES + 1)) {
+            throw new IOException("session attribute count " + count + " past the end of the attributes");
+        }
+        final Map<String, Object> attributes = new HashMap<>(Math.max(4, count * 2));
+        for (int i = 0; i < count; i++) {
+            final String name = readString(in);
+            final byte type = in.get();
+            switch (type) {
+                case STRING:
+                    attributes.put(name, readString(in));
+                    break;
+                case LONG:
+                    attributes.put(name, in.getLong());
+                    break;
+                case INTEGER:
+                    attributes.put(name, in.getInt());
+                    break;
+                case BOOLEAN:
+                    attributes.put(name, in.get() != 0);
+                    break;
+                case SERIALIZED:
+                    final byte[] serialized = new byte[readLength(in)];
+                    in.get(serialized);
+                    final Object value = deserialize(name, serialized, filter);
+                    if (value != null) {
+                        attributes.put(name, value);
+                    }
+                    break;
+                default:
+                    throw new IOException("unknown session attribute type: " + type);
+            }
+        }
+        return attributes;
+    }
+
+    private static byte[] serialize(final Object value) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            log.warn("skip session attribute that cannot be serialized: {}", value.getClass().getName(), e);
+            return EMPTY;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(final String name, final byte[] serialized, final ObjectInputFilter filter)
+            throws IOException {
+        try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            if (filter != null) {
+                in.setObjectInputFilter(filter);
+            }
+            return in.readObject();
+        } catch (InvalidClassException e) {
+            log.warn("drop session attribute {} rejected by the deserialization filter: {}", name, e.getMessage());
+            return null;
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static int readLength(final ByteBuffer in) throws IOException {
+        final int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("session attribute length " + length + " past the end of the attributes");
+        }
+        return length;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer in) throws IOException {
+        final byte[] bytes = new byte[readLength(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private AttributeCodec() {}
+}
@@ -0,0 +1,308 @@
+package org.apache.catalina.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Persists sessions to a single binary file.
+ * <p>
+ * The file is a log of records, each preceded by its length and its CRC-32: a
+ * <i>save</i> record holds the full state of one session and a <i>remove</i>
+ * record holds only its id. Each snapshot appends records for the sessions
+ * that changed since the last one, and the log is rewritten from the live
+ * sessions once it has grown well past their number. A torn record at the end
+ * of the file, left by a crash in the middle of a write, is cut off on load;
+ * a record that fails its checksum or does not parse is skipped.
+ */
+public class FileStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FileStore.class);
+
+    // "JSE2": records carry a checksum since version 2
+    private static final int MAGIC = 0x4A534532;
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES * 2;
+    private static final byte SAVE = 1;
+    private static final byte REMOVE = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private final Path path;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel channel;
+    private long records;
+
+    public FileStore(final Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Read every session persisted in the file, keyed by id, in the order in
+     * which they were last saved.
+     */
+    public synchronized Map<String, Session> load() throws IOException {
+        if (!Files.exists(path)) {
+            return Collections.emptyMap();
+        }
+        final Map<String, Session> sessions = new LinkedHashMap<>();
+        final long size;
+        long validLength;
+        try (final FileChannel readChannel = FileChannel.open(path, READ)) {
+            size = readChannel.size();
+            final MappedByteBuffer mapped = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mapped.remaining() < Integer.BYTES || mapped.getInt() != MAGIC) {
+                log.warn("ignore session store with unknown format, starting it over: {}", path);
+                truncate(0);
+                return Collections.emptyMap();
+            }
+            records = 0;
+            validLength = mapped.position();
+            while (mapped.remaining() >= RECORD_HEADER_BYTES) {
+                final int start = mapped.position();
+                final int length = mapped.getInt();
+                if (length <= 0 || length > mapped.remaining() - Integer.BYTES) {
+                    break;
+                }
+                final int checksum = mapped.getInt();
+                final ByteBuffer record = mapped.slice();
+                record.limit(length);
+                mapped.position(mapped.position() + length);
+                validLength = mapped.position();
+                records++;
+                if (checksum(record.duplicate()) != checksum) {
+                    log.warn("skip session record at {} in {} failing its checksum", start, path);
+                    continue;
+                }
+                try {
+                    readRecord(record, sessions);
+                } catch (IOException e) {
+                    log.warn("skip unreadable session record at {} in {}: {}", start, path, e.getMessage());
+                }
+            }
+        }
+        if (validLength < size) {
+            log.warn("drop truncated session record at {} in {}", validLength, path);
+            truncate(validLength);
+        }
+        return sessions;
+    }
+
+    /**
+     * Cut the file after its last complete record, so that the records
+     * appended next follow it rather than the remains of a torn one.
+     */
+    private void truncate(final long length) throws IOException {
+        closeChannel();
+        try (final FileChannel out = FileChannel.open(path, WRITE)) {
+            out.truncate(length);
+            out.force(false);
+        }
+    }
+
+    private void readRecord(final ByteBuffer record, final Map<String, Session> sessions) throws IOException {
+        try {
+            final byte type = record.get();
+            final String id = readString(record);
+            if (type == REMOVE) {
+                sessions.remove(id);
+                return;
+            }
+            final long creationTime = record.getLong();
+            final long lastAccessedTime = record.getLong();
+            final int maxInactiveInterval = record.getInt();
+            final byte[] attributes = new byte[readLength(record)];
+            record.get(attributes);
+            sessions.put(id, Session.restore(id, creationTime, lastAccessedTime, maxInactiveInterval,
+                    AttributeCodec.decode(attributes)));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("corrupted session record", e);
+        }
+    }
+
+    /**
+     * @throws IOException if the length is negative or runs past the record
+     */
+    private static int readLength(final ByteBuffer record) throws IOException {
+        final int length = record.getInt();
+        if (length < 0 || length > record.remaining()) {
+            throw new IOException("field length " + length + " past the end of the record");
+        }
+        return length;
+    }
+
+    private static int checksum(final ByteBuffer record) {
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Fill in the checksum of the record written to the target from the
+     * given position on.
+     */
+    private static void seal(final ByteBuffer target, final int start) {
+        final ByteBuffer record = target.duplicate();
+        record.limit(target.position()).position(start + RECORD_HEADER_BYTES);
+        target.putInt(start + Integer.BYTES, checksum(record));
+    }
+
+    /**
+     * Append the changed and removed sessions to the file.
+     */
+    public synchronized void append(final Collection<Session> changed, final Collection<String> removed)
+            throws IOException {
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        final FileChannel out = openForAppend();
+        writeSessions(out, changed, removed);
+        out.force(false);
+    }
+
+    /**
+     * Replace the file with one save record per live session.
+     */
+    public synchronized void rewrite(final Collection<Session> sessions) throws IOException {
+        closeChannel();
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (final FileChannel out = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            buffer.clear();
+            buffer.putInt(MAGIC);
+            records = 0;
+            writeSessions(out, sessions, Collections.emptyList());
+            out.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Return whether the file holds enough superseded records that it should
+     * be rewritten from the given number of live sessions.
+     */
+    public synchronized boolean needsCompaction(final int liveSessions) {
+        return records > Math.max(MIN_COMPACTION_RECORDS, 2L * liveSessions);
+    }
+
+    public synchronized void close() {
+        closeChannel();
+    }
+
+    private FileChannel openForAppend() throws IOException {
+        if (channel == null) {
+            final boolean exists = Files.exists(path) && Files.size(path) > 0;
+            channel = FileChannel.open(path, CREATE, WRITE, APPEND);
+            buffer.clear();
+            if (!exists) {
+                buffer.putInt(MAGIC);
+            }
+        }
+        return channel;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+        channel = null;
+    }
+
+    private void writeSessions(final FileChannel out, final Collection<Session> changed,
+                               final Collection<String> removed) throws IOException {
+        for (final Session session : changed) {
+            session.clearDirty(Session.PERSIST);
+            final long creationTime;
+            final long lastAccessedTime;
+            try {
+                creationTime = session.getCreationTime();
+                lastAccessedTime = session.getLastAccessedTime();
+            } catch (IllegalStateException e) {
+                continue;
+            }
+            final int maxInactiveInterval = session.getMaxInactiveInterval();
+            final byte[] id = session.getId().getBytes(StandardCharsets.UTF_8);
+            final byte[] attributes = AttributeCodec.encode(session.getAttributes());
+            final int length = 1 + Integer.BYTES + id.length + Long.BYTES * 2 + Integer.BYTES * 2 + attributes.length;
+            final ByteBuffer target = reserve(out, RECORD_HEADER_BYTES + length);
+            final int start = target.position();
+            target.putInt(length)
+                    .putInt(0)
+                    .put(SAVE)
+                    .putInt(id.length).put(id)
+                    .putLong(creationTime)
+                    .putLong(lastAccessedTime)
+                    .putInt(maxInactiveInterval)
+                    .putInt(attributes.length).put(attributes);
+            seal(target, start);
+            if (target != buffer) {
+                write(out, target.flip());
+            }
+            records++;
+        }
+        for (final String removedId : removed) {
+            final byte[] id = removedId.getBytes(StandardCharsets.UTF_8);
+            final int length = 1 + Integer.BYTES + id.length;
+            reserve(out, RECORD_HEADER_BYTES + length);
+            final int start = buffer.position();
+            buffer.putInt(length)
+                    .putInt(0)
+                    .put(REMOVE)
+                    .putInt(id.length).put(id);
+            seal(buffer, start);
+            records++;
+        }
+        flush(out);
+    }
+
+    private ByteBuffer reserve(final FileChannel out, final int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return buffer;
+        }
+        flush(out);
+        if (buffer.capacity() >= length) {
+            return buffer;
+        }
+        return ByteBuffer.allocate(length);
+    }
+
+    private void flush(final FileChannel out) throws IOException {
+        write(out, buffer.flip());
+        buffer.clear();
+    }
+
+    private void write(final FileChannel out, final ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            out.write(source);
+        }
+    }
+
+    private static String readString(final ByteBuffer record) throws IOException {
+        final byte[] bytes = new byte[readLength(record)];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
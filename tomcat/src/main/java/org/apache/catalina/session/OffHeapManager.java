@@ -0,0 +1,521 @@
+package org.apache.catalina.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.Manager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A <b>Manager</b> that keeps session state outside the Java heap, for
+ * servers holding so many long-lived sessions that they would otherwise fill
+ * the old generation.
+ * <p>
+ * Each session is one record in a {@link SlabAllocator} block. The heap only
+ * holds a segmented open-addressing index of primitive arrays from the hash
+ * of the session id to the address of its record. {@link #findSession} hands
+ * out a short-lived {@link OffHeapSession} view whose attributes are only
+ * deserialized when the request reads one. Attributes that are not
+ * serializable cannot be stored and are dropped.
+ * <p>
+ * Idle sessions are removed in periodic batches: every background tick sweeps
+ * a few of the index segments, so a full pass is spread over several ticks.
+ * Lookups check the expiry time themselves.
+ */
+public class OffHeapManager implements Manager, Lifecycle {
+
+    private static final long DEFAULT_TICK_MILLIS = 1000L;
+    private static final int DEFAULT_MAX_INACTIVE_INTERVAL = 30 * 60;
+    private static final int SEGMENTS = 64;
+    private static final int SEGMENTS_PER_SWEEP = 8;
+    private static final long EMPTY = -1L;
+
+    private static final int CREATION_TIME = 0;
+    private static final int LAST_ACCESSED_TIME = Long.BYTES;
+    private static final int MAX_INACTIVE_INTERVAL = Long.BYTES * 2;
+    private static final int ATTRIBUTES_LENGTH = MAX_INACTIVE_INTERVAL + Integer.BYTES;
+    private static final int ATTRIBUTES = ATTRIBUTES_LENGTH + Integer.BYTES;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final SlabAllocator allocator = new SlabAllocator();
+    private final LongAdder sessionCounter = new LongAdder();
+    private final LongAdder expiredSessions = new LongAdder();
+    private final Clock clock;
+    private final long tickMillis;
+    private int sweepCursor;
+    private ScheduledExecutorService backgroundProcessor;
+
+    public OffHeapManager() {
+        this(Clock.systemUTC(), DEFAULT_TICK_MILLIS);
+    }
+
+    public OffHeapManager(final Clock clock, final long tickMillis) {
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (backgroundProcessor != null) {
+            return;
+        }
+        backgroundProcessor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "offheap-session-expirer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        backgroundProcessor.scheduleWithFixedDelay(this::backgroundProcess, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (backgroundProcessor != null) {
+            backgroundProcessor.shutdownNow();
+            backgroundProcessor = null;
+        }
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        allocator.clear();
+    }
+
+    @Override
+    public HttpSession createSession() {
+        final String id = UUID.randomUUID().toString();
+        final long now = clock.millis();
+        put(id, now, now, DEFAULT_MAX_INACTIVE_INTERVAL, Collections.emptyMap());
+        sessionCounter.increment();
+        return new OffHeapSession(this, id, true);
+    }
+
+    /**
+     * Copy the state of the given session into this manager. Later changes to
+     * the given object are not seen; use the session returned by
+     * {@link #findSession} instead.
+     */
+    @Override
+    public void add(final HttpSession session) {
+        final Map<String, Object> attributes = new HashMap<>();
+        final Enumeration<String> names = session.getAttributeNames();
+        while (names.hasMoreElements()) {
+            final String name = names.nextElement();
+            attributes.put(name, session.getAttribute(name));
+        }
+        put(session.getId(), session.getCreationTime(), session.getLastAccessedTime(),
+                session.getMaxInactiveInterval(), attributes);
+        sessionCounter.increment();
+    }
+
+    @Override
+    public HttpSession findSession(final String id) {
+        if (id == null) {
+            return null;
+        }
+        final byte[] key = key(id);
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        final long now = clock.millis();
+        synchronized (segment) {
+            final int slot = find(segment, key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            final long address = segment.addresses[slot];
+            if (isExpired(address, now)) {
+                removeSlot(segment, slot);
+                expiredSessions.increment();
+                return null;
+            }
+            final ByteBuffer slab = allocator.slab(address);
+            final int fields = fieldsOffset(address);
+            if (now - slab.getLong(fields + LAST_ACCESSED_TIME) >= Session.ACCESS_RESOLUTION_MILLIS) {
+                slab.putLong(fields + LAST_ACCESSED_TIME, now);
+            }
+        }
+        return new OffHeapSession(this, id, false);
+    }
+
+    @Override
+    public void remove(final HttpSession session) {
+        remove(session.getId());
+    }
+
+    boolean remove(final String id) {
+        final byte[] key = key(id);
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            final int slot = find(segment, key, hash);
+            if (slot < 0) {
+                return false;
+            }
+            removeSlot(segment, slot);
+            return true;
+        }
+    }
+
+    /**
+     * Remove the idle sessions of the next batch of index segments. Called
+     * periodically by the background thread once the manager is started.
+     */
+    public void backgroundProcess() {
+        final long now = clock.millis();
+        for (int i = 0; i < SEGMENTS_PER_SWEEP; i++) {
+            final Segment segment = segments[sweepCursor];
+            sweepCursor = (sweepCursor + 1) % SEGMENTS;
+            synchronized (segment) {
+                int slot = 0;
+                while (slot < segment.addresses.length) {
+                    final long address = segment.addresses[slot];
+                    if (address != EMPTY && isExpired(address, now)) {
+                        removeSlot(segment, slot);
+                        expiredSessions.increment();
+                        continue;
+                    }
+                    slot++;
+                }
+            }
+        }
+    }
+
+    long readLong(final String id, final int field) {
+        final byte[] key = key(id);
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            final long address = addressOf(segment, key, hash, id);
+            return allocator.slab(address).getLong(fieldsOffset(address) + field);
+        }
+    }
+
+    long getCreationTime(final String id) {
+        return readLong(id, CREATION_TIME);
+    }
+
+    long getLastAccessedTime(final String id) {
+        return readLong(id, LAST_ACCESSED_TIME);
+    }
+
+    int getMaxInactiveInterval(final String id) {
+        final byte[] key = key(id);
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            final long address = addressOf(segment, key, hash, id);
+            return allocator.slab(address).getInt(fieldsOffset(address) + MAX_INACTIVE_INTERVAL);
+        }
+    }
+
+    void setMaxInactiveInterval(final String id, final int interval) {
+        final byte[] key = key(id);
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            final long address = addressOf(segment, key, hash, id);
+            allocator.slab(address).putInt(fieldsOffset(address) + MAX_INACTIVE_INTERVAL, interval);
+        }
+    }
+
+    Map<String, Object> getAttributes(final String id) {
+        final byte[] key = key(id);
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        final byte[] encoded;
+        synchronized (segment) {
+            encoded = readAttributes(addressOf(segment, key, hash, id));
+        }
+        try {
+            return AttributeCodec.decode(encoded);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Set or, for a <code>null</code> value, remove one attribute. The record
+     * is rewritten in place when it still fits in its block.
+     */
+    void setAttribute(final String id, final String name, final Object value) {
+        final byte[] key = key(id);
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            final int slot = find(segment, key, hash);
+            if (slot < 0) {
+                throw new IllegalStateException("Session already invalidated: " + id);
+            }
+            final long address = segment.addresses[slot];
+            final ByteBuffer slab = allocator.slab(address);
+            final int fields = fieldsOffset(address);
+            final Map<String, Object> attributes;
+            final byte[] encoded;
+            try {
+                attributes = new HashMap<>(AttributeCodec.decode(readAttributes(address)));
+                if (value == null) {
+                    attributes.remove(name);
+                } else {
+                    attributes.put(name, value);
+                }
+                encoded = AttributeCodec.encode(attributes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            final int oldLength = recordLength(key.length, slab.getInt(fields + ATTRIBUTES_LENGTH));
+            final int newLength = recordLength(key.length, encoded.length);
+            if (SlabAllocator.blockSize(oldLength) == SlabAllocator.blockSize(newLength)) {
+                writeAttributes(address, encoded);
+                return;
+            }
+            segment.addresses[slot] = write(key, slab.getLong(fields + CREATION_TIME),
+                    slab.getLong(fields + LAST_ACCESSED_TIME), slab.getInt(fields + MAX_INACTIVE_INTERVAL), encoded);
+            allocator.free(address, oldLength);
+        }
+    }
+
+    private void put(final String id, final long creationTime, final long lastAccessedTime,
+                     final int maxInactiveInterval, final Map<String, Object> attributes) {
+        final byte[] encoded;
+        try {
+            encoded = AttributeCodec.encode(attributes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final byte[] key = key(id);
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            final long address = write(key, creationTime, lastAccessedTime, maxInactiveInterval, encoded);
+            final int slot = find(segment, key, hash);
+            if (slot >= 0) {
+                final long old = segment.addresses[slot];
+                segment.addresses[slot] = address;
+                free(old);
+                return;
+            }
+            insert(segment, hash, address);
+        }
+    }
+
+    private long write(final byte[] key, final long creationTime, final long lastAccessedTime,
+                       final int maxInactiveInterval, final byte[] attributes) {
+        final long address = allocator.allocate(recordLength(key.length, attributes.length));
+        final ByteBuffer slab = allocator.slab(address).duplicate();
+        slab.position(SlabAllocator.offset(address));
+        slab.putInt(key.length)
+                .put(key)
+                .putLong(creationTime)
+                .putLong(lastAccessedTime)
+                .putInt(maxInactiveInterval)
+                .putInt(attributes.length)
+                .put(attributes);
+        return address;
+    }
+
+    private void writeAttributes(final long address, final byte[] attributes) {
+        final ByteBuffer slab = allocator.slab(address).duplicate();
+        final int fields = fieldsOffset(address);
+        slab.putInt(fields + ATTRIBUTES_LENGTH, attributes.length);
+        slab.position(fields + ATTRIBUTES);
+        slab.put(attributes);
+    }
+
+    private byte[] readAttributes(final long address) {
+        final ByteBuffer slab = allocator.slab(address).duplicate();
+        final int fields = fieldsOffset(address);
+        final byte[] attributes = new byte[slab.getInt(fields + ATTRIBUTES_LENGTH)];
+        slab.position(fields + ATTRIBUTES);
+        slab.get(attributes);
+        return attributes;
+    }
+
+    private boolean isExpired(final long address, final long now) {
+        final ByteBuffer slab = allocator.slab(address);
+        final int fields = fieldsOffset(address);
+        final int interval = slab.getInt(fields + MAX_INACTIVE_INTERVAL);
+        return interval > 0 && slab.getLong(fields + LAST_ACCESSED_TIME) + interval * 1000L <= now;
+    }
+
+    private int fieldsOffset(final long address) {
+        final int offset = SlabAllocator.offset(address);
+        return offset + Integer.BYTES + allocator.slab(address).getInt(offset);
+    }
+
+    private static int recordLength(final int keyLength, final int attributesLength) {
+        return Integer.BYTES + keyLength + ATTRIBUTES + attributesLength;
+    }
+
+    private void free(final long address) {
+        final ByteBuffer slab = allocator.slab(address);
+        final int keyLength = slab.getInt(SlabAllocator.offset(address));
+        allocator.free(address, recordLength(keyLength, slab.getInt(fieldsOffset(address) + ATTRIBUTES_LENGTH)));
+    }
+
+    private long addressOf(final Segment segment, final byte[] key, final int hash, final String id) {
+        final int slot = find(segment, key, hash);
+        if (slot < 0) {
+            throw new IllegalStateException("Session already invalidated: " + id);
+        }
+        return segment.addresses[slot];
+    }
+
+    private int find(final Segment segment, final byte[] key, final int hash) {
+        final int mask = segment.addresses.length - 1;
+        int slot = hash & mask;
+        while (segment.addresses[slot] != EMPTY) {
+            if (segment.hashes[slot] == hash && keyEquals(segment.addresses[slot], key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(final long address, final byte[] key) {
+        final ByteBuffer slab = allocator.slab(address);
+        final int offset = SlabAllocator.offset(address);
+        if (slab.getInt(offset) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (slab.get(offset + Integer.BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(final Segment segment, final int hash, final long address) {
+        if ((segment.size + 1) * 4 > segment.addresses.length * 3) {
+            segment.resize();
+        }
+        segment.place(hash, address);
+        segment.size++;
+    }
+
+    /**
+     * Remove the entry at the given slot and shift the following entries of
+     * its probe sequence back, so that lookups never need tombstones.
+     */
+    private void removeSlot(final Segment segment, final int removed) {
+        free(segment.addresses[removed]);
+        final int mask = segment.addresses.length - 1;
+        int hole = removed;
+        int slot = (hole + 1) & mask;
+        while (segment.addresses[slot] != EMPTY) {
+            final int home = segment.hashes[slot] & mask;
+            final boolean movable = hole <= slot
+                    ? home <= hole || home > slot
+                    : home <= hole && home > slot;
+            if (movable) {
+                segment.addresses[hole] = segment.addresses[slot];
+                segment.hashes[hole] = segment.hashes[slot];
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        segment.addresses[hole] = EMPTY;
+        segment.size--;
+    }
+
+    private Segment segmentFor(final int hash) {
+        return segments[(hash >>> 26) & (SEGMENTS - 1)];
+    }
+
+    private static byte[] key(final String id) {
+        return id.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int hash(final byte[] key) {
+        final int hash = Arrays.hashCode(key);
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public int getActiveSessions() {
+        int active = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                active += segment.size;
+            }
+        }
+        return active;
+    }
+
+    public long getSessionCounter() {
+        return sessionCounter.sum();
+    }
+
+    public long getExpiredSessions() {
+        return expiredSessions.sum();
+    }
+
+    public long getReservedBytes() {
+        return allocator.getReservedBytes();
+    }
+
+    public long getUsedBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    private static final class Segment {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private int[] hashes;
+        private long[] addresses;
+        private int size;
+
+        private Segment() {
+            clear();
+        }
+
+        private void clear() {
+            hashes = new int[INITIAL_CAPACITY];
+            addresses = new long[INITIAL_CAPACITY];
+            Arrays.fill(addresses, EMPTY);
+            size = 0;
+        }
+
+        private void resize() {
+            final int[] oldHashes = hashes;
+            final long[] oldAddresses = addresses;
+            hashes = new int[oldHashes.length * 2];
+            addresses = new long[oldAddresses.length * 2];
+            Arrays.fill(addresses, EMPTY);
+            for (int i = 0; i < oldAddresses.length; i++) {
+                if (oldAddresses[i] != EMPTY) {
+                    place(oldHashes[i], oldAddresses[i]);
+                }
+            }
+        }
+
+        private void place(final int hash, final long address) {
+            final int mask = addresses.length - 1;
+            int slot = hash & mask;
+            while (addresses[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            addresses[slot] = address;
+        }
+    }
+}
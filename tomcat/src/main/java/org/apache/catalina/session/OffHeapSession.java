@@ -0,0 +1,138 @@
+package org.apache.catalina.session;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpSessionContext;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * View of a session stored by an {@link OffHeapManager}.
+ * <p>
+ * A view is meant to live for one request. Attributes are deserialized on the
+ * first read and cached in the view; every change is written through to the
+ * manager immediately.
+ */
+class OffHeapSession implements HttpSession {
+
+    private final OffHeapManager manager;
+    private final String id;
+    private final boolean isNew;
+    private Map<String, Object> attributes;
+
+    OffHeapSession(final OffHeapManager manager, final String id, final boolean isNew) {
+        this.manager = manager;
+        this.id = id;
+        this.isNew = isNew;
+    }
+
+    private Map<String, Object> attributes() {
+        if (attributes == null) {
+            attributes = new HashMap<>(manager.getAttributes(id));
+        }
+        return attributes;
+    }
+
+    @Override
+    public long getCreationTime() {
+        return manager.getCreationTime(id);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        return manager.getLastAccessedTime(id);
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return null;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(final int interval) {
+        manager.setMaxInactiveInterval(id, interval);
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return manager.getMaxInactiveInterval(id);
+    }
+
+    @Override
+    @Deprecated
+    public HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(final String name) {
+        return attributes().get(name);
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(final String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes().keySet());
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        return attributes().keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(final String name, final Object value) {
+        manager.setAttribute(id, name, value);
+        if (attributes != null) {
+            if (value == null) {
+                attributes.remove(name);
+            } else {
+                attributes.put(name, value);
+            }
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(final String name, final Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(final String name) {
+        setAttribute(name, null);
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(final String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        if (!manager.remove(id)) {
+            throw new IllegalStateException("Session already invalidated: " + id);
+        }
+        attributes = Collections.emptyMap();
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+}
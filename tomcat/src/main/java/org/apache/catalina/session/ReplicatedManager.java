@@ -0,0 +1,412 @@
+package org.apache.catalina.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Clock;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A <b>Manager</b> that replicates sessions to the other nodes of a cluster,
+ * so that a session created on one node can be used on any of them without
+ * sticky load balancing.
+ * <p>
+ * Created, changed and invalidated sessions are collected as they happen and
+ * pushed to every peer in one batch per replication interval by a background
+ * thread, never on the request thread. Session ids end with the name of the
+ * node that created them; when a session is not known locally, for example
+ * because its replication is still in flight, it is fetched from that node.
+ * Idle expiry is decided by every node on its own and is not replicated.
+ * <p>
+ * A peer that fails a batch or fetch is left alone for the peer retry
+ * interval, so that a down node, or a forged session id naming it, does not
+ * hold requests up; the batches it misses meanwhile are sent once it is back.
+ * <p>
+ * The replication port listens on the loopback interface unless another bind
+ * address is set, and only accepts connections from the addresses of the
+ * configured peers. Attributes received from peers are deserialized through
+ * an allow-list: only JDK value types and the classes set with
+ * {@link #setAllowedAttributeClasses} are instantiated.
+ */
+public class ReplicatedManager extends StandardManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicatedManager.class);
+
+    private static final long DEFAULT_TICK_MILLIS = 1000L;
+    private static final long DEFAULT_REPLICATION_INTERVAL_MILLIS = 10L;
+    private static final char ROUTE_SEPARATOR = '.';
+    private static final int BACKLOG = 50;
+    private static final long DEFAULT_PEER_RETRY_MILLIS = 5_000L;
+
+    private final String nodeName;
+    private final int port;
+    private final Map<String, ReplicationPeer> peers = new ConcurrentHashMap<>();
+    private final Queue<Session> changedSessions = new ConcurrentLinkedQueue<>();
+    private final Queue<String> removedSessions = new ConcurrentLinkedQueue<>();
+    private final Set<Socket> inboundConnections = ConcurrentHashMap.newKeySet();
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder receivedMessages = new LongAdder();
+    private final LongAdder fetchedSessions = new LongAdder();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private long replicationIntervalMillis = DEFAULT_REPLICATION_INTERVAL_MILLIS;
+    private volatile long peerRetryMillis = DEFAULT_PEER_RETRY_MILLIS;
+    private InetAddress bindAddress = InetAddress.getLoopbackAddress();
+    private volatile ObjectInputFilter attributeFilter = AttributeCodec.DEFAULT_FILTER;
+    private volatile ServerSocket serverSocket;
+    private ScheduledExecutorService sender;
+
+    public ReplicatedManager(final String nodeName, final int port) {
+        this(nodeName, port, Clock.systemUTC(), DEFAULT_TICK_MILLIS);
+    }
+
+    public ReplicatedManager(final String nodeName, final int port, final Clock clock, final long tickMillis) {
+        super(clock, tickMillis);
+        if (nodeName.indexOf(ROUTE_SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Node name must not contain '" + ROUTE_SEPARATOR + "': " + nodeName);
+        }
+        this.nodeName = nodeName;
+        this.port = port;
+    }
+
+    public void addPeer(final String name, final InetSocketAddress address) {
+        peers.put(name, new ReplicationPeer(name, address, peerRetryMillis));
+    }
+
+    /**
+     * Set how long a peer that failed a batch or fetch is left alone before
+     * it is tried again. Meanwhile sessions it owns are not fetched and
+     * batches for it are kept.
+     */
+    public void setPeerRetryMillis(final long peerRetryMillis) {
+        this.peerRetryMillis = peerRetryMillis;
+        peers.values().forEach(peer -> peer.setRetryMillis(peerRetryMillis));
+    }
+
+    /**
+     * Set the address the replication port listens on, such as the one of
+     * the interface facing the other nodes. Defaults to loopback.
+     */
+    public synchronized void setBindAddress(final InetAddress bindAddress) {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Replication is already listening");
+        }
+        this.bindAddress = bindAddress;
+    }
+
+    /**
+     * Let session attributes of these classes, besides the JDK value types,
+     * be replicated from other nodes.
+     *
+     * @param allowedClasses patterns as in {@link ObjectInputFilter.Config#createFilter},
+     *                       separated by <code>;</code>, such as
+     *                       <code>com.example.model.*</code>
+     */
+    public void setAllowedAttributeClasses(final String allowedClasses) {
+        this.attributeFilter = AttributeCodec.filter(allowedClasses);
+    }
+
+    public synchronized void setReplicationIntervalMillis(final long replicationIntervalMillis) {
+        this.replicationIntervalMillis = replicationIntervalMillis;
+    }
+
+    @Override
+    public synchronized void start() {
+        super.start();
+        if (serverSocket != null) {
+            return;
+        }
+        try {
+            serverSocket = new ServerSocket(port, BACKLOG, bindAddress);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final Thread acceptor = new Thread(this::acceptConnections, "replication-acceptor-" + nodeName);
+        acceptor.setDaemon(true);
+        acceptor.start();
+        sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "replication-sender-" + nodeName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleWithFixedDelay(this::replicate, replicationIntervalMillis, replicationIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("session replication of node {} listening on {}:{}", nodeName, bindAddress.getHostAddress(),
+                getPort());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (serverSocket != null) {
+            closeQuietly(serverSocket);
+            serverSocket = null;
+            inboundConnections.forEach(this::closeQuietly);
+            inboundConnections.clear();
+            sender.shutdown();
+            try {
+                sender.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sender = null;
+            peers.values().forEach(ReplicationPeer::close);
+        }
+        changedSessions.clear();
+        removedSessions.clear();
+        super.stop();
+    }
+
+    public int getPort() {
+        final ServerSocket current = serverSocket;
+        return current == null ? port : current.getLocalPort();
+    }
+
+    @Override
+    public HttpSession findSession(final String id) {
+        final HttpSession session = super.findSession(id);
+        if (session != null || id == null) {
+            return session;
+        }
+        final String ownerName = ownerOf(id);
+        final ReplicationPeer owner = ownerName == null ? null : peers.get(ownerName);
+        if (owner == null) {
+            return null;
+        }
+        try {
+            final Session fetched = owner.fetch(id, attributeFilter);
+            if (fetched == null) {
+                return null;
+            }
+            fetchedSessions.increment();
+            install(fetched);
+            return super.findSession(id);
+        } catch (IOException e) {
+            log.warn("failed to fetch session {} from {}: {}", id, owner.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private String ownerOf(final String id) {
+        final int separator = id.lastIndexOf(ROUTE_SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        final String owner = id.substring(separator + 1);
+        return owner.equals(nodeName) ? null : owner;
+    }
+
+    @Override
+    protected String generateSessionId() {
+        return super.generateSessionId() + ROUTE_SEPARATOR + nodeName;
+    }
+
+    @Override
+    int getTrackedChanges() {
+        return super.getTrackedChanges() | Session.REPLICATE;
+    }
+
+    @Override
+    void sessionChanged(final Session session, final int marks) {
+        super.sessionChanged(session, marks);
+        if ((marks & Session.REPLICATE) != 0) {
+            changedSessions.offer(session);
+        }
+    }
+
+    @Override
+    void sessionRemoved(final String id, final boolean expired) {
+        super.sessionRemoved(id, expired);
+        if (!expired) {
+            removedSessions.offer(id);
+        }
+    }
+
+    /**
+     * Push the sessions changed or removed since the previous batch to every
+     * peer, along with the batches a peer missed while it was unavailable.
+     * Called periodically by the sender thread.
+     */
+    void replicate() {
+        try {
+            final byte[] batch = drainBatch();
+            for (final ReplicationPeer peer : peers.values()) {
+                peer.send(batch);
+                if (peer.isResyncDue()) {
+                    peer.resync(encodeOwnSessions());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("failed to replicate sessions", e);
+        }
+    }
+
+    /**
+     * Encode the sessions created by this node, for a peer that missed too
+     * many batches. Sessions removed meanwhile are left on the peer until
+     * they expire there.
+     */
+    private byte[] encodeOwnSessions() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        for (final Session session : liveSessions()) {
+            if (ownerOf(session.getId()) != null) {
+                continue;
+            }
+            final byte[] encoded = ReplicationProtocol.encode(session);
+            if (encoded != null) {
+                out.writeByte(ReplicationProtocol.UPDATE);
+                out.write(encoded);
+                sentMessages.increment();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] drainBatch() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        Session session;
+        while ((session = changedSessions.poll()) != null) {
+            session.clearDirty(Session.REPLICATE);
+            final byte[] encoded = ReplicationProtocol.encode(session);
+            if (encoded != null) {
+                out.writeByte(ReplicationProtocol.UPDATE);
+                out.write(encoded);
+                sentMessages.increment();
+            }
+        }
+        String id;
+        while ((id = removedSessions.poll()) != null) {
+            out.writeByte(ReplicationProtocol.REMOVE);
+            out.writeUTF(id);
+            sentMessages.increment();
+        }
+        return bytes.toByteArray();
+    }
+
+    private void acceptConnections() {
+        final ServerSocket listener = serverSocket;
+        while (listener != null && !listener.isClosed()) {
+            try {
+                final Socket connection = listener.accept();
+                if (!isPeer(connection.getInetAddress())) {
+                    rejectedConnections.increment();
+                    log.warn("reject replication connection from unknown address {}",
+                            connection.getInetAddress().getHostAddress());
+                    closeQuietly(connection);
+                    continue;
+                }
+                connection.setTcpNoDelay(true);
+                inboundConnections.add(connection);
+                final Thread thread = new Thread(() -> serve(connection), "replication-receiver-" + nodeName);
+                thread.setDaemon(true);
+                thread.start();
+            } catch (SocketException e) {
+                return;
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean isPeer(final InetAddress address) {
+        for (final ReplicationPeer peer : peers.values()) {
+            if (address.equals(peer.getAddress().getAddress())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void serve(final Socket connection) {
+        try (connection;
+             final var in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             final var out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            while (true) {
+                final byte type = in.readByte();
+                receivedMessages.increment();
+                if (type == ReplicationProtocol.UPDATE) {
+                    install(ReplicationProtocol.readSession(in, attributeFilter));
+                } else if (type == ReplicationProtocol.REMOVE) {
+                    discard(in.readUTF());
+                } else if (type == ReplicationProtocol.FETCH) {
+                    answerFetch(in.readUTF(), out);
+                } else {
+                    throw new IOException("unknown replication message type: " + type);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            log.debug("replication connection closed: {}", e.getMessage());
+        } catch (IOException e) {
+            log.warn("replication connection failed", e);
+        } finally {
+            inboundConnections.remove(connection);
+        }
+    }
+
+    private void answerFetch(final String id, final DataOutputStream out) throws IOException {
+        final Session session = peek(id);
+        final byte[] encoded = session == null ? null : ReplicationProtocol.encode(session);
+        if (encoded == null) {
+            out.writeByte(ReplicationProtocol.NOT_FOUND);
+        } else {
+            out.writeByte(ReplicationProtocol.FOUND);
+            out.write(encoded);
+        }
+        out.flush();
+    }
+
+    private void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug(e.getMessage(), e);
+        }
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public long getSentMessages() {
+        return sentMessages.sum();
+    }
+
+    public long getReceivedMessages() {
+        return receivedMessages.sum();
+    }
+
+    public long getFetchedSessions() {
+        return fetchedSessions.sum();
+    }
+
+    /**
+     * @return connections refused because they did not come from a peer
+     */
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+}
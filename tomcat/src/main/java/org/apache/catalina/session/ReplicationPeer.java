@@ -0,0 +1,263 @@
+package org.apache.catalina.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connections from a {@link ReplicatedManager} to one other node.
+ * <p>
+ * Batches of changes are pushed over one connection. Fetches take an idle
+ * connection of their own, or open one, so concurrent fetches never wait for
+ * each other nor for a large batch.
+ * <p>
+ * When a batch or fetch fails, the peer is considered unavailable for the
+ * retry interval: fetches fail at once instead of each waiting for the
+ * timeouts, and batches are kept, in order, to be sent again once it is
+ * over. If the kept batches grow past a bound, they are dropped and the peer
+ * is marked for a resync, a copy of the whole state.
+ */
+final class ReplicationPeer {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationPeer.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int READ_TIMEOUT_MILLIS = 2000;
+    private static final int MAX_IDLE_FETCH_CONNECTIONS = 4;
+    private static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+
+    private final String name;
+    private final InetSocketAddress address;
+    private final Queue<FetchConnection> idleFetchConnections = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleFetchCount = new AtomicInteger();
+    private final Deque<byte[]> pendingBatches = new ArrayDeque<>();
+    private volatile long retryNanos;
+    private volatile long unavailableUntil;
+    private volatile boolean closed;
+    private int pendingBytes;
+    private boolean resyncNeeded;
+    private Socket replicationSocket;
+    private DataOutputStream replicationOut;
+
+    ReplicationPeer(final String name, final InetSocketAddress address, final long retryMillis) {
+        this.name = name;
+        this.address = address;
+        this.retryNanos = TimeUnit.MILLISECONDS.toNanos(retryMillis);
+        this.unavailableUntil = System.nanoTime();
+    }
+
+    void setRetryMillis(final long retryMillis) {
+        this.retryNanos = TimeUnit.MILLISECONDS.toNanos(retryMillis);
+    }
+
+    /**
+     * Queue a batch behind the ones not sent yet and send them all, unless
+     * the peer is unavailable.
+     */
+    synchronized void send(final byte[] batch) {
+        if (batch.length > 0 && !resyncNeeded) {
+            pendingBatches.offer(batch);
+            pendingBytes += batch.length;
+            if (pendingBytes > MAX_PENDING_BYTES) {
+                log.warn("dropped {} bytes of batches for {} {}, resync once it is back", pendingBytes, name,
+                        address);
+                pendingBatches.clear();
+                pendingBytes = 0;
+                resyncNeeded = true;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * @return whether batches were dropped and the peer needs the whole
+     * state, and is available to receive it
+     */
+    synchronized boolean isResyncDue() {
+        return resyncNeeded && isAvailable();
+    }
+
+    /**
+     * Send the whole state in place of the batches that were dropped.
+     */
+    synchronized void resync(final byte[] state) {
+        resyncNeeded = false;
+        pendingBatches.offer(state);
+        pendingBytes += state.length;
+        flush();
+        log.info("resync of {} {} with {} bytes {}", name, address, state.length,
+                pendingBatches.isEmpty() ? "sent" : "queued");
+    }
+
+    /**
+     * Send the kept batches in order. A batch that fails half way is sent
+     * again whole, which only installs its sessions once more.
+     */
+    private void flush() {
+        if (pendingBatches.isEmpty() || !isAvailable()) {
+            return;
+        }
+        try {
+            if (replicationSocket == null) {
+                replicationSocket = connect();
+                replicationOut = new DataOutputStream(new BufferedOutputStream(replicationSocket.getOutputStream()));
+            }
+            byte[] batch;
+            while ((batch = pendingBatches.peek()) != null) {
+                replicationOut.write(batch);
+                replicationOut.flush();
+                pendingBatches.poll();
+                pendingBytes -= batch.length;
+            }
+        } catch (IOException e) {
+            log.warn("failed to replicate sessions to {} {}, retry later: {}", name, address, e.getMessage());
+            replicationSocket = close(replicationSocket);
+            markUnavailable();
+        }
+    }
+
+    /**
+     * @throws IOException if the fetch failed, or at once if the peer is
+     *                     unavailable
+     */
+    Session fetch(final String id, final ObjectInputFilter filter) throws IOException {
+        if (!isAvailable()) {
+            throw new IOException("peer unavailable for another "
+                    + TimeUnit.NANOSECONDS.toMillis(unavailableUntil - System.nanoTime()) + " ms");
+        }
+        final FetchConnection idle = idleFetchConnections.poll();
+        if (idle != null) {
+            idleFetchCount.decrementAndGet();
+            try {
+                return fetch(idle, id, filter);
+            } catch (SocketTimeoutException e) {
+                markUnavailable();
+                throw e;
+            } catch (IOException e) {
+                // closed by the peer while idle, such as on a restart
+                log.debug("idle fetch connection to {} broken: {}", name, e.getMessage());
+            }
+        }
+        try {
+            return fetch(new FetchConnection(connect()), id, filter);
+        } catch (IOException e) {
+            markUnavailable();
+            throw e;
+        }
+    }
+
+    private Session fetch(final FetchConnection connection, final String id, final ObjectInputFilter filter)
+            throws IOException {
+        try {
+            final Session session = connection.fetch(id, filter);
+            release(connection);
+            return session;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void release(final FetchConnection connection) {
+        if (closed || idleFetchCount.incrementAndGet() > MAX_IDLE_FETCH_CONNECTIONS) {
+            idleFetchCount.decrementAndGet();
+            connection.close();
+            return;
+        }
+        idleFetchConnections.offer(connection);
+    }
+
+    boolean isAvailable() {
+        return System.nanoTime() - unavailableUntil >= 0;
+    }
+
+    private void markUnavailable() {
+        unavailableUntil = System.nanoTime() + retryNanos;
+    }
+
+    void close() {
+        closed = true;
+        synchronized (this) {
+            replicationSocket = close(replicationSocket);
+        }
+        FetchConnection connection;
+        while ((connection = idleFetchConnections.poll()) != null) {
+            idleFetchCount.decrementAndGet();
+            connection.close();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            return socket;
+        } catch (IOException e) {
+            close(socket);
+            throw e;
+        }
+    }
+
+    private static Socket close(final Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug(e.getMessage(), e);
+            }
+        }
+        return null;
+    }
+
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    private static final class FetchConnection {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        private FetchConnection(final Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private Session fetch(final String id, final ObjectInputFilter filter) throws IOException {
+            out.writeByte(ReplicationProtocol.FETCH);
+            out.writeUTF(id);
+            out.flush();
+            if (in.readByte() == ReplicationProtocol.NOT_FOUND) {
+                return null;
+            }
+            return ReplicationProtocol.readSession(in, filter);
+        }
+
+        private void close() {
+            ReplicationPeer.close(socket);
+        }
+    }
+}
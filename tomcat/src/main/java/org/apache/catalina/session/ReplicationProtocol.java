@@ -0,0 +1,88 @@
+package org.apache.catalina.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+
+/**
+ * Wire format shared by {@link ReplicatedManager} and its peers.
+ * <p>
+ * Every message starts with a one byte type. An <i>update</i> carries the full
+ * state of a created or changed session, a <i>remove</i> carries the id of an
+ * invalidated session and a <i>fetch</i> asks the receiver for one of its
+ * sessions, answered with <i>found</i> and the session state or with
+ * <i>not found</i>.
+ */
+final class ReplicationProtocol {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationProtocol.class);
+
+    static final byte UPDATE = 1;
+    static final byte REMOVE = 2;
+    static final byte FETCH = 3;
+    static final byte FOUND = 4;
+    static final byte NOT_FOUND = 5;
+    static final int MAX_ATTRIBUTES_BYTES = 1024 * 1024;
+
+    /**
+     * Encode the state of the session, or return <code>null</code> if it was
+     * invalidated in the meantime or its attributes are over the size peers
+     * accept.
+     */
+    static byte[] encode(final Session session) throws IOException {
+        final long creationTime;
+        final long lastAccessedTime;
+        try {
+            creationTime = session.getCreationTime();
+            lastAccessedTime = session.getLastAccessedTime();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+        final byte[] attributes = AttributeCodec.encode(session.getAttributes());
+        if (attributes.length > MAX_ATTRIBUTES_BYTES) {
+            log.warn("skip replication of session {} with {} bytes of attributes, over the limit of {}",
+                    session.getId(), attributes.length, MAX_ATTRIBUTES_BYTES);
+            return null;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + attributes.length);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(session.getId());
+        out.writeLong(creationTime);
+        out.writeLong(lastAccessedTime);
+        out.writeInt(session.getMaxInactiveInterval());
+        out.writeInt(attributes.length);
+        out.write(attributes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read the state of a session sent by another node, deserializing its
+     * attributes through the filter.
+     *
+     * @throws IOException if the attributes are longer than
+     *                     {@link #MAX_ATTRIBUTES_BYTES}, after which the
+     *                     stream is out of step and must be closed
+     */
+    static Session readSession(final DataInputStream in, final ObjectInputFilter filter) throws IOException {
+        final String id = in.readUTF();
+        final long creationTime = in.readLong();
+        final long lastAccessedTime = in.readLong();
+        final int maxInactiveInterval = in.readInt();
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_ATTRIBUTES_BYTES) {
+            throw new IOException("session attributes of " + length + " bytes, over the limit of "
+                    + MAX_ATTRIBUTES_BYTES);
+        }
+        final byte[] attributes = new byte[length];
+        in.readFully(attributes);
+        return Session.restore(id, creationTime, lastAccessedTime, maxInactiveInterval,
+                AttributeCodec.decode(attributes, filter));
+    }
+
+    private ReplicationProtocol() {}
+}
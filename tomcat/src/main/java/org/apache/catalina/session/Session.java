@@ -0,0 +1,317 @@
+package org.apache.catalina.session;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpSessionContext;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Standard implementation of the <b>HttpSession</b> interface.
+ * <p>
+ * The last accessed time is updated lazily: a request only writes it when it
+ * moved forward by at least {@link #ACCESS_RESOLUTION_MILLIS}, so a busy
+ * session is not rewritten by every request that touches it. A change of the
+ * last accessed time alone is only marked for replication every
+ * {@link #ACCESS_REPLICATION_MILLIS}, or every quarter of the max inactive
+ * interval if that is shorter: peers only need it to keep their copy from
+ * expiring, and a busy session would otherwise be sent to them every second.
+ * <p>
+ * Every change is reported once to the owning manager for each kind of change
+ * tracking it enables (persistence, replication) until that dirty mark is
+ * cleared, which lets it persist or replicate only the sessions that actually
+ * changed.
+ */
+public class Session implements HttpSession {
+
+    static final long ACCESS_RESOLUTION_MILLIS = 1000L;
+    static final long ACCESS_REPLICATION_MILLIS = 60_000L;
+    static final int PERSIST = 1;
+    static final int REPLICATE = 2;
+    private static final int ALL_CHANGES = PERSIST | REPLICATE;
+    private static final int DEFAULT_MAX_INACTIVE_INTERVAL = 30 * 60;
+    private static final AtomicIntegerFieldUpdater<Session> DIRTY =
+            AtomicIntegerFieldUpdater.newUpdater(Session.class, "dirty");
+
+    private final String id;
+    private final long creationTime;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private volatile long lastAccessedTime;
+    private volatile long replicatedAccessTime;
+    private volatile int maxInactiveInterval;
+    private volatile boolean isNew;
+    private volatile boolean valid;
+    private volatile int dirty;
+    private volatile StandardManager manager;
+    private volatile long scheduledExpiryTime = Long.MAX_VALUE;
+
+    public Session(final String id) {
+        this(id, System.currentTimeMillis());
+    }
+
+    public Session(final String id, final long creationTime) {
+        this.id = id;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = creationTime;
+        this.replicatedAccessTime = creationTime;
+        this.maxInactiveInterval = DEFAULT_MAX_INACTIVE_INTERVAL;
+        this.isNew = true;
+        this.valid = true;
+    }
+
+    static Session restore(final String id, final long creationTime, final long lastAccessedTime,
+                           final int maxInactiveInterval, final Map<String, Object> attributes) {
+        final Session session = new Session(id, creationTime);
+        session.lastAccessedTime = lastAccessedTime;
+        session.replicatedAccessTime = lastAccessedTime;
+        session.maxInactiveInterval = maxInactiveInterval;
+        session.isNew = false;
+        session.attributes.putAll(attributes);
+        return session;
+    }
+
+    void setManager(final StandardManager manager) {
+        this.manager = manager;
+    }
+
+    void access(final long now) {
+        if (isNew) {
+            isNew = false;
+        }
+        if (now - lastAccessedTime >= ACCESS_RESOLUTION_MILLIS) {
+            lastAccessedTime = now;
+            if (now - replicatedAccessTime >= accessReplicationMillis()) {
+                replicatedAccessTime = now;
+                markDirty(ALL_CHANGES);
+            } else {
+                markDirty(ALL_CHANGES & ~REPLICATE);
+            }
+        }
+    }
+
+    private long accessReplicationMillis() {
+        final int interval = maxInactiveInterval;
+        if (interval <= 0) {
+            return ACCESS_REPLICATION_MILLIS;
+        }
+        return Math.min(ACCESS_REPLICATION_MILLIS, interval * 1000L / 4);
+    }
+
+    /**
+     * Clear the given dirty marks before the session state is read, so that a
+     * concurrent change is reported again.
+     */
+    void clearDirty(final int marks) {
+        int current;
+        do {
+            current = dirty;
+            if ((current & marks) == 0) {
+                return;
+            }
+        } while (!DIRTY.compareAndSet(this, current, current & ~marks));
+    }
+
+    void markDirty() {
+        markDirty(ALL_CHANGES);
+    }
+
+    /**
+     * Report the change to the manager for the given kinds of change
+     * tracking only, among those it enables.
+     */
+    private void markDirty(final int marks) {
+        final StandardManager owner = manager;
+        if (owner == null || !valid) {
+            return;
+        }
+        final int tracked = owner.getTrackedChanges() & marks;
+        int current;
+        int missing;
+        do {
+            current = dirty;
+            missing = tracked & ~current;
+            if (missing == 0) {
+                return;
+            }
+        } while (!DIRTY.compareAndSet(this, current, current | missing));
+        owner.sessionChanged(this, missing);
+    }
+
+    void update(final long lastAccessedTime, final int maxInactiveInterval, final Map<String, Object> attributes) {
+        this.lastAccessedTime = Math.max(this.lastAccessedTime, lastAccessedTime);
+        this.maxInactiveInterval = maxInactiveInterval;
+        expiryChanged();
+        this.attributes.keySet().retainAll(attributes.keySet());
+        this.attributes.putAll(attributes);
+    }
+
+    Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Return the time at which this session becomes idle-expired, or
+     * {@link Long#MAX_VALUE} if it never expires.
+     */
+    long getExpiryTime() {
+        final int interval = maxInactiveInterval;
+        if (interval <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return lastAccessedTime + interval * 1000L;
+    }
+
+    /**
+     * Return the expiry time the manager last scheduled this session for, or
+     * {@link Long#MAX_VALUE} if it is not scheduled.
+     */
+    long getScheduledExpiryTime() {
+        return scheduledExpiryTime;
+    }
+
+    void setScheduledExpiryTime(final long scheduledExpiryTime) {
+        this.scheduledExpiryTime = scheduledExpiryTime;
+    }
+
+    boolean isExpired(final long now) {
+        return !valid || getExpiryTime() <= now;
+    }
+
+    void expire() {
+        valid = false;
+        attributes.clear();
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return null;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(final int interval) {
+        this.maxInactiveInterval = interval;
+        expiryChanged();
+        markDirty();
+    }
+
+    private void expiryChanged() {
+        final StandardManager owner = manager;
+        if (owner != null) {
+            owner.expiryChanged(this);
+        }
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    @Deprecated
+    public HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(final String name) {
+        checkValid();
+        return attributes.get(name);
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(final String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        checkValid();
+        return attributes.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(final String name, final Object value) {
+        checkValid();
+        if (value == null) {
+            removeAttribute(name);
+            return;
+        }
+        attributes.put(name, value);
+        markDirty();
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(final String name, final Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(final String name) {
+        checkValid();
+        if (attributes.remove(name) != null) {
+            markDirty();
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(final String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        final StandardManager owner = manager;
+        if (owner != null) {
+            owner.remove(this);
+        }
+        expire();
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+
+    private void checkValid() {
+        if (!valid) {
+            throw new IllegalStateException("Session already invalidated: " + id);
+        }
+    }
+}
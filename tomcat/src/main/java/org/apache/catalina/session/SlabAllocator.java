@@ -0,0 +1,96 @@
+package org.apache.catalina.session;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Slab allocator over direct buffers.
+ * <p>
+ * Memory is reserved in slabs of {@link #SLAB_SIZE} bytes outside the Java
+ * heap. Each slab is cut into blocks of a single power-of-two size class, and
+ * freed blocks go back to the free list of their class, so a block can be
+ * reused without compaction. A block is addressed by a <code>long</code>
+ * holding the slab index in the high half and the offset in the low half.
+ */
+final class SlabAllocator {
+
+    static final int SLAB_SIZE = 1 << 20;
+    private static final int MIN_BLOCK_SHIFT = 6;
+    private static final int MAX_BLOCK_SHIFT = 20;
+    private static final int CLASSES = MAX_BLOCK_SHIFT - MIN_BLOCK_SHIFT + 1;
+
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    private final long[][] freeBlocks = new long[CLASSES][];
+    private final int[] freeCounts = new int[CLASSES];
+    private final long[] carveAddresses = new long[CLASSES];
+    private long usedBytes;
+
+    SlabAllocator() {
+        for (int i = 0; i < CLASSES; i++) {
+            freeBlocks[i] = new long[16];
+            carveAddresses[i] = -1L;
+        }
+    }
+
+    static int blockSize(final int length) {
+        return 1 << (sizeClass(length) + MIN_BLOCK_SHIFT);
+    }
+
+    private static int sizeClass(final int length) {
+        if (length > SLAB_SIZE) {
+            throw new IllegalArgumentException("block too large: " + length + " bytes");
+        }
+        final int shift = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+        return Math.max(shift, MIN_BLOCK_SHIFT) - MIN_BLOCK_SHIFT;
+    }
+
+    synchronized long allocate(final int length) {
+        final int sizeClass = sizeClass(length);
+        final int blockSize = 1 << (sizeClass + MIN_BLOCK_SHIFT);
+        usedBytes += blockSize;
+        if (freeCounts[sizeClass] > 0) {
+            return freeBlocks[sizeClass][--freeCounts[sizeClass]];
+        }
+        long address = carveAddresses[sizeClass];
+        if (address < 0 || offset(address) + blockSize > SLAB_SIZE) {
+            final ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+            grown[slabs.length] = ByteBuffer.allocateDirect(SLAB_SIZE);
+            slabs = grown;
+            address = (long) (grown.length - 1) << 32;
+        }
+        carveAddresses[sizeClass] = address + blockSize;
+        return address;
+    }
+
+    synchronized void free(final long address, final int length) {
+        final int sizeClass = sizeClass(length);
+        usedBytes -= 1 << (sizeClass + MIN_BLOCK_SHIFT);
+        if (freeCounts[sizeClass] == freeBlocks[sizeClass].length) {
+            freeBlocks[sizeClass] = Arrays.copyOf(freeBlocks[sizeClass], freeCounts[sizeClass] * 2);
+        }
+        freeBlocks[sizeClass][freeCounts[sizeClass]++] = address;
+    }
+
+    ByteBuffer slab(final long address) {
+        return slabs[(int) (address >>> 32)];
+    }
+
+    static int offset(final long address) {
+        return (int) address;
+    }
+
+    synchronized long getReservedBytes() {
+        return (long) slabs.length * SLAB_SIZE;
+    }
+
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    synchronized void clear() {
+        slabs = new ByteBuffer[0];
+        Arrays.fill(freeCounts, 0);
+        Arrays.fill(carveAddresses, -1L);
+        usedBytes = 0;
+    }
+}
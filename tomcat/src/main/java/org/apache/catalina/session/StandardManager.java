@@ -0,0 +1,378 @@
+package org.apache.catalina.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.Manager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Standard implementation of the <b>Manager</b> interface that keeps the
+ * active sessions in a concurrent map.
+ * <p>
+ * Idle sessions are found with a {@link TimingWheel}: each session sits in the
+ * bucket of the tick at which it may expire, so a background pass only looks
+ * at the sessions that are due instead of every live session. Lookups also
+ * check the expiry time, so an expired session is never handed out even if
+ * the background pass has not reached it yet. A session whose max inactive
+ * interval is shortened is scheduled again for its earlier expiry; the entry
+ * it leaves behind is dropped when its bucket comes around.
+ * <p>
+ * When a {@link FileStore} is set, the sessions that changed since the last
+ * snapshot are appended to it by the background thread, the whole set is
+ * written on <code>stop()</code> and it is read back on <code>start()</code>,
+ * so a restart does not log every user out.
+ */
+public class StandardManager implements Manager, Lifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(StandardManager.class);
+
+    private static final long DEFAULT_TICK_MILLIS = 1000L;
+    private static final int DEFAULT_WHEEL_SIZE = 4096;
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 10_000L;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final LongAdder sessionCounter = new LongAdder();
+    private final LongAdder expiredSessions = new LongAdder();
+    private final Clock clock;
+    private final long tickMillis;
+    private final TimingWheel<ScheduledExpiry> expiryWheel;
+    private final Queue<Session> changedSessions = new ConcurrentLinkedQueue<>();
+    private final Queue<String> removedSessions = new ConcurrentLinkedQueue<>();
+    private volatile FileStore store;
+    private long snapshotIntervalMillis = DEFAULT_SNAPSHOT_INTERVAL_MILLIS;
+    private ScheduledExecutorService backgroundProcessor;
+
+    public StandardManager() {
+        this(Clock.systemUTC(), DEFAULT_TICK_MILLIS);
+    }
+
+    public StandardManager(final Clock clock, final long tickMillis) {
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.expiryWheel = new TimingWheel<>(tickMillis, DEFAULT_WHEEL_SIZE, clock.millis());
+    }
+
+    public synchronized void setStore(final FileStore store) {
+        this.store = store;
+    }
+
+    public synchronized void setSnapshotIntervalMillis(final long snapshotIntervalMillis) {
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (backgroundProcessor != null) {
+            return;
+        }
+        load();
+        backgroundProcessor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "session-expirer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        backgroundProcessor.scheduleWithFixedDelay(this::backgroundProcess, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        if (store != null) {
+            backgroundProcessor.scheduleWithFixedDelay(this::snapshot, snapshotIntervalMillis, snapshotIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (backgroundProcessor != null) {
+            backgroundProcessor.shutdown();
+            awaitTermination(backgroundProcessor);
+            backgroundProcessor = null;
+        }
+        unload();
+        sessions.values().forEach(Session::expire);
+        sessions.clear();
+        changedSessions.clear();
+        removedSessions.clear();
+    }
+
+    private void awaitTermination(final ScheduledExecutorService executor) {
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void load() {
+        if (store == null) {
+            return;
+        }
+        final long startTime = System.nanoTime();
+        final Map<String, Session> loaded;
+        try {
+            loaded = store.load();
+        } catch (IOException e) {
+            log.error("failed to load sessions, starting empty", e);
+            return;
+        }
+        final long now = clock.millis();
+        for (final Session session : loaded.values()) {
+            if (!session.isExpired(now)) {
+                session.setManager(this);
+                sessions.put(session.getId(), session);
+                schedule(session);
+            }
+        }
+        log.info("restored {} of {} persisted sessions in {} ms", sessions.size(), loaded.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    private void unload() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.rewrite(new ArrayList<>(sessions.values()));
+        } catch (IOException e) {
+            log.error("failed to persist sessions", e);
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Append the sessions changed or removed since the previous snapshot to
+     * the store, compacting it when it holds too many superseded records.
+     * Called periodically by the background thread when a store is set.
+     */
+    public void snapshot() {
+        if (store == null) {
+            return;
+        }
+        final List<Session> changed = drain(changedSessions);
+        final List<String> removed = drain(removedSessions);
+        try {
+            if (store.needsCompaction(sessions.size())) {
+                store.rewrite(new ArrayList<>(sessions.values()));
+                return;
+            }
+            store.append(changed, removed);
+        } catch (IOException e) {
+            log.error("failed to snapshot sessions", e);
+        }
+    }
+
+    private <T> List<T> drain(final Queue<T> queue) {
+        final List<T> drained = new ArrayList<>();
+        T element;
+        while ((element = queue.poll()) != null) {
+            drained.add(element);
+        }
+        return drained;
+    }
+
+    /**
+     * Return the dirty marks a session must report to this manager.
+     */
+    int getTrackedChanges() {
+        return store != null ? Session.PERSIST : 0;
+    }
+
+    void sessionChanged(final Session session, final int marks) {
+        if ((marks & Session.PERSIST) != 0) {
+            changedSessions.offer(session);
+        }
+    }
+
+    /**
+     * Called when a session leaves this manager, either removed explicitly or
+     * expired.
+     */
+    void sessionRemoved(final String id, final boolean expired) {
+        if (store != null) {
+            removedSessions.offer(id);
+        }
+    }
+
+    /**
+     * Install a session whose state was received from elsewhere, replacing the
+     * state of a local copy if there is one. The session is not marked dirty.
+     */
+    void install(final Session session) {
+        final Session existing = sessions.putIfAbsent(session.getId(), session);
+        if (existing == null) {
+            session.setManager(this);
+            schedule(session);
+            return;
+        }
+        existing.update(session.getLastAccessedTime(), session.getMaxInactiveInterval(), session.getAttributes());
+    }
+
+    /**
+     * Return the session with the given id without counting it as an access.
+     */
+    Session peek(final String id) {
+        final Session session = sessions.get(id);
+        if (session == null || session.isExpired(clock.millis())) {
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * @return a copy of the live sessions, for sending the whole state
+     */
+    List<Session> liveSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    /**
+     * Drop the local copy of a session that was removed elsewhere.
+     */
+    void discard(final String id) {
+        final Session session = sessions.remove(id);
+        if (session != null) {
+            session.expire();
+        }
+    }
+
+    @Override
+    public Session createSession() {
+        final Session session = new Session(generateSessionId(), clock.millis());
+        add(session);
+        return session;
+    }
+
+    protected String generateSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public void add(final HttpSession session) {
+        final Session standardSession = toSession(session);
+        standardSession.setManager(this);
+        if (sessions.put(standardSession.getId(), standardSession) == null) {
+            sessionCounter.increment();
+        }
+        standardSession.markDirty();
+        schedule(standardSession);
+    }
+
+    @Override
+    public HttpSession findSession(final String id) {
+        if (id == null) {
+            return null;
+        }
+        final Session session = sessions.get(id);
+        if (session == null) {
+            return null;
+        }
+        final long now = clock.millis();
+        if (session.isExpired(now)) {
+            expire(session);
+            return null;
+        }
+        session.access(now);
+        return session;
+    }
+
+    @Override
+    public void remove(final HttpSession session) {
+        if (sessions.remove(session.getId(), session)) {
+            sessionRemoved(session.getId(), false);
+        }
+    }
+
+    /**
+     * Invalidate all sessions that have expired. Called periodically by the
+     * background thread once the manager is started.
+     */
+    public void backgroundProcess() {
+        final long now = clock.millis();
+        expiryWheel.advanceTo(now, scheduled -> {
+            final Session session = scheduled.session;
+            if (sessions.get(session.getId()) != session || session.getScheduledExpiryTime() != scheduled.expiryTime) {
+                return;
+            }
+            if (session.isExpired(now)) {
+                expire(session);
+                return;
+            }
+            schedule(session);
+        });
+    }
+
+    private void schedule(final Session session) {
+        final long expiryTime = session.getExpiryTime();
+        session.setScheduledExpiryTime(expiryTime);
+        if (expiryTime != Long.MAX_VALUE) {
+            expiryWheel.schedule(new ScheduledExpiry(session, expiryTime), expiryTime);
+        }
+    }
+
+    /**
+     * Schedule the session again if its max inactive interval changed such
+     * that it expires before the time it is scheduled for, or at all.
+     */
+    void expiryChanged(final Session session) {
+        if (sessions.get(session.getId()) == session && session.getExpiryTime() < session.getScheduledExpiryTime()) {
+            schedule(session);
+        }
+    }
+
+    private void expire(final Session session) {
+        if (sessions.remove(session.getId(), session)) {
+            sessionRemoved(session.getId(), true);
+            expiredSessions.increment();
+            session.expire();
+            log.debug("session expired: {}", session.getId());
+        }
+    }
+
+    private Session toSession(final HttpSession session) {
+        if (session instanceof Session) {
+            return (Session) session;
+        }
+        throw new IllegalArgumentException("Unsupported session type: " + session.getClass().getName());
+    }
+
+    @Override
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    public long getSessionCounter() {
+        return sessionCounter.sum();
+    }
+
+    public long getExpiredSessions() {
+        return expiredSessions.sum();
+    }
+
+    /**
+     * A session in the expiry wheel, with the expiry time it was scheduled
+     * for, so that an entry superseded by a later schedule is recognized.
+     */
+    private static final class ScheduledExpiry {
+
+        private final Session session;
+        private final long expiryTime;
+
+        private ScheduledExpiry(final Session session, final long expiryTime) {
+            this.session = session;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
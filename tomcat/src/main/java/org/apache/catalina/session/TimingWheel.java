@@ -0,0 +1,64 @@
+package org.apache.catalina.session;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel used to find idle sessions without scanning all of them.
+ * <p>
+ * An element is placed in the bucket of the tick at which it may expire. When
+ * the wheel advances, only the buckets of the elapsed ticks are drained and the
+ * consumer decides whether each element is really due or must be rescheduled.
+ * Deadlines further away than one revolution are parked in the farthest bucket
+ * and simply rescheduled when it comes around.
+ */
+class TimingWheel<E> {
+
+    private final long tickMillis;
+    private final Queue<E>[] buckets;
+    private final int mask;
+    private volatile long currentTick;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(final long tickMillis, final int wheelSize, final long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        }
+        final int size = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    void schedule(final E element, final long deadlineMillis) {
+        final long now = currentTick;
+        final long deadlineTick = deadlineMillis / tickMillis + (deadlineMillis % tickMillis == 0 ? 0 : 1);
+        final long tick = Math.min(Math.max(deadlineTick, now + 1), now + mask);
+        buckets[(int) (tick & mask)].offer(element);
+    }
+
+    /**
+     * Advance the wheel to the given time and hand every element of the elapsed
+     * buckets to the consumer. Must be called from a single thread at a time.
+     */
+    synchronized void advanceTo(final long nowMillis, final Consumer<E> consumer) {
+        final long targetTick = nowMillis / tickMillis;
+        final long ticks = Math.min(targetTick - currentTick, buckets.length);
+        for (long i = 0; i < ticks; i++) {
+            currentTick++;
+            final Queue<E> bucket = buckets[(int) (currentTick & mask)];
+            E element;
+            while ((element = bucket.poll()) != null) {
+                consumer.accept(element);
+            }
+        }
+        if (currentTick < targetTick) {
+            currentTick = targetTick;
+        }
+    }
+}
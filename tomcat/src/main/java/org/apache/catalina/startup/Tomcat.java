@@ -1,27 +1,269 @@
 package org.apache.catalina.startup;
 
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.Manager;
+import org.apache.catalina.Service;
 import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.RequestClass;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.controller.StaticResources;
+import org.apache.catalina.core.StandardService;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.catalina.valves.AccessLog;
+import org.apache.catalina.valves.ResponseCache;
+import org.apache.catalina.valves.SlowRequestTracer;
+import org.apache.catalina.session.StandardManager;
+import org.apache.tomcat.util.net.SSLHostConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
-public class Tomcat {
+/**
+ * Embedded server: a service with the public connector and any additional
+ * ones, such as an internal port for metrics, sharing one session manager.
+ * <p>
+ * {@link #start()} returns once every connector is accepting connections;
+ * {@link #await()} blocks until the server should shut down.
+ */
+public class Tomcat implements Lifecycle {
 
     private static final Logger log = LoggerFactory.getLogger(Tomcat.class);
 
-    public void start() {
-        var connector = new Connector();
-        connector.start();
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_ACCEPT_COUNT = 100;
+    private static final int DEFAULT_MAX_THREADS = 200;
+    private static final int DEFAULT_CONNECTION_TIMEOUT_MILLIS = 20_000;
 
+    private final RequestMapping requestMapping;
+    private final MetricRegistry metricRegistry;
+    private final List<ConnectorConfig> additionalConnectors = new ArrayList<>();
+    private int port = DEFAULT_PORT;
+    private int maxThreads = DEFAULT_MAX_THREADS;
+    private AccessLog accessLog;
+    private SlowRequestTracer tracer;
+    private boolean http2Enabled;
+    private SSLHostConfig sslHostConfig;
+    private RequestClass staticClass;
+    private RequestClass dynamicClass;
+    private long requestTimeoutMillis;
+    private int connectionTimeoutMillis = DEFAULT_CONNECTION_TIMEOUT_MILLIS;
+    private ResponseCache responseCache;
+    private Manager configuredManager;
+    private volatile Manager manager;
+    private StandardService service;
+
+    public Tomcat() {
+        this(new RequestMapping());
+    }
+
+    public Tomcat(final RequestMapping requestMapping) {
+        this(requestMapping, new MetricRegistry());
+    }
+
+    public Tomcat(final RequestMapping requestMapping, final MetricRegistry metricRegistry) {
+        this.requestMapping = requestMapping;
+        this.metricRegistry = metricRegistry;
+        registerMetrics();
+    }
+
+    /**
+     * @param port port of the public connector, 0 for an ephemeral one
+     */
+    public void setPort(final int port) {
+        this.port = port;
+    }
+
+    public void setMaxThreads(final int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Add a plain HTTP connector with a worker pool of its own, which keeps
+     * serving when the public pool is saturated.
+     */
+    public void addConnector(final int port, final int maxThreads, final RequestMapping requestMapping) {
+        additionalConnectors.add(new ConnectorConfig(port, maxThreads, requestMapping));
+    }
+
+    public void setAccessLog(final AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    public void setTracer(final SlowRequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Serve HTTP/2 on the public connector.
+     */
+    public void setHttp2Enabled(final boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    /**
+     * Terminate TLS on the public connector.
+     */
+    public void setSSLHostConfig(final SSLHostConfig sslHostConfig) {
+        this.sslHostConfig = sslHostConfig;
+    }
+
+    /**
+     * Schedule the requests of the public connector by class; see
+     * {@link Connector#setRequestClasses}.
+     */
+    public void setRequestClasses(final RequestClass staticClass, final RequestClass dynamicClass) {
+        this.staticClass = staticClass;
+        this.dynamicClass = dynamicClass;
+    }
+
+    /**
+     * Give the requests of the public connector a deadline; see
+     * {@link Connector#setRequestTimeoutMillis}.
+     */
+    public void setRequestTimeoutMillis(final long requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    /**
+     * Bound the reads of the connections of every connector; see
+     * {@link Connector#setConnectionTimeoutMillis}.
+     */
+    public void setConnectionTimeoutMillis(final int connectionTimeoutMillis) {
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    /**
+     * Cache responses of the public connector; see {@link ResponseCache}.
+     */
+    public void setResponseCache(final ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Keep sessions in this manager, such as a
+     * {@link org.apache.catalina.session.ReplicatedManager} or an
+     * {@link org.apache.catalina.session.OffHeapManager}, instead of a
+     * {@link StandardManager} of its own. It is started and stopped with the
+     * server.
+     */
+    public synchronized <M extends Manager & Lifecycle> void setManager(final M manager) {
+        if (service != null) {
+            throw new IllegalStateException("already started");
+        }
+        this.configuredManager = manager;
+    }
+
+    /**
+     * Start the session manager and the connectors, concurrently.
+     *
+     * @throws IllegalStateException if a connector cannot be started
+     */
+    @Override
+    public synchronized void start() {
+        if (service != null) {
+            throw new IllegalStateException("already started");
+        }
+        final Manager manager = configuredManager != null ? configuredManager : new StandardManager();
+        lifecycle(manager).start();
+        this.manager = manager;
+        final var service = new StandardService("Tomcat");
+        try {
+            final var connector = createConnector(port, maxThreads, requestMapping, manager);
+            connector.setHttp2Enabled(http2Enabled);
+            connector.setSSLHostConfig(sslHostConfig);
+            connector.setRequestTimeoutMillis(requestTimeoutMillis);
+            connector.setResponseCache(responseCache);
+            if (staticClass != null) {
+                connector.setRequestClasses(staticClass, dynamicClass);
+            }
+            service.addConnector(connector);
+            for (final ConnectorConfig config : additionalConnectors) {
+                service.addConnector(createConnector(config.port, config.maxThreads, config.requestMapping, manager));
+            }
+            service.start();
+        } catch (RuntimeException e) {
+            service.findConnectors().forEach(Connector::stop);
+            lifecycle(manager).stop();
+            throw e;
+        }
+        this.service = service;
+    }
+
+    private static Lifecycle lifecycle(final Manager manager) {
+        // managers set with setManager are bound to be lifecycles too
+        return (Lifecycle) manager;
+    }
+
+    private Connector createConnector(final int port, final int maxThreads, final RequestMapping requestMapping,
+                                      final Manager manager) {
+        final var connector = new Connector(port, DEFAULT_ACCEPT_COUNT, maxThreads, requestMapping, manager,
+                metricRegistry);
+        connector.setAccessLog(accessLog);
+        connector.setTracer(tracer);
+        connector.setConnectionTimeoutMillis(connectionTimeoutMillis);
+        return connector;
+    }
+
+    /**
+     * Block until a key is pressed on the console.
+     */
+    public void await() {
         try {
             // make the application wait until we press any key.
             System.in.read();
         } catch (IOException e) {
             log.error(e.getMessage(), e);
-        } finally {
-            log.info("web server stop.");
-            connector.stop();
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (service == null) {
+            return;
+        }
+        log.info("web server stop.");
+        service.stop();
+        lifecycle(manager).stop();
+        service = null;
+    }
+
+    /**
+     * @return the running service, or <code>null</code> if not started
+     */
+    public synchronized Service getService() {
+        return service;
+    }
+
+    private void registerMetrics() {
+        metricRegistry.gauge("sessions_active", "Sessions not yet expired.", () -> {
+            final Manager current = manager;
+            return current != null ? current.getActiveSessions() : 0;
+        });
+        metricRegistry.functionCounter("static_resource_cache_hits_total",
+                "Static resources served from memory.", StaticResources::getCacheHits);
+        metricRegistry.functionCounter("static_resource_cache_misses_total",
+                "Static resources looked up on the classpath.", StaticResources::getCacheMisses);
+        metricRegistry.gauge("static_resource_cache_hit_ratio", "Share of static resources served from memory.",
+                () -> {
+                    final long hits = StaticResources.getCacheHits();
+                    final long lookups = hits + StaticResources.getCacheMisses();
+                    return lookups == 0 ? 0 : (double) hits / lookups;
+                });
+    }
+
+    private static final class ConnectorConfig {
+
+        private final int port;
+        private final int maxThreads;
+        private final RequestMapping requestMapping;
+
+        private ConnectorConfig(final int port, final int maxThreads, final RequestMapping requestMapping) {
+            this.port = port;
+            this.maxThreads = maxThreads;
+            this.requestMapping = requestMapping;
         }
     }
 }
@@ -0,0 +1,20 @@
+package org.apache.catalina.valves;
+
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpStatus;
+
+import java.net.InetAddress;
+
+/**
+ * Record of the requests served, one entry per response written.
+ * Implementations are called on the request thread, after the response is
+ * written, and must return quickly.
+ */
+public interface AccessLog {
+
+    /**
+     * @param request the request, or <code>null</code> if it could not be
+     *                parsed
+     */
+    void log(InetAddress remoteAddress, HttpRequest request, HttpStatus status, long bytesSent, long durationNanos);
+}
@@ -0,0 +1,34 @@
+package org.apache.catalina.valves;
+
+/**
+ * What the access log keeps of a request until the writer formats it: plain
+ * values only, so that the request itself can be collected at once.
+ */
+final class AccessLogEntry {
+
+    final long timeMillis;
+    final String remoteAddress;
+    final String method;
+    final String path;
+    final String queryString;
+    final String protocol;
+    final int status;
+    final long bytesSent;
+    final long durationNanos;
+    final String[] headers;
+
+    AccessLogEntry(final long timeMillis, final String remoteAddress, final String method, final String path,
+                   final String queryString, final String protocol, final int status, final long bytesSent,
+                   final long durationNanos, final String[] headers) {
+        this.timeMillis = timeMillis;
+        this.remoteAddress = remoteAddress;
+        this.method = method;
+        this.path = path;
+        this.queryString = queryString;
+        this.protocol = protocol;
+        this.status = status;
+        this.bytesSent = bytesSent;
+        this.durationNanos = durationNanos;
+        this.headers = headers;
+    }
+}
@@ -0,0 +1,181 @@
+package org.apache.catalina.valves;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Access log line format, in the pattern syntax of the Apache HTTP server
+ * and Tomcat's <code>AccessLogValve</code>.
+ * <p>
+ * Supported codes: <code>%a</code> and <code>%h</code> remote address,
+ * <code>%l</code> and <code>%u</code> always <code>-</code>,
+ * <code>%t</code> time, <code>%r</code> request line, <code>%m</code>
+ * method, <code>%U</code> path, <code>%q</code> query string,
+ * <code>%H</code> protocol, <code>%s</code> status, <code>%b</code> bytes
+ * sent or <code>-</code>, <code>%B</code> bytes sent, <code>%D</code>
+ * milliseconds and <code>%T</code> seconds taken, <code>%{name}i</code> a
+ * request header and <code>%%</code> a percent sign. The names
+ * <code>common</code> and <code>combined</code> stand for the usual patterns.
+ * <p>
+ * The request line is written with the path only, without the query
+ * string: a form sent with GET, such as a login, carries its fields there,
+ * passwords included. Only <code>%q</code> writes the query string, for
+ * patterns that ask for it explicitly.
+ */
+public final class AccessLogPattern {
+
+    public static final String COMMON = "%h %l %u %t \"%r\" %s %b";
+    public static final String COMBINED = COMMON + " \"%{Referer}i\" \"%{User-Agent}i\"";
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("'['dd/MMM/yyyy:HH:mm:ss Z']'", Locale.US);
+
+    private final List<Element> elements;
+    private final List<String> headerNames;
+    private final ZoneId zone;
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedTime;
+
+    private AccessLogPattern(final List<Element> elements, final List<String> headerNames, final ZoneId zone) {
+        this.elements = elements;
+        this.headerNames = headerNames;
+        this.zone = zone;
+    }
+
+    public static AccessLogPattern compile(final String pattern) {
+        return compile(pattern, ZoneId.systemDefault());
+    }
+
+    public static AccessLogPattern compile(final String pattern, final ZoneId zone) {
+        final String expanded = "common".equals(pattern) ? COMMON : "combined".equals(pattern) ? COMBINED : pattern;
+        final List<Element> elements = new ArrayList<>();
+        final List<String> headerNames = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < expanded.length(); i++) {
+            final char c = expanded.charAt(i);
+            if (c != '%' || i + 1 == expanded.length()) {
+                literal.append(c);
+                continue;
+            }
+            final char code = expanded.charAt(++i);
+            if (code == '%') {
+                literal.append('%');
+                continue;
+            }
+            if (literal.length() > 0) {
+                final String text = literal.toString();
+                elements.add((out, entry, self) -> out.append(text));
+                literal.setLength(0);
+            }
+            if (code == '{') {
+                final int end = expanded.indexOf('}', i);
+                if (end < 0 || end + 1 == expanded.length() || expanded.charAt(end + 1) != 'i') {
+                    throw new IllegalArgumentException("unsupported access log code at " + (i - 1) + ": " + pattern);
+                }
+                final int header = headerNames.size();
+                headerNames.add(expanded.substring(i + 1, end));
+                elements.add((out, entry, self) -> appendOrDash(out, entry.headers[header]));
+                i = end + 1;
+                continue;
+            }
+            elements.add(element(code, pattern));
+        }
+        if (literal.length() > 0) {
+            final String text = literal.toString();
+            elements.add((out, entry, self) -> out.append(text));
+        }
+        return new AccessLogPattern(List.copyOf(elements), List.copyOf(headerNames), zone);
+    }
+
+    private static Element element(final char code, final String pattern) {
+        switch (code) {
+            case 'a':
+            case 'h':
+                return (out, entry, self) -> out.append(entry.remoteAddress);
+            case 'l':
+            case 'u':
+                return (out, entry, self) -> out.append('-');
+            case 't':
+                return (out, entry, self) -> out.append(self.formatTime(entry.timeMillis));
+            case 'r':
+                return (out, entry, self) -> {
+                    if (entry.method == null) {
+                        out.append('-');
+                        return;
+                    }
+                    out.append(entry.method).append(' ').append(entry.path).append(' ').append(entry.protocol);
+                };
+            case 'm':
+                return (out, entry, self) -> appendOrDash(out, entry.method);
+            case 'U':
+                return (out, entry, self) -> appendOrDash(out, entry.path);
+            case 'q':
+                return (out, entry, self) -> {
+                    if (entry.queryString != null) {
+                        out.append('?').append(entry.queryString);
+                    }
+                };
+            case 'H':
+                return (out, entry, self) -> appendOrDash(out, entry.protocol);
+            case 's':
+                return (out, entry, self) -> out.append(entry.status);
+            case 'b':
+                return (out, entry, self) -> {
+                    if (entry.bytesSent == 0) {
+                        out.append('-');
+                    } else {
+                        out.append(entry.bytesSent);
+                    }
+                };
+            case 'B':
+                return (out, entry, self) -> out.append(entry.bytesSent);
+            case 'D':
+                return (out, entry, self) -> out.append(entry.durationNanos / 1_000_000);
+            case 'T':
+                return (out, entry, self) -> out.append(entry.durationNanos / 1_000_000_000);
+            default:
+                throw new IllegalArgumentException("unsupported access log code %" + code + ": " + pattern);
+        }
+    }
+
+    private static void appendOrDash(final StringBuilder out, final String value) {
+        out.append(value != null && !value.isEmpty() ? value : "-");
+    }
+
+    /**
+     * The time is formatted once per second, not per line. Not safe for
+     * concurrent use; only the log writer thread formats.
+     */
+    private String formatTime(final long timeMillis) {
+        final long second = Math.floorDiv(timeMillis, 1000);
+        if (second != cachedSecond) {
+            cachedTime = TIME_FORMAT.format(Instant.ofEpochSecond(second).atZone(zone));
+            cachedSecond = second;
+        }
+        return cachedTime;
+    }
+
+    void format(final StringBuilder out, final AccessLogEntry entry) {
+        for (final Element element : elements) {
+            element.append(out, entry, this);
+        }
+    }
+
+    /**
+     * @return the names of the request headers the pattern prints, in the
+     * order their values are captured
+     */
+    List<String> getHeaderNames() {
+        return headerNames;
+    }
+
+    @FunctionalInterface
+    private interface Element {
+
+        void append(StringBuilder out, AccessLogEntry entry, AccessLogPattern pattern);
+    }
+}
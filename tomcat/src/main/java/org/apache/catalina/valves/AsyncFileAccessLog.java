@@ -0,0 +1,200 @@
+package org.apache.catalina.valves;
+
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access log written to a file by a background thread, off the request
+ * path.
+ * <p>
+ * Request threads only copy the values the pattern needs into an entry and
+ * offer it to a lock-free ring buffer. When the buffer is full the entry is
+ * dropped and counted rather than making the request wait. A single writer
+ * thread drains the buffer, formats the entries and writes them in batches
+ * through a {@link FileChannel}. The file is rotated daily and named
+ * <code>prefix.yyyy-MM-dd.log</code> after the date of the entries it holds.
+ */
+public class AsyncFileAccessLog implements AccessLog, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncFileAccessLog.class);
+
+    public static final int DEFAULT_BUFFER_CAPACITY = 8192;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path directory;
+    private final String prefix;
+    private final AccessLogPattern pattern;
+    private final List<String> headerNames;
+    private final RingBuffer<AccessLogEntry> buffer;
+    private final Clock clock;
+    private final ZoneId zone;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private volatile boolean running = true;
+    private FileChannel channel;
+    private LocalDate currentDate;
+
+    public AsyncFileAccessLog(final Path directory, final String prefix, final String pattern) {
+        this(directory, prefix, AccessLogPattern.compile(pattern), DEFAULT_BUFFER_CAPACITY, Clock.systemDefaultZone());
+    }
+
+    public AsyncFileAccessLog(final Path directory, final String prefix, final AccessLogPattern pattern,
+                              final int bufferCapacity, final Clock clock) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.pattern = pattern;
+        this.headerNames = pattern.getHeaderNames();
+        this.buffer = new RingBuffer<>(bufferCapacity);
+        this.clock = clock;
+        this.zone = clock.getZone();
+        this.writer = new Thread(this::drain, "access-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void log(final InetAddress remoteAddress, final HttpRequest request, final HttpStatus status,
+                    final long bytesSent, final long durationNanos) {
+        if (!running) {
+            return;
+        }
+        final String[] headers = new String[headerNames.size()];
+        if (request != null) {
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = request.getHeaders().get(headerNames.get(i));
+            }
+        }
+        final var entry = new AccessLogEntry(clock.millis(),
+                remoteAddress != null ? remoteAddress.getHostAddress() : "-",
+                request != null ? request.getMethod() : null,
+                request != null ? request.getPath() : null,
+                request != null ? request.getQueryString() : null,
+                request != null ? request.getProtocol() : null,
+                status.getCode(), bytesSent, durationNanos, headers);
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private void drain() {
+        final StringBuilder batch = new StringBuilder(64 * 1024);
+        while (true) {
+            int drained = 0;
+            AccessLogEntry entry;
+            while (drained < MAX_BATCH_SIZE && (entry = buffer.poll()) != null) {
+                final LocalDate date = Instant.ofEpochMilli(entry.timeMillis).atZone(zone).toLocalDate();
+                if (!date.equals(currentDate)) {
+                    write(batch);
+                    rotate(date);
+                }
+                pattern.format(batch, entry);
+                batch.append('\n');
+                drained++;
+            }
+            write(batch);
+            written.add(drained);
+            if (drained == 0) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        closeChannel();
+    }
+
+    private void write(final StringBuilder batch) {
+        if (batch.length() == 0) {
+            return;
+        }
+        final ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        batch.setLength(0);
+        if (channel == null) {
+            return;
+        }
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            log.error("failed to write the access log", e);
+        }
+    }
+
+    private void rotate(final LocalDate date) {
+        closeChannel();
+        currentDate = date;
+        final Path file = directory.resolve(prefix + "." + date + ".log");
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("failed to open the access log {}", file, e);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.error("failed to close the access log", e);
+        }
+        channel = null;
+    }
+
+    /**
+     * Stop taking entries, write those already taken and close the file.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return entries refused because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+}
@@ -0,0 +1,156 @@
+package org.apache.catalina.valves;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent by one request in each phase of its processing.
+ * <p>
+ * A trace is created with its array of phases before the request is read,
+ * so timing a phase only adds to a slot. Phases nest: the session and
+ * repository time are part of the service time, which runs from the end of
+ * parsing to the start of writing, including any asynchronous processing.
+ * <p>
+ * Code that does not see the request, such as a repository, times itself
+ * with {@link #start()} and {@link #end(Phase, long)} against the trace
+ * bound to the current thread while the controller runs. Work the
+ * controller hands to other threads is counted in the service time only.
+ */
+public final class RequestTrace {
+
+    public enum Phase {
+
+        QUEUE, PARSE, SESSION, REPOSITORY, SERVICE, WRITE;
+
+        private final String label = name().toLowerCase();
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final ThreadLocal<RequestTrace> current = new ThreadLocal<>();
+
+    private final long[] phaseNanos = new long[PHASES.length];
+    private long startMillis;
+    private long totalNanos;
+    private String method;
+    private String path;
+    private int status;
+    private boolean slow;
+
+    /**
+     * Make the trace the one {@link #start()} and {@link #end(Phase, long)}
+     * record to on this thread, until {@link #unbind()}.
+     */
+    public static void bind(final RequestTrace trace) {
+        current.set(trace);
+    }
+
+    public static void unbind() {
+        current.remove();
+    }
+
+    /**
+     * @return the start of a phase for {@link #end(Phase, long)}, or 0 if no
+     * trace is bound to this thread
+     */
+    public static long start() {
+        return current.get() != null ? System.nanoTime() : 0;
+    }
+
+    public static void end(final Phase phase, final long start) {
+        final RequestTrace trace = current.get();
+        if (trace != null && start != 0) {
+            trace.add(phase, System.nanoTime() - start);
+        }
+    }
+
+    public void add(final Phase phase, final long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    public void set(final Phase phase, final long nanos) {
+        phaseNanos[phase.ordinal()] = nanos;
+    }
+
+    public long get(final Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Record what the request was, once it is complete.
+     *
+     * @param method <code>null</code> if the request could not be read
+     * @param path   the path of the request, without the query string, which
+     *               may carry credentials
+     */
+    public void complete(final long startMillis, final long totalNanos, final String method, final String path,
+                         final int status) {
+        this.startMillis = startMillis;
+        this.totalNanos = totalNanos;
+        this.method = method;
+        this.path = path;
+        this.status = status;
+    }
+
+    void copyFrom(final RequestTrace other, final boolean slow) {
+        System.arraycopy(other.phaseNanos, 0, phaseNanos, 0, phaseNanos.length);
+        this.startMillis = other.startMillis;
+        this.totalNanos = other.totalNanos;
+        this.method = other.method;
+        this.path = other.path;
+        this.status = other.status;
+        this.slow = slow;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return whether the trace was kept for going over the threshold rather
+     * than by sampling
+     */
+    public boolean isSlow() {
+        return slow;
+    }
+
+    void appendTo(final StringBuilder out) {
+        out.append(Instant.ofEpochMilli(startMillis))
+                .append(' ').append(method != null ? method : "-")
+                .append(' ').append(path != null ? path : "-")
+                .append(' ').append(status);
+        appendMillis(out.append(" total="), totalNanos);
+        for (final Phase phase : PHASES) {
+            appendMillis(out.append(' ').append(phase.label).append('='), phaseNanos[phase.ordinal()]);
+        }
+        out.append(slow ? " slow" : " sampled");
+    }
+
+    private static void appendMillis(final StringBuilder out, final long nanos) {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        out.append(micros / 1000).append('.');
+        final long fraction = micros % 1000;
+        if (fraction < 100) {
+            out.append('0');
+        }
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction).append("ms");
+    }
+}
@@ -0,0 +1,374 @@
+package org.apache.catalina.valves;
+
+import org.apache.catalina.controller.Controller;
+import org.apache.coyote.http11.Deadline;
+import org.apache.coyote.http11.DeadlineExceededException;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+import org.apache.coyote.http11.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micro-cache of the responses of dynamic GET requests, in front of the
+ * controllers of the routes it is enabled for.
+ * <p>
+ * Responses are keyed by method, URI and the values of the configured
+ * request headers, and kept for a short time to live: long enough to absorb
+ * a page hit thousands of times a second, short enough not to need
+ * invalidation. Only anonymous requests are cached: without credentials, a
+ * session cookie, or other cookies unless they are one of the configured
+ * headers. Only <code>200 OK</code> responses that set no cookie, create
+ * no session, are not asynchronous and are not marked
+ * <code>no-store</code> or <code>private</code>.
+ * <p>
+ * A response past its time to live is still served for the
+ * stale-while-revalidate window, while one request for it is run again in
+ * the background. Concurrent misses for the same key are coalesced: one
+ * request runs the controller and the others wait for its response, up to
+ * what their deadline allows, rather than running it too; a request whose
+ * deadline passes while it waits fails with
+ * {@link DeadlineExceededException}.
+ * <p>
+ * The cache is bounded in bytes; when it is full, the oldest entries, the
+ * closest to expiring, are evicted first.
+ */
+public class ResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ResponseCache.class);
+
+    private static final long DEFAULT_TTL_MILLIS = 1_000L;
+    private static final long DEFAULT_STALE_WHILE_REVALIDATE_MILLIS = 5_000L;
+    private static final long MAX_WAIT_MILLIS = 5_000L;
+    // key, header map and array overhead of an entry, roughly
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    private final long maxBytes;
+    private final Executor refresher;
+    private final Clock clock;
+    private final Set<String> routes = ConcurrentHashMap.newKeySet();
+    private volatile List<String> varyHeaders = List.of();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long ttlMillis = DEFAULT_TTL_MILLIS;
+    private long staleWhileRevalidateMillis = DEFAULT_STALE_WHILE_REVALIDATE_MILLIS;
+
+    /**
+     * @param maxBytes  bound of the bodies and headers kept
+     * @param refresher runs the controllers of stale entries again
+     */
+    public ResponseCache(final long maxBytes, final Executor refresher) {
+        this(maxBytes, refresher, Clock.systemUTC());
+    }
+
+    public ResponseCache(final long maxBytes, final Executor refresher, final Clock clock) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.refresher = refresher;
+        this.clock = clock;
+    }
+
+    /**
+     * Cache the responses of a route, as given by
+     * {@link org.apache.catalina.controller.RequestMapping#getRoute}.
+     */
+    public ResponseCache addRoute(final String route) {
+        routes.add(route);
+        return this;
+    }
+
+    /**
+     * Key responses by these request headers too, for routes whose response
+     * depends on them.
+     */
+    public void setVaryHeaders(final List<String> varyHeaders) {
+        this.varyHeaders = List.copyOf(varyHeaders);
+    }
+
+    public void setTtlMillis(final long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @param staleWhileRevalidateMillis how long past its time to live a
+     *                                   response is still served while it
+     *                                   is refreshed, 0 for not at all
+     */
+    public void setStaleWhileRevalidateMillis(final long staleWhileRevalidateMillis) {
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+    }
+
+    /**
+     * @return whether the request is for a cached route and may be answered
+     * from the cache
+     */
+    public boolean isCacheable(final HttpRequest request, final String route) {
+        return routes.contains(route) && request.isGet() && request.getRequestedSessionId() == null
+                && request.getHeader("Authorization") == null
+                && (request.getHeader("Cookie") == null || isVaryHeader("Cookie"));
+    }
+
+    private boolean isVaryHeader(final String name) {
+        for (final String varyHeader : varyHeaders) {
+            if (varyHeader.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Answer the request from the cache, or with the controller, caching its
+     * response if it may be.
+     */
+    public void service(final HttpRequest request, final HttpResponse response, final Controller controller)
+            throws Exception {
+        final String key = key(request);
+        final long now = clock.millis();
+        final Entry entry = entries.get(key);
+        if (entry != null && now < entry.staleUntil) {
+            if (now < entry.freshUntil) {
+                hits.increment();
+            } else {
+                staleHits.increment();
+                if (entry.revalidating.compareAndSet(false, true)) {
+                    revalidateInBackground(entry, request, controller);
+                }
+            }
+            entry.copyTo(response, now);
+            return;
+        }
+        misses.increment();
+        load(key, request, response, controller);
+    }
+
+    private String key(final HttpRequest request) {
+        if (varyHeaders.isEmpty()) {
+            return request.getMethod() + ' ' + request.getUri();
+        }
+        final StringBuilder key = new StringBuilder(request.getMethod()).append(' ').append(request.getUri());
+        for (final String name : varyHeaders) {
+            final String value = request.getHeader(name);
+            key.append('\n').append(name).append(':').append(value != null ? value : "");
+        }
+        return key.toString();
+    }
+
+    /**
+     * Run the controller for the first of concurrent misses, and let the
+     * others wait for its response. They run the controller themselves if
+     * it turns out not to be cacheable, or if it takes longer than the
+     * maximum wait, unless their deadline has passed by then.
+     */
+    private void load(final String key, final HttpRequest request, final HttpResponse response,
+                      final Controller controller) throws Exception {
+        final var flight = new CompletableFuture<Entry>();
+        final CompletableFuture<Entry> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            final Entry shared = await(leader, request.getDeadline());
+            if (shared != null) {
+                coalesced.increment();
+                shared.copyTo(response, clock.millis());
+                return;
+            }
+            if (request.getDeadline() != null) {
+                request.getDeadline().check();
+            }
+            controller.service(request, response);
+            return;
+        }
+        Entry entry = null;
+        try {
+            controller.service(request, response);
+            entry = store(key, request, response);
+        } finally {
+            inFlight.remove(key, flight);
+            flight.complete(entry);
+        }
+    }
+
+    private Entry await(final CompletableFuture<Entry> leader, final Deadline deadline) {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLIS);
+        if (deadline != null) {
+            timeoutNanos = Math.max(0, Math.min(timeoutNanos, deadline.remainingNanos()));
+        }
+        try {
+            return leader.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Run the controller again for a copy of the request, without the
+     * session, trace or deadline of the one that found the entry stale. The
+     * stale entry stays if the new response cannot be cached.
+     */
+    private void revalidateInBackground(final Entry stale, final HttpRequest request, final Controller controller) {
+        final var copy = new HttpRequest(request.getMethod(), request.getUri(), request.getProtocol(),
+                request.getHeaders(), new byte[0]);
+        try {
+            refresher.execute(() -> {
+                try {
+                    final var response = new HttpResponse();
+                    controller.service(copy, response);
+                    if (store(stale.key, copy, response) == null) {
+                        stale.revalidating.set(false);
+                    }
+                } catch (Exception e) {
+                    log.warn("failed to revalidate cached response of {}", copy.getUri(), e);
+                    stale.revalidating.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.debug("revalidation of {} rejected", copy.getUri(), e);
+            stale.revalidating.set(false);
+        }
+    }
+
+    private Entry store(final String key, final HttpRequest request, final HttpResponse response) {
+        if (!isStorable(request, response)) {
+            return null;
+        }
+        final long now = clock.millis();
+        final var entry = new Entry(key, response, now, now + ttlMillis, now + ttlMillis + staleWhileRevalidateMillis);
+        if (entry.size > maxBytes / MAX_ENTRY_FRACTION) {
+            return null;
+        }
+        final Entry previous = entries.put(key, entry);
+        bytes.addAndGet(previous != null ? entry.size - previous.size : entry.size);
+        insertionOrder.offer(entry);
+        queued.incrementAndGet();
+        evictOldest();
+        return entry;
+    }
+
+    private static boolean isStorable(final HttpRequest request, final HttpResponse response) {
+        if (request.isAsyncStarted() || request.isSessionCreated() || response.getStatus() != HttpStatus.OK
+                || !response.getCookies().isEmpty()) {
+            return false;
+        }
+        final String cacheControl = response.getHeader("Cache-Control");
+        return cacheControl == null || !(cacheControl.contains("no-store") || cacheControl.contains("private"));
+    }
+
+    /**
+     * Evict entries in insertion order until the cache fits. Replaced
+     * entries leave stale positions in the queue, which are dropped on the
+     * way; the queue is also kept within twice the number of entries so that
+     * they cannot pile up.
+     */
+    private void evictOldest() {
+        while (bytes.get() > maxBytes || queued.get() > 2 * entries.size()) {
+            final Entry oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (entries.remove(oldest.key, oldest)) {
+                bytes.addAndGet(-oldest.size);
+                evictions.increment();
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return misses answered with the response of a concurrent one
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final HttpStatus status;
+        private final Map<String, String> headers;
+        private final byte[] body;
+        private final long storedAt;
+        private final long freshUntil;
+        private final long staleUntil;
+        private final long size;
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+
+        private Entry(final String key, final HttpResponse response, final long storedAt, final long freshUntil,
+                      final long staleUntil) {
+            this.key = key;
+            this.status = response.getStatus();
+            this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(response.getHeaders()));
+            this.body = response.getBody();
+            this.storedAt = storedAt;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+            long headerBytes = 0;
+            for (final Map.Entry<String, String> header : headers.entrySet()) {
+                headerBytes += header.getKey().length() + header.getValue().length();
+            }
+            this.size = ENTRY_OVERHEAD_BYTES + key.length() + headerBytes + body.length;
+        }
+
+        private void copyTo(final HttpResponse response, final long now) {
+            response.setStatus(status);
+            headers.forEach(response::setHeader);
+            response.setHeader("Age", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(Math.max(0, now - storedAt))));
+            response.setBody(body);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.apache.catalina.valves;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ * <p>
+ * Each slot carries a sequence number telling whose turn it is: a producer
+ * claims the slot at the tail with a compare-and-set on the tail counter,
+ * stores its element and then publishes the slot by advancing its sequence;
+ * the consumer takes published slots in order and hands them back to
+ * producers by advancing the sequence again, one lap ahead. A full queue
+ * refuses the element instead of waiting.
+ */
+final class RingBuffer<T> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    RingBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        final int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the queue is full
+     */
+    boolean offer(final T element) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+            final long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                return false;
+            }
+        }
+        elements[index] = element;
+        sequences.set(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Take the oldest element. Must only be called by the consumer thread.
+     *
+     * @return the element, or <code>null</code> if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        final int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        final T element = (T) elements[index];
+        elements[index] = null;
+        sequences.set(index, head + elements.length);
+        head++;
+        return element;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+}
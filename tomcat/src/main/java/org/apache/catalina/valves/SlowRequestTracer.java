@@ -0,0 +1,104 @@
+package org.apache.catalina.valves;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the phase breakdown of the requests that took longer than a
+ * threshold, and of a random sample of the others, to find out which phase
+ * a latency increase comes from.
+ * <p>
+ * The decision is taken on the request thread once the request is complete
+ * and costs a comparison and, with sampling, a random number. Kept traces
+ * are copied into a ring of slots allocated up front, so the oldest are
+ * overwritten once it is full and the tracer never grows. Only kept traces
+ * take the lock of the ring.
+ */
+public class SlowRequestTracer {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final RequestTrace[] slots;
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder sampled = new LongAdder();
+    private long next;
+
+    /**
+     * @param thresholdNanos requests taking at least this long are kept
+     * @param sampleRate     share of the faster requests kept anyway, between
+     *                       0 and 1
+     * @param capacity       number of traces kept, the latest overwriting the
+     *                       oldest
+     */
+    public SlowRequestTracer(final long thresholdNanos, final double sampleRate, final int capacity) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sample rate must be between 0 and 1: " + sampleRate);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.thresholdNanos = thresholdNanos;
+        this.sampleRate = sampleRate;
+        this.slots = new RequestTrace[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new RequestTrace();
+        }
+    }
+
+    /**
+     * Keep the trace of a complete request if it was slow or is sampled. The
+     * trace is copied, so the caller may reuse it.
+     */
+    public void completed(final RequestTrace trace) {
+        final boolean isSlow = trace.getTotalNanos() >= thresholdNanos;
+        if (isSlow) {
+            slow.increment();
+        } else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            sampled.increment();
+        } else {
+            return;
+        }
+        synchronized (this) {
+            slots[(int) (next++ % slots.length)].copyFrom(trace, isSlow);
+        }
+    }
+
+    /**
+     * @return copies of the traces kept, the latest first
+     */
+    public synchronized List<RequestTrace> getTraces() {
+        final int size = (int) Math.min(next, slots.length);
+        final List<RequestTrace> traces = new ArrayList<>(size);
+        for (long i = next - 1; i >= next - size; i--) {
+            final RequestTrace copy = new RequestTrace();
+            final RequestTrace slot = slots[(int) (i % slots.length)];
+            copy.copyFrom(slot, slot.isSlow());
+            traces.add(copy);
+        }
+        return traces;
+    }
+
+    /**
+     * @return the traces kept, one per line, the latest first
+     */
+    public String dump() {
+        final StringBuilder out = new StringBuilder();
+        for (final RequestTrace trace : getTraces()) {
+            trace.appendTo(out);
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    public long getSlowRequests() {
+        return slow.sum();
+    }
+
+    public long getSampledRequests() {
+        return sampled.sum();
+    }
+}
@@ -0,0 +1,143 @@
+package org.apache.coyote.http11;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Completion handle of a request whose response is produced after the
+ * controller returns.
+ * <p>
+ * A controller that calls {@link HttpRequest#startAsync(HttpResponse)}
+ * releases the worker thread as soon as it returns. The response is written
+ * once {@link #complete()} is called, from whatever thread finished the work;
+ * until then the request and response belong to that work and must not be
+ * touched by the controller any more. Work that finishes on a thread of its
+ * own, such as a pool for hashing, continues on a worker with
+ * {@link #start(Runnable)} rather than tie that thread up with the rest of
+ * the request.
+ * <p>
+ * A request that passes its {@link Deadline} is cancelled: it is answered
+ * without the response the work was producing, and whatever the work does
+ * afterwards, completing included, is ignored. Work that can be stopped
+ * says how with {@link #onCancel(Runnable)}.
+ */
+public class AsyncContext {
+
+    private final HttpRequest request;
+    private final HttpResponse response;
+    private final Executor executor;
+    private Runnable completionHandler;
+    private Runnable cancellationHandler;
+    private boolean completed;
+    private boolean cancelled;
+
+    AsyncContext(final HttpRequest request, final HttpResponse response, final Executor executor) {
+        this.request = request;
+        this.response = response;
+        this.executor = executor;
+    }
+
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    public HttpResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Run the task on the worker pool of the connector, or on the calling
+     * thread if the pool no longer takes tasks because it is stopping.
+     */
+    public void start(final Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Signal that the response is ready to be written. Calls after the first
+     * are ignored.
+     */
+    public void complete() {
+        final Runnable handler;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            handler = completionHandler;
+        }
+        if (handler != null) {
+            handler.run();
+        }
+    }
+
+    public synchronized boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Give up on the response: stop the work and complete at once.
+     *
+     * @return whether the context was cancelled, false if it had completed
+     */
+    public boolean cancel() {
+        final Runnable cancellation;
+        final Runnable completion;
+        synchronized (this) {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            cancelled = true;
+            cancellation = cancellationHandler;
+            completion = completionHandler;
+        }
+        if (cancellation != null) {
+            cancellation.run();
+        }
+        if (completion != null) {
+            completion.run();
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the context was cancelled, in which case the response
+     * is not written
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Set what stops the work when the context is cancelled, such as
+     * cancelling the future it waits on. Runs at once if it already was.
+     */
+    public void onCancel(final Runnable handler) {
+        synchronized (this) {
+            cancellationHandler = handler;
+            if (!cancelled) {
+                return;
+            }
+        }
+        handler.run();
+    }
+
+    /**
+     * Set what writes the response. Runs at once if the context is already
+     * complete.
+     */
+    public void onComplete(final Runnable handler) {
+        synchronized (this) {
+            completionHandler = handler;
+            if (!completed) {
+                return;
+            }
+        }
+        handler.run();
+    }
+}
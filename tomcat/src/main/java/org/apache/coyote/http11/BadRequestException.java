@@ -0,0 +1,17 @@
+package org.apache.coyote.http11;
+
+/**
+ * Thrown when a part of the request read only once a controller asks for
+ * it, such as its parameters or a deferred body, turns out malformed; the
+ * request is answered with <code>400 Bad Request</code>.
+ */
+public class BadRequestException extends IllegalArgumentException {
+
+    public BadRequestException(final String message) {
+        super(message);
+    }
+
+    public BadRequestException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
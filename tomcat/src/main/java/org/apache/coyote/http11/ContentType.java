@@ -0,0 +1,36 @@
+package org.apache.coyote.http11;
+
+import java.util.Arrays;
+
+public enum ContentType {
+
+    HTML("html", "text/html;charset=utf-8"),
+    CSS("css", "text/css;charset=utf-8"),
+    JS("js", "application/javascript;charset=utf-8"),
+    SVG("svg", "image/svg+xml"),
+    ICO("ico", "image/x-icon"),
+    PNG("png", "image/png"),
+    JSON("json", "application/json;charset=utf-8"),
+    PLAIN("txt", "text/plain;charset=utf-8"),
+    PROMETHEUS("prom", "text/plain;version=0.0.4;charset=utf-8");
+
+    private final String extension;
+    private final String value;
+
+    ContentType(final String extension, final String value) {
+        this.extension = extension;
+        this.value = value;
+    }
+
+    public static ContentType fromPath(final String path) {
+        final String extension = path.substring(path.lastIndexOf('.') + 1);
+        return Arrays.stream(values())
+                .filter(contentType -> contentType.extension.equalsIgnoreCase(extension))
+                .findFirst()
+                .orElse(PLAIN);
+    }
+
+    public String getValue() {
+        return value;
+    }
+}
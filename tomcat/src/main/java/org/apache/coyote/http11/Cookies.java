@@ -0,0 +1,171 @@
+package org.apache.coyote.http11;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Cookies of a request, parsed lazily from the raw bytes of its
+ * <code>Cookie</code> header.
+ * <p>
+ * Nothing is parsed up front. {@link #get(String)} scans the header once and
+ * only decodes the value of the cookie it is looking for, which is all the
+ * session lookup needs; iterating decodes one cookie at a time.
+ */
+public class Cookies implements Iterable<Cookie> {
+
+    public static final String SESSION_COOKIE_NAME = "JSESSIONID";
+
+    private static final Cookies EMPTY = new Cookies(new byte[0], 0, 0);
+
+    private final byte[] bytes;
+    private final int start;
+    private final int end;
+
+    public Cookies(final byte[] bytes, final int start, final int end) {
+        this.bytes = bytes;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static Cookies empty() {
+        return EMPTY;
+    }
+
+    public static Cookies from(final HttpHeaders headers) {
+        final int index = headers.indexOf("Cookie");
+        if (index < 0) {
+            return EMPTY;
+        }
+        return new Cookies(headers.getRaw(), headers.getValueStart(index), headers.getValueEnd(index));
+    }
+
+    public String getSessionId() {
+        return get(SESSION_COOKIE_NAME);
+    }
+
+    /**
+     * Return the value of the first cookie with the given name, or
+     * <code>null</code>.
+     */
+    public String get(final String name) {
+        final Cursor cursor = new Cursor();
+        while (cursor.next()) {
+            if (cursor.nameEquals(name)) {
+                return cursor.value();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterator<Cookie> iterator() {
+        final Cursor cursor = new Cursor();
+        return new Iterator<>() {
+            private boolean fetched;
+            private boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!fetched) {
+                    hasNext = cursor.next();
+                    fetched = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Cookie next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                fetched = false;
+                return new Cookie(cursor.name(), cursor.value());
+            }
+        };
+    }
+
+    /**
+     * Walks the <code>name=value</code> pairs separated by semicolons,
+     * remembering the bounds of the current pair.
+     */
+    private final class Cursor {
+
+        private int position = start;
+        private int nameStart;
+        private int nameEnd;
+        private int valueStart;
+        private int valueEnd;
+
+        private boolean next() {
+            while (position < end) {
+                final int pairEnd = indexOf((byte) ';', position);
+                final int equals = indexOf((byte) '=', position, pairEnd);
+                nameStart = skipSpaces(position, equals);
+                nameEnd = trimSpaces(nameStart, equals);
+                valueStart = skipSpaces(Math.min(equals + 1, pairEnd), pairEnd);
+                valueEnd = trimSpaces(valueStart, pairEnd);
+                position = pairEnd + 1;
+                if (nameEnd > nameStart) {
+                    unquote();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void unquote() {
+            if (valueEnd - valueStart >= 2 && bytes[valueStart] == '"' && bytes[valueEnd - 1] == '"') {
+                valueStart++;
+                valueEnd--;
+            }
+        }
+
+        private boolean nameEquals(final String name) {
+            if (nameEnd - nameStart != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                if (bytes[nameStart + i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String name() {
+            return new String(bytes, nameStart, nameEnd - nameStart, StandardCharsets.ISO_8859_1);
+        }
+
+        private String value() {
+            return new String(bytes, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1);
+        }
+
+        private int indexOf(final byte target, final int from) {
+            return indexOf(target, from, end);
+        }
+
+        private int indexOf(final byte target, final int from, final int to) {
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == target) {
+                    return i;
+                }
+            }
+            return to;
+        }
+
+        private int skipSpaces(int from, final int to) {
+            while (from < to && bytes[from] == ' ') {
+                from++;
+            }
+            return from;
+        }
+
+        private int trimSpaces(final int from, int to) {
+            while (to > from && bytes[to - 1] == ' ') {
+                to--;
+            }
+            return to;
+        }
+    }
+}
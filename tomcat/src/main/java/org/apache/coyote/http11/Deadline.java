@@ -0,0 +1,111 @@
+package org.apache.coyote.http11;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time by which a request must be answered, past which nobody is expected
+ * to read the response any more.
+ * <p>
+ * The deadline of a request runs from the accept of its connection, so the
+ * time it waited for a worker is spent from its budget. Requests that expire
+ * before a controller is called are answered at once, and asynchronous
+ * requests still running when it passes are cancelled. While the controller
+ * runs, the deadline is also bound to the worker thread, so that code with
+ * no access to the request, such as a repository, can check what is left of
+ * it with {@link #current()}.
+ */
+public final class Deadline {
+
+    /**
+     * Header a client can shorten the deadline of its request with, in
+     * milliseconds.
+     */
+    public static final String HEADER = "X-Request-Timeout";
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    private final long expiresAt;
+
+    private Deadline(final long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @param nanoTime value of {@link System#nanoTime()} the deadline
+     *                 expires at
+     */
+    public static Deadline at(final long nanoTime) {
+        return new Deadline(nanoTime);
+    }
+
+    public static Deadline after(final long timeout, final TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Bind the deadline of the request being serviced to this thread, until
+     * {@link #unbind()}.
+     */
+    public static void bind(final Deadline deadline) {
+        current.set(deadline);
+    }
+
+    public static void unbind() {
+        current.remove();
+    }
+
+    /**
+     * @return the deadline of the request serviced on this thread, or
+     * <code>null</code> if it has none
+     */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    /**
+     * Bound a timeout of the caller's by the deadline of the current
+     * request, if any.
+     *
+     * @return the smaller of the timeout and the time left, at least 0
+     */
+    public static long remainingMillis(final long timeoutMillis) {
+        final Deadline deadline = current.get();
+        if (deadline == null) {
+            return timeoutMillis;
+        }
+        return Math.max(0, Math.min(timeoutMillis, TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos())));
+    }
+
+    /**
+     * @throws DeadlineExceededException if the current request, if any, is
+     *                                   past its deadline
+     */
+    public static void checkCurrent() {
+        final Deadline deadline = current.get();
+        if (deadline != null) {
+            deadline.check();
+        }
+    }
+
+    /**
+     * @return time left, negative once expired
+     */
+    public long remainingNanos() {
+        return expiresAt - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public void check() {
+        final long remaining = remainingNanos();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException(
+                    "request deadline passed " + TimeUnit.NANOSECONDS.toMillis(-remaining) + " ms ago");
+        }
+    }
+}
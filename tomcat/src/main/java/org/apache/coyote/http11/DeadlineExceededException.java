@@ -0,0 +1,14 @@
+package org.apache.coyote.http11;
+
+/**
+ * Thrown by work that gives up because the deadline of its request passed;
+ * the request is answered with <code>503 Service Unavailable</code>.
+ *
+ * @see Deadline
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(final String message) {
+        super(message);
+    }
+}
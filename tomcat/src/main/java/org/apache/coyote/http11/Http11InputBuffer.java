@@ -0,0 +1,133 @@
+package org.apache.coyote.http11;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Buffers the bytes read from a connection so that the request head can be
+ * scanned in place and the bytes that follow it, the body or the next request
+ * on the connection, are not lost.
+ */
+public class Http11InputBuffer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+
+    private final InputStream inputStream;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private long bytesRead;
+
+    public Http11InputBuffer(final InputStream inputStream) {
+        this.inputStream = inputStream;
+        this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Read the request line and headers, up to and including the empty line
+     * that ends them.
+     *
+     * @return the head without its final CRLF, or <code>null</code> if the
+     *         connection was closed before a new request started
+     */
+    public byte[] readHead() throws IOException {
+        int scanned = 0;
+        while (true) {
+            skipLeadingLineBreaks();
+            final int end = findHeadEnd(position + scanned);
+            if (end >= 0) {
+                final byte[] head = Arrays.copyOfRange(buffer, position, end);
+                position = end + 2;
+                return head;
+            }
+            scanned = Math.max(0, limit - position - 3);
+            if (!fill()) {
+                if (position == limit) {
+                    return null;
+                }
+                throw new IllegalArgumentException("incomplete request head");
+            }
+        }
+    }
+
+    private void skipLeadingLineBreaks() {
+        while (position < limit && (buffer[position] == '\r' || buffer[position] == '\n')) {
+            position++;
+        }
+    }
+
+    private int findHeadEnd(final int from) {
+        for (int i = from; i + 3 < limit; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n' && buffer[i + 2] == '\r' && buffer[i + 3] == '\n') {
+                return i + 2;
+            }
+        }
+        return -1;
+    }
+
+    public byte[] readBody(final int length) throws IOException {
+        final byte[] body = new byte[length];
+        int read = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, body, 0, read);
+        position += read;
+        while (read < length) {
+            final int count = inputStream.read(body, read, length - read);
+            if (count < 0) {
+                throw new BadRequestException("incomplete request body");
+            }
+            bytesRead += count;
+            read += count;
+        }
+        return body;
+    }
+
+    /**
+     * Read bytes that follow the request head, those already buffered first,
+     * for protocols that take over the connection after it.
+     *
+     * @return the number of bytes read, or -1 at the end of the stream
+     */
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (position < limit) {
+            final int count = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+        final int count = inputStream.read(bytes, offset, length);
+        if (count > 0) {
+            bytesRead += count;
+        }
+        return count;
+    }
+
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            if (buffer.length >= MAX_HEAD_SIZE) {
+                throw new IllegalArgumentException("request head too large");
+            }
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        final int count = inputStream.read(buffer, limit, buffer.length - limit);
+        if (count < 0) {
+            return false;
+        }
+        bytesRead += count;
+        limit += count;
+        return true;
+    }
+
+    /**
+     * @return bytes read from the connection so far
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+}
@@ -1,47 +1,495 @@
 package org.apache.coyote.http11;
 
 import nextstep.jwp.exception.UncheckedServletException;
+import org.apache.catalina.Manager;
+import org.apache.catalina.connector.ConnectionCloseEvent;
+import org.apache.catalina.connector.WeightedFairQueue;
+import org.apache.catalina.controller.Controller;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.controller.StaticResources;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.catalina.metrics.RequestMetrics;
+import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.valves.AccessLog;
+import org.apache.catalina.valves.RequestTrace;
+import org.apache.catalina.valves.ResponseCache;
+import org.apache.catalina.valves.SlowRequestTracer;
 import org.apache.coyote.Processor;
+import org.apache.coyote.http2.Http2Connection;
+import org.apache.tomcat.util.net.SecureSocket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Http11Processor implements Runnable, Processor {
 
     private static final Logger log = LoggerFactory.getLogger(Http11Processor.class);
 
+    private static final String INVALID_ROUTE = "invalid";
+
     private final Socket connection;
+    private final RequestMapping requestMapping;
+    private final Manager manager;
+    private final Executor asyncExecutor;
+    private final RequestMetrics requestMetrics;
+    // processors are created by the connector right after the accept
+    private final long acceptTime = System.nanoTime();
+    private final ConnectionCloseEvent closeEvent = new ConnectionCloseEvent();
+    private AccessLog accessLog;
+    private SlowRequestTracer tracer;
+    private RequestTrace trace;
+    private boolean http2Enabled;
+    private Executor http2Executor;
+    private WeightedFairQueue fairQueue;
+    private long requestTimeoutMillis;
+    private ScheduledExecutorService deadlineTimer;
+    private ResponseCache responseCache;
+    private Http11InputBuffer inputBuffer;
+    private String path;
+    private HttpStatus status;
+    private long startTime;
+    private long parseTime;
+    private long schedulingTime;
+    private long serviceTime;
+    private long writeTime;
+    private long bytesWritten;
 
     public Http11Processor(final Socket connection) {
+        this(connection, new RequestMapping(), new StandardManager());
+    }
+
+    public Http11Processor(final Socket connection, final RequestMapping requestMapping, final Manager manager) {
+        this(connection, requestMapping, manager, Runnable::run);
+    }
+
+    /**
+     * @param asyncExecutor runs the writing of responses completed
+     *                      asynchronously, so that it does not happen on the
+     *                      thread that completed them
+     */
+    public Http11Processor(final Socket connection, final RequestMapping requestMapping, final Manager manager,
+                           final Executor asyncExecutor) {
+        this(connection, requestMapping, manager, asyncExecutor, new RequestMetrics(new MetricRegistry()));
+    }
+
+    public Http11Processor(final Socket connection, final RequestMapping requestMapping, final Manager manager,
+                           final Executor asyncExecutor, final RequestMetrics requestMetrics) {
         this.connection = connection;
+        this.requestMapping = requestMapping;
+        this.manager = manager;
+        this.asyncExecutor = asyncExecutor;
+        this.requestMetrics = requestMetrics;
+    }
+
+    public void setAccessLog(final AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    public void setTracer(final SlowRequestTracer tracer) {
+        this.tracer = tracer;
+        this.trace = tracer != null ? new RequestTrace() : null;
+    }
+
+    /**
+     * Serve HTTP/2 on connections that start with its preface or upgrade to
+     * h2c. The streams are run by the HTTP/2 executor, or the async executor
+     * if there is none, which must not run them on the calling thread.
+     */
+    public void setHttp2Enabled(final boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    /**
+     * Run the streams of HTTP/2 connections on this executor rather than on
+     * the async executor, whose threads the connections themselves hold.
+     */
+    public void setHttp2Executor(final Executor http2Executor) {
+        this.http2Executor = http2Executor;
+    }
+
+    /**
+     * Hand requests, once read, back to the worker pool to be serviced in
+     * the turn of their class rather than on the thread that read them. The
+     * async executor must be the pool the queue belongs to.
+     */
+    public void setFairQueue(final WeightedFairQueue fairQueue) {
+        this.fairQueue = fairQueue;
+    }
+
+    /**
+     * Give requests a deadline, counted from the accept of the connection,
+     * which clients may shorten with the {@link Deadline#HEADER} header.
+     *
+     * @param requestTimeoutMillis 0 for none but the one a client asks for
+     * @param deadlineTimer        cancels asynchronous requests at their
+     *                             deadline; without it they are not
+     */
+    public void setRequestTimeout(final long requestTimeoutMillis, final ScheduledExecutorService deadlineTimer) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.deadlineTimer = deadlineTimer;
+    }
+
+    /**
+     * Answer the requests of the routes the cache is enabled for from it,
+     * in front of their controllers.
+     */
+    public void setResponseCache(final ResponseCache responseCache) {
+        this.responseCache = responseCache;
     }
 
     @Override
     public void run() {
-        log.info("connect host: {}, port: {}", connection.getInetAddress(), connection.getPort());
+        log.debug("connect host: {}, port: {}", connection.getInetAddress(), connection.getPort());
         process(connection);
     }
 
     @Override
     public void process(final Socket connection) {
-        try (final var inputStream = connection.getInputStream();
-             final var outputStream = connection.getOutputStream()) {
+        final OutputStream outputStream;
+        final HttpRequest request;
+        final HttpResponse response = new HttpResponse();
+        closeEvent.begin();
+        startTime = System.nanoTime();
+        requestMetrics.connectionOpened();
+        try {
+            outputStream = connection.getOutputStream();
+            inputBuffer = new Http11InputBuffer(connection.getInputStream());
+            try {
+                request = parse(inputBuffer);
+            } catch (SocketTimeoutException e) {
+                timedOut(response, outputStream);
+                return;
+            } catch (PayloadTooLargeException e) {
+                log.warn("request too large: {}", e.getMessage());
+                StaticResources.renderError(response, HttpStatus.PAYLOAD_TOO_LARGE);
+                response.setHeader("Connection", "close");
+                write(response, outputStream);
+                completed(INVALID_ROUTE, null, response);
+                close();
+                return;
+            } catch (IllegalArgumentException e) {
+                log.warn("bad request: {}", e.getMessage());
+                StaticResources.renderError(response, HttpStatus.BAD_REQUEST);
+                write(response, outputStream);
+                completed(INVALID_ROUTE, null, response);
+                close();
+                return;
+            }
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            close();
+            return;
+        }
+        if (request == null) {
+            close();
+            return;
+        }
+        // h2c is cleartext only, RFC 7540 section 3.3: over TLS HTTP/2 is chosen with ALPN
+        if (http2Enabled && (Http2Connection.isPreface(request) || (Http2Connection.isUpgrade(request)
+                && !(connection instanceof SecureSocket) && !request.isBodyDeferred()))) {
+            serveHttp2(request, outputStream);
+            return;
+        }
+        request.setTrace(trace);
+        request.setInterimOutput(outputStream);
+        request.setDeadline(deadline(request));
+        if (fairQueue != null) {
+            schedule(request, response, outputStream);
+            return;
+        }
+        serve(request, response, outputStream);
+    }
 
-            final var responseBody = "Hello world!";
+    /**
+     * Close a connection the client sent nothing on within the connection
+     * timeout, or answer <code>408 Request Timeout</code> if it stopped in
+     * the middle of a request.
+     */
+    private void timedOut(final HttpResponse response, final OutputStream outputStream) throws IOException {
+        if (inputBuffer.getBytesRead() == 0) {
+            log.debug("close idle connection from {}", connection.getInetAddress());
+            close();
+            return;
+        }
+        log.debug("request timed out after {} bytes", inputBuffer.getBytesRead());
+        StaticResources.renderError(response, HttpStatus.REQUEST_TIMEOUT);
+        response.setHeader("Connection", "close");
+        write(response, outputStream);
+        completed(INVALID_ROUTE, null, response);
+        close();
+    }
 
-            final var response = String.join("\r\n",
-                    "HTTP/1.1 200 OK ",
-                    "Content-Type: text/html;charset=utf-8 ",
-                    "Content-Length: " + responseBody.getBytes().length + " ",
-                    "",
-                    responseBody);
+    private void schedule(final HttpRequest request, final HttpResponse response, final OutputStream outputStream) {
+        final long readTime = System.nanoTime();
+        try {
+            asyncExecutor.execute(fairQueue.classify(requestMapping.getRoute(request), () -> {
+                schedulingTime = System.nanoTime() - readTime;
+                serve(request, response, outputStream);
+            }));
+        } catch (RejectedExecutionException e) {
+            // the connector is stopping
+            StaticResources.renderError(response, HttpStatus.SERVICE_UNAVAILABLE);
+            finish(request, response, outputStream);
+        }
+    }
 
-            outputStream.write(response.getBytes());
-            outputStream.flush();
+    /**
+     * The configured timeout, or the one the client asks for if it is
+     * shorter.
+     */
+    private Deadline deadline(final HttpRequest request) {
+        long timeoutMillis = requestTimeoutMillis;
+        final String requested = request.getHeader(Deadline.HEADER);
+        if (requested != null) {
+            try {
+                final long requestedMillis = Long.parseLong(requested.trim());
+                if (requestedMillis > 0 && (timeoutMillis <= 0 || requestedMillis < timeoutMillis)) {
+                    timeoutMillis = requestedMillis;
+                }
+            } catch (NumberFormatException e) {
+                log.debug("ignoring invalid {}: {}", Deadline.HEADER, requested);
+            }
+        }
+        return timeoutMillis > 0 ? Deadline.at(acceptTime + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) : null;
+    }
+
+    private void serve(final HttpRequest request, final HttpResponse response, final OutputStream outputStream) {
+        final Deadline deadline = request.getDeadline();
+        if (deadline != null && deadline.isExpired()) {
+            // spent its budget waiting: nobody is expecting the response any more
+            requestMetrics.requestExpired();
+            StaticResources.renderError(response, HttpStatus.SERVICE_UNAVAILABLE);
+            finish(request, response, outputStream);
+            return;
+        }
+        service(request, response);
+        if (request.isAsyncStarted()) {
+            final AsyncContext asyncContext = request.getAsyncContext();
+            final Future<?> cancellation = scheduleCancellation(asyncContext, deadline);
+            asyncContext.onComplete(() -> {
+                if (cancellation != null) {
+                    cancellation.cancel(false);
+                }
+                try {
+                    asyncExecutor.execute(() -> finish(request,
+                            asyncContext.isCancelled() ? unavailableResponse() : response, outputStream));
+                } catch (RejectedExecutionException e) {
+                    // the connector is stopping: answer from here rather than leave the connection open
+                    finish(request, unavailableResponse(), outputStream);
+                }
+            });
+            return;
+        }
+        finish(request, response, outputStream);
+    }
+
+    private Future<?> scheduleCancellation(final AsyncContext asyncContext, final Deadline deadline) {
+        if (deadline == null || deadlineTimer == null) {
+            return null;
+        }
+        try {
+            return deadlineTimer.schedule(() -> {
+                if (asyncContext.cancel()) {
+                    requestMetrics.requestExpired();
+                }
+            }, deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the connector is stopping
+            return null;
+        }
+    }
+
+    /**
+     * The response of a cancelled request, or of one that can no longer be
+     * finished on the executor, written instead of the one its work may
+     * still be changing.
+     */
+    private static HttpResponse unavailableResponse() {
+        final var response = new HttpResponse();
+        StaticResources.renderError(response, HttpStatus.SERVICE_UNAVAILABLE);
+        return response;
+    }
+
+    private void serveHttp2(final HttpRequest request, final OutputStream outputStream) {
+        final var http2Connection = new Http2Connection(connection.getInetAddress(), inputBuffer, outputStream,
+                requestMapping, manager, http2Executor != null ? http2Executor : asyncExecutor, requestMetrics,
+                accessLog);
+        try {
+            http2Connection.serve(request);
+        } catch (IOException e) {
+            log.debug("HTTP/2 connection failed: {}", e.getMessage());
+        } finally {
+            close();
+        }
+    }
+
+    private HttpRequest parse(final Http11InputBuffer inputBuffer) throws IOException {
+        final var event = new RequestParseEvent();
+        event.begin();
+        final HttpRequest request = HttpRequest.parse(inputBuffer);
+        parseTime = System.nanoTime() - startTime;
+        if (request == null) {
+            return null;
+        }
+        path = request.getPath();
+        if (event.shouldCommit()) {
+            event.method = request.getMethod();
+            event.path = path;
+            event.bytesRead = inputBuffer.getBytesRead();
+            event.commit();
+        }
+        return request;
+    }
+
+    private void service(final HttpRequest request, final HttpResponse response) {
+        request.setManager(manager);
+        request.setAsyncExecutor(asyncExecutor);
+        final Controller controller = requestMapping.getController(request);
+        final var event = new RequestDispatchEvent();
+        event.begin();
+        if (trace != null) {
+            RequestTrace.bind(trace);
+        }
+        if (request.getDeadline() != null) {
+            Deadline.bind(request.getDeadline());
+        }
+        try {
+            if (responseCache != null && responseCache.isCacheable(request, requestMapping.getRoute(request))) {
+                responseCache.service(request, response, controller);
+            } else {
+                controller.service(request, response);
+            }
+            if (event.shouldCommit()) {
+                event.path = path;
+                event.route = requestMapping.getRoute(request);
+                event.controller = controller.getClass();
+                event.async = request.isAsyncStarted();
+                event.commit();
+            }
+        } catch (BadRequestException e) {
+            log.warn("bad request: {}", e.getMessage());
+            response.reset();
+            StaticResources.renderError(response, HttpStatus.BAD_REQUEST);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().complete();
+            }
+        } catch (DeadlineExceededException e) {
+            log.debug("{}: {}", path, e.getMessage());
+            requestMetrics.requestExpired();
+            response.reset();
+            StaticResources.renderError(response, HttpStatus.SERVICE_UNAVAILABLE);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().complete();
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            response.reset();
+            StaticResources.renderError(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().complete();
+            }
+        } finally {
+            if (trace != null) {
+                RequestTrace.unbind();
+            }
+            Deadline.unbind();
+        }
+    }
+
+    /**
+     * Write the response and close the connection, either right after the
+     * controller returned or once its asynchronous processing completed.
+     */
+    private void finish(final HttpRequest request, final HttpResponse response, final OutputStream outputStream) {
+        serviceTime = System.nanoTime() - startTime - parseTime - schedulingTime;
+        try {
+            if (request.isSessionCreated()) {
+                response.addCookie(SetCookie.sessionCookie(request.getSession(false).getId()));
+            }
+            if (request.isBodyDeferred()) {
+                // answered without the body the client is holding back
+                response.setHeader("Connection", "close");
+                requestMetrics.bodySkipped();
+            }
+            write(response, outputStream);
         } catch (IOException | UncheckedServletException e) {
             log.error(e.getMessage(), e);
+        } finally {
+            completed(requestMapping.getRoute(request), request, response);
+            close();
+        }
+    }
+
+    private void completed(final String route, final HttpRequest request, final HttpResponse response) {
+        final long duration = System.nanoTime() - startTime;
+        requestMetrics.record(route, response.getStatus(), duration);
+        if (accessLog != null) {
+            accessLog.log(connection.getInetAddress(), request, response.getStatus(), bytesWritten, duration);
+        }
+        if (trace != null) {
+            trace(request, response.getStatus(), duration);
+        }
+    }
+
+    private void trace(final HttpRequest request, final HttpStatus status, final long duration) {
+        final long queueTime = startTime - acceptTime + schedulingTime;
+        trace.set(RequestTrace.Phase.QUEUE, queueTime);
+        trace.set(RequestTrace.Phase.PARSE, parseTime);
+        trace.set(RequestTrace.Phase.SERVICE, serviceTime);
+        trace.set(RequestTrace.Phase.WRITE, writeTime);
+        final long total = startTime - acceptTime + duration;
+        trace.complete(System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(total), total,
+                request != null ? request.getMethod() : null, path, status.getCode());
+        tracer.completed(trace);
+    }
+
+    private void write(final HttpResponse response, final OutputStream outputStream) throws IOException {
+        final var event = new ResponseWriteEvent();
+        event.begin();
+        final long writeStart = System.nanoTime();
+        final byte[] bytes = response.toBytes();
+        status = response.getStatus();
+        outputStream.write(bytes);
+        outputStream.flush();
+        writeTime = System.nanoTime() - writeStart;
+        bytesWritten = bytes.length;
+        requestMetrics.addBytesSent(bytes.length);
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.status = status.getCode();
+            event.bytesWritten = bytes.length;
+            event.commit();
+        }
+    }
+
+    private void close() {
+        final long bytesRead = inputBuffer != null ? inputBuffer.getBytesRead() : 0;
+        requestMetrics.addBytesReceived(bytesRead);
+        requestMetrics.connectionClosed();
+        if (closeEvent.shouldCommit()) {
+            closeEvent.path = path;
+            closeEvent.status = status != null ? status.getCode() : 0;
+            closeEvent.bytesRead = bytesRead;
+            closeEvent.bytesWritten = bytesWritten;
+            closeEvent.queueTime = startTime - acceptTime + schedulingTime;
+            closeEvent.parseTime = parseTime;
+            closeEvent.serviceTime = serviceTime;
+            closeEvent.writeTime = writeTime;
+            closeEvent.commit();
+        }
+        try {
+            connection.close();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
         }
     }
 }
@@ -0,0 +1,144 @@
+package org.apache.coyote.http11;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Header fields of a request, kept as offsets into the raw bytes of the
+ * request head.
+ * <p>
+ * Parsing only records where each name and value starts and ends; a value is
+ * decoded into a <code>String</code> when it is asked for, and consumers such
+ * as the cookie parser can read it directly from {@link #getRaw()}.
+ */
+public class HttpHeaders {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final byte[] raw;
+    private int[] positions = new int[INITIAL_CAPACITY * 4];
+    private int count;
+
+    /**
+     * Parse the header lines of <code>raw</code> between <code>start</code>
+     * and <code>end</code>. Every line must end with CRLF.
+     */
+    public HttpHeaders(final byte[] raw, final int start, final int end) {
+        this.raw = raw;
+        int lineStart = start;
+        while (lineStart < end) {
+            final int lineEnd = indexOf(raw, (byte) '\n', lineStart, end);
+            final int contentEnd = lineEnd > lineStart && raw[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > lineStart) {
+                addLine(lineStart, contentEnd);
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private void addLine(final int start, final int end) {
+        final int colon = indexOf(raw, (byte) ':', start, end);
+        if (colon == end || colon == start) {
+            throw new IllegalArgumentException("malformed header line: "
+                    + new String(raw, start, end - start, StandardCharsets.ISO_8859_1));
+        }
+        if ((count + 1) * 4 > positions.length) {
+            positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+        final int index = count * 4;
+        positions[index] = start;
+        positions[index + 1] = trimEnd(start, colon);
+        positions[index + 2] = trimStart(colon + 1, end);
+        positions[index + 3] = trimEnd(positions[index + 2], end);
+        count++;
+    }
+
+    private static int indexOf(final byte[] bytes, final byte target, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private int trimStart(int start, final int end) {
+        while (start < end && (raw[start] == ' ' || raw[start] == '\t')) {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimEnd(final int start, int end) {
+        while (end > start && (raw[end - 1] == ' ' || raw[end - 1] == '\t')) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Return the index of the first header with the given name, compared
+     * case-insensitively, or -1.
+     */
+    public int indexOf(final String name) {
+        final int length = name.length();
+        for (int i = 0; i < count; i++) {
+            final int start = positions[i * 4];
+            if (positions[i * 4 + 1] - start == length && nameEquals(start, name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(final int start, final String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (toLowerCase(raw[start + i]) != toLowerCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerCase(final int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    public boolean contains(final String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * Return the value of the first header with the given name, or
+     * <code>null</code>.
+     */
+    public String get(final String name) {
+        final int index = indexOf(name);
+        if (index < 0) {
+            return null;
+        }
+        return new String(raw, getValueStart(index), getValueEnd(index) - getValueStart(index),
+                StandardCharsets.ISO_8859_1);
+    }
+
+    public String getName(final int index) {
+        final int start = positions[index * 4];
+        return new String(raw, start, positions[index * 4 + 1] - start, StandardCharsets.ISO_8859_1);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] getRaw() {
+        return raw;
+    }
+
+    public int getValueStart(final int index) {
+        return positions[index * 4 + 2];
+    }
+
+    public int getValueEnd(final int index) {
+        return positions[index * 4 + 3];
+    }
+}
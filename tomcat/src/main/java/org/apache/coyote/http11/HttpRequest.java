@@ -0,0 +1,331 @@
+package org.apache.coyote.http11;
+
+import jakarta.servlet.http.HttpSession;
+import org.apache.catalina.Manager;
+import org.apache.catalina.valves.RequestTrace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+public class HttpRequest {
+
+    private static final int MAX_BODY_SIZE = 10 * 1024 * 1024;
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final String method;
+    private final String uri;
+    private final String path;
+    private final String queryString;
+    private final String protocol;
+    private final HttpHeaders headers;
+    private byte[] body;
+    private Http11InputBuffer bodyInput;
+    private int bodyLength;
+    private OutputStream interimOutput;
+    private Manager manager;
+    private Cookies cookies;
+    private Map<String, String> parameters;
+    private HttpSession session;
+    private boolean sessionCreated;
+    private AsyncContext asyncContext;
+    private Executor asyncExecutor = Runnable::run;
+    private RequestTrace trace;
+    private Deadline deadline;
+
+    public HttpRequest(final String method, final String uri, final String protocol,
+                       final HttpHeaders headers, final byte[] body) {
+        this.method = method;
+        this.uri = uri;
+        final int query = uri.indexOf('?');
+        this.path = query < 0 ? uri : uri.substring(0, query);
+        this.queryString = query < 0 ? null : uri.substring(query + 1);
+        this.protocol = protocol;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * Read the next request from the connection.
+     * <p>
+     * The body of an HTTP/1.1 request sent with <code>Expect:
+     * 100-continue</code> is left on the connection until it is first asked
+     * for, so that a request rejected without looking at it is answered
+     * before the client sends it.
+     *
+     * @return the request, or <code>null</code> if the connection was closed
+     *         before a new request started
+     * @throws IllegalArgumentException if the request is malformed
+     */
+    public static HttpRequest parse(final Http11InputBuffer inputBuffer) throws IOException {
+        final byte[] head = inputBuffer.readHead();
+        if (head == null) {
+            return null;
+        }
+        int lineEnd = 0;
+        while (lineEnd < head.length && head[lineEnd] != '\n') {
+            lineEnd++;
+        }
+        final String requestLine = new String(head, 0, lineEnd, StandardCharsets.ISO_8859_1).trim();
+        final String[] parts = requestLine.split(" +");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("malformed request line: " + requestLine);
+        }
+        final HttpHeaders headers = new HttpHeaders(head, Math.min(lineEnd + 1, head.length), head.length);
+        final int length = contentLength(headers);
+        if (length > 0 && expectsContinue(parts[2], headers)) {
+            final var request = new HttpRequest(parts[0], parts[1], parts[2], headers, null);
+            request.bodyInput = inputBuffer;
+            request.bodyLength = length;
+            return request;
+        }
+        return new HttpRequest(parts[0], parts[1], parts[2], headers, inputBuffer.readBody(length));
+    }
+
+    private static boolean expectsContinue(final String protocol, final HttpHeaders headers) {
+        final String expect = headers.get("Expect");
+        return expect != null && "100-continue".equalsIgnoreCase(expect.trim()) && "HTTP/1.1".equals(protocol);
+    }
+
+    private static int contentLength(final HttpHeaders headers) {
+        final String contentLength = headers.get("Content-Length");
+        if (contentLength == null) {
+            return 0;
+        }
+        final long length;
+        try {
+            length = Long.parseLong(contentLength);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid Content-Length: " + contentLength);
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("invalid Content-Length: " + contentLength);
+        }
+        if (length > MAX_BODY_SIZE) {
+            throw new PayloadTooLargeException("Content-Length " + length + " over " + MAX_BODY_SIZE);
+        }
+        return (int) length;
+    }
+
+    public void setManager(final Manager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Set the worker pool that {@link AsyncContext#start(Runnable)} runs on.
+     */
+    public void setAsyncExecutor(final Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Set the trace the session lookup of this request is timed in.
+     */
+    public void setTrace(final RequestTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @param deadline when the response stops being of use, or
+     *                 <code>null</code> for none
+     */
+    public void setDeadline(final Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return the deadline of the request, or <code>null</code> if it has
+     * none
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public boolean isGet() {
+        return "GET".equals(method);
+    }
+
+    public boolean isPost() {
+        return "POST".equals(method);
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    public String getHeader(final String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * Return the body, reading it from the connection if it was left there
+     * for the client to send after a <code>100 Continue</code>, which is
+     * written first.
+     *
+     * @throws UncheckedIOException if the connection fails
+     * @throws BadRequestException if the connection ends before the body
+     */
+    public byte[] getBody() {
+        if (body == null) {
+            readDeferredBody();
+        }
+        return body;
+    }
+
+    private void readDeferredBody() {
+        try {
+            if (interimOutput != null) {
+                interimOutput.write(CONTINUE);
+                interimOutput.flush();
+            }
+            body = bodyInput.readBody(bodyLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            bodyInput = null;
+            interimOutput = null;
+        }
+    }
+
+    /**
+     * @return whether a body announced with <code>Expect:
+     * 100-continue</code> is still waiting on the client
+     */
+    public boolean isBodyDeferred() {
+        return body == null;
+    }
+
+    /**
+     * Set where the <code>100 Continue</code> interim response is written
+     * when the deferred body is first read.
+     */
+    void setInterimOutput(final OutputStream interimOutput) {
+        this.interimOutput = interimOutput;
+    }
+
+    public Cookies getCookies() {
+        if (cookies == null) {
+            cookies = Cookies.from(headers);
+        }
+        return cookies;
+    }
+
+    /**
+     * Return a query or form parameter, or <code>null</code>.
+     *
+     * @throws BadRequestException if the parameters are not properly
+     *                             encoded
+     */
+    public String getParameter(final String name) {
+        if (parameters == null) {
+            parameters = new HashMap<>();
+            parseParameters(queryString);
+            final String contentType = headers.get("Content-Type");
+            if (contentType != null && contentType.startsWith(FORM_CONTENT_TYPE)) {
+                parseParameters(new String(getBody(), StandardCharsets.ISO_8859_1));
+            }
+        }
+        return parameters.get(name);
+    }
+
+    private void parseParameters(final String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (final String pair : encoded.split("&")) {
+            final int equals = pair.indexOf('=');
+            final String name = equals < 0 ? pair : pair.substring(0, equals);
+            final String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.putIfAbsent(decode(name), decode(value));
+        }
+    }
+
+    private String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("malformed parameter: " + value, e);
+        }
+    }
+
+    public String getRequestedSessionId() {
+        return getCookies().getSessionId();
+    }
+
+    /**
+     * Return the session of this request, creating one if there is none and
+     * <code>create</code> is true.
+     */
+    public HttpSession getSession(final boolean create) {
+        if (session != null || manager == null) {
+            return session;
+        }
+        final long start = trace != null ? System.nanoTime() : 0;
+        final String sessionId = getRequestedSessionId();
+        if (sessionId != null) {
+            try {
+                session = manager.findSession(sessionId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (session == null && create) {
+            session = manager.createSession();
+            sessionCreated = true;
+        }
+        if (trace != null) {
+            trace.add(RequestTrace.Phase.SESSION, System.nanoTime() - start);
+        }
+        return session;
+    }
+
+    public boolean isSessionCreated() {
+        return sessionCreated;
+    }
+
+    /**
+     * Put the request in asynchronous mode: the response is not written when
+     * the controller returns but when the returned context is completed.
+     */
+    public AsyncContext startAsync(final HttpResponse response) {
+        if (asyncContext != null) {
+            throw new IllegalStateException("asynchronous processing already started");
+        }
+        asyncContext = new AsyncContext(this, response, asyncExecutor);
+        return asyncContext;
+    }
+
+    public boolean isAsyncStarted() {
+        return asyncContext != null;
+    }
+
+    public AsyncContext getAsyncContext() {
+        return asyncContext;
+    }
+}
@@ -0,0 +1,116 @@
+package org.apache.coyote.http11;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HttpResponse {
+
+    private static final String CRLF = "\r\n";
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private HttpStatus status = HttpStatus.OK;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private final List<SetCookie> cookies = new ArrayList<>();
+    private byte[] body = EMPTY_BODY;
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(final HttpStatus status) {
+        this.status = status;
+    }
+
+    public void setHeader(final String name, final String value) {
+        headers.put(name, value);
+    }
+
+    public String getHeader(final String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @return the headers set so far, in the order they were first set,
+     * without the Content-Length and Set-Cookie headers written with them
+     */
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    public void setContentType(final ContentType contentType) {
+        setHeader("Content-Type", contentType.getValue());
+    }
+
+    public void setBody(final byte[] body) {
+        this.body = body;
+    }
+
+    public void setBody(final String body) {
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void sendRedirect(final String location) {
+        setStatus(HttpStatus.FOUND);
+        setHeader("Location", location);
+    }
+
+    public void addCookie(final SetCookie cookie) {
+        cookies.add(cookie);
+    }
+
+    public List<SetCookie> getCookies() {
+        return cookies;
+    }
+
+    /**
+     * Clear the status, headers, cookies and body, for example to replace a
+     * half-built response with an error page.
+     */
+    public void reset() {
+        status = HttpStatus.OK;
+        headers.clear();
+        cookies.clear();
+        body = EMPTY_BODY;
+    }
+
+    public byte[] toBytes() {
+        final StringBuilder head = new StringBuilder(128);
+        head.append("HTTP/1.1 ").append(status.getCode()).append(' ').append(status.getReasonPhrase()).append(' ')
+                .append(CRLF);
+        for (final Map.Entry<String, String> header : headers.entrySet()) {
+            appendHeader(head, header.getKey()).append(header.getValue()).append(' ').append(CRLF);
+        }
+        appendHeader(head, "Content-Length").append(body.length).append(' ').append(CRLF);
+        for (final SetCookie cookie : cookies) {
+            appendHeader(head, "Set-Cookie");
+            cookie.appendTo(head);
+            head.append(' ').append(CRLF);
+        }
+        head.append(CRLF);
+
+        final byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        final byte[] bytes = new byte[headBytes.length + body.length];
+        System.arraycopy(headBytes, 0, bytes, 0, headBytes.length);
+        System.arraycopy(body, 0, bytes, headBytes.length, body.length);
+        return bytes;
+    }
+
+    private StringBuilder appendHeader(final StringBuilder head, final String name) {
+        return head.append(name).append(": ");
+    }
+
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        outputStream.write(toBytes());
+        outputStream.flush();
+    }
+}
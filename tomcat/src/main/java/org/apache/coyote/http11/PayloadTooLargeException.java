@@ -0,0 +1,14 @@
+package org.apache.coyote.http11;
+
+/**
+ * Thrown while parsing a request whose declared body is larger than the
+ * server accepts; the request is answered with
+ * <code>413 Payload Too Large</code> and the connection closed, since the
+ * body is not read.
+ */
+public class PayloadTooLargeException extends IllegalArgumentException {
+
+    public PayloadTooLargeException(final String message) {
+        super(message);
+    }
+}
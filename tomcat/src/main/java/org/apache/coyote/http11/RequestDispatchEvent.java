@@ -0,0 +1,31 @@
+package org.apache.coyote.http11;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a controller handling a request. For a request
+ * completed asynchronously it ends when the controller returns, not when the
+ * response is complete.
+ */
+@Name("org.apache.coyote.RequestDispatch")
+@Label("Request Dispatch")
+@Category({"Tomcat", "HTTP"})
+@StackTrace(false)
+class RequestDispatchEvent extends Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Route")
+    String route;
+
+    @Label("Controller")
+    Class<?> controller;
+
+    @Label("Asynchronous")
+    boolean async;
+}
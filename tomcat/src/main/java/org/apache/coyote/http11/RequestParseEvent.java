@@ -0,0 +1,28 @@
+package org.apache.coyote.http11;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of reading and parsing a request, head and body.
+ */
+@Name("org.apache.coyote.RequestParse")
+@Label("Request Parse")
+@Category({"Tomcat", "HTTP"})
+@StackTrace(false)
+class RequestParseEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+}
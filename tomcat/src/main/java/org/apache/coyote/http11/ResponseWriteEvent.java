@@ -0,0 +1,28 @@
+package org.apache.coyote.http11;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of writing a response to the connection.
+ */
+@Name("org.apache.coyote.ResponseWrite")
+@Label("Response Write")
+@Category({"Tomcat", "HTTP"})
+@StackTrace(false)
+class ResponseWriteEvent extends Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Status")
+    int status;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+}
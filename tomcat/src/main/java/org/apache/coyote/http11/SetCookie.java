@@ -0,0 +1,147 @@
+package org.apache.coyote.http11;
+
+/**
+ * A cookie to send with a <code>Set-Cookie</code> response header.
+ * <p>
+ * The name and value are validated once, when the cookie is created, and the
+ * attributes when they are set, so that writing the header is a plain append
+ * without escaping.
+ */
+public class SetCookie {
+
+    private final String name;
+    private final String value;
+    private String path;
+    private long maxAge = -1L;
+    private boolean httpOnly;
+    private boolean secure;
+    private String sameSite;
+
+    public SetCookie(final String name, final String value) {
+        validateName(name);
+        validateValue(value);
+        this.name = name;
+        this.value = value;
+    }
+
+    public static SetCookie sessionCookie(final String sessionId) {
+        return new SetCookie(Cookies.SESSION_COOKIE_NAME, sessionId)
+                .path("/")
+                .httpOnly(true);
+    }
+
+    public SetCookie path(final String path) {
+        validatePath(path);
+        this.path = path;
+        return this;
+    }
+
+    /**
+     * @param maxAge lifetime in seconds, 0 to delete the cookie, or a negative
+     *               value for a cookie that lasts until the browser closes
+     */
+    public SetCookie maxAge(final long maxAge) {
+        this.maxAge = maxAge;
+        return this;
+    }
+
+    public SetCookie httpOnly(final boolean httpOnly) {
+        this.httpOnly = httpOnly;
+        return this;
+    }
+
+    public SetCookie secure(final boolean secure) {
+        this.secure = secure;
+        return this;
+    }
+
+    /**
+     * @param sameSite <code>Strict</code>, <code>Lax</code> or
+     *                 <code>None</code>
+     */
+    public SetCookie sameSite(final String sameSite) {
+        validateSameSite(sameSite);
+        this.sameSite = sameSite;
+        return this;
+    }
+
+    /**
+     * Append the value of the <code>Set-Cookie</code> header.
+     */
+    public void appendTo(final StringBuilder builder) {
+        builder.append(name).append('=').append(value);
+        if (path != null) {
+            builder.append("; Path=").append(path);
+        }
+        if (maxAge >= 0) {
+            builder.append("; Max-Age=").append(maxAge);
+        }
+        if (sameSite != null) {
+            builder.append("; SameSite=").append(sameSite);
+        }
+        if (secure) {
+            builder.append("; Secure");
+        }
+        if (httpOnly) {
+            builder.append("; HttpOnly");
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder(64);
+        appendTo(builder);
+        return builder.toString();
+    }
+
+    private static void validateName(final String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("cookie name must not be empty");
+        }
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c <= 0x20 || c >= 0x7f || "()<>@,;:\\\"/[]?={}".indexOf(c) >= 0) {
+                throw new IllegalArgumentException("invalid character in cookie name: " + name);
+            }
+        }
+    }
+
+    private static void validateValue(final String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("cookie value must not be null");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c <= 0x20 || c >= 0x7f || c == '"' || c == ',' || c == ';' || c == '\\') {
+                throw new IllegalArgumentException("invalid character in cookie value: " + value);
+            }
+        }
+    }
+
+    private static void validatePath(final String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("cookie path must not be empty");
+        }
+        for (int i = 0; i < path.length(); i++) {
+            final char c = path.charAt(i);
+            if (c < 0x20 || c >= 0x7f || c == ';') {
+                throw new IllegalArgumentException("invalid character in cookie path: " + path);
+            }
+        }
+    }
+
+    private static void validateSameSite(final String sameSite) {
+        if (!"Strict".equalsIgnoreCase(sameSite) && !"Lax".equalsIgnoreCase(sameSite)
+                && !"None".equalsIgnoreCase(sameSite)) {
+            throw new IllegalArgumentException("invalid cookie SameSite: " + sameSite);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.apache.coyote.http2;
+
+/**
+ * The dynamic table of an HPACK context, RFC 7541 section 2.3.2: entries
+ * added first in, first out, bounded by their total size. Entry 0 is the
+ * most recently added.
+ */
+final class DynamicTable {
+
+    private HeaderField[] entries = new HeaderField[16];
+    private int head;
+    private int length;
+    private int size;
+    private int maxSize;
+
+    DynamicTable(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    int length() {
+        return length;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    HeaderField get(final int index) {
+        return entries[(head + entries.length - 1 - index) % entries.length];
+    }
+
+    /**
+     * Add the field, evicting the oldest entries to make room. A field larger
+     * than the table empties it and is not added.
+     */
+    void add(final HeaderField field) {
+        final int fieldSize = field.size();
+        evict(maxSize - fieldSize);
+        if (fieldSize > maxSize) {
+            return;
+        }
+        if (length == entries.length) {
+            final HeaderField[] grown = new HeaderField[entries.length * 2];
+            for (int i = 0; i < length; i++) {
+                grown[length - 1 - i] = get(i);
+            }
+            entries = grown;
+            head = length;
+        }
+        entries[head] = field;
+        head = (head + 1) % entries.length;
+        length++;
+        size += fieldSize;
+    }
+
+    void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+    private void evict(final int targetSize) {
+        while (length > 0 && size > Math.max(targetSize, 0)) {
+            final int oldest = (head + entries.length - length) % entries.length;
+            size -= entries[oldest].size();
+            entries[oldest] = null;
+            length--;
+        }
+    }
+
+    /**
+     * @return the index of the entry with this name and value, or, if there
+     * is none, minus one minus the index of an entry with this name, or
+     * {@link Integer#MIN_VALUE}
+     */
+    int find(final String name, final String value) {
+        int nameMatch = Integer.MIN_VALUE;
+        for (int i = 0; i < length; i++) {
+            final HeaderField entry = get(i);
+            if (entry.name.equals(name)) {
+                if (entry.value.equals(value)) {
+                    return i;
+                }
+                if (nameMatch == Integer.MIN_VALUE) {
+                    nameMatch = -i - 1;
+                }
+            }
+        }
+        return nameMatch;
+    }
+}
@@ -0,0 +1,38 @@
+package org.apache.coyote.http2;
+
+/**
+ * A header name and value, as kept in the HPACK tables.
+ */
+public final class HeaderField {
+
+    /**
+     * Overhead of an entry counted in the size of the dynamic table, RFC 7541
+     * section 4.1.
+     */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    final String name;
+    final String value;
+
+    public HeaderField(final String name, final String value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    int size() {
+        return name.length() + value.length() + ENTRY_OVERHEAD;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + value;
+    }
+}
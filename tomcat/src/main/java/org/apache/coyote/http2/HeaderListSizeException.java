@@ -0,0 +1,14 @@
+package org.apache.coyote.http2;
+
+/**
+ * A header block that decodes to more than the maximum header list size.
+ * Unlike other {@link HpackException}s, the block was decoded to the end, so
+ * the decoding context is still in step with the peer and only the stream
+ * is refused.
+ */
+public class HeaderListSizeException extends HpackException {
+
+    HeaderListSizeException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,130 @@
+package org.apache.coyote.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The static table and integer representation of HPACK, RFC 7541.
+ */
+final class Hpack {
+
+    static final int DEFAULT_TABLE_SIZE = 4096;
+
+    static final HeaderField[] STATIC_TABLE = {
+            null,
+            new HeaderField(":authority", ""),
+            new HeaderField(":method", "GET"),
+            new HeaderField(":method", "POST"),
+            new HeaderField(":path", "/"),
+            new HeaderField(":path", "/index.html"),
+            new HeaderField(":scheme", "http"),
+            new HeaderField(":scheme", "https"),
+            new HeaderField(":status", "200"),
+            new HeaderField(":status", "204"),
+            new HeaderField(":status", "206"),
+            new HeaderField(":status", "304"),
+            new HeaderField(":status", "400"),
+            new HeaderField(":status", "404"),
+            new HeaderField(":status", "500"),
+            new HeaderField("accept-charset", ""),
+            new HeaderField("accept-encoding", "gzip, deflate"),
+            new HeaderField("accept-language", ""),
+            new HeaderField("accept-ranges", ""),
+            new HeaderField("accept", ""),
+            new HeaderField("access-control-allow-origin", ""),
+            new HeaderField("age", ""),
+            new HeaderField("allow", ""),
+            new HeaderField("authorization", ""),
+            new HeaderField("cache-control", ""),
+            new HeaderField("content-disposition", ""),
+            new HeaderField("content-encoding", ""),
+            new HeaderField("content-language", ""),
+            new HeaderField("content-length", ""),
+            new HeaderField("content-location", ""),
+            new HeaderField("content-range", ""),
+            new HeaderField("content-type", ""),
+            new HeaderField("cookie", ""),
+            new HeaderField("date", ""),
+            new HeaderField("etag", ""),
+            new HeaderField("expect", ""),
+            new HeaderField("expires", ""),
+            new HeaderField("from", ""),
+            new HeaderField("host", ""),
+            new HeaderField("if-match", ""),
+            new HeaderField("if-modified-since", ""),
+            new HeaderField("if-none-match", ""),
+            new HeaderField("if-range", ""),
+            new HeaderField("if-unmodified-since", ""),
+            new HeaderField("last-modified", ""),
+            new HeaderField("link", ""),
+            new HeaderField("location", ""),
+            new HeaderField("max-forwards", ""),
+            new HeaderField("proxy-authenticate", ""),
+            new HeaderField("proxy-authorization", ""),
+            new HeaderField("range", ""),
+            new HeaderField("referer", ""),
+            new HeaderField("refresh", ""),
+            new HeaderField("retry-after", ""),
+            new HeaderField("server", ""),
+            new HeaderField("set-cookie", ""),
+            new HeaderField("strict-transport-security", ""),
+            new HeaderField("transfer-encoding", ""),
+            new HeaderField("user-agent", ""),
+            new HeaderField("vary", ""),
+            new HeaderField("via", ""),
+            new HeaderField("www-authenticate", "")
+    };
+
+    static final int STATIC_TABLE_LENGTH = STATIC_TABLE.length - 1;
+
+    /**
+     * Index of the first static entry of each name.
+     */
+    static final Map<String, Integer> STATIC_NAMES = new HashMap<>();
+
+    static {
+        for (int i = STATIC_TABLE_LENGTH; i > 0; i--) {
+            STATIC_NAMES.put(STATIC_TABLE[i].name, i);
+        }
+    }
+
+    private Hpack() {
+    }
+
+    /**
+     * @return the static index of the entry with this name and value, or 0
+     */
+    static int staticIndex(final String name, final String value) {
+        final Integer first = STATIC_NAMES.get(name);
+        if (first == null) {
+            return 0;
+        }
+        for (int i = first; i <= STATIC_TABLE_LENGTH && STATIC_TABLE[i].name.equals(name); i++) {
+            if (STATIC_TABLE[i].value.equals(value)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Write an integer with an N-bit prefix, RFC 7541 section 5.1, into the
+     * low bits of a first byte whose high bits are <code>flags</code>.
+     */
+    static void encodeInteger(final int flags, final int prefixBits, final int value,
+                              final ByteArrayOutputStream out) {
+        final int max = (1 << prefixBits) - 1;
+        if (value < max) {
+            out.write(flags | value);
+            return;
+        }
+        out.write(flags | max);
+        int remaining = value - max;
+        while (remaining >= 0x80) {
+            out.write((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+}
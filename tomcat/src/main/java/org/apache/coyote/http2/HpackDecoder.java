@@ -0,0 +1,145 @@
+package org.apache.coyote.http2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the header blocks received on a connection, RFC 7541. Blocks must
+ * be decoded in the order they were received, as they update the dynamic
+ * table in turn.
+ * <p>
+ * The size of the decoded header list, counted as for
+ * SETTINGS_MAX_HEADER_LIST_SIZE, is bounded, since a small block can refer
+ * to large table entries many times over. Fields past the bound are decoded
+ * for their effect on the table but not kept.
+ */
+public class HpackDecoder {
+
+    private final DynamicTable table;
+    private final int maxTableSize;
+    private final int maxHeaderListSize;
+    private byte[] block;
+    private int position;
+    private int limit;
+
+    /**
+     * @param maxTableSize the SETTINGS_HEADER_TABLE_SIZE announced to the
+     *                     peer, the most its table size updates may ask for
+     */
+    public HpackDecoder(final int maxTableSize) {
+        this(maxTableSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxHeaderListSize the SETTINGS_MAX_HEADER_LIST_SIZE announced to
+     *                          the peer
+     */
+    public HpackDecoder(final int maxTableSize, final int maxHeaderListSize) {
+        this.table = new DynamicTable(maxTableSize);
+        this.maxTableSize = maxTableSize;
+        this.maxHeaderListSize = maxHeaderListSize;
+    }
+
+    /**
+     * @throws HeaderListSizeException if the fields add up to more than the
+     *                                 maximum header list size
+     */
+    public List<HeaderField> decode(final byte[] block, final int length) throws HpackException {
+        this.block = block;
+        this.position = 0;
+        this.limit = length;
+        final List<HeaderField> fields = new ArrayList<>();
+        long listSize = 0;
+        boolean decodedField = false;
+        while (position < limit) {
+            final int b = block[position] & 0xff;
+            final HeaderField field;
+            if ((b & 0x80) != 0) {
+                field = field(readInteger(7));
+            } else if ((b & 0x40) != 0) {
+                field = literal(6);
+                table.add(field);
+            } else if ((b & 0x20) != 0) {
+                if (decodedField) {
+                    throw new HpackException("dynamic table size update after a header field");
+                }
+                final int size = readInteger(5);
+                if (size > maxTableSize) {
+                    throw new HpackException("dynamic table size " + size + " over " + maxTableSize);
+                }
+                table.setMaxSize(size);
+                continue;
+            } else {
+                field = literal(4);
+            }
+            decodedField = true;
+            listSize += field.size();
+            if (listSize <= maxHeaderListSize) {
+                fields.add(field);
+            }
+        }
+        this.block = null;
+        if (listSize > maxHeaderListSize) {
+            throw new HeaderListSizeException("header list of " + listSize + " bytes over " + maxHeaderListSize);
+        }
+        return fields;
+    }
+
+    private HeaderField literal(final int prefixBits) throws HpackException {
+        final int nameIndex = readInteger(prefixBits);
+        final String name = nameIndex == 0 ? readString() : field(nameIndex).name;
+        return new HeaderField(name, readString());
+    }
+
+    private HeaderField field(final int index) throws HpackException {
+        if (index <= 0) {
+            throw new HpackException("invalid index " + index);
+        }
+        if (index <= Hpack.STATIC_TABLE_LENGTH) {
+            return Hpack.STATIC_TABLE[index];
+        }
+        final int dynamicIndex = index - Hpack.STATIC_TABLE_LENGTH - 1;
+        if (dynamicIndex >= table.length()) {
+            throw new HpackException("invalid index " + index);
+        }
+        return table.get(dynamicIndex);
+    }
+
+    private String readString() throws HpackException {
+        if (position >= limit) {
+            throw new HpackException("truncated header block");
+        }
+        final boolean huffman = (block[position] & 0x80) != 0;
+        final int length = readInteger(7);
+        if (length > limit - position) {
+            throw new HpackException("truncated header block");
+        }
+        final String value = huffman
+                ? HpackHuffman.decode(block, position, length)
+                : new String(block, position, length, StandardCharsets.ISO_8859_1);
+        position += length;
+        return value;
+    }
+
+    private int readInteger(final int prefixBits) throws HpackException {
+        final int max = (1 << prefixBits) - 1;
+        int value = block[position++] & max;
+        if (value < max) {
+            return value;
+        }
+        for (int shift = 0; ; shift += 7) {
+            if (position >= limit) {
+                throw new HpackException("truncated integer");
+            }
+            if (shift > 21) {
+                throw new HpackException("integer too large");
+            }
+            final int b = block[position++] & 0xff;
+            value += (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
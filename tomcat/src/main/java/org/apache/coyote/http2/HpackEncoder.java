@@ -0,0 +1,103 @@
+package org.apache.coyote.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encodes the header blocks sent on a connection, RFC 7541. Blocks must be
+ * sent in the order they were encoded, as they update the peer's dynamic
+ * table in turn.
+ * <p>
+ * Fields found in a table are sent as an index. Other fields are added to
+ * the dynamic table, except those that are different on every response,
+ * which would only push useful entries out, and cookies, which are never
+ * indexed anywhere along the way. Strings are Huffman coded when that makes
+ * them shorter.
+ */
+public class HpackEncoder {
+
+    private static final Set<String> UNINDEXED = Set.of("content-length", "date", "etag", "last-modified");
+    private static final Set<String> NEVER_INDEXED = Set.of("set-cookie", "cookie", "authorization");
+
+    private final DynamicTable table = new DynamicTable(Hpack.DEFAULT_TABLE_SIZE);
+    private int smallestPendingSize = -1;
+
+    /**
+     * Follow the SETTINGS_HEADER_TABLE_SIZE of the peer. The table never
+     * grows over the default size, whatever the peer allows.
+     */
+    public void setMaxTableSize(final int peerMaxSize) {
+        final int maxSize = Math.min(peerMaxSize, Hpack.DEFAULT_TABLE_SIZE);
+        if (maxSize == table.getMaxSize()) {
+            return;
+        }
+        smallestPendingSize = smallestPendingSize < 0 ? maxSize : Math.min(smallestPendingSize, maxSize);
+        table.setMaxSize(maxSize);
+    }
+
+    public byte[] encode(final List<HeaderField> fields) {
+        final var out = new ByteArrayOutputStream(fields.size() * 16);
+        if (smallestPendingSize >= 0) {
+            Hpack.encodeInteger(0x20, 5, smallestPendingSize, out);
+            if (smallestPendingSize != table.getMaxSize()) {
+                Hpack.encodeInteger(0x20, 5, table.getMaxSize(), out);
+            }
+            smallestPendingSize = -1;
+        }
+        for (final HeaderField field : fields) {
+            encode(field, out);
+        }
+        return out.toByteArray();
+    }
+
+    private void encode(final HeaderField field, final ByteArrayOutputStream out) {
+        final int staticIndex = Hpack.staticIndex(field.name, field.value);
+        if (staticIndex > 0) {
+            Hpack.encodeInteger(0x80, 7, staticIndex, out);
+            return;
+        }
+        final int dynamic = table.find(field.name, field.value);
+        if (dynamic >= 0) {
+            Hpack.encodeInteger(0x80, 7, Hpack.STATIC_TABLE_LENGTH + 1 + dynamic, out);
+            return;
+        }
+        final int nameIndex = nameIndex(field.name, dynamic);
+        if (NEVER_INDEXED.contains(field.name)) {
+            Hpack.encodeInteger(0x10, 4, nameIndex, out);
+        } else if (UNINDEXED.contains(field.name)) {
+            Hpack.encodeInteger(0x00, 4, nameIndex, out);
+        } else {
+            Hpack.encodeInteger(0x40, 6, nameIndex, out);
+            table.add(field);
+        }
+        if (nameIndex == 0) {
+            writeString(field.name, out);
+        }
+        writeString(field.value, out);
+    }
+
+    private static int nameIndex(final String name, final int dynamicMatch) {
+        final Integer staticIndex = Hpack.STATIC_NAMES.get(name);
+        if (staticIndex != null) {
+            return staticIndex;
+        }
+        if (dynamicMatch != Integer.MIN_VALUE) {
+            return Hpack.STATIC_TABLE_LENGTH + 1 + (-dynamicMatch - 1);
+        }
+        return 0;
+    }
+
+    private static void writeString(final String value, final ByteArrayOutputStream out) {
+        final int huffmanLength = HpackHuffman.encodedLength(value);
+        if (huffmanLength < value.length()) {
+            Hpack.encodeInteger(0x80, 7, huffmanLength, out);
+            HpackHuffman.encode(value, out);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        Hpack.encodeInteger(0x00, 7, bytes.length, out);
+        out.write(bytes, 0, bytes.length);
+    }
+}
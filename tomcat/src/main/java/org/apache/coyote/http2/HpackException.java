@@ -0,0 +1,12 @@
+package org.apache.coyote.http2;
+
+/**
+ * A header block that cannot be decoded, which leaves the decoding context
+ * unusable: a connection error of type COMPRESSION_ERROR.
+ */
+public class HpackException extends Exception {
+
+    HpackException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,934 @@
+package org.apache.coyote.http2;
+
+import org.apache.catalina.Manager;
+import org.apache.catalina.controller.Controller;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.controller.StaticResources;
+import org.apache.catalina.metrics.RequestMetrics;
+import org.apache.catalina.valves.AccessLog;
+import org.apache.coyote.http11.BadRequestException;
+import org.apache.coyote.http11.Http11InputBuffer;
+import org.apache.coyote.http11.HttpHeaders;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+import org.apache.coyote.http11.HttpStatus;
+import org.apache.coyote.http11.SetCookie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves an HTTP/2 connection in cleartext (h2c), RFC 7540, either started
+ * with prior knowledge or upgraded from an HTTP/1.1 request with
+ * <code>Upgrade: h2c</code>.
+ * <p>
+ * The thread that accepted the connection stays on it and reads frames.
+ * Each request, once its headers and body are in, is dispatched to the
+ * executor, so the streams of a connection are served concurrently; their
+ * responses are written frame by frame under the output lock, header blocks
+ * encoded in the order they are sent. Response bodies respect the flow
+ * control windows of the peer, a writer waiting until a WINDOW_UPDATE opens
+ * them. Received data is acknowledged with a WINDOW_UPDATE as soon as it is
+ * buffered, bounded by the body size limit.
+ * <p>
+ * The executor must not run tasks on the calling thread, which has to keep
+ * reading window updates while responses are written.
+ */
+public class Http2Connection {
+
+    private static final Logger log = LoggerFactory.getLogger(Http2Connection.class);
+
+    private static final byte[] CLIENT_PREFACE =
+            "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final int PREFACE_REMAINDER_LENGTH = 6;
+    private static final byte[] SWITCHING_PROTOCOLS = ("HTTP/1.1 101 Switching Protocols\r\n"
+            + "Connection: Upgrade\r\nUpgrade: h2c\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final int FRAME_HEADER_LENGTH = 9;
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int PRIORITY = 0x2;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PUSH_PROMISE = 0x5;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    private static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    private static final int DEFAULT_WINDOW_SIZE = 65_535;
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16_384;
+    private static final int MAX_ALLOWED_FRAME_SIZE = 16_777_215;
+    private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+    private static final int MAX_CONCURRENT_STREAMS = 100;
+    private static final int MAX_HEADER_BLOCK_SIZE = 64 * 1024;
+    // as much as an HTTP/1.1 request head may take
+    private static final int MAX_HEADER_LIST_SIZE = 64 * 1024;
+    private static final int MAX_BODY_SIZE = 10 * 1024 * 1024;
+    private static final long STREAM_DRAIN_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final Set<String> CONNECTION_HEADERS =
+            Set.of("connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+
+    private final InetAddress remoteAddress;
+    private final Http11InputBuffer inputBuffer;
+    private final OutputStream outputStream;
+    private final RequestMapping requestMapping;
+    private final Manager manager;
+    private final Executor executor;
+    private final RequestMetrics requestMetrics;
+    private final AccessLog accessLog;
+
+    private final HpackDecoder decoder = new HpackDecoder(Hpack.DEFAULT_TABLE_SIZE, MAX_HEADER_LIST_SIZE);
+    private final HpackEncoder encoder = new HpackEncoder();
+    private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+    private final byte[] frameHeader = new byte[FRAME_HEADER_LENGTH];
+    private byte[] payload = new byte[DEFAULT_MAX_FRAME_SIZE];
+    private int lastStreamId;
+    private boolean goAwayReceived;
+
+    // reading thread only: the header block being received
+    private Stream headerStream;
+    private boolean headerEndStream;
+    private final ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+
+    // guarded by this
+    private int activeStreams;
+    private long connectionSendWindow = DEFAULT_WINDOW_SIZE;
+    private long connectionReceiveWindow = DEFAULT_WINDOW_SIZE;
+    private int initialSendWindow = DEFAULT_WINDOW_SIZE;
+    private boolean closed;
+
+    private volatile int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+
+    public Http2Connection(final InetAddress remoteAddress, final Http11InputBuffer inputBuffer,
+                           final OutputStream outputStream, final RequestMapping requestMapping,
+                           final Manager manager, final Executor executor, final RequestMetrics requestMetrics,
+                           final AccessLog accessLog) {
+        this.remoteAddress = remoteAddress;
+        this.inputBuffer = inputBuffer;
+        this.outputStream = new BufferedOutputStream(outputStream, DEFAULT_MAX_FRAME_SIZE + FRAME_HEADER_LENGTH);
+        this.requestMapping = requestMapping;
+        this.manager = manager;
+        this.executor = executor;
+        this.requestMetrics = requestMetrics;
+        this.accessLog = accessLog;
+    }
+
+    /**
+     * @return whether the request is the start of the client connection
+     * preface, <code>PRI * HTTP/2.0</code>, read as an HTTP/1.1 request head
+     */
+    public static boolean isPreface(final HttpRequest request) {
+        return "PRI".equals(request.getMethod()) && "*".equals(request.getUri())
+                && "HTTP/2.0".equals(request.getProtocol());
+    }
+
+    /**
+     * @return whether the request asks to upgrade the connection to h2c
+     */
+    public static boolean isUpgrade(final HttpRequest request) {
+        final String upgrade = request.getHeaders().get("Upgrade");
+        return upgrade != null && "h2c".equalsIgnoreCase(upgrade.trim())
+                && request.getHeaders().contains("HTTP2-Settings");
+    }
+
+    /**
+     * Serve the connection until the client closes it or a connection error.
+     *
+     * @param request the request that started the connection: the preface,
+     *                or the request to upgrade, which becomes stream 1
+     */
+    public void serve(final HttpRequest request) throws IOException {
+        try {
+            if (isPreface(request)) {
+                readPrefaceRemainder();
+                writeSettings();
+            } else {
+                upgrade(request);
+            }
+            readFrames();
+        } catch (Http2Exception e) {
+            log.debug("HTTP/2 connection error: {}", e.getMessage());
+            goAway(e.getErrorCode(), e.getMessage());
+        } catch (EOFException e) {
+            log.debug("HTTP/2 connection closed: {}", e.getMessage());
+        } finally {
+            awaitStreams();
+        }
+    }
+
+    private void readPrefaceRemainder() throws IOException, Http2Exception {
+        final byte[] remainder = new byte[PREFACE_REMAINDER_LENGTH];
+        readFully(remainder, PREFACE_REMAINDER_LENGTH);
+        if (!Arrays.equals(remainder, 0, PREFACE_REMAINDER_LENGTH, CLIENT_PREFACE,
+                CLIENT_PREFACE.length - PREFACE_REMAINDER_LENGTH, CLIENT_PREFACE.length)) {
+            throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "invalid connection preface");
+        }
+    }
+
+    private void upgrade(final HttpRequest request) throws IOException, Http2Exception {
+        final byte[] settings;
+        try {
+            settings = Base64.getUrlDecoder().decode(request.getHeaders().get("HTTP2-Settings").trim());
+        } catch (IllegalArgumentException e) {
+            throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "invalid HTTP2-Settings");
+        }
+        synchronized (outputStream) {
+            outputStream.write(SWITCHING_PROTOCOLS);
+        }
+        applySettings(settings, settings.length);
+        writeSettings();
+        final Stream stream = openStream(1);
+        stream.request = request;
+        stream.endOfStreamReceived = true;
+        dispatch(stream);
+        final byte[] preface = new byte[CLIENT_PREFACE.length];
+        readFully(preface, preface.length);
+        if (!Arrays.equals(preface, CLIENT_PREFACE)) {
+            throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "invalid connection preface");
+        }
+    }
+
+    private void readFrames() throws IOException, Http2Exception {
+        while (readFrameHeader()) {
+            final int length = ((frameHeader[0] & 0xff) << 16) | ((frameHeader[1] & 0xff) << 8)
+                    | (frameHeader[2] & 0xff);
+            final int type = frameHeader[3] & 0xff;
+            final int flags = frameHeader[4] & 0xff;
+            final int streamId = ((frameHeader[5] & 0x7f) << 24) | ((frameHeader[6] & 0xff) << 16)
+                    | ((frameHeader[7] & 0xff) << 8) | (frameHeader[8] & 0xff);
+            if (length > DEFAULT_MAX_FRAME_SIZE) {
+                throw Http2Exception.connectionError(ErrorCode.FRAME_SIZE_ERROR, "frame of " + length + " bytes");
+            }
+            readFully(payload, length);
+            if (headerStream != null && (type != CONTINUATION || streamId != headerStream.id)) {
+                throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "header block interrupted");
+            }
+            try {
+                onFrame(type, flags, streamId, length);
+            } catch (Http2Exception e) {
+                if (e.isConnectionError()) {
+                    throw e;
+                }
+                log.debug("HTTP/2 stream {} error: {}", e.getStreamId(), e.getMessage());
+                resetStream(e.getStreamId(), e.getErrorCode());
+            }
+        }
+    }
+
+    private void onFrame(final int type, final int flags, final int streamId, final int length)
+            throws IOException, Http2Exception {
+        switch (type) {
+            case DATA:
+                onData(flags, streamId, length);
+                break;
+            case HEADERS:
+                onHeaders(flags, streamId, length);
+                break;
+            case PRIORITY:
+                requireStream(streamId);
+                if (length != 5) {
+                    throw Http2Exception.streamError(streamId, ErrorCode.FRAME_SIZE_ERROR, "PRIORITY size");
+                }
+                break;
+            case RST_STREAM:
+                onResetStream(streamId, length);
+                break;
+            case SETTINGS:
+                onSettings(flags, streamId, length);
+                break;
+            case PUSH_PROMISE:
+                throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "PUSH_PROMISE from a client");
+            case PING:
+                onPing(flags, streamId, length);
+                break;
+            case GOAWAY:
+                if (streamId != 0) {
+                    throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "GOAWAY on a stream");
+                }
+                goAwayReceived = true;
+                break;
+            case WINDOW_UPDATE:
+                onWindowUpdate(streamId, length);
+                break;
+            case CONTINUATION:
+                onContinuation(flags, streamId, length);
+                break;
+            default:
+                // unknown frame types are ignored, section 4.1
+                break;
+        }
+    }
+
+    private void onData(final int flags, final int streamId, final int length) throws IOException, Http2Exception {
+        requireStream(streamId);
+        synchronized (this) {
+            connectionReceiveWindow -= length;
+            if (connectionReceiveWindow < 0) {
+                throw Http2Exception.connectionError(ErrorCode.FLOW_CONTROL_ERROR, "connection window exceeded");
+            }
+            connectionReceiveWindow += length;
+        }
+        if (length > 0) {
+            writeWindowUpdate(0, length);
+        }
+        final Stream stream = streams.get(streamId);
+        if (stream == null || stream.endOfStreamReceived || stream.headers == null) {
+            throw Http2Exception.streamError(streamId, ErrorCode.STREAM_CLOSED, "DATA on a closed stream");
+        }
+        stream.receiveWindow -= length;
+        if (stream.receiveWindow < 0) {
+            throw Http2Exception.streamError(streamId, ErrorCode.FLOW_CONTROL_ERROR, "stream window exceeded");
+        }
+        final int padding = padding(flags, streamId, length);
+        final int offset = (flags & FLAG_PADDED) != 0 ? 1 : 0;
+        if (stream.body.size() + length - offset - padding > MAX_BODY_SIZE) {
+            throw Http2Exception.streamError(streamId, ErrorCode.CANCEL, "request body too large");
+        }
+        stream.body.write(payload, offset, length - offset - padding);
+        if ((flags & FLAG_END_STREAM) != 0) {
+            stream.endOfStreamReceived = true;
+            dispatch(stream);
+        } else if (length > 0) {
+            stream.receiveWindow += length;
+            writeWindowUpdate(streamId, length);
+        }
+    }
+
+    private int padding(final int flags, final int streamId, final int length) throws Http2Exception {
+        if ((flags & FLAG_PADDED) == 0) {
+            return 0;
+        }
+        if (length < 1) {
+            throw Http2Exception.connectionError(ErrorCode.FRAME_SIZE_ERROR, "padded frame without padding");
+        }
+        final int padding = payload[0] & 0xff;
+        if (padding >= length) {
+            throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "padding too long on " + streamId);
+        }
+        return padding;
+    }
+
+    private void onHeaders(final int flags, final int streamId, final int length)
+            throws IOException, Http2Exception {
+        requireStream(streamId);
+        Stream stream = streams.get(streamId);
+        if (stream == null) {
+            if (streamId <= lastStreamId || (streamId & 1) == 0) {
+                throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "invalid stream " + streamId);
+            }
+            stream = openStream(streamId);
+        } else if (stream.endOfStreamReceived) {
+            throw Http2Exception.connectionError(ErrorCode.STREAM_CLOSED, "HEADERS on a closed stream");
+        }
+        final int padding = padding(flags, streamId, length);
+        int offset = (flags & FLAG_PADDED) != 0 ? 1 : 0;
+        if ((flags & FLAG_PRIORITY) != 0) {
+            offset += 5;
+        }
+        if (offset + padding > length) {
+            throw Http2Exception.connectionError(ErrorCode.FRAME_SIZE_ERROR, "HEADERS too short");
+        }
+        headerBlock.reset();
+        headerBlock.write(payload, offset, length - offset - padding);
+        headerStream = stream;
+        headerEndStream = (flags & FLAG_END_STREAM) != 0;
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            onHeaderBlock();
+        }
+    }
+
+    private void onContinuation(final int flags, final int streamId, final int length)
+            throws IOException, Http2Exception {
+        if (headerStream == null) {
+            throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "CONTINUATION without HEADERS");
+        }
+        if (headerBlock.size() + length > MAX_HEADER_BLOCK_SIZE) {
+            throw Http2Exception.connectionError(ErrorCode.ENHANCE_YOUR_CALM, "header block too large");
+        }
+        headerBlock.write(payload, 0, length);
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            onHeaderBlock();
+        }
+    }
+
+    private void onHeaderBlock() throws IOException, Http2Exception {
+        final Stream stream = headerStream;
+        headerStream = null;
+        final List<HeaderField> fields;
+        try {
+            fields = decoder.decode(headerBlock.toByteArray(), headerBlock.size());
+        } catch (HeaderListSizeException e) {
+            if (stream.reset) {
+                return;
+            }
+            throw Http2Exception.streamError(stream.id, ErrorCode.ENHANCE_YOUR_CALM, e.getMessage());
+        } catch (HpackException e) {
+            throw Http2Exception.connectionError(ErrorCode.COMPRESSION_ERROR, e.getMessage());
+        }
+        if (stream.headers != null) {
+            // trailers, which the request does not expose
+            if (!headerEndStream) {
+                throw Http2Exception.streamError(stream.id, ErrorCode.PROTOCOL_ERROR, "trailers without END_STREAM");
+            }
+        } else {
+            stream.headers = fields;
+            if (stream.reset) {
+                return;
+            }
+        }
+        if (headerEndStream) {
+            stream.endOfStreamReceived = true;
+            dispatch(stream);
+        }
+    }
+
+    private Stream openStream(final int streamId) throws IOException {
+        lastStreamId = streamId;
+        final Stream stream;
+        synchronized (this) {
+            stream = new Stream(streamId, initialSendWindow, DEFAULT_WINDOW_SIZE);
+            if (activeStreams >= MAX_CONCURRENT_STREAMS || goAwayReceived) {
+                // the header block still has to be decoded, for the HPACK context
+                stream.reset = true;
+            } else {
+                activeStreams++;
+                streams.put(streamId, stream);
+            }
+        }
+        if (stream.reset) {
+            writeFrame(RST_STREAM, 0, streamId, intBytes(ErrorCode.REFUSED_STREAM.getCode()), 4);
+        }
+        return stream;
+    }
+
+    private void onResetStream(final int streamId, final int length) throws Http2Exception {
+        requireStream(streamId);
+        if (length != 4) {
+            throw Http2Exception.connectionError(ErrorCode.FRAME_SIZE_ERROR, "RST_STREAM size");
+        }
+        if (streamId > lastStreamId) {
+            throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "RST_STREAM on an idle stream");
+        }
+        final Stream stream = streams.get(streamId);
+        if (stream != null) {
+            stream.reset = true;
+            if (stream.dispatched) {
+                // the handler closes the stream once it sees the reset
+                synchronized (this) {
+                    notifyAll();
+                }
+            } else {
+                closeStream(stream);
+            }
+        }
+    }
+
+    private void onSettings(final int flags, final int streamId, final int length)
+            throws IOException, Http2Exception {
+        if (streamId != 0) {
+            throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "SETTINGS on a stream");
+        }
+        if ((flags & FLAG_ACK) != 0) {
+            if (length != 0) {
+                throw Http2Exception.connectionError(ErrorCode.FRAME_SIZE_ERROR, "SETTINGS ACK with a payload");
+            }
+            return;
+        }
+        applySettings(payload, length);
+        writeFrame(SETTINGS, FLAG_ACK, 0, payload, 0);
+    }
+
+    private void applySettings(final byte[] settings, final int length) throws Http2Exception {
+        if (length % 6 != 0) {
+            throw Http2Exception.connectionError(ErrorCode.FRAME_SIZE_ERROR, "SETTINGS size");
+        }
+        for (int i = 0; i < length; i += 6) {
+            final int identifier = ((settings[i] & 0xff) << 8) | (settings[i + 1] & 0xff);
+            final long value = readUnsignedInt(settings, i + 2);
+            switch (identifier) {
+                case SETTINGS_HEADER_TABLE_SIZE:
+                    synchronized (outputStream) {
+                        encoder.setMaxTableSize((int) Math.min(value, Integer.MAX_VALUE));
+                    }
+                    break;
+                case SETTINGS_ENABLE_PUSH:
+                    if (value > 1) {
+                        throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "ENABLE_PUSH " + value);
+                    }
+                    break;
+                case SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (value > MAX_WINDOW_SIZE) {
+                        throw Http2Exception.connectionError(ErrorCode.FLOW_CONTROL_ERROR,
+                                "INITIAL_WINDOW_SIZE " + value);
+                    }
+                    updateInitialWindow((int) value);
+                    break;
+                case SETTINGS_MAX_FRAME_SIZE:
+                    if (value < DEFAULT_MAX_FRAME_SIZE || value > MAX_ALLOWED_FRAME_SIZE) {
+                        throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "MAX_FRAME_SIZE " + value);
+                    }
+                    peerMaxFrameSize = (int) value;
+                    break;
+                default:
+                    // MAX_CONCURRENT_STREAMS only limits pushes, which are not made
+                    break;
+            }
+        }
+    }
+
+    private synchronized void updateInitialWindow(final int value) throws Http2Exception {
+        final int delta = value - initialSendWindow;
+        initialSendWindow = value;
+        for (final Stream stream : streams.values()) {
+            stream.sendWindow += delta;
+            if (stream.sendWindow > MAX_WINDOW_SIZE) {
+                throw Http2Exception.connectionError(ErrorCode.FLOW_CONTROL_ERROR, "stream window overflow");
+            }
+        }
+        notifyAll();
+    }
+
+    private void onPing(final int flags, final int streamId, final int length) throws IOException, Http2Exception {
+        if (streamId != 0) {
+            throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "PING on a stream");
+        }
+        if (length != 8) {
+            throw Http2Exception.connectionError(ErrorCode.FRAME_SIZE_ERROR, "PING size");
+        }
+        if ((flags & FLAG_ACK) == 0) {
+            writeFrame(PING, FLAG_ACK, 0, Arrays.copyOf(payload, 8), 8);
+        }
+    }
+
+    private void onWindowUpdate(final int streamId, final int length) throws Http2Exception {
+        if (length != 4) {
+            throw Http2Exception.connectionError(ErrorCode.FRAME_SIZE_ERROR, "WINDOW_UPDATE size");
+        }
+        final long increment = readUnsignedInt(payload, 0) & 0x7fffffffL;
+        if (increment == 0) {
+            if (streamId == 0) {
+                throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "window increment of 0");
+            }
+            throw Http2Exception.streamError(streamId, ErrorCode.PROTOCOL_ERROR, "window increment of 0");
+        }
+        synchronized (this) {
+            if (streamId == 0) {
+                connectionSendWindow += increment;
+                if (connectionSendWindow > MAX_WINDOW_SIZE) {
+                    throw Http2Exception.connectionError(ErrorCode.FLOW_CONTROL_ERROR, "connection window overflow");
+                }
+            } else {
+                final Stream stream = streams.get(streamId);
+                if (stream == null) {
+                    // the stream may have closed since the peer sent it
+                    return;
+                }
+                stream.sendWindow += increment;
+                if (stream.sendWindow > MAX_WINDOW_SIZE) {
+                    throw Http2Exception.streamError(streamId, ErrorCode.FLOW_CONTROL_ERROR, "stream window overflow");
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    private void requireStream(final int streamId) throws Http2Exception {
+        if (streamId == 0) {
+            throw Http2Exception.connectionError(ErrorCode.PROTOCOL_ERROR, "frame on stream 0");
+        }
+    }
+
+    private void dispatch(final Stream stream) throws IOException {
+        if (stream.reset) {
+            return;
+        }
+        try {
+            executor.execute(() -> process(stream));
+            stream.dispatched = true;
+        } catch (RejectedExecutionException e) {
+            resetStream(stream.id, ErrorCode.REFUSED_STREAM);
+        }
+    }
+
+    private void process(final Stream stream) {
+        final HttpResponse response = new HttpResponse();
+        final HttpRequest request;
+        try {
+            request = stream.request != null ? stream.request : toRequest(stream);
+        } catch (IllegalArgumentException e) {
+            log.debug("bad request on stream {}: {}", stream.id, e.getMessage());
+            StaticResources.renderError(response, HttpStatus.BAD_REQUEST);
+            respond(stream, null, response);
+            return;
+        }
+        request.setManager(manager);
+        request.setAsyncExecutor(executor);
+        final Controller controller = requestMapping.getController(request);
+        try {
+            controller.service(request, response);
+        } catch (BadRequestException e) {
+            log.debug("bad request on stream {}: {}", stream.id, e.getMessage());
+            response.reset();
+            StaticResources.renderError(response, HttpStatus.BAD_REQUEST);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().complete();
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            response.reset();
+            StaticResources.renderError(response, HttpStatus.INTERNAL_SERVER_ERROR);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().complete();
+            }
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().onComplete(() -> executor.execute(() -> respond(stream, request, response)));
+            return;
+        }
+        respond(stream, request, response);
+    }
+
+    /**
+     * Build the request from the decoded header fields, rejecting those that
+     * RFC 7540 section 8.1.2 calls malformed.
+     */
+    private HttpRequest toRequest(final Stream stream) {
+        String method = null;
+        String path = null;
+        String scheme = null;
+        String authority = null;
+        final StringBuilder head = new StringBuilder();
+        final List<String> cookies = new ArrayList<>(1);
+        boolean regular = false;
+        boolean host = false;
+        String contentLength = null;
+        for (final HeaderField field : stream.headers) {
+            final String name = field.name;
+            if (!name.equals(name.toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("uppercase header name " + name);
+            }
+            if (name.startsWith(":")) {
+                if (regular) {
+                    throw new IllegalArgumentException("pseudo-header after a regular header");
+                }
+                switch (name) {
+                    case ":method":
+                        method = single(method, field);
+                        break;
+                    case ":path":
+                        path = single(path, field);
+                        break;
+                    case ":scheme":
+                        scheme = single(scheme, field);
+                        break;
+                    case ":authority":
+                        authority = single(authority, field);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown pseudo-header " + name);
+                }
+                continue;
+            }
+            regular = true;
+            if (CONNECTION_HEADERS.contains(name) || ("te".equals(name) && !"trailers".equals(field.value))) {
+                throw new IllegalArgumentException("connection-specific header " + name);
+            }
+            if ("cookie".equals(name)) {
+                cookies.add(field.value);
+                continue;
+            }
+            if ("content-length".equals(name)) {
+                contentLength = field.value;
+            }
+            host |= "host".equals(name);
+            head.append(name).append(": ").append(field.value).append("\r\n");
+        }
+        if (method == null || path == null || scheme == null || path.isEmpty()) {
+            throw new IllegalArgumentException("missing pseudo-header");
+        }
+        if (contentLength != null && !contentLength.equals(String.valueOf(stream.body.size()))) {
+            throw new IllegalArgumentException("content-length does not match the body");
+        }
+        if (!host && authority != null) {
+            head.append("host: ").append(authority).append("\r\n");
+        }
+        if (!cookies.isEmpty()) {
+            head.append("cookie: ").append(String.join("; ", cookies)).append("\r\n");
+        }
+        final byte[] raw = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        return new HttpRequest(method, path, "HTTP/2.0", new HttpHeaders(raw, 0, raw.length),
+                stream.body.toByteArray());
+    }
+
+    private static String single(final String current, final HeaderField field) {
+        if (current != null) {
+            throw new IllegalArgumentException("repeated pseudo-header " + field.name);
+        }
+        return field.value;
+    }
+
+    private void respond(final Stream stream, final HttpRequest request, final HttpResponse response) {
+        long bytesSent = 0;
+        try {
+            if (request != null && request.isSessionCreated()) {
+                response.addCookie(SetCookie.sessionCookie(request.getSession(false).getId()));
+            }
+            final byte[] body = response.getBody();
+            bytesSent += writeHeaders(stream, responseFields(response), body.length == 0);
+            if (body.length > 0) {
+                bytesSent += writeData(stream, body);
+            }
+        } catch (IOException e) {
+            log.debug("failed to write stream {}: {}", stream.id, e.getMessage());
+        } finally {
+            final long duration = System.nanoTime() - stream.startTime;
+            requestMetrics.addBytesSent(bytesSent);
+            requestMetrics.record(request != null ? requestMapping.getRoute(request) : "invalid",
+                    response.getStatus(), duration);
+            if (accessLog != null) {
+                accessLog.log(remoteAddress, request, response.getStatus(), response.getBody().length, duration);
+            }
+            closeStream(stream);
+        }
+    }
+
+    private List<HeaderField> responseFields(final HttpResponse response) {
+        final List<HeaderField> fields = new ArrayList<>(response.getHeaders().size() + 2);
+        fields.add(new HeaderField(":status", String.valueOf(response.getStatus().getCode())));
+        for (final Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            final String name = header.getKey().toLowerCase(Locale.ROOT);
+            if (!CONNECTION_HEADERS.contains(name)) {
+                fields.add(new HeaderField(name, header.getValue()));
+            }
+        }
+        fields.add(new HeaderField("content-length", String.valueOf(response.getBody().length)));
+        for (final SetCookie cookie : response.getCookies()) {
+            final var value = new StringBuilder();
+            cookie.appendTo(value);
+            fields.add(new HeaderField("set-cookie", value.toString()));
+        }
+        return fields;
+    }
+
+    /**
+     * Encode and send the header block, split into a HEADERS frame and as
+     * many CONTINUATION frames as the peer's frame size requires.
+     *
+     * @return the bytes written
+     */
+    private int writeHeaders(final Stream stream, final List<HeaderField> fields, final boolean endStream)
+            throws IOException {
+        synchronized (outputStream) {
+            if (stream.reset) {
+                return 0;
+            }
+            final byte[] block = encoder.encode(fields);
+            final int frameSize = peerMaxFrameSize;
+            int offset = 0;
+            int type = HEADERS;
+            do {
+                final int length = Math.min(frameSize, block.length - offset);
+                int flags = offset + length == block.length ? FLAG_END_HEADERS : 0;
+                if (type == HEADERS && endStream) {
+                    flags |= FLAG_END_STREAM;
+                }
+                writeFrameHeader(length, type, flags, stream.id);
+                outputStream.write(block, offset, length);
+                offset += length;
+                type = CONTINUATION;
+            } while (offset < block.length);
+            outputStream.flush();
+            return block.length;
+        }
+    }
+
+    /**
+     * Send the body in DATA frames as the flow control windows allow.
+     *
+     * @return the bytes written, short of the body if the stream was reset or
+     * the connection closed meanwhile
+     */
+    private int writeData(final Stream stream, final byte[] body) throws IOException {
+        int offset = 0;
+        while (offset < body.length) {
+            final int length;
+            synchronized (this) {
+                while (!closed && !stream.reset && (connectionSendWindow <= 0 || stream.sendWindow <= 0)) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return offset;
+                    }
+                }
+                if (closed || stream.reset) {
+                    return offset;
+                }
+                length = (int) Math.min(Math.min(body.length - offset, peerMaxFrameSize),
+                        Math.min(connectionSendWindow, stream.sendWindow));
+                connectionSendWindow -= length;
+                stream.sendWindow -= length;
+            }
+            final boolean last = offset + length == body.length;
+            synchronized (outputStream) {
+                writeFrameHeader(length, DATA, last ? FLAG_END_STREAM : 0, stream.id);
+                outputStream.write(body, offset, length);
+                outputStream.flush();
+            }
+            offset += length;
+        }
+        return offset;
+    }
+
+    private void closeStream(final Stream stream) {
+        synchronized (this) {
+            if (streams.remove(stream.id) != null) {
+                activeStreams--;
+            }
+            notifyAll();
+        }
+    }
+
+    private void resetStream(final int streamId, final ErrorCode errorCode) throws IOException {
+        final Stream stream = streams.get(streamId);
+        if (stream != null) {
+            stream.reset = true;
+            closeStream(stream);
+        }
+        writeFrame(RST_STREAM, 0, streamId, intBytes(errorCode.getCode()), 4);
+    }
+
+    private void goAway(final ErrorCode errorCode, final String message) {
+        final byte[] debugData = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        final byte[] goAway = new byte[8 + debugData.length];
+        System.arraycopy(intBytes(lastStreamId), 0, goAway, 0, 4);
+        System.arraycopy(intBytes(errorCode.getCode()), 0, goAway, 4, 4);
+        System.arraycopy(debugData, 0, goAway, 8, debugData.length);
+        try {
+            writeFrame(GOAWAY, 0, 0, goAway, goAway.length);
+        } catch (IOException e) {
+            log.debug("failed to send GOAWAY: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Give the streams in progress a bounded time to finish once nothing more
+     * is read. Writers waiting for a window that can no longer open give up.
+     */
+    private synchronized void awaitStreams() {
+        closed = true;
+        notifyAll();
+        final long deadline = System.currentTimeMillis() + STREAM_DRAIN_MILLIS;
+        long remaining = STREAM_DRAIN_MILLIS;
+        while (activeStreams > 0 && remaining > 0) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    private void writeSettings() throws IOException {
+        final byte[] settings = new byte[12];
+        settings[1] = SETTINGS_MAX_CONCURRENT_STREAMS;
+        System.arraycopy(intBytes(MAX_CONCURRENT_STREAMS), 0, settings, 2, 4);
+        settings[7] = SETTINGS_MAX_HEADER_LIST_SIZE;
+        System.arraycopy(intBytes(MAX_HEADER_LIST_SIZE), 0, settings, 8, 4);
+        writeFrame(SETTINGS, 0, 0, settings, settings.length);
+    }
+
+    private void writeWindowUpdate(final int streamId, final int increment) throws IOException {
+        writeFrame(WINDOW_UPDATE, 0, streamId, intBytes(increment), 4);
+    }
+
+    private void writeFrame(final int type, final int flags, final int streamId, final byte[] frame,
+                            final int length) throws IOException {
+        synchronized (outputStream) {
+            writeFrameHeader(length, type, flags, streamId);
+            outputStream.write(frame, 0, length);
+            outputStream.flush();
+        }
+    }
+
+    private void writeFrameHeader(final int length, final int type, final int flags, final int streamId)
+            throws IOException {
+        outputStream.write(length >>> 16);
+        outputStream.write(length >>> 8);
+        outputStream.write(length);
+        outputStream.write(type);
+        outputStream.write(flags);
+        outputStream.write(intBytes(streamId));
+    }
+
+    private boolean readFrameHeader() throws IOException {
+        final int first = inputBuffer.read(frameHeader, 0, FRAME_HEADER_LENGTH);
+        if (first < 0) {
+            return false;
+        }
+        int read = first;
+        while (read < FRAME_HEADER_LENGTH) {
+            final int count = inputBuffer.read(frameHeader, read, FRAME_HEADER_LENGTH - read);
+            if (count < 0) {
+                throw new EOFException("connection closed in a frame header");
+            }
+            read += count;
+        }
+        return true;
+    }
+
+    private void readFully(final byte[] bytes, final int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            final int count = inputBuffer.read(bytes, read, length - read);
+            if (count < 0) {
+                throw new EOFException("connection closed in a frame");
+            }
+            read += count;
+        }
+    }
+
+    private static long readUnsignedInt(final byte[] bytes, final int offset) {
+        return ((long) (bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    private static byte[] intBytes(final int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+}
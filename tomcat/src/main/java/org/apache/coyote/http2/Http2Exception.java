@@ -0,0 +1,38 @@
+package org.apache.coyote.http2;
+
+/**
+ * A violation of the protocol by the peer. A stream error ends only the
+ * stream, with a RST_STREAM frame; a connection error, on stream 0, ends
+ * the connection with a GOAWAY frame.
+ */
+class Http2Exception extends Exception {
+
+    private final int streamId;
+    private final ErrorCode errorCode;
+
+    private Http2Exception(final int streamId, final ErrorCode errorCode, final String message) {
+        super(message);
+        this.streamId = streamId;
+        this.errorCode = errorCode;
+    }
+
+    static Http2Exception connectionError(final ErrorCode errorCode, final String message) {
+        return new Http2Exception(0, errorCode, message);
+    }
+
+    static Http2Exception streamError(final int streamId, final ErrorCode errorCode, final String message) {
+        return new Http2Exception(streamId, errorCode, message);
+    }
+
+    boolean isConnectionError() {
+        return streamId == 0;
+    }
+
+    int getStreamId() {
+        return streamId;
+    }
+
+    ErrorCode getErrorCode() {
+        return errorCode;
+    }
+}
@@ -0,0 +1,33 @@
+package org.apache.coyote.http2;
+
+import org.apache.coyote.http11.HttpRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * A request and its response on an HTTP/2 connection.
+ * <p>
+ * The request side is only touched by the thread reading the connection
+ * until the stream is dispatched; the windows are guarded by the lock of
+ * the connection.
+ */
+class Stream {
+
+    final int id;
+    final long startTime = System.nanoTime();
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    List<HeaderField> headers;
+    HttpRequest request;
+    boolean endOfStreamReceived;
+    boolean dispatched;
+    long sendWindow;
+    int receiveWindow;
+    volatile boolean reset;
+
+    Stream(final int id, final long sendWindow, final int receiveWindow) {
+        this.id = id;
+        this.sendWindow = sendWindow;
+        this.receiveWindow = receiveWindow;
+    }
+}
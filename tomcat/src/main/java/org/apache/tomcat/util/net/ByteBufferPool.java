@@ -0,0 +1,52 @@
+package org.apache.tomcat.util.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Heap buffers of one size, handed out to connections and taken back when
+ * they close, so that a new connection does not allocate its buffers.
+ * Buffers are allocated when the pool is empty; those returned to a full
+ * pool are left to the garbage collector.
+ */
+public class ByteBufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * @param maxPooled most buffers kept between connections
+     */
+    public ByteBufferPool(final int bufferSize, final int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * @return an empty buffer, ready to be written to
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(bufferSize);
+    }
+
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize) {
+            return;
+        }
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return buffers waiting to be reused
+     */
+    public int getPooled() {
+        return buffers.size();
+    }
+}
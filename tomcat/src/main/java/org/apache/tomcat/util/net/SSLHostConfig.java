@@ -0,0 +1,93 @@
+package org.apache.tomcat.util.net;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * TLS configuration of a connector: the keystore holding the server
+ * certificate and key, the protocols enabled and the server session cache.
+ * <p>
+ * Sessions are kept in the cache for the session timeout so that returning
+ * clients resume them with an abbreviated handshake: by session ID in TLS
+ * 1.2 and by the pre-shared key of a session ticket in TLS 1.3. On Java 13
+ * and later the tickets carry the encrypted session state themselves unless
+ * <code>jdk.tls.server.enableSessionTicketExtension</code> is turned off,
+ * so resumption does not depend on the cache size.
+ */
+public class SSLHostConfig {
+
+    public static final String[] DEFAULT_PROTOCOLS = {"TLSv1.3", "TLSv1.2"};
+    private static final int DEFAULT_SESSION_CACHE_SIZE = 20_480;
+    private static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 86_400;
+
+    private final Path keystoreFile;
+    private final char[] keystorePassword;
+    private String keystoreType = "PKCS12";
+    private String[] protocols = DEFAULT_PROTOCOLS;
+    private int sessionCacheSize = DEFAULT_SESSION_CACHE_SIZE;
+    private int sessionTimeoutSeconds = DEFAULT_SESSION_TIMEOUT_SECONDS;
+
+    public SSLHostConfig(final Path keystoreFile, final String keystorePassword) {
+        this.keystoreFile = keystoreFile;
+        this.keystorePassword = keystorePassword.toCharArray();
+    }
+
+    public void setKeystoreType(final String keystoreType) {
+        this.keystoreType = keystoreType;
+    }
+
+    public void setProtocols(final String... protocols) {
+        this.protocols = protocols.clone();
+    }
+
+    public String[] getProtocols() {
+        return protocols.clone();
+    }
+
+    /**
+     * @param sessionCacheSize most sessions kept for resumption, 0 for no limit
+     */
+    public void setSessionCacheSize(final int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    /**
+     * @param sessionTimeoutSeconds how long a session can be resumed, 0 for
+     *                              no limit
+     */
+    public void setSessionTimeoutSeconds(final int sessionTimeoutSeconds) {
+        this.sessionTimeoutSeconds = sessionTimeoutSeconds;
+    }
+
+    /**
+     * Load the keystore and create the context the engines of the connector
+     * are created from.
+     *
+     * @throws IOException if the keystore cannot be read or holds no usable
+     *                     key
+     */
+    public SSLContext createSSLContext() throws IOException {
+        try (final InputStream in = Files.newInputStream(keystoreFile)) {
+            final KeyStore keyStore = KeyStore.getInstance(keystoreType);
+            keyStore.load(in, keystorePassword);
+            final KeyManagerFactory keyManagerFactory =
+                    KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, keystorePassword);
+            final SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+            final SSLSessionContext sessionContext = sslContext.getServerSessionContext();
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+            sessionContext.setSessionTimeout(sessionTimeoutSeconds);
+            return sslContext;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("cannot load keystore " + keystoreFile + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package org.apache.tomcat.util.net;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An accepted connection that encrypts what is written to its streams and
+ * decrypts what is read from them with a server {@link SSLEngine}, so that
+ * the processors read and write it as they do a plain socket.
+ * <p>
+ * The handshake is made on the first read or write. Afterwards one thread
+ * may read while others write, as HTTP/2 does: reading and writing are
+ * locked separately, the reading side taking the writing lock too when the
+ * engine has a post-handshake message to send. The network and plaintext
+ * buffers are taken from the pools of the factory and given back on close.
+ * <p>
+ * Close waits a bounded time for a writer to get out of the way before
+ * sending close_notify. A writer stalled on a peer that stopped reading is
+ * not waited for: the connection is closed under it, which fails its write.
+ */
+public class SecureSocket extends Socket {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final long CLOSE_NOTIFY_TIMEOUT_MILLIS = 1000L;
+
+    private final Socket socket;
+    private final SSLEngine engine;
+    private final SecureSocketFactory factory;
+    private final InputStream rawInput;
+    private final OutputStream rawOutput;
+    private final Object readLock = new Object();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // network bytes received, in write mode
+    private ByteBuffer netIn;
+    // records to send, in read mode once wrapped
+    private ByteBuffer netOut;
+    // plaintext not read yet, in read mode
+    private ByteBuffer appIn;
+    private volatile boolean handshakeComplete;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    SecureSocket(final Socket socket, final SSLEngine engine, final SecureSocketFactory factory) throws IOException {
+        this.socket = socket;
+        this.engine = engine;
+        this.factory = factory;
+        this.rawInput = socket.getInputStream();
+        this.rawOutput = socket.getOutputStream();
+        this.netIn = factory.getPacketBuffers().acquire();
+        this.netOut = factory.getPacketBuffers().acquire();
+        this.appIn = factory.getApplicationBuffers().acquire();
+        this.appIn.flip();
+    }
+
+    /**
+     * @return the protocol agreed on with ALPN, such as <code>h2</code>, or
+     * <code>null</code> if none was
+     */
+    public String getApplicationProtocol() throws IOException {
+        ensureHandshake();
+        final String protocol = engine.getApplicationProtocol();
+        return protocol == null || protocol.isEmpty() ? null : protocol;
+    }
+
+    public SSLSession getSession() {
+        return engine.getSession();
+    }
+
+    private void ensureHandshake() throws IOException {
+        if (handshakeComplete) {
+            return;
+        }
+        synchronized (readLock) {
+            writeLock.lock();
+            try {
+                if (handshakeComplete) {
+                    return;
+                }
+                checkOpen();
+                final long start = System.currentTimeMillis();
+                try {
+                    handshake();
+                } catch (IOException e) {
+                    factory.handshakeFailed();
+                    throw e;
+                }
+                handshakeComplete = true;
+                factory.handshakeCompleted(engine.getSession().getCreationTime() < start);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void handshake() throws IOException {
+        engine.beginHandshake();
+        SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+        while (status != SSLEngineResult.HandshakeStatus.FINISHED
+                && status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+            switch (status) {
+                case NEED_UNWRAP:
+                case NEED_UNWRAP_AGAIN:
+                    status = unwrap().getHandshakeStatus();
+                    break;
+                case NEED_WRAP:
+                    status = wrap(EMPTY).getHandshakeStatus();
+                    break;
+                case NEED_TASK:
+                    runDelegatedTasks();
+                    status = engine.getHandshakeStatus();
+                    break;
+                default:
+                    throw new SSLException("unexpected handshake status " + status);
+            }
+        }
+    }
+
+    private void runDelegatedTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Decrypt the next record into the plaintext buffer, reading from the
+     * network as much as it takes.
+     *
+     * @throws EOFException if the connection closed before the record ended
+     */
+    private SSLEngineResult unwrap() throws IOException {
+        while (true) {
+            netIn.flip();
+            appIn.compact();
+            final SSLEngineResult result;
+            try {
+                result = engine.unwrap(netIn, appIn);
+            } finally {
+                netIn.compact();
+                appIn.flip();
+            }
+            switch (result.getStatus()) {
+                case OK:
+                case CLOSED:
+                    return result;
+                case BUFFER_UNDERFLOW:
+                    if (!fill()) {
+                        throw new EOFException("connection closed in a TLS record");
+                    }
+                    break;
+                default:
+                    throw new SSLException("no room to decrypt a record: " + result);
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (!netIn.hasRemaining()) {
+            throw new SSLException("TLS record larger than " + netIn.capacity() + " bytes");
+        }
+        final int count = rawInput.read(netIn.array(), netIn.arrayOffset() + netIn.position(), netIn.remaining());
+        if (count < 0) {
+            return false;
+        }
+        netIn.position(netIn.position() + count);
+        return true;
+    }
+
+    /**
+     * Encrypt one record of the source, or a handshake message, and send it.
+     */
+    private SSLEngineResult wrap(final ByteBuffer source) throws IOException {
+        netOut.clear();
+        final SSLEngineResult result = engine.wrap(source, netOut);
+        netOut.flip();
+        if (result.getStatus() != SSLEngineResult.Status.OK && result.getStatus() != SSLEngineResult.Status.CLOSED) {
+            throw new SSLException("cannot encrypt a record: " + result);
+        }
+        if (netOut.hasRemaining()) {
+            rawOutput.write(netOut.array(), netOut.arrayOffset() + netOut.position(), netOut.remaining());
+        }
+        if (result.getStatus() == SSLEngineResult.Status.CLOSED && source.hasRemaining()) {
+            throw new SocketException("TLS connection closed");
+        }
+        return result;
+    }
+
+    private int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        ensureHandshake();
+        synchronized (readLock) {
+            checkOpen();
+            while (!appIn.hasRemaining()) {
+                final SSLEngineResult result = unwrap();
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                    return -1;
+                }
+                afterUnwrap(result.getHandshakeStatus());
+            }
+            final int count = Math.min(length, appIn.remaining());
+            appIn.get(bytes, offset, count);
+            return count;
+        }
+    }
+
+    /**
+     * Answer what a post-handshake message asks for, such as a key update.
+     */
+    private void afterUnwrap(SSLEngineResult.HandshakeStatus status) throws IOException {
+        while (true) {
+            if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                runDelegatedTasks();
+                status = engine.getHandshakeStatus();
+            } else if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                writeLock.lock();
+                try {
+                    status = wrap(EMPTY).getHandshakeStatus();
+                } finally {
+                    writeLock.unlock();
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        ensureHandshake();
+        writeLock.lock();
+        try {
+            checkOpen();
+            final ByteBuffer source = ByteBuffer.wrap(bytes, offset, length);
+            while (source.hasRemaining()) {
+                wrap(source);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void checkOpen() throws SocketException {
+        if (closed.get()) {
+            throw new SocketException("Socket is closed");
+        }
+    }
+
+    /**
+     * Send close_notify, close the connection and give the buffers back,
+     * once however many threads close it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (handshakeComplete) {
+            sendCloseNotify();
+        }
+        socket.close();
+        synchronized (readLock) {
+            writeLock.lock();
+            try {
+                factory.getPacketBuffers().release(netIn);
+                factory.getPacketBuffers().release(netOut);
+                factory.getApplicationBuffers().release(appIn);
+                netIn = null;
+                netOut = null;
+                appIn = null;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void sendCloseNotify() {
+        try {
+            if (!writeLock.tryLock(CLOSE_NOTIFY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                // a writer is stuck on the peer, which will not read close_notify either
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            engine.closeOutbound();
+            wrap(EMPTY);
+        } catch (IOException ignored) {
+            // the peer may be gone already
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                final byte[] single = new byte[1];
+                final int count = SecureSocket.this.read(single, 0, 1);
+                return count < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                return SecureSocket.this.read(bytes, offset, length);
+            }
+        };
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                SecureSocket.this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+                SecureSocket.this.write(bytes, offset, length);
+            }
+        };
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return socket.getInetAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return socket.getPort();
+    }
+
+    @Override
+    public InetAddress getLocalAddress() {
+        return socket.getLocalAddress();
+    }
+
+    @Override
+    public int getLocalPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return socket.getRemoteSocketAddress();
+    }
+
+    @Override
+    public void setSoTimeout(final int timeout) throws SocketException {
+        socket.setSoTimeout(timeout);
+    }
+
+    @Override
+    public int getSoTimeout() throws SocketException {
+        return socket.getSoTimeout();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket.isConnected();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed.get();
+    }
+}
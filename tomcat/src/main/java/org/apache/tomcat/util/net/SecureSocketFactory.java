@@ -0,0 +1,109 @@
+package org.apache.tomcat.util.net;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps the connections accepted by a connector in a {@link SecureSocket},
+ * one server engine each, all from the same context so that they share its
+ * session cache. The engine buffers come from pools shared by the
+ * connections, sized for the largest TLS record.
+ */
+public class SecureSocketFactory {
+
+    private static final int DEFAULT_MAX_POOLED_BUFFERS = 256;
+
+    private final SSLContext sslContext;
+    private final String[] protocols;
+    private final List<String> applicationProtocols;
+    private final ByteBufferPool packetBuffers;
+    private final ByteBufferPool applicationBuffers;
+    private final LongAdder handshakes = new LongAdder();
+    private final LongAdder resumedHandshakes = new LongAdder();
+    private final LongAdder failedHandshakes = new LongAdder();
+
+    /**
+     * @param applicationProtocols the ALPN protocols supported, in the order
+     *                             of preference, such as <code>h2</code>
+     *                             and <code>http/1.1</code>
+     */
+    public SecureSocketFactory(final SSLHostConfig config, final List<String> applicationProtocols)
+            throws IOException {
+        this.sslContext = config.createSSLContext();
+        this.protocols = config.getProtocols();
+        this.applicationProtocols = List.copyOf(applicationProtocols);
+        final SSLSession session = sslContext.createSSLEngine().getSession();
+        this.packetBuffers = new ByteBufferPool(session.getPacketBufferSize(), DEFAULT_MAX_POOLED_BUFFERS * 2);
+        this.applicationBuffers = new ByteBufferPool(session.getApplicationBufferSize(), DEFAULT_MAX_POOLED_BUFFERS);
+    }
+
+    /**
+     * Wrap an accepted connection. The handshake is made on the first read
+     * or write, on the thread that processes the connection.
+     */
+    public SecureSocket wrap(final Socket socket) throws IOException {
+        final SSLEngine engine = sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        final SSLParameters parameters = engine.getSSLParameters();
+        parameters.setProtocols(protocols);
+        engine.setSSLParameters(parameters);
+        engine.setHandshakeApplicationProtocolSelector((sslEngine, offered) -> selectApplicationProtocol(offered));
+        return new SecureSocket(socket, engine, this);
+    }
+
+    /**
+     * @return the first of our protocols the client offered, or
+     * <code>null</code> to leave ALPN out of the handshake
+     */
+    private String selectApplicationProtocol(final List<String> offered) {
+        for (final String protocol : applicationProtocols) {
+            if (offered.contains(protocol)) {
+                return protocol;
+            }
+        }
+        return null;
+    }
+
+    ByteBufferPool getPacketBuffers() {
+        return packetBuffers;
+    }
+
+    ByteBufferPool getApplicationBuffers() {
+        return applicationBuffers;
+    }
+
+    void handshakeCompleted(final boolean resumed) {
+        handshakes.increment();
+        if (resumed) {
+            resumedHandshakes.increment();
+        }
+    }
+
+    void handshakeFailed() {
+        failedHandshakes.increment();
+    }
+
+    /**
+     * @return handshakes completed, resumed ones included
+     */
+    public long getHandshakes() {
+        return handshakes.sum();
+    }
+
+    /**
+     * @return handshakes that resumed an earlier session
+     */
+    public long getResumedHandshakes() {
+        return resumedHandshakes.sum();
+    }
+
+    public long getFailedHandshakes() {
+        return failedHandshakes.sum();
+    }
+}
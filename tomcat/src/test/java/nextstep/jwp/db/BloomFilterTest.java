@@ -0,0 +1,46 @@
+package nextstep.jwp.db;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void neverMissesPutValues() {
+        // given
+        final BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("account-" + i);
+        }
+
+        // then
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("account-" + i)).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearConfiguredRate() {
+        // given
+        final BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("account-" + i);
+        }
+
+        // when
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("stranger-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // then
+        assertThat(falsePositives).isLessThan(2_000);
+        assertThat(filter.getHashFunctions()).isEqualTo(7);
+        assertThat(filter.getEstimatedFalsePositiveRate()).isLessThan(0.02);
+    }
+}
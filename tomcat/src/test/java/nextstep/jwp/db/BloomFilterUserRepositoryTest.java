@@ -0,0 +1,83 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterUserRepositoryTest {
+
+    private final CountingUserRepository repository = new CountingUserRepository();
+    private final BloomFilterUserRepository userRepository = new BloomFilterUserRepository(repository, 1000, 0.01);
+
+    @Test
+    void rejectUnknownAccountWithoutLookup() {
+        // when
+        final Optional<User> user = userRepository.findByAccount("stranger");
+
+        // then
+        assertThat(user.isEmpty()).isTrue();
+        assertThat(repository.lookups).isZero();
+        assertThat(userRepository.getRejectedLookups()).isEqualTo(1L);
+    }
+
+    @Test
+    void findExistingAndNewlyRegisteredAccounts() {
+        // given
+        userRepository.saveIfAbsent(new User("rex", "secret", "rex@woowahan.com"));
+
+        // when
+        final Optional<User> existing = userRepository.findByAccount("gugu");
+        final Optional<User> registered = userRepository.findByAccount("rex");
+
+        // then
+        assertThat(existing.isPresent()).isTrue();
+        assertThat(registered.isPresent()).isTrue();
+        assertThat(repository.lookups).isEqualTo(2);
+    }
+
+    @Test
+    void rebuildSeesAccountsSavedBehindTheFilter() {
+        // given
+        repository.save(new User("elsewhere", "password", "elsewhere@woowahan.com"));
+
+        // when
+        userRepository.rebuild(1000);
+
+        // then
+        assertThat(userRepository.findByAccount("elsewhere").isPresent()).isTrue();
+    }
+
+    @Test
+    void rebuildOnIntervalToSeeAccountsOfOtherNodes() throws InterruptedException {
+        // given
+        repository.save(new User("elsewhere", "password", "elsewhere@woowahan.com"));
+
+        // when
+        userRepository.startRebuilding(10);
+
+        // then
+        try {
+            final long deadline = System.currentTimeMillis() + 5_000;
+            while (userRepository.findByAccount("elsewhere").isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(userRepository.findByAccount("elsewhere").isPresent()).isTrue();
+        } finally {
+            userRepository.stopRebuilding();
+        }
+    }
+
+    private static class CountingUserRepository extends InMemoryUserRepository {
+
+        private int lookups;
+
+        @Override
+        public Optional<User> findByAccount(final String account) {
+            lookups++;
+            return super.findByAccount(account);
+        }
+    }
+}
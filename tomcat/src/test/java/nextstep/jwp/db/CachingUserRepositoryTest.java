@@ -0,0 +1,106 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.junit.jupiter.api.Test;
+import support.FakeClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingUserRepositoryTest {
+
+    private final FakeClock clock = new FakeClock(1_000_000L);
+    private final CountingUserRepository repository = new CountingUserRepository();
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private final CachingUserRepository cache = new CachingUserRepository(repository, 3, refreshes::add, clock);
+
+    @Test
+    void readThrough() {
+        // when
+        cache.findByAccount("gugu");
+        final Optional<User> user = cache.findByAccount("gugu");
+
+        // then
+        assertThat(user.orElseThrow().getEmail()).isEqualTo("hkkang@woowahan.com");
+        assertThat(repository.lookups).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1L);
+    }
+
+    @Test
+    void cacheMissingAccountForShorterTime() {
+        // given
+        cache.setNegativeTtlMillis(1000L);
+        cache.findByAccount("nobody");
+
+        // when
+        cache.findByAccount("nobody");
+        clock.advance(1000L);
+        cache.findByAccount("nobody");
+
+        // then
+        assertThat(repository.lookups).isEqualTo(2);
+    }
+
+    @Test
+    void registrationReplacesNegativeEntry() {
+        // given
+        cache.findByAccount("rex");
+
+        // when
+        cache.saveIfAbsent(new User("rex", "secret", "rex@woowahan.com"));
+
+        // then
+        assertThat(cache.findByAccount("rex").isPresent()).isTrue();
+        assertThat(repository.lookups).isEqualTo(1);
+    }
+
+    @Test
+    void refreshAheadServesCachedUserWithoutWaiting() {
+        // given
+        cache.setTtlMillis(10_000L);
+        cache.findByAccount("gugu");
+        clock.advance(9_000L);
+
+        // when
+        final Optional<User> user = cache.findByAccount("gugu");
+        cache.findByAccount("gugu");
+
+        // then
+        assertThat(user.isPresent()).isTrue();
+        assertThat(repository.lookups).isEqualTo(1);
+        assertThat(refreshes).hasSize(1);
+        refreshes.get(0).run();
+        assertThat(repository.lookups).isEqualTo(2);
+        clock.advance(5_000L);
+        cache.findByAccount("gugu");
+        assertThat(repository.lookups).isEqualTo(2);
+    }
+
+    @Test
+    void evictOldestWhenFull() {
+        // when
+        for (int i = 0; i < 5; i++) {
+            cache.findByAccount("user-" + i);
+        }
+
+        // then
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.getEvictions()).isEqualTo(2L);
+        cache.findByAccount("user-0");
+        assertThat(repository.lookups).isEqualTo(6);
+    }
+
+    private static class CountingUserRepository extends InMemoryUserRepository {
+
+        private int lookups;
+
+        @Override
+        public Optional<User> findByAccount(final String account) {
+            lookups++;
+            return super.findByAccount(account);
+        }
+    }
+}
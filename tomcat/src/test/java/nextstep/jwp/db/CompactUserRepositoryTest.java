@@ -0,0 +1,111 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import nextstep.jwp.security.PasswordEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactUserRepositoryTest {
+
+    private final PasswordEncoder passwordEncoder = new PasswordEncoder(1);
+    private final CompactUserRepository userRepository = new CompactUserRepository();
+
+    @Test
+    void findByEveryIndex() {
+        // given
+        final User saved = userRepository.saveIfAbsent(new User("rex", passwordEncoder.encode("secret"), "rex@woowahan.com"))
+                .orElseThrow();
+
+        // when
+        final User byAccount = userRepository.findByAccount("rex").orElseThrow();
+
+        // then
+        assertThat(saved.getId()).isEqualTo(2L);
+        assertThat(byAccount.getEmail()).isEqualTo("rex@woowahan.com");
+        assertThat(passwordEncoder.matches("secret", byAccount.getPassword())).isTrue();
+        assertThat(userRepository.findById(2L).orElseThrow().getAccount()).isEqualTo("rex");
+        assertThat(userRepository.findByEmail("rex@woowahan.com").orElseThrow().getId()).isEqualTo(2L);
+        assertThat(userRepository.findByAccount("nobody").isEmpty()).isTrue();
+    }
+
+    @Test
+    void rejectTakenAccountOrEmail() {
+        assertThat(userRepository.saveIfAbsent(new User("gugu", "other", "other@woowahan.com")).isEmpty()).isTrue();
+        assertThat(userRepository.saveIfAbsent(new User("other", "other", "hkkang@woowahan.com")).isEmpty()).isTrue();
+    }
+
+    @Test
+    void updateKeepsIdAndMovesEmail() {
+        // when
+        final User updated = userRepository.save(
+                new User("gugu", passwordEncoder.encode("changed"), "gugu@woowahan.com"));
+
+        // then
+        assertThat(updated.getId()).isEqualTo(1L);
+        assertThat(userRepository.findByEmail("hkkang@woowahan.com").isEmpty()).isTrue();
+        final String password = userRepository.findByEmail("gugu@woowahan.com").orElseThrow().getPassword();
+        assertThat(passwordEncoder.matches("changed", password)).isTrue();
+        assertThat(userRepository.findById(1L).orElseThrow().getEmail()).isEqualTo("gugu@woowahan.com");
+        assertThat(userRepository.size()).isEqualTo(1);
+        assertThat(userRepository.getGarbageBytes()).isLessThan(userRepository.getUsedBytes());
+    }
+
+    @Test
+    void rejectIdOfAnotherAccount() {
+        // given
+        userRepository.saveIfAbsent(new User("rex", passwordEncoder.encode("secret"), "rex@woowahan.com"));
+
+        // when, then
+        assertThatThrownBy(() -> userRepository.save(new User(1L, "rex", "changed", "rex@woowahan.com")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("another account");
+        assertThat(userRepository.findById(1L).orElseThrow().getAccount()).isEqualTo("gugu");
+        assertThat(passwordEncoder.matches("secret", userRepository.findById(2L).orElseThrow().getPassword())).isTrue();
+        assertThat(userRepository.save(new User(2L, "rex", "changed", "rex@woowahan.com")).getId()).isEqualTo(2L);
+    }
+
+    @Test
+    void holdManyUsersAcrossPages() {
+        // when
+        for (int i = 0; i < 100_000; i++) {
+            userRepository.saveIfAbsent(new User("user-" + i, "password-" + i, "user-" + i + "@woowahan.com"));
+        }
+
+        // then
+        assertThat(userRepository.size()).isEqualTo(100_001);
+        assertThat(userRepository.findByAccount("user-99999").orElseThrow().getEmail())
+                .isEqualTo("user-99999@woowahan.com");
+        final List<String> accounts = new ArrayList<>();
+        userRepository.forEachAccount(accounts::add);
+        assertThat(accounts).hasSize(100_001);
+    }
+
+    @Test
+    void readWhileWriting() throws InterruptedException {
+        // given
+        final Thread writer = new Thread(() -> {
+            for (int i = 0; i < 50_000; i++) {
+                userRepository.saveIfAbsent(new User("user-" + i, "password", "user-" + i + "@woowahan.com"));
+            }
+        });
+
+        // when
+        writer.start();
+        int misses = 0;
+        while (writer.isAlive()) {
+            if (userRepository.findByAccount("gugu").isEmpty()) {
+                misses++;
+            }
+        }
+        writer.join();
+
+        // then
+        assertThat(misses).isZero();
+        assertThat(userRepository.findByAccount("user-49999").isPresent()).isTrue();
+    }
+}
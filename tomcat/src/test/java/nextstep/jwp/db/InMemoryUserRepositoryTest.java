@@ -0,0 +1,115 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryUserRepositoryTest {
+
+    private final InMemoryUserRepository userRepository = new InMemoryUserRepository();
+
+    @Test
+    void assignIdAndIndexNewUser() {
+        // given
+        final User user = new User("index-user", "password", "index-user@woowahan.com");
+
+        // when
+        final User saved = userRepository.saveIfAbsent(user).orElseThrow();
+
+        // then
+        assertThat(saved.getId()).isNotNull();
+        assertThat(userRepository.findById(saved.getId()).orElseThrow().getAccount()).isEqualTo("index-user");
+        assertThat(userRepository.findByEmail("index-user@woowahan.com").orElseThrow().getId())
+                .isEqualTo(saved.getId());
+    }
+
+    @Test
+    void onlyOneOfConcurrentDuplicateRegistrationsSucceeds() throws InterruptedException {
+        // given
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger succeeded = new AtomicInteger();
+        final List<Thread> registrations = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final User user = new User("duplicate", "password-" + i, "duplicate-" + i + "@woowahan.com");
+            registrations.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                userRepository.saveIfAbsent(user).ifPresent(saved -> succeeded.incrementAndGet());
+            }));
+        }
+        registrations.forEach(Thread::start);
+
+        // when
+        start.countDown();
+        for (final Thread registration : registrations) {
+            registration.join();
+        }
+
+        // then
+        assertThat(succeeded.get()).isEqualTo(1);
+        final User winner = userRepository.findByAccount("duplicate").orElseThrow();
+        for (int i = 0; i < threads; i++) {
+            final Optional<User> byEmail = userRepository.findByEmail("duplicate-" + i + "@woowahan.com");
+            assertThat(byEmail.isPresent()).isEqualTo(winner.getEmail().equals("duplicate-" + i + "@woowahan.com"));
+        }
+    }
+
+    @Test
+    void rejectTakenEmail() {
+        // when
+        final Optional<User> saved = userRepository.saveIfAbsent(
+                new User("other", "password", "hkkang@woowahan.com"));
+
+        // then
+        assertThat(saved.isEmpty()).isTrue();
+        assertThat(userRepository.findByAccount("other").isEmpty()).isTrue();
+    }
+
+    @Test
+    void updateMovesEmailIndex() {
+        // given
+        final User saved = userRepository.saveIfAbsent(
+                new User("mover", "password", "old@woowahan.com")).orElseThrow();
+
+        // when
+        userRepository.save(new User("mover", "password", "new@woowahan.com"));
+
+        // then
+        assertThat(userRepository.findByEmail("old@woowahan.com").isEmpty()).isTrue();
+        assertThat(userRepository.findByEmail("new@woowahan.com").orElseThrow().getId())
+                .isEqualTo(saved.getId());
+    }
+
+    @Test
+    void saveAllSkipsTakenAccountsAndEmails() {
+        // given
+        final List<User> users = List.of(
+                new User("bulk-1", "password", "bulk-1@woowahan.com"),
+                new User("gugu", "password", "gugu@woowahan.com"),
+                new User("bulk-2", "password", "hkkang@woowahan.com"),
+                new User("bulk-3", "password", "bulk-3@woowahan.com"),
+                new User("bulk-3", "password", "bulk-3-again@woowahan.com"));
+
+        // when
+        final List<User> inserted = userRepository.saveAllIfAbsent(users);
+
+        // then
+        assertThat(inserted).hasSize(2);
+        assertThat(inserted.get(0).getAccount()).isEqualTo("bulk-1");
+        assertThat(inserted.get(1).getAccount()).isEqualTo("bulk-3");
+        assertThat(userRepository.findById(inserted.get(1).getId()).orElseThrow().getEmail())
+                .isEqualTo("bulk-3@woowahan.com");
+        assertThat(userRepository.findByEmail("gugu@woowahan.com").isEmpty()).isTrue();
+    }
+}
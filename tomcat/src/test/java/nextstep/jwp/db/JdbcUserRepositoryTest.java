@@ -0,0 +1,97 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import nextstep.jwp.security.PasswordEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JdbcUserRepositoryTest {
+
+    private final PasswordEncoder passwordEncoder = new PasswordEncoder(1);
+    private ConnectionPool connectionPool;
+    private JdbcUserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        connectionPool = new ConnectionPool("jdbc:h2:mem:" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "", 4);
+        userRepository = new JdbcUserRepository(connectionPool);
+        userRepository.createTable();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionPool.close();
+    }
+
+    @Test
+    void saveAndFind() {
+        // given
+        final User saved = userRepository.saveIfAbsent(new User("gugu", "password", "hkkang@woowahan.com"))
+                .orElseThrow();
+
+        // when
+        final User byAccount = userRepository.findByAccount("gugu").orElseThrow();
+
+        // then
+        assertThat(saved.getId()).isNotNull();
+        assertThat(byAccount.getId()).isEqualTo(saved.getId());
+        assertThat(userRepository.findById(saved.getId()).orElseThrow().getAccount()).isEqualTo("gugu");
+        assertThat(userRepository.findByEmail("hkkang@woowahan.com").orElseThrow().getAccount()).isEqualTo("gugu");
+        assertThat(userRepository.findByAccount("nobody").isEmpty()).isTrue();
+    }
+
+    @Test
+    void saveUpdatesExistingAccount() {
+        // given
+        final User saved = userRepository.saveIfAbsent(new User("gugu", "password", "hkkang@woowahan.com"))
+                .orElseThrow();
+
+        // when
+        final User updated = userRepository.save(
+                new User("gugu", passwordEncoder.encode("changed"), "gugu@woowahan.com"));
+
+        // then
+        assertThat(updated.getId()).isEqualTo(saved.getId());
+        final String password = userRepository.findByAccount("gugu").orElseThrow().getPassword();
+        assertThat(passwordEncoder.matches("changed", password)).isTrue();
+    }
+
+    @Test
+    void onlyOneOfConcurrentDuplicateRegistrationsSucceeds() throws InterruptedException {
+        // given
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger succeeded = new AtomicInteger();
+        final List<Thread> registrations = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final User user = new User("duplicate", "password", "duplicate-" + i + "@woowahan.com");
+            registrations.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                userRepository.saveIfAbsent(user).ifPresent(saved -> succeeded.incrementAndGet());
+            }));
+        }
+        registrations.forEach(Thread::start);
+
+        // when
+        start.countDown();
+        for (final Thread registration : registrations) {
+            registration.join();
+        }
+
+        // then
+        assertThat(succeeded.get()).isEqualTo(1);
+        assertThat(connectionPool.getIdleConnections()).isLessThan(5);
+    }
+}
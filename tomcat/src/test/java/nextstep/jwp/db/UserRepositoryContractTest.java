@@ -0,0 +1,152 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * What every {@link UserRepository} does on a save, run against each
+ * implementation.
+ */
+class UserRepositoryContractTest {
+
+    @Nested
+    class InMemory extends Contract {
+
+        @Override
+        UserRepository createUserRepository() {
+            return new InMemoryUserRepository();
+        }
+    }
+
+    @Nested
+    class Compact extends Contract {
+
+        @Override
+        UserRepository createUserRepository() {
+            return new CompactUserRepository();
+        }
+    }
+
+    @Nested
+    class Jdbc extends Contract {
+
+        private ConnectionPool connectionPool;
+
+        @Override
+        UserRepository createUserRepository() {
+            connectionPool = new ConnectionPool("jdbc:h2:mem:" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "",
+                    4);
+            final var jdbcUserRepository = new JdbcUserRepository(connectionPool);
+            jdbcUserRepository.createTable();
+            return jdbcUserRepository;
+        }
+
+        @AfterEach
+        void tearDown() {
+            connectionPool.close();
+        }
+    }
+
+    abstract static class Contract {
+
+        UserRepository userRepository;
+        User rex;
+        User brown;
+
+        abstract UserRepository createUserRepository();
+
+        @BeforeEach
+        void setUp() {
+            userRepository = createUserRepository();
+            rex = userRepository.saveIfAbsent(new User("rex", "password", "rex@woowahan.com")).orElseThrow();
+            brown = userRepository.saveIfAbsent(new User("brown", "password", "brown@woowahan.com")).orElseThrow();
+        }
+
+        @Test
+        void updateKeepsIdAndFreesOldEmail() {
+            // when
+            final User updated = userRepository.save(new User("rex", "changed", "rex@gmail.com"));
+
+            // then
+            assertThat(updated.getId()).isEqualTo(rex.getId());
+            assertThat(userRepository.findByEmail("rex@gmail.com").orElseThrow().getAccount()).isEqualTo("rex");
+            assertThat(userRepository.findByEmail("rex@woowahan.com").isEmpty()).isTrue();
+            assertThat(userRepository.saveIfAbsent(new User("other", "password", "rex@woowahan.com")).isPresent())
+                    .isTrue();
+        }
+
+        @Test
+        void updateWithOwnId() {
+            // when
+            final User updated = userRepository.save(new User(rex.getId(), "rex", "changed", "rex@woowahan.com"));
+
+            // then
+            assertThat(updated.getId()).isEqualTo(rex.getId());
+            assertThat(userRepository.findById(rex.getId()).orElseThrow().getPassword()).isEqualTo("changed");
+        }
+
+        @Test
+        void rejectIdOfAnotherAccount() {
+            assertThatThrownBy(() -> userRepository.save(new User(rex.getId(), "brown", "changed", "brown@woowahan.com")))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("another account");
+            assertThat(userRepository.findById(rex.getId()).orElseThrow().getAccount()).isEqualTo("rex");
+            assertThat(userRepository.findByAccount("brown").orElseThrow().getId()).isEqualTo(brown.getId());
+        }
+
+        @Test
+        void rejectIdOfAnotherAccountForNewAccount() {
+            assertThatThrownBy(() -> userRepository.save(new User(rex.getId(), "new", "password", "new@woowahan.com")))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("another account");
+            assertThat(userRepository.findById(rex.getId()).orElseThrow().getAccount()).isEqualTo("rex");
+            assertThat(userRepository.findByAccount("new").isEmpty()).isTrue();
+            assertThat(userRepository.findByEmail("new@woowahan.com").isEmpty()).isTrue();
+        }
+
+        @Test
+        void rejectOtherIdForExistingAccount() {
+            assertThatThrownBy(() -> userRepository.save(new User(1_000L, "rex", "changed", "rex@woowahan.com")))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("another id");
+            assertThat(userRepository.findByAccount("rex").orElseThrow().getId()).isEqualTo(rex.getId());
+            assertThat(userRepository.findById(1_000L).isEmpty()).isTrue();
+        }
+
+        @Test
+        void rejectEmailOfAnotherAccount() {
+            assertThatThrownBy(() -> userRepository.save(new User("brown", "changed", "rex@woowahan.com")))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("another account");
+            assertThatThrownBy(() -> userRepository.save(new User("new", "password", "rex@woowahan.com")))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("another account");
+            assertThat(userRepository.findByEmail("rex@woowahan.com").orElseThrow().getAccount()).isEqualTo("rex");
+            assertThat(userRepository.findByEmail("brown@woowahan.com").orElseThrow().getAccount())
+                    .isEqualTo("brown");
+            assertThat(userRepository.findByAccount("new").isEmpty()).isTrue();
+        }
+
+        @Test
+        void handOutIdsAboveExplicitOnes() {
+            // given
+            userRepository.save(new User(1_000L, "explicit", "password", "explicit@woowahan.com"));
+
+            // when
+            final User saved = userRepository.save(new User("generated", "password", "generated@woowahan.com"));
+            final User inserted = userRepository.saveIfAbsent(new User("inserted", "password", "inserted@woowahan.com"))
+                    .orElseThrow();
+
+            // then
+            assertThat(saved.getId()).isGreaterThan(1_000L);
+            assertThat(inserted.getId()).isGreaterThan(saved.getId());
+            assertThat(userRepository.findById(1_000L).orElseThrow().getAccount()).isEqualTo("explicit");
+        }
+    }
+}
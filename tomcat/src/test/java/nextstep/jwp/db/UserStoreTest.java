@@ -0,0 +1,196 @@
+package nextstep.jwp.db;
+
+import nextstep.jwp.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserStoreTest {
+
+    private final Path directory = createDirectory();
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    private static Path createDirectory() {
+        try {
+            return Files.createTempDirectory("users");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (final Stream<Path> files = Files.walk(directory)) {
+            for (final Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private UserStore open() throws IOException {
+        final UserStore store = new UserStore(directory, users::values);
+        store.load(user -> users.put(user.getAccount(), user));
+        return store;
+    }
+
+    private void save(final UserStore store, final User user) throws IOException {
+        users.put(user.getAccount(), user);
+        store.append(user);
+    }
+
+    @Test
+    void replaySavedUsers() throws IOException {
+        // given
+        try (final UserStore store = open()) {
+            save(store, new User(1L, "gugu", "password", "hkkang@woowahan.com"));
+            save(store, new User("rex", "secret", "rex@woowahan.com"));
+        }
+        users.clear();
+
+        // when
+        open().close();
+
+        // then
+        assertThat(users).hasSize(2);
+        assertThat(users.get("rex").getEmail()).isEqualTo("rex@woowahan.com");
+        assertThat(users.get("gugu").getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void concurrentSavesShareCommits() throws Exception {
+        // given
+        final UserStore store = open();
+        final int threads = 16;
+        final int savesPerThread = 50;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            writers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < savesPerThread; i++) {
+                        save(store, new User("user-" + thread + "-" + i, "password", "user@woowahan.com"));
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+
+        // when
+        start.countDown();
+        for (final Thread writer : writers) {
+            writer.join();
+        }
+        store.close();
+
+        // then
+        assertThat(store.getDurableRecords()).isEqualTo((long) threads * savesPerThread);
+        assertThat(store.getGroupCommits()).isLessThan((long) threads * savesPerThread);
+        users.clear();
+        open().close();
+        assertThat(users).hasSize(threads * savesPerThread);
+    }
+
+    @Test
+    void compactLogIntoSnapshot() throws IOException {
+        // given
+        try (final UserStore store = open()) {
+            store.setCompactionThresholdBytes(1024);
+            for (int i = 0; i < 200; i++) {
+                save(store, new User("user-" + i, "password", "user@woowahan.com"));
+            }
+        }
+
+        // when
+        users.clear();
+        open().close();
+
+        // then
+        assertThat(Files.exists(directory.resolve("users.snapshot"))).isTrue();
+        assertThat(Files.exists(directory.resolve("users.wal.old"))).isFalse();
+        assertThat(users).hasSize(200);
+    }
+
+    @Test
+    void keepRotatedLogWhileSnapshotFails() throws IOException {
+        // given
+        try (final UserStore store = new UserStore(directory, () -> {
+            throw new IllegalStateException("snapshot failure");
+        })) {
+            store.load(user -> users.put(user.getAccount(), user));
+            store.setCompactionThresholdBytes(1024);
+
+            // when
+            for (int i = 0; i < 200; i++) {
+                save(store, new User("user-" + i, "password", "user@woowahan.com"));
+            }
+        }
+        users.clear();
+        open().close();
+
+        // then
+        assertThat(users).hasSize(200);
+    }
+
+    @Test
+    void ignoreTornRecordAtTheEnd() throws IOException {
+        // given
+        try (final UserStore store = open()) {
+            save(store, new User("gugu", "password", "hkkang@woowahan.com"));
+        }
+        final byte[] record = UserStore.encode(new User("rex", "secret", "rex@woowahan.com"));
+        try (final FileChannel channel = FileChannel.open(directory.resolve("users.wal"), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(record, 0, record.length - 3));
+        }
+        users.clear();
+
+        // when
+        try (final UserStore store = open()) {
+            save(store, new User("rex", "secret", "rex@woowahan.com"));
+        }
+        users.clear();
+        open().close();
+
+        // then
+        assertThat(users).hasSize(2);
+    }
+
+    @Test
+    void appendAllCommitsBatchOnce() throws IOException {
+        // given
+        final List<User> batch = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            batch.add(new User(id, "user-" + id, "password", "user-" + id + "@woowahan.com"));
+        }
+        try (final UserStore store = open()) {
+            // when
+            store.appendAll(batch);
+
+            // then
+            assertThat(store.getGroupCommits()).isEqualTo(1L);
+            assertThat(store.getDurableRecords()).isEqualTo(100L);
+        }
+        users.clear();
+        try (final UserStore ignored = open()) {
+            assertThat(users).hasSize(100);
+        }
+    }
+}
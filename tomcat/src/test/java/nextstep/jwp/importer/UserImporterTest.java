@@ -0,0 +1,119 @@
+package nextstep.jwp.importer;
+
+import nextstep.jwp.db.InMemoryUserRepository;
+import nextstep.jwp.security.PasswordEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserImporterTest {
+
+    private final InMemoryUserRepository userRepository = new InMemoryUserRepository();
+    private final UserImporter userImporter = new UserImporter(userRepository, new ForkJoinPool(4));
+    private final PasswordEncoder passwordEncoder = new PasswordEncoder(1);
+
+    @BeforeEach
+    void setUp() {
+        userImporter.setPasswordEncoder(passwordEncoder);
+    }
+
+    @Test
+    void importCsv() throws Exception {
+        // given
+        final String csv = String.join("\n",
+                "account,password,email",
+                "first,secret,first@woowahan.com",
+                "\"quoted, name\",\"pass\"\"word\",quoted@woowahan.com",
+                "",
+                "broken,secret",
+                "gugu,password,other@woowahan.com",
+                "no-email,secret,not-an-email");
+
+        // when
+        final ImportProgress progress = userImporter.importFrom(new StringReader(csv), ImportFormat.CSV);
+
+        // then
+        assertThat(progress.getImported()).isEqualTo(2L);
+        assertThat(progress.getDuplicates()).isEqualTo(1L);
+        assertThat(progress.getInvalid()).isEqualTo(2L);
+        assertThat(progress.getLines()).isEqualTo(7L);
+        assertThat(progress.isFinished()).isTrue();
+        final String password = userRepository.findByAccount("quoted, name").orElseThrow().getPassword();
+        assertThat(PasswordEncoder.isEncoded(password)).isTrue();
+        assertThat(passwordEncoder.matches("pass\"word", password)).isTrue();
+        assertThat(userRepository.findByEmail("first@woowahan.com").isPresent()).isTrue();
+    }
+
+    @Test
+    void importNdjson() throws Exception {
+        // given
+        final String ndjson = String.join("\n",
+                "{\"account\": \"json\", \"password\": \"se\\\"cret\", \"email\": \"json@woowahan.com\", \"age\": 3}",
+                "{\"email\": \"reordered@woowahan.com\", \"account\": \"reordered\", \"password\": \"secret\"}",
+                "{\"account\": \"unterminated\"");
+
+        // when
+        final ImportProgress progress = userImporter.importFrom(new StringReader(ndjson), ImportFormat.NDJSON);
+
+        // then
+        assertThat(progress.getImported()).isEqualTo(2L);
+        assertThat(progress.getInvalid()).isEqualTo(1L);
+        assertThat(passwordEncoder.matches("se\"cret", userRepository.findByAccount("json").orElseThrow().getPassword()))
+                .isTrue();
+        assertThat(userRepository.findByAccount("reordered").isPresent()).isTrue();
+    }
+
+    @Test
+    void keepPasswordsAlreadyEncoded() throws Exception {
+        // given
+        final String encoded = new PasswordEncoder(2).encode("secret");
+        final String csv = "encoded," + encoded + ",encoded@woowahan.com";
+
+        // when
+        userImporter.importFrom(new StringReader(csv), ImportFormat.CSV);
+
+        // then
+        assertThat(userRepository.findByAccount("encoded").orElseThrow().getPassword()).isEqualTo(encoded);
+    }
+
+    @Test
+    void importManyBatchesInFileOrder() throws Exception {
+        // given
+        final StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            csv.append("user-").append(i).append(",secret,user-").append(i).append("@woowahan.com\n");
+        }
+        userImporter.setBatchSize(1_000);
+
+        // when
+        final ImportProgress progress = userImporter.importFrom(new StringReader(csv.toString()), ImportFormat.CSV);
+
+        // then
+        assertThat(progress.getImported()).isEqualTo(10_000L);
+        final long firstId = userRepository.findByAccount("user-0").orElseThrow().getId();
+        assertThat(userRepository.findByAccount("user-9999").orElseThrow().getId()).isEqualTo(firstId + 9_999);
+        assertThat(userImporter.getProgress()).isSameAs(progress);
+    }
+
+    @Test
+    void rateLimitSlowsImport() throws Exception {
+        // given
+        final StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            csv.append("limited-").append(i).append(",secret,limited-").append(i).append("@woowahan.com\n");
+        }
+        userImporter.setBatchSize(50);
+        userImporter.setRateLimit(200);
+
+        // when
+        final ImportProgress progress = userImporter.importFrom(new StringReader(csv.toString()), ImportFormat.CSV);
+
+        // then
+        assertThat(progress.getImported()).isEqualTo(300L);
+        assertThat(progress.getElapsedMillis()).isGreaterThanOrEqualTo(400L);
+    }
+}
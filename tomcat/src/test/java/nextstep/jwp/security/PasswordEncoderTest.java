@@ -0,0 +1,48 @@
+package nextstep.jwp.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordEncoderTest {
+
+    private final PasswordEncoder passwordEncoder = new PasswordEncoder(1_000);
+
+    @Test
+    void encodesWithRandomSalt() {
+        // given
+        final String first = passwordEncoder.encode("secret");
+
+        // when
+        final String second = passwordEncoder.encode("secret");
+
+        // then
+        assertThat(first).startsWith("{pbkdf2}1000$");
+        assertThat(first).isNotEqualTo(second);
+        assertThat(passwordEncoder.matches("secret", first)).isTrue();
+        assertThat(passwordEncoder.matches("secret", second)).isTrue();
+    }
+
+    @Test
+    void keepsIterationsOfStoredPassword() {
+        // given
+        final String encoded = new PasswordEncoder(2_000).encode("secret");
+
+        // when
+        final boolean matches = passwordEncoder.matches("secret", encoded);
+
+        // then
+        assertThat(matches).isTrue();
+    }
+
+    @Test
+    void legacyPlaintextPasswordStillMatches() {
+        // when
+        final boolean matches = passwordEncoder.matches("password", "password");
+
+        // then
+        assertThat(matches).isTrue();
+        assertThat(passwordEncoder.matches("Password", "password")).isFalse();
+        assertThat(passwordEncoder.matches("password", "{pbkdf2}broken")).isFalse();
+    }
+}
@@ -0,0 +1,115 @@
+package nextstep.jwp.security;
+
+import nextstep.jwp.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import support.FakeClock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordServiceTest {
+
+    private final PasswordEncoder passwordEncoder = new PasswordEncoder(1_000);
+    private PasswordService passwordService;
+
+    @AfterEach
+    void tearDown() {
+        passwordService.close();
+    }
+
+    @Test
+    void encodedPasswordMatchesOnlyItsRawPassword() throws Exception {
+        // given
+        passwordService = new PasswordService(passwordEncoder, 2, 4);
+        final String encoded = passwordService.encode("secret").get();
+        final User user = new User("gugu", encoded, "hkkang@woowahan.com");
+
+        // when
+        final boolean matches = passwordService.verify(user, "secret").get();
+        final boolean mismatches = passwordService.verify(user, "wrong").get();
+
+        // then
+        assertThat(PasswordEncoder.isEncoded(encoded)).isTrue();
+        assertThat(encoded).doesNotContain("secret");
+        assertThat(matches).isTrue();
+        assertThat(mismatches).isFalse();
+        assertThat(passwordService.getCompleted()).isEqualTo(3L);
+    }
+
+    @Test
+    void hashPasswordOfUnknownUserAllTheSame() throws Exception {
+        // given
+        passwordService = new PasswordService(passwordEncoder, 2, 4);
+
+        // when
+        final boolean matches = passwordService.verify(null, "secret").get();
+
+        // then
+        assertThat(matches).isFalse();
+        assertThat(passwordService.getSubmitted()).isEqualTo(1L);
+        assertThat(passwordService.getCompleted()).isEqualTo(1L);
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        // given
+        final CountDownLatch release = new CountDownLatch(1);
+        final PasswordEncoder blockingEncoder = new PasswordEncoder(1_000) {
+            @Override
+            public String encode(final String rawPassword) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.encode(rawPassword);
+            }
+        };
+        passwordService = new PasswordService(blockingEncoder, 1, 1);
+        final CompletableFuture<String> running = passwordService.encode("first");
+        final CompletableFuture<String> queued = passwordService.encode("second");
+
+        // when
+        final CompletableFuture<String> rejected = passwordService.encode("third");
+
+        // then
+        assertThat(rejected.isCompletedExceptionally()).isTrue();
+        try {
+            rejected.get();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+        }
+        assertThat(passwordService.getRejected()).isEqualTo(1L);
+        release.countDown();
+        assertThat(PasswordEncoder.isEncoded(running.get())).isTrue();
+        assertThat(PasswordEncoder.isEncoded(queued.get())).isTrue();
+    }
+
+    @Test
+    void remembersSuccessfulVerificationUntilTtl() throws Exception {
+        // given
+        final var clock = new FakeClock(0);
+        passwordService = new PasswordService(passwordEncoder, 1, 4, clock);
+        passwordService.setVerificationCacheTtlMillis(1_000);
+        final User user = new User("gugu", passwordEncoder.encode("secret"), "hkkang@woowahan.com");
+        passwordService.verify(user, "secret").get();
+
+        // when
+        final boolean cached = passwordService.verify(user, "secret").get();
+        final boolean wrong = passwordService.verify(user, "wrong").get();
+        clock.advance(1_000);
+        final boolean expired = passwordService.verify(user, "secret").get();
+
+        // then
+        assertThat(cached).isTrue();
+        assertThat(wrong).isFalse();
+        assertThat(expired).isTrue();
+        assertThat(passwordService.getCacheHits()).isEqualTo(1L);
+        assertThat(passwordService.getSubmitted()).isEqualTo(3L);
+    }
+}
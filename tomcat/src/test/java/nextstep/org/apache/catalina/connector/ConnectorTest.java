@@ -0,0 +1,81 @@
+package nextstep.org.apache.catalina.connector;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.session.StandardManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectorTest {
+
+    private Connector connector;
+
+    @BeforeEach
+    void setUp() {
+        connector = new Connector(0, 100, 1, new RequestMapping(), new StandardManager());
+        connector.setConnectionTimeoutMillis(200);
+        connector.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connector.stop();
+    }
+
+    @Test
+    void closeIdleConnectionsSoTheyDoNotHoldWorkers() throws Exception {
+        // given: the only worker is taken by a client that sends nothing
+        try (final var idle = connect()) {
+            final var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            // when
+            final var response = client.send(HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + connector.getLocalPort() + "/index.html"))
+                    .timeout(Duration.ofSeconds(5))
+                    .build(), BodyHandlers.ofString());
+
+            // then
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(idle.getInputStream().read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void answerIncompleteRequestWithRequestTimeout() throws Exception {
+        // given
+        try (final var slow = connect()) {
+
+            // when
+            slow.getOutputStream().write("GET /index.html HTTP/1.1\r\nHost: lo".getBytes(StandardCharsets.ISO_8859_1));
+
+            // then
+            final String response = readAll(slow.getInputStream());
+            assertThat(response).startsWith("HTTP/1.1 408 Request Timeout");
+            assertThat(response).contains("Connection: close");
+        }
+    }
+
+    private Socket connect() throws IOException {
+        final var socket = new Socket(InetAddress.getLoopbackAddress(), connector.getLocalPort());
+        socket.setSoTimeout(5_000);
+        return socket;
+    }
+
+    private static String readAll(final InputStream inputStream) throws IOException {
+        return new String(inputStream.readAllBytes(), StandardCharsets.ISO_8859_1);
+    }
+}
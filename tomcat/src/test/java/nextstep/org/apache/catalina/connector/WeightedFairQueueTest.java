@@ -0,0 +1,178 @@
+package nextstep.org.apache.catalina.connector;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.connector.RequestClass;
+import org.apache.catalina.connector.WeightedFairQueue;
+import org.apache.catalina.controller.AbstractController;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.catalina.session.StandardManager;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeightedFairQueueTest {
+
+    private static final String DYNAMIC_ROUTE = "/login";
+
+    private final List<String> ran = new ArrayList<>();
+
+    private Runnable record(final String name) {
+        return () -> ran.add(name);
+    }
+
+    @Test
+    void alternateUnclassifiedTasksWithClassifiedRequests() {
+        // given
+        final var queue = new WeightedFairQueue(new RequestClass("static", 1, 10), new RequestClass("dynamic", 1, 10));
+        queue.offer(queue.classify(RequestMapping.STATIC_ROUTE, record("static")));
+        queue.offer(queue.classify(RequestMapping.STATIC_ROUTE, record("static")));
+        for (int i = 0; i < 4; i++) {
+            queue.offer(record("connection"));
+        }
+
+        // when
+        for (int i = 0; i < 6; i++) {
+            queue.poll().run();
+        }
+
+        // then
+        assertThat(ran).containsExactly("connection", "static", "connection", "static", "connection", "connection");
+        assertThat(queue.size()).isEqualTo(0);
+    }
+
+    @Test
+    void takeUnclassifiedTasksWhileClassAtItsCap() {
+        // given
+        final var queue = new WeightedFairQueue(new RequestClass("static", 1, 10), new RequestClass("dynamic", 1, 1));
+        queue.offer(queue.classify(DYNAMIC_ROUTE, record("first")));
+        queue.offer(queue.classify(DYNAMIC_ROUTE, record("second")));
+        queue.poll();
+        queue.offer(record("connection"));
+        queue.offer(record("connection"));
+
+        // when
+        queue.poll().run();
+        queue.poll().run();
+
+        // then
+        assertThat(ran).containsExactly("connection", "connection");
+        assertThat(queue.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shareWorkersByWeight() {
+        // given
+        final var queue = new WeightedFairQueue(new RequestClass("static", 3, 10), new RequestClass("dynamic", 1, 10));
+        for (int i = 0; i < 8; i++) {
+            queue.offer(queue.classify(DYNAMIC_ROUTE, record("dynamic")));
+            queue.offer(queue.classify(RequestMapping.STATIC_ROUTE, record("static")));
+        }
+
+        // when
+        final List<Runnable> taken = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            taken.add(queue.poll());
+        }
+        taken.forEach(Runnable::run);
+
+        // then
+        assertThat(ran.stream().filter("static"::equals).count()).isEqualTo(6L);
+        assertThat(queue.size()).isEqualTo(8);
+    }
+
+    @Test
+    void holdBackClassAtItsCap() {
+        // given
+        final var queue = new WeightedFairQueue(new RequestClass("static", 1, 10), new RequestClass("dynamic", 1, 1));
+        queue.offer(queue.classify(DYNAMIC_ROUTE, record("first")));
+        queue.offer(queue.classify(DYNAMIC_ROUTE, record("second")));
+        final Runnable first = queue.poll();
+
+        // when
+        final Runnable whileRunning = queue.poll();
+        first.run();
+        final Runnable afterCompletion = queue.poll();
+
+        // then
+        assertThat(whileRunning).isNull();
+        assertThat(queue.size()).isEqualTo(0);
+        afterCompletion.run();
+        assertThat(ran).containsExactly("first", "second");
+    }
+
+    @Test
+    void recordWaitTimeByClass() {
+        // given
+        final var registry = new MetricRegistry();
+        final var queue = new WeightedFairQueue(new RequestClass("static", 1, 10), new RequestClass("dynamic", 1, 10));
+        queue.registerMetrics(registry, "http-test");
+        queue.offer(queue.classify(RequestMapping.STATIC_ROUTE, record("static")));
+        queue.offer(queue.classify(DYNAMIC_ROUTE, record("dynamic")));
+
+        // when
+        queue.poll();
+
+        // then
+        assertThat(registry.scrape()).contains(
+                "http_server_queue_wait_seconds_count{connector=\"http-test\",class=\"static\"} 1\n",
+                "http_server_queue_wait_seconds_count{connector=\"http-test\",class=\"dynamic\"} 0\n",
+                "http_server_class_queued{connector=\"http-test\",class=\"dynamic\"} 1\n",
+                "http_server_class_running{connector=\"http-test\",class=\"static\"} 1\n");
+    }
+
+    @Test
+    void serveStaticResourcesWhileDynamicClassIsAtItsCap() throws Exception {
+        // given: two workers, of which dynamic requests may take one
+        final var release = new CountDownLatch(1);
+        final var entered = new CountDownLatch(1);
+        final var requestMapping = new RequestMapping().add("/slow", new AbstractController() {
+            @Override
+            protected void doGet(final HttpRequest request, final HttpResponse response) throws Exception {
+                entered.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+        });
+        final var connector = new Connector(0, 100, 2, requestMapping, new StandardManager());
+        connector.setRequestClasses(new RequestClass("static", 4, 2), new RequestClass("dynamic", 1, 1));
+        connector.start();
+        final var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        try (final var slow = new Socket(InetAddress.getLoopbackAddress(), connector.getLocalPort());
+             final var queued = new Socket(InetAddress.getLoopbackAddress(), connector.getLocalPort())) {
+            slow.getOutputStream().write(slowRequest());
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+            queued.getOutputStream().write(slowRequest());
+
+            // when
+            final var response = client.send(java.net.http.HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + connector.getLocalPort() + "/index.html"))
+                    .timeout(Duration.ofSeconds(5))
+                    .build(), BodyHandlers.ofString());
+
+            // then
+            assertThat(response.statusCode()).isEqualTo(200);
+        } finally {
+            release.countDown();
+            connector.stop();
+        }
+    }
+
+    private static byte[] slowRequest() {
+        return "GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
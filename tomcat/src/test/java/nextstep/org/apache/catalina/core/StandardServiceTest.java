@@ -0,0 +1,121 @@
+package nextstep.org.apache.catalina.core;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.controller.AbstractController;
+import org.apache.catalina.controller.MetricsController;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.core.StandardService;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.catalina.session.StandardManager;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StandardServiceTest {
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private java.net.http.HttpResponse<String> get(final Connector connector, final String path) throws Exception {
+        return client.send(java.net.http.HttpRequest.newBuilder(
+                URI.create("http://localhost:" + connector.getLocalPort() + path))
+                .timeout(Duration.ofSeconds(5))
+                .build(), BodyHandlers.ofString());
+    }
+
+    @Test
+    void serveAdminConnectorWhilePublicPoolIsSaturated() throws Exception {
+        // given
+        final var registry = new MetricRegistry();
+        final var release = new CountDownLatch(1);
+        final var entered = new CountDownLatch(1);
+        final var publicMapping = new RequestMapping().add("/slow", new AbstractController() {
+            @Override
+            protected void doGet(final HttpRequest request, final HttpResponse response) throws Exception {
+                entered.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+        });
+        final var publicConnector = new Connector(0, 100, 1, publicMapping, new StandardManager(), registry);
+        final var adminConnector = new Connector(0, 100, 1,
+                new RequestMapping().add("/metrics", new MetricsController(registry)), new StandardManager(), registry);
+        final var service = new StandardService("test");
+        service.addConnector(publicConnector);
+        service.addConnector(adminConnector);
+        service.start();
+
+        try (final var blocking = new Socket(InetAddress.getLoopbackAddress(), publicConnector.getLocalPort())) {
+            blocking.getOutputStream().write("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // when
+            final var response = get(adminConnector, "/metrics");
+
+            // then
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.body()).contains(
+                    "http_server_threads_busy{connector=\"" + publicConnector.getName() + "\"} 1\n");
+        } finally {
+            release.countDown();
+            service.stop();
+        }
+    }
+
+    @Test
+    void restartConnectors() throws Exception {
+        // given
+        final var service = new StandardService("test");
+        final var connector = new Connector(0, 100, 2, new RequestMapping(), new StandardManager());
+        service.addConnector(connector);
+        service.start();
+        service.stop();
+
+        // when
+        service.start();
+
+        // then
+        try {
+            assertThat(connector.isStarted()).isTrue();
+            assertThat(get(connector, "/index.html").statusCode()).isEqualTo(200);
+        } finally {
+            service.stop();
+        }
+        assertThat(connector.isStarted()).isFalse();
+    }
+
+    @Test
+    void stopStartedConnectorsWhenOneFails() {
+        // given: a connector that is already running cannot be started again
+        final var running = new Connector(0, 100, 1, new RequestMapping(), new StandardManager());
+        running.start();
+        final var other = new Connector(0, 100, 1, new RequestMapping(), new StandardManager());
+        final var service = new StandardService("test");
+        service.addConnector(running);
+        service.addConnector(other);
+
+        try {
+            // when, then
+            assertThatThrownBy(service::start).isInstanceOf(IllegalStateException.class);
+            assertThat(other.isStarted()).isFalse();
+            assertThat(service.isStarted()).isFalse();
+        } finally {
+            running.stop();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package nextstep.org.apache.catalina.metrics;
+
+import org.apache.catalina.metrics.Histogram;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistogramTest {
+
+    @Test
+    void percentilesWithinBucketPrecision() {
+        // given
+        final Histogram histogram = new Histogram();
+
+        // when
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros);
+        }
+
+        // then
+        assertThat(histogram.getCount()).isEqualTo(100_000L);
+        assertThat(histogram.getSum()).isEqualTo(5_000_050_000L);
+        assertThat(histogram.getValueAtPercentile(50)).isBetween(50_000L, 51_600L);
+        assertThat(histogram.getValueAtPercentile(99)).isBetween(99_000L, 102_200L);
+        assertThat(histogram.getValueAtPercentile(100)).isBetween(100_000L, 103_200L);
+    }
+
+    @Test
+    void cumulativeCountsAtBounds() {
+        // given
+        final Histogram histogram = new Histogram();
+        histogram.record(10);
+        histogram.record(63);
+        histogram.record(1_000);
+        histogram.recordNanos(5_000_000_000L);
+
+        // when
+        final long[] counts = histogram.cumulativeCounts(new long[]{10, 100, 2_000, 10_000_000});
+
+        // then
+        assertThat(counts[0]).isEqualTo(1L);
+        assertThat(counts[1]).isEqualTo(2L);
+        assertThat(counts[2]).isEqualTo(3L);
+        assertThat(counts[3]).isEqualTo(4L);
+    }
+}
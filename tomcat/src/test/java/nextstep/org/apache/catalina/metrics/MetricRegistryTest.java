@@ -0,0 +1,103 @@
+package nextstep.org.apache.catalina.metrics;
+
+import org.apache.catalina.metrics.Counter;
+import org.apache.catalina.metrics.Histogram;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricRegistryTest {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Test
+    void scrapeInPrometheusTextFormat() {
+        // given
+        final AtomicInteger connections = new AtomicInteger(3);
+        metricRegistry.counterFamily("requests_total", "Requests.", "route", "status")
+                .labels("/login", "302").add(2);
+        metricRegistry.gauge("connections", "Open connections.", connections::get);
+        metricRegistry.histogram("latency_seconds", "Latency.").record(2_000);
+
+        // when
+        final String scraped = metricRegistry.scrape();
+
+        // then
+        assertThat(scraped).contains(
+                "# HELP requests_total Requests.\n# TYPE requests_total counter\n",
+                "requests_total{route=\"/login\",status=\"302\"} 2\n",
+                "# TYPE connections gauge\nconnections 3\n",
+                "# TYPE latency_seconds histogram\n",
+                "latency_seconds_bucket{le=\"0.001\"} 0\n",
+                "latency_seconds_bucket{le=\"0.0025\"} 1\n",
+                "latency_seconds_bucket{le=\"+Inf\"} 1\n",
+                "latency_seconds_sum 0.002\n",
+                "latency_seconds_count 1\n");
+    }
+
+    @Test
+    void registeringAgainReturnsSameMetric() {
+        // given
+        final Counter counter = metricRegistry.counter("events_total", "Events.");
+        counter.increment();
+
+        // when
+        final Counter again = metricRegistry.counter("events_total", "Events.");
+
+        // then
+        assertThat(again).isSameAs(counter);
+        assertThat(metricRegistry.scrape()).contains("events_total 1\n");
+    }
+
+    @Test
+    void escapeLabelValues() {
+        // given
+        metricRegistry.counterFamily("paths_total", "Paths.", "path").labels("a\"b\\c").increment();
+
+        // when
+        final String scraped = metricRegistry.scrape();
+
+        // then
+        assertThat(scraped).contains("paths_total{path=\"a\\\"b\\\\c\"} 1\n");
+    }
+
+    @Test
+    void keepBucketsWithinCountWhileRecording() throws InterruptedException {
+        // given
+        final Histogram histogram = metricRegistry.histogram("latency_seconds", "Latency.");
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread recorder = new Thread(() -> {
+            while (running.get()) {
+                histogram.record(100);
+            }
+        });
+        recorder.start();
+
+        // when, then
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                final String scraped = metricRegistry.scrape();
+                final long lastBound = scrapedValue(scraped, "latency_seconds_bucket{le=\"10.0\"}");
+                final long infinity = scrapedValue(scraped, "latency_seconds_bucket{le=\"+Inf\"}");
+                assertThat(lastBound).isLessThanOrEqualTo(infinity);
+                assertThat(scrapedValue(scraped, "latency_seconds_count")).isEqualTo(infinity);
+            }
+        } finally {
+            running.set(false);
+            recorder.join();
+        }
+    }
+
+    private static long scrapedValue(final String scraped, final String sample) {
+        final Matcher matcher = Pattern.compile("^" + Pattern.quote(sample) + " (\\d+)$", Pattern.MULTILINE)
+                .matcher(scraped);
+        assertThat(matcher.find()).isTrue();
+        return Long.parseLong(matcher.group(1));
+    }
+}
@@ -0,0 +1,131 @@
+package nextstep.org.apache.catalina.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.apache.catalina.session.OffHeapManager;
+import org.apache.catalina.session.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import support.FakeClock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapManagerTest {
+
+    private final FakeClock clock = new FakeClock(1_000_000L);
+    private final OffHeapManager manager = new OffHeapManager(clock, 1000L);
+
+    @AfterEach
+    void tearDown() {
+        manager.stop();
+    }
+
+    @Test
+    void findSession() {
+        // given
+        final HttpSession session = manager.createSession();
+        session.setAttribute("user", "gugu");
+        session.setAttribute("visits", 3);
+
+        // when
+        final HttpSession found = manager.findSession(session.getId());
+
+        // then
+        assertThat(found.getAttribute("user")).isEqualTo("gugu");
+        assertThat(found.getAttribute("visits")).isEqualTo(3);
+        assertThat(found.isNew()).isFalse();
+        assertThat(manager.findSession("unknown")).isNull();
+    }
+
+    @Test
+    void addCopiesSessionState() {
+        // given
+        final Session session = new Session("abc", clock.millis());
+        session.setAttribute("user", "gugu");
+
+        // when
+        manager.add(session);
+
+        // then
+        final HttpSession found = manager.findSession("abc");
+        assertThat(found.getAttribute("user")).isEqualTo("gugu");
+        assertThat(found.getCreationTime()).isEqualTo(clock.millis());
+    }
+
+    @Test
+    void growingAttributesMoveToLargerBlock() {
+        // given
+        final HttpSession session = manager.createSession();
+        final String large = "x".repeat(10_000);
+
+        // when
+        session.setAttribute("large", large);
+        session.removeAttribute("large");
+        session.setAttribute("small", "y");
+
+        // then
+        final HttpSession found = manager.findSession(session.getId());
+        assertThat(found.getAttribute("large")).isNull();
+        assertThat(found.getAttribute("small")).isEqualTo("y");
+        assertThat(manager.getUsedBytes()).isLessThan(1024L);
+    }
+
+    @Test
+    void invalidate() {
+        // given
+        final HttpSession session = manager.createSession();
+
+        // when
+        session.invalidate();
+
+        // then
+        assertThat(manager.findSession(session.getId())).isNull();
+        assertThat(manager.getActiveSessions()).isZero();
+        assertThat(manager.getUsedBytes()).isZero();
+    }
+
+    @Test
+    void backgroundProcessExpiresIdleSessionsInBatches() {
+        // given
+        for (int i = 0; i < 10_000; i++) {
+            final HttpSession session = manager.createSession();
+            session.setMaxInactiveInterval(i % 2 == 0 ? 5 : 60);
+        }
+
+        // when
+        clock.advance(6_000L);
+        for (int i = 0; i < 8; i++) {
+            manager.backgroundProcess();
+        }
+
+        // then
+        assertThat(manager.getActiveSessions()).isEqualTo(5_000);
+        assertThat(manager.getExpiredSessions()).isEqualTo(5_000L);
+        assertThat(manager.getSessionCounter()).isEqualTo(10_000L);
+    }
+
+    @Test
+    void manySessionsRemainReachableAfterRemovals() {
+        // given
+        final String[] ids = new String[20_000];
+        for (int i = 0; i < ids.length; i++) {
+            final HttpSession session = manager.createSession();
+            session.setAttribute("index", i);
+            ids[i] = session.getId();
+        }
+
+        // when
+        for (int i = 0; i < ids.length; i += 3) {
+            manager.findSession(ids[i]).invalidate();
+        }
+
+        // then
+        for (int i = 0; i < ids.length; i++) {
+            final HttpSession found = manager.findSession(ids[i]);
+            if (i % 3 == 0) {
+                assertThat(found).isNull();
+            } else {
+                assertThat(found.getAttribute("index")).isEqualTo(i);
+            }
+        }
+    }
+}
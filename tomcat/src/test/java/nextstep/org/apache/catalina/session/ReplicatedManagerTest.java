@@ -0,0 +1,261 @@
+package nextstep.org.apache.catalina.session;
+
+import jakarta.servlet.http.HttpSession;
+import org.apache.catalina.session.ReplicatedManager;
+import org.apache.catalina.session.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import support.FakeClock;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicatedManagerTest {
+
+    private final List<ReplicatedManager> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ReplicatedManager::stop);
+    }
+
+    @Test
+    void replicateCreatedSession() {
+        // given
+        final var cluster = cluster(3);
+        final Session session = cluster.get(0).createSession();
+        session.setAttribute("user", "gugu");
+
+        // when
+        final boolean replicated = await(() -> cluster.get(1).getActiveSessions() == 1
+                && cluster.get(2).getActiveSessions() == 1);
+
+        // then
+        assertThat(replicated).isTrue();
+        assertThat(session.getId()).endsWith(".node0");
+        assertThat(await(() -> "gugu".equals(cluster.get(2).findSession(session.getId()).getAttribute("user"))))
+                .isTrue();
+    }
+
+    @Test
+    void replicateInvalidatedSession() {
+        // given
+        final var cluster = cluster(2);
+        final Session session = cluster.get(0).createSession();
+        await(() -> cluster.get(1).getActiveSessions() == 1);
+
+        // when
+        session.invalidate();
+
+        // then
+        assertThat(await(() -> cluster.get(1).getActiveSessions() == 0)).isTrue();
+    }
+
+    @Test
+    void fetchSessionFromOwnerOnLocalMiss() {
+        // given: the owner knows the other node but cannot replicate to it
+        final ReplicatedManager owner = node("owner");
+        final ReplicatedManager other = node("other");
+        other.addPeer("owner", new InetSocketAddress("127.0.0.1", owner.getPort()));
+        owner.addPeer("other", new InetSocketAddress("127.0.0.1", 1));
+        final Session session = owner.createSession();
+        session.setAttribute("user", "gugu");
+
+        // when
+        final HttpSession fetched = other.findSession(session.getId());
+
+        // then
+        assertThat(fetched.getAttribute("user")).isEqualTo("gugu");
+        assertThat(other.getFetchedSessions()).isEqualTo(1L);
+        assertThat(other.findSession("unknown.owner")).isNull();
+    }
+
+    @Test
+    void failFastWhileOwnerIsUnresponsive() throws IOException {
+        // given: the owner accepts connections but never answers
+        try (final var unresponsive = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final ReplicatedManager other = node("other");
+            other.addPeer("owner", new InetSocketAddress("127.0.0.1", unresponsive.getLocalPort()));
+            assertThat(other.findSession("forged.owner")).isNull();
+
+            // when
+            final long start = System.nanoTime();
+            final HttpSession second = other.findSession("forged-again.owner");
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // then
+            assertThat(second).isNull();
+            assertThat(elapsedMillis).isLessThan(500L);
+        }
+    }
+
+    @Test
+    void resendBatchesMissedWhilePeerWasDown() throws IOException {
+        // given: node1 is not started yet when node0 replicates to it
+        final int port;
+        try (final var reserved = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = reserved.getLocalPort();
+        }
+        final ReplicatedManager node0 = node("node0");
+        node0.setPeerRetryMillis(100);
+        node0.addPeer("node1", new InetSocketAddress("127.0.0.1", port));
+        final Session session = node0.createSession();
+        session.setAttribute("user", "gugu");
+        await(() -> node0.getSentMessages() > 0);
+
+        // when
+        final var node1 = new ReplicatedManager("node1", port);
+        node1.addPeer("node0", new InetSocketAddress("127.0.0.1", node0.getPort()));
+        node1.start();
+        nodes.add(node1);
+
+        // then
+        assertThat(await(() -> node1.getActiveSessions() == 1)).isTrue();
+        assertThat(node1.getFetchedSessions()).isEqualTo(0L);
+    }
+
+    @Test
+    void rejectConnectionsFromUnknownAddresses() {
+        // given: node1 replicates to node0, which does not know node1
+        final ReplicatedManager node0 = node("node0");
+        final ReplicatedManager node1 = node("node1");
+        node1.addPeer("node0", new InetSocketAddress("127.0.0.1", node0.getPort()));
+        node0.addPeer("node2", new InetSocketAddress("192.0.2.1", 1));
+
+        // when
+        node1.createSession();
+
+        // then
+        assertThat(await(() -> node0.getRejectedConnections() > 0)).isTrue();
+        assertThat(node0.getActiveSessions()).isEqualTo(0);
+    }
+
+    @Test
+    void replicateOnlyAllowedAttributeClasses() {
+        // given
+        final var cluster = cluster(3);
+        cluster.get(2).setAllowedAttributeClasses(Payload.class.getName());
+        final Session session = cluster.get(0).createSession();
+        session.setAttribute("user", "gugu");
+        session.setAttribute("payload", new Payload("secret"));
+
+        // when
+        await(() -> cluster.get(1).getActiveSessions() == 1 && cluster.get(2).getActiveSessions() == 1);
+
+        // then
+        final HttpSession filtered = cluster.get(1).findSession(session.getId());
+        assertThat(filtered.getAttribute("user")).isEqualTo("gugu");
+        assertThat(filtered.getAttribute("payload")).isNull();
+        final Object allowed = cluster.get(2).findSession(session.getId()).getAttribute("payload");
+        assertThat(allowed).isInstanceOf(Payload.class);
+    }
+
+    @Test
+    void dropConnectionSendingOversizedSession() throws IOException {
+        // given
+        final ReplicatedManager node = node("node0");
+        node.addPeer("node1", new InetSocketAddress("127.0.0.1", 1));
+        try (final var socket = new Socket(InetAddress.getLoopbackAddress(), node.getPort())) {
+            socket.setSoTimeout(5_000);
+            final var out = new DataOutputStream(socket.getOutputStream());
+
+            // when: an update claiming 2 GiB of attributes
+            out.writeByte(1);
+            out.writeUTF("oversized.node1");
+            out.writeLong(0L);
+            out.writeLong(0L);
+            out.writeInt(1800);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+
+            // then
+            assertThat(socket.getInputStream().read()).isEqualTo(-1);
+            assertThat(node.getActiveSessions()).isZero();
+        }
+    }
+
+    @Test
+    void replicateAccessTimeOnlyChangesOnCoarseInterval() throws InterruptedException {
+        // given
+        final var clock = new FakeClock(0L);
+        final var node0 = new ReplicatedManager("node0", 0, clock, 1000L);
+        node0.start();
+        nodes.add(node0);
+        final ReplicatedManager node1 = node("node1");
+        node0.addPeer("node1", new InetSocketAddress("127.0.0.1", node1.getPort()));
+        final Session session = node0.createSession();
+        await(() -> node0.getSentMessages() == 1);
+
+        // when: a request every second for half a minute, then one a minute later
+        for (int i = 0; i < 30; i++) {
+            clock.advance(1000L);
+            node0.findSession(session.getId());
+        }
+        Thread.sleep(100L);
+        final long sentAfterRequests = node0.getSentMessages();
+        clock.advance(60_000L);
+        node0.findSession(session.getId());
+
+        // then
+        assertThat(sentAfterRequests).isEqualTo(1L);
+        assertThat(await(() -> node0.getSentMessages() == 2)).isTrue();
+    }
+
+    private List<ReplicatedManager> cluster(final int size) {
+        final List<ReplicatedManager> cluster = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            cluster.add(node("node" + i));
+        }
+        for (final ReplicatedManager node : cluster) {
+            for (final ReplicatedManager peer : cluster) {
+                if (node != peer) {
+                    node.addPeer(peer.getNodeName(), new InetSocketAddress("127.0.0.1", peer.getPort()));
+                }
+            }
+        }
+        return cluster;
+    }
+
+    private ReplicatedManager node(final String name) {
+        final ReplicatedManager node = new ReplicatedManager(name, 0);
+        node.start();
+        nodes.add(node);
+        return node;
+    }
+
+    private static final class Payload implements Serializable {
+
+        private final String value;
+
+        private Payload(final String value) {
+            this.value = value;
+        }
+    }
+
+    private boolean await(final BooleanSupplier condition) {
+        final long deadline = System.currentTimeMillis() + 5_000L;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+}
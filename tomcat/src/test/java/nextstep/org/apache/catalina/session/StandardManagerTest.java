@@ -0,0 +1,241 @@
+package nextstep.org.apache.catalina.session;
+
+import org.apache.catalina.session.FileStore;
+import org.apache.catalina.session.Session;
+import org.apache.catalina.session.StandardManager;
+import org.junit.jupiter.api.Test;
+import support.FakeClock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StandardManagerTest {
+
+    private final FakeClock clock = new FakeClock(1_000_000L);
+    private final StandardManager manager = new StandardManager(clock, 1000L);
+
+    @Test
+    void findSession() {
+        // given
+        final Session session = new Session("abc", clock.millis());
+        manager.add(session);
+
+        // when
+        final var found = manager.findSession("abc");
+
+        // then
+        assertThat(found).isSameAs(session);
+        assertThat(manager.findSession("unknown")).isNull();
+        assertThat(manager.getActiveSessions()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredSessionIsNotReturned() {
+        // given
+        final Session session = new Session("abc", clock.millis());
+        session.setMaxInactiveInterval(10);
+        manager.add(session);
+
+        // when
+        clock.advance(10_000L);
+
+        // then
+        assertThat(manager.findSession("abc")).isNull();
+        assertThat(manager.getExpiredSessions()).isEqualTo(1L);
+    }
+
+    @Test
+    void backgroundProcessExpiresIdleSessions() {
+        // given
+        for (int i = 0; i < 100; i++) {
+            final Session session = new Session("session-" + i, clock.millis());
+            session.setMaxInactiveInterval(i < 50 ? 5 : 60);
+            manager.add(session);
+        }
+
+        // when
+        clock.advance(6_000L);
+        manager.backgroundProcess();
+
+        // then
+        assertThat(manager.getActiveSessions()).isEqualTo(50);
+        assertThat(manager.getExpiredSessions()).isEqualTo(50L);
+        assertThat(manager.getSessionCounter()).isEqualTo(100L);
+    }
+
+    @Test
+    void shortenedIntervalIsRescheduled() {
+        // given: one session scheduled for the default half hour, one never expiring
+        final Session shortened = new Session("shortened", clock.millis());
+        final Session eternal = new Session("eternal", clock.millis());
+        eternal.setMaxInactiveInterval(0);
+        manager.add(shortened);
+        manager.add(eternal);
+
+        // when
+        shortened.setMaxInactiveInterval(5);
+        eternal.setMaxInactiveInterval(5);
+        clock.advance(6_000L);
+        manager.backgroundProcess();
+
+        // then
+        assertThat(manager.getActiveSessions()).isZero();
+        assertThat(manager.getExpiredSessions()).isEqualTo(2L);
+    }
+
+    @Test
+    void accessedSessionIsRescheduled() {
+        // given
+        final Session session = new Session("abc", clock.millis());
+        session.setMaxInactiveInterval(5);
+        manager.add(session);
+
+        // when
+        clock.advance(4_000L);
+        manager.findSession("abc");
+        clock.advance(4_000L);
+        manager.backgroundProcess();
+
+        // then
+        assertThat(manager.getActiveSessions()).isEqualTo(1);
+        clock.advance(2_000L);
+        manager.backgroundProcess();
+        assertThat(manager.getActiveSessions()).isZero();
+    }
+
+    @Test
+    void invalidate() {
+        // given
+        final Session session = new Session("abc", clock.millis());
+        manager.add(session);
+
+        // when
+        session.invalidate();
+
+        // then
+        assertThat(manager.findSession("abc")).isNull();
+        assertThat(session.isValid()).isFalse();
+    }
+
+    @Test
+    void sessionsFartherThanOneRevolutionAreKept() {
+        // given
+        final Session session = new Session("abc", clock.millis());
+        session.setMaxInactiveInterval(10_000);
+        manager.add(session);
+
+        // when
+        clock.advance(5_000_000L);
+        manager.backgroundProcess();
+
+        // then
+        assertThat(manager.getActiveSessions()).isEqualTo(1);
+        clock.advance(5_000_001L);
+        manager.backgroundProcess();
+        assertThat(manager.getActiveSessions()).isZero();
+    }
+
+    @Test
+    void restoreSessionsAfterRestart() throws IOException {
+        // given
+        final Path path = Files.createTempFile("sessions", ".bin");
+        Files.delete(path);
+        manager.setStore(new FileStore(path));
+        manager.start();
+        for (int i = 0; i < 1000; i++) {
+            final Session session = new Session("session-" + i, clock.millis());
+            session.setAttribute("user", "user-" + i);
+            manager.add(session);
+        }
+        manager.snapshot();
+        manager.findSession("session-1").setAttribute("user", "changed");
+        manager.findSession("session-2").invalidate();
+
+        // when
+        manager.stop();
+        manager.start();
+
+        // then
+        assertThat(manager.getActiveSessions()).isEqualTo(999);
+        assertThat(manager.findSession("session-1").getAttribute("user")).isEqualTo("changed");
+        assertThat(manager.findSession("session-2")).isNull();
+        assertThat(manager.findSession("session-3").getAttribute("user")).isEqualTo("user-3");
+        manager.stop();
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    void snapshotAppendsOnlyChangedSessions() throws IOException {
+        // given
+        final Path path = Files.createTempFile("sessions", ".bin");
+        Files.delete(path);
+        final FileStore store = new FileStore(path);
+        manager.setStore(store);
+        for (int i = 0; i < 100; i++) {
+            manager.add(new Session("session-" + i, clock.millis()));
+        }
+        manager.snapshot();
+        final long fullSize = Files.size(path);
+
+        // when
+        manager.findSession("session-1").setAttribute("user", "gugu");
+        manager.snapshot();
+
+        // then
+        assertThat(Files.size(path) - fullSize).isLessThan(fullSize / 10);
+        assertThat(store.load().get("session-1").getAttribute("user")).isEqualTo("gugu");
+        store.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    void appendAfterTornRecordIsCutOff() throws IOException {
+        // given: a crash left half a record at the end of the file
+        final Path path = Files.createTempFile("sessions", ".bin");
+        Files.delete(path);
+        final FileStore store = new FileStore(path);
+        store.append(List.of(new Session("before-crash", clock.millis())), List.of());
+        store.close();
+        Files.write(path, new byte[]{0, 0, 1, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // when
+        store.load();
+        store.append(List.of(new Session("after-crash", clock.millis())), List.of());
+        store.close();
+
+        // then
+        assertThat(store.load().keySet()).containsExactly("before-crash", "after-crash");
+        store.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    void skipRecordFailingItsChecksum() throws IOException {
+        // given: a byte flipped in the middle of the second of three records
+        final Path path = Files.createTempFile("sessions", ".bin");
+        Files.delete(path);
+        final FileStore store = new FileStore(path);
+        store.append(List.of(new Session("first", clock.millis()), new Session("second", clock.millis()),
+                new Session("third", clock.millis())), List.of());
+        store.close();
+        final byte[] bytes = Files.readAllBytes(path);
+        final int secondRecord = 4 + 8 + ByteBuffer.wrap(bytes, 4, 4).getInt();
+        bytes[secondRecord + 8 + 10] ^= 0x40;
+        Files.write(path, bytes);
+
+        // when
+        final Map<String, Session> sessions = store.load();
+
+        // then
+        assertThat(sessions.keySet()).containsExactly("first", "third");
+        store.close();
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,124 @@
+package nextstep.org.apache.catalina.valves;
+
+import org.apache.catalina.valves.AccessLogPattern;
+import org.apache.catalina.valves.AsyncFileAccessLog;
+import org.apache.coyote.http11.Http11InputBuffer;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import support.FakeClock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncFileAccessLogTest {
+
+    private static final long NOON_2024_03_01 = 1_709_294_400_000L;
+
+    private final Path directory = Files.createTempDirectory("access-log");
+    private final FakeClock clock = new FakeClock(NOON_2024_03_01);
+    private final InetAddress remoteAddress = InetAddress.getLoopbackAddress();
+
+    AsyncFileAccessLogTest() throws IOException {
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (final Stream<Path> files = Files.walk(directory)) {
+            for (final Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static HttpRequest request(final String head) throws IOException {
+        return HttpRequest.parse(new Http11InputBuffer(
+                new ByteArrayInputStream((head + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1))));
+    }
+
+    @Test
+    void writeCombinedPattern() throws IOException {
+        // given
+        final var accessLog = new AsyncFileAccessLog(directory, "access_log",
+                AccessLogPattern.compile("combined", ZoneOffset.UTC), 16, clock);
+        final HttpRequest request =
+                request("GET /login?account=gugu&password=secret HTTP/1.1\r\nUser-Agent: curl/8.0");
+
+        // when
+        accessLog.log(remoteAddress, request, HttpStatus.FOUND, 0, TimeUnit.MILLISECONDS.toNanos(3));
+        accessLog.log(remoteAddress, null, HttpStatus.BAD_REQUEST, 120, 0);
+        accessLog.close();
+
+        // then
+        final List<String> lines = Files.readAllLines(directory.resolve("access_log.2024-03-01.log"));
+        assertThat(lines).containsExactly(
+                "127.0.0.1 - - [01/Mar/2024:12:00:00 +0000] \"GET /login HTTP/1.1\" 302 - \"-\" \"curl/8.0\"",
+                "127.0.0.1 - - [01/Mar/2024:12:00:00 +0000] \"-\" 400 120 \"-\" \"-\"");
+        assertThat(accessLog.getWritten()).isEqualTo(2L);
+    }
+
+    @Test
+    void rotateDaily() throws IOException {
+        // given
+        final var accessLog = new AsyncFileAccessLog(directory, "access_log",
+                AccessLogPattern.compile("%U %s %D", ZoneOffset.UTC), 16, clock);
+        accessLog.log(remoteAddress, request("GET /index.html HTTP/1.1"), HttpStatus.OK, 10,
+                TimeUnit.MILLISECONDS.toNanos(7));
+
+        // when
+        clock.advance(TimeUnit.DAYS.toMillis(1));
+        accessLog.log(remoteAddress, request("GET /login HTTP/1.1"), HttpStatus.OK, 10, 0);
+        accessLog.close();
+
+        // then
+        assertThat(Files.readAllLines(directory.resolve("access_log.2024-03-01.log")))
+                .containsExactly("/index.html 200 7");
+        assertThat(Files.readAllLines(directory.resolve("access_log.2024-03-02.log")))
+                .containsExactly("/login 200 0");
+    }
+
+    @Test
+    void dropEntriesWhenBufferIsFullInsteadOfBlocking() throws Exception {
+        // given
+        final var accessLog = new AsyncFileAccessLog(directory, "access_log",
+                AccessLogPattern.compile("%U", ZoneOffset.UTC), 4, clock);
+        final HttpRequest request = request("GET /index.html HTTP/1.1");
+        final int threads = 4;
+        final int entriesPerThread = 50_000;
+        final Thread[] producers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            producers[i] = new Thread(() -> {
+                for (int j = 0; j < entriesPerThread; j++) {
+                    accessLog.log(remoteAddress, request, HttpStatus.OK, 10, 0);
+                }
+            });
+        }
+
+        // when
+        for (final Thread producer : producers) {
+            producer.start();
+        }
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+        accessLog.close();
+
+        // then
+        final long lines = Files.readAllLines(directory.resolve("access_log.2024-03-01.log")).size();
+        assertThat(accessLog.getDropped()).isGreaterThan(0L);
+        assertThat(lines).isEqualTo(accessLog.getWritten());
+        assertThat(lines + accessLog.getDropped()).isEqualTo((long) threads * entriesPerThread);
+    }
+}
@@ -0,0 +1,289 @@
+package nextstep.org.apache.catalina.valves;
+
+import org.apache.catalina.controller.Controller;
+import org.apache.catalina.valves.ResponseCache;
+import org.apache.coyote.http11.Deadline;
+import org.apache.coyote.http11.DeadlineExceededException;
+import org.apache.coyote.http11.Http11InputBuffer;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+import org.apache.coyote.http11.HttpStatus;
+import org.junit.jupiter.api.Test;
+import support.FakeClock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResponseCacheTest {
+
+    private static final long MAX_BYTES = 1024 * 1024;
+
+    private final FakeClock clock = new FakeClock(0);
+    private final List<Runnable> refreshes = new ArrayList<>();
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    private final Controller counting = (request, response) ->
+            response.setBody("response " + invocations.incrementAndGet());
+
+    private ResponseCache cache(final long maxBytes) {
+        return new ResponseCache(maxBytes, refreshes::add, clock).addRoute("/page");
+    }
+
+    private static HttpRequest request(final String head) throws IOException {
+        return HttpRequest.parse(new Http11InputBuffer(
+                new ByteArrayInputStream((head + "\r\n").getBytes(StandardCharsets.ISO_8859_1))));
+    }
+
+    private static HttpRequest get(final String uri) throws IOException {
+        return request("GET " + uri + " HTTP/1.1\r\nHost: localhost\r\n");
+    }
+
+    private static String serve(final ResponseCache cache, final HttpRequest request, final Controller controller)
+            throws Exception {
+        final var response = new HttpResponse();
+        cache.service(request, response, controller);
+        return new String(response.getBody(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void serveFreshResponseFromCache() throws Exception {
+        // given
+        final var cache = cache(MAX_BYTES);
+        serve(cache, get("/page"), counting);
+        clock.advance(500);
+
+        // when
+        final var response = new HttpResponse();
+        cache.service(get("/page"), response, counting);
+
+        // then
+        assertThat(new String(response.getBody(), StandardCharsets.UTF_8)).isEqualTo("response 1");
+        assertThat(response.getHeader("Age")).isEqualTo("0");
+        assertThat(invocations.get()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1L);
+        assertThat(cache.getMisses()).isEqualTo(1L);
+    }
+
+    @Test
+    void keyResponsesByUriAndVaryHeaders() throws Exception {
+        // given
+        final var cache = cache(MAX_BYTES);
+        cache.setVaryHeaders(List.of("Accept-Language"));
+        serve(cache, request("GET /page HTTP/1.1\r\nAccept-Language: ko\r\n"), counting);
+
+        // when
+        final String english = serve(cache, request("GET /page HTTP/1.1\r\nAccept-Language: en\r\n"), counting);
+        final String query = serve(cache, request("GET /page?q=1 HTTP/1.1\r\nAccept-Language: ko\r\n"), counting);
+        final String korean = serve(cache, request("GET /page HTTP/1.1\r\nAccept-Language: ko\r\n"), counting);
+
+        // then
+        assertThat(english).isEqualTo("response 2");
+        assertThat(query).isEqualTo("response 3");
+        assertThat(korean).isEqualTo("response 1");
+    }
+
+    @Test
+    void cacheOnlyAnonymousGetsOfEnabledRoutes() throws Exception {
+        // given
+        final var cache = cache(MAX_BYTES);
+
+        // when, then
+        assertThat(cache.isCacheable(get("/page"), "/page")).isTrue();
+        assertThat(cache.isCacheable(get("/other"), "/other")).isFalse();
+        assertThat(cache.isCacheable(request("GET /page HTTP/1.1\r\nCookie: JSESSIONID=abc\r\n"), "/page"))
+                .isFalse();
+        assertThat(cache.isCacheable(request("POST /page HTTP/1.1\r\n"), "/page")).isFalse();
+        assertThat(cache.isCacheable(request("GET /page HTTP/1.1\r\nAuthorization: Basic Z3VndTpwdw==\r\n"),
+                "/page")).isFalse();
+        assertThat(cache.isCacheable(request("GET /page HTTP/1.1\r\nCookie: theme=dark\r\n"), "/page")).isFalse();
+    }
+
+    @Test
+    void cacheRequestsWithCookiesOnlyWhenKeyedByThem() throws Exception {
+        // given
+        final var cache = cache(MAX_BYTES);
+        cache.setVaryHeaders(List.of("cookie"));
+
+        // when, then
+        assertThat(cache.isCacheable(request("GET /page HTTP/1.1\r\nCookie: theme=dark\r\n"), "/page")).isTrue();
+        assertThat(cache.isCacheable(request("GET /page HTTP/1.1\r\nCookie: JSESSIONID=abc\r\n"), "/page"))
+                .isFalse();
+    }
+
+    @Test
+    void doNotStoreErrorsOrNoStoreResponses() throws Exception {
+        // given
+        final var cache = cache(MAX_BYTES);
+        final Controller notFound = (request, response) -> {
+            invocations.incrementAndGet();
+            response.setStatus(HttpStatus.NOT_FOUND);
+        };
+        final Controller noStore = (request, response) -> {
+            invocations.incrementAndGet();
+            response.setHeader("Cache-Control", "no-store");
+        };
+
+        // when
+        serve(cache, get("/page"), notFound);
+        serve(cache, get("/page"), notFound);
+        serve(cache, get("/page?no-store"), noStore);
+        serve(cache, get("/page?no-store"), noStore);
+
+        // then
+        assertThat(invocations.get()).isEqualTo(4);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    void serveStaleResponseWhileRevalidatingOnce() throws Exception {
+        // given
+        final var cache = cache(MAX_BYTES);
+        cache.setTtlMillis(1_000);
+        cache.setStaleWhileRevalidateMillis(5_000);
+        serve(cache, get("/page"), counting);
+        clock.advance(2_000);
+
+        // when
+        final String stale = serve(cache, get("/page"), counting);
+        final String staleAgain = serve(cache, get("/page"), counting);
+        refreshes.forEach(Runnable::run);
+        final String revalidated = serve(cache, get("/page"), counting);
+
+        // then
+        assertThat(stale).isEqualTo("response 1");
+        assertThat(staleAgain).isEqualTo("response 1");
+        assertThat(refreshes).hasSize(1);
+        assertThat(revalidated).isEqualTo("response 2");
+        assertThat(cache.getStaleHits()).isEqualTo(2L);
+        assertThat(cache.getHits()).isEqualTo(1L);
+    }
+
+    @Test
+    void reloadResponsePastStaleWindow() throws Exception {
+        // given
+        final var cache = cache(MAX_BYTES);
+        cache.setTtlMillis(1_000);
+        cache.setStaleWhileRevalidateMillis(1_000);
+        serve(cache, get("/page"), counting);
+        clock.advance(3_000);
+
+        // when
+        final String reloaded = serve(cache, get("/page"), counting);
+
+        // then
+        assertThat(reloaded).isEqualTo("response 2");
+        assertThat(refreshes).hasSize(0);
+    }
+
+    @Test
+    void evictOldestResponsesToFitBytes() throws Exception {
+        // given
+        final var cache = cache(16 * 1024);
+        final Controller large = (request, response) -> {
+            invocations.incrementAndGet();
+            response.setBody(new byte[1024]);
+        };
+
+        // when
+        for (int i = 0; i < 20; i++) {
+            serve(cache, get("/page?i=" + i), large);
+        }
+        serve(cache, get("/page?i=0"), large);
+
+        // then
+        assertThat(cache.getBytes()).isLessThan(16L * 1024 + 1);
+        assertThat(cache.getEvictions()).isGreaterThan(0L);
+        assertThat(invocations.get()).isEqualTo(21);
+    }
+
+    @Test
+    void coalesceConcurrentMisses() throws Exception {
+        // given
+        final var cache = cache(MAX_BYTES);
+        final var release = new CountDownLatch(1);
+        final Controller slow = (request, response) -> {
+            release.await(5, TimeUnit.SECONDS);
+            response.setBody("response " + invocations.incrementAndGet());
+        };
+        final int clients = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        final List<CompletableFuture<String>> responses = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < clients; i++) {
+            responses.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return serve(cache, get("/page"), slow);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, executor));
+        }
+        final long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.getMisses() < clients && System.nanoTime() < waitUntil) {
+            Thread.sleep(1);
+        }
+        // let the last ones join the flight
+        Thread.sleep(50);
+        release.countDown();
+
+        // then
+        for (final CompletableFuture<String> response : responses) {
+            assertThat(response.get(5, TimeUnit.SECONDS)).isEqualTo("response 1");
+        }
+        assertThat(invocations.get()).isEqualTo(1);
+        assertThat(cache.getCoalesced()).isEqualTo((long) clients - 1);
+        executor.shutdown();
+    }
+
+    @Test
+    void stopWaitingForCoalescedMissAtDeadline() throws Exception {
+        // given
+        final var cache = cache(MAX_BYTES);
+        final var release = new CountDownLatch(1);
+        final Controller slow = (request, response) -> {
+            release.await(5, TimeUnit.SECONDS);
+            response.setBody("response " + invocations.incrementAndGet());
+        };
+        final CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> {
+            try {
+                return serve(cache, get("/page"), slow);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        final long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.getMisses() < 1 && System.nanoTime() < waitUntil) {
+            Thread.sleep(1);
+        }
+        // let the leader take the flight
+        Thread.sleep(50);
+        final HttpRequest waiter = get("/page");
+        waiter.setDeadline(Deadline.after(100, TimeUnit.MILLISECONDS));
+
+        try {
+            // when
+            final long start = System.nanoTime();
+            assertThatThrownBy(() -> serve(cache, waiter, slow)).isInstanceOf(DeadlineExceededException.class);
+
+            // then
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1_000L);
+        } finally {
+            release.countDown();
+        }
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("response 1");
+        assertThat(invocations.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,109 @@
+package nextstep.org.apache.catalina.valves;
+
+import org.apache.catalina.valves.RequestTrace;
+import org.apache.catalina.valves.RequestTrace.Phase;
+import org.apache.catalina.valves.SlowRequestTracer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SlowRequestTracerTest {
+
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static RequestTrace trace(final String uri, final long totalMillis) {
+        final var trace = new RequestTrace();
+        trace.set(Phase.SERVICE, TimeUnit.MILLISECONDS.toNanos(totalMillis));
+        trace.complete(0, TimeUnit.MILLISECONDS.toNanos(totalMillis), "GET", uri, 200);
+        return trace;
+    }
+
+    @Test
+    void keepOnlySlowRequestsWithoutSampling() {
+        // given
+        final var tracer = new SlowRequestTracer(THRESHOLD, 0, 8);
+
+        // when
+        tracer.completed(trace("/fast", 5));
+        tracer.completed(trace("/slow", 150));
+
+        // then
+        final List<RequestTrace> traces = tracer.getTraces();
+        assertThat(traces).hasSize(1);
+        assertThat(traces.get(0).getPath()).isEqualTo("/slow");
+        assertThat(traces.get(0).isSlow()).isTrue();
+        assertThat(tracer.getSlowRequests()).isEqualTo(1L);
+        assertThat(tracer.getSampledRequests()).isEqualTo(0L);
+    }
+
+    @Test
+    void keepSampledRequests() {
+        // given
+        final var tracer = new SlowRequestTracer(THRESHOLD, 1, 8);
+
+        // when
+        tracer.completed(trace("/fast", 5));
+
+        // then
+        assertThat(tracer.getTraces()).hasSize(1);
+        assertThat(tracer.getTraces().get(0).isSlow()).isFalse();
+        assertThat(tracer.getSampledRequests()).isEqualTo(1L);
+    }
+
+    @Test
+    void overwriteOldestTracesWhenFull() {
+        // given
+        final var tracer = new SlowRequestTracer(THRESHOLD, 0, 2);
+
+        // when
+        tracer.completed(trace("/first", 200));
+        tracer.completed(trace("/second", 200));
+        tracer.completed(trace("/third", 200));
+
+        // then
+        final List<RequestTrace> traces = tracer.getTraces();
+        assertThat(traces).hasSize(2);
+        assertThat(traces.get(0).getPath()).isEqualTo("/third");
+        assertThat(traces.get(1).getPath()).isEqualTo("/second");
+    }
+
+    @Test
+    void keepCopyOfReusedTrace() {
+        // given
+        final var tracer = new SlowRequestTracer(THRESHOLD, 0, 2);
+        final RequestTrace trace = trace("/slow", 150);
+        tracer.completed(trace);
+
+        // when
+        trace.complete(0, 0, "POST", "/other", 500);
+
+        // then
+        assertThat(tracer.getTraces().get(0).getPath()).isEqualTo("/slow");
+    }
+
+    @Test
+    void dumpPhases() {
+        // given
+        final var tracer = new SlowRequestTracer(THRESHOLD, 0, 2);
+        final RequestTrace trace = trace("/login", 150);
+        trace.set(Phase.REPOSITORY, TimeUnit.MICROSECONDS.toNanos(12_345));
+        tracer.completed(trace);
+
+        // when
+        final String dump = tracer.dump();
+
+        // then
+        assertThat(dump).isEqualTo("1970-01-01T00:00:00Z GET /login 200 total=150.000ms queue=0.000ms "
+                + "parse=0.000ms session=0.000ms repository=12.345ms service=150.000ms write=0.000ms slow\n");
+    }
+
+    @Test
+    void rejectSampleRateOutOfRange() {
+        assertThatThrownBy(() -> new SlowRequestTracer(THRESHOLD, 1.5, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
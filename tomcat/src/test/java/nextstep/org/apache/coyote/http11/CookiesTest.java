@@ -0,0 +1,95 @@
+package nextstep.org.apache.coyote.http11;
+
+import org.apache.coyote.http11.Cookie;
+import org.apache.coyote.http11.Cookies;
+import org.apache.coyote.http11.SetCookie;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CookiesTest {
+
+    private static Cookies cookies(final String header) {
+        final byte[] bytes = header.getBytes(StandardCharsets.ISO_8859_1);
+        return new Cookies(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void findSessionIdAmongOtherCookies() {
+        // given
+        final Cookies cookies = cookies("yummy_cookie=choco; JSESSIONID=656cef62-e3c4-40bc-a8df-94732920ed46; tasty=1");
+
+        // when
+        final String sessionId = cookies.getSessionId();
+
+        // then
+        assertThat(sessionId).isEqualTo("656cef62-e3c4-40bc-a8df-94732920ed46");
+    }
+
+    @Test
+    void returnNullWithoutSessionCookie() {
+        // given
+        final Cookies cookies = cookies("JSESSIONIDX=1; XJSESSIONID=2");
+
+        // when
+        final String sessionId = cookies.getSessionId();
+
+        // then
+        assertThat(sessionId).isNull();
+    }
+
+    @Test
+    void iterateCookiesSkippingMalformedPairs() {
+        // given
+        final Cookies cookies = cookies(" a=1;;  b = \"quoted\" ; =orphan; c=");
+
+        // when
+        final List<Cookie> parsed = new ArrayList<>();
+        cookies.forEach(parsed::add);
+
+        // then
+        assertThat(parsed).containsExactly(new Cookie("a", "1"), new Cookie("b", "quoted"), new Cookie("c", ""));
+    }
+
+    @Test
+    void writeSessionCookie() {
+        // given
+        final SetCookie cookie = SetCookie.sessionCookie("abc").maxAge(0);
+
+        // when
+        final String header = cookie.toString();
+
+        // then
+        assertThat(header).isEqualTo("JSESSIONID=abc; Path=/; Max-Age=0; HttpOnly");
+    }
+
+    @Test
+    void rejectInvalidValue() {
+        assertThatThrownBy(() -> new SetCookie("name", "a;b"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectAttributeInjectedThroughPath() {
+        final SetCookie cookie = new SetCookie("name", "value");
+
+        assertThatThrownBy(() -> cookie.path("/; Domain=evil.example"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> cookie.path("/\r\nSet-Cookie: a=b"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectUnknownSameSite() {
+        final SetCookie cookie = new SetCookie("name", "value");
+
+        assertThatThrownBy(() -> cookie.sameSite("Lax; Secure"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(cookie.sameSite("Strict").toString()).isEqualTo("name=value; SameSite=Strict");
+    }
+}
@@ -1,13 +1,38 @@
 package nextstep.org.apache.coyote.http11;
 
+import nextstep.jwp.controller.LoginController;
+import nextstep.jwp.db.InMemoryUserRepository;
+import nextstep.jwp.db.TracingUserRepository;
+import nextstep.jwp.model.LoginUser;
+import nextstep.jwp.security.PasswordEncoder;
+import nextstep.jwp.security.PasswordService;
 import support.StubSocket;
+import org.apache.catalina.controller.AbstractController;
+import org.apache.catalina.controller.MetricsController;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.metrics.MetricRegistry;
+import org.apache.catalina.metrics.RequestMetrics;
+import org.apache.catalina.session.Session;
+import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.valves.RequestTrace;
+import org.apache.catalina.valves.SlowRequestTracer;
+import org.apache.coyote.http11.Deadline;
 import org.apache.coyote.http11.Http11Processor;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -59,4 +84,379 @@ class Http11ProcessorTest {
 
         assertThat(socket.output()).isEqualTo(expected);
     }
+
+    @Test
+    void loginIssuesSessionCookie() throws InterruptedException {
+        // given
+        final String body = "account=gugu&password=password";
+        final String httpRequest = String.join("\r\n",
+                "POST /login HTTP/1.1 ",
+                "Host: localhost:8080 ",
+                "Content-Type: application/x-www-form-urlencoded ",
+                "Content-Length: " + body.length() + " ",
+                "",
+                body);
+
+        final var socket = new StubSocket(httpRequest);
+        final var manager = new StandardManager();
+        final var passwordService = new PasswordService(new PasswordEncoder(1_000), 1, 1);
+        final var requestMapping = new RequestMapping()
+                .add("/login", new LoginController(new InMemoryUserRepository(), passwordService));
+        final var processor = new Http11Processor(socket, requestMapping, manager);
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(socket.awaitClosed(5_000)).isTrue();
+        passwordService.close();
+        assertThat(socket.output()).startsWith("HTTP/1.1 302 Found \r\nLocation: /index.html \r\n");
+        assertThat(socket.output()).contains("Set-Cookie: JSESSIONID=");
+        assertThat(manager.getActiveSessions()).isEqualTo(1);
+        final String output = socket.output();
+        final int idStart = output.indexOf("JSESSIONID=") + "JSESSIONID=".length();
+        final String sessionId = output.substring(idStart, output.indexOf(';', idStart));
+        final Object user = manager.findSession(sessionId).getAttribute("user");
+        assertThat(user).isInstanceOf(LoginUser.class);
+        assertThat(((LoginUser) user).getAccount()).isEqualTo("gugu");
+    }
+
+    @Test
+    void finishLoginOnRequestWorkerRatherThanHashingThread() throws InterruptedException {
+        // given
+        final String body = "account=gugu&password=password";
+        final var socket = new StubSocket(String.join("\r\n",
+                "POST /login HTTP/1.1 ",
+                "Host: localhost:8080 ",
+                "Content-Type: application/x-www-form-urlencoded ",
+                "Content-Length: " + body.length() + " ",
+                "",
+                body));
+        final List<String> sessionThreads = new CopyOnWriteArrayList<>();
+        final var manager = new StandardManager() {
+            @Override
+            public Session createSession() {
+                sessionThreads.add(Thread.currentThread().getName());
+                return super.createSession();
+            }
+        };
+        final var passwordService = new PasswordService(new PasswordEncoder(1_000), 1, 1);
+        final var requestMapping = new RequestMapping()
+                .add("/login", new LoginController(new InMemoryUserRepository(), passwordService));
+        final var worker = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "worker"));
+        final var processor = new Http11Processor(socket, requestMapping, manager, worker);
+
+        // when
+        worker.execute(() -> processor.process(socket));
+
+        // then
+        assertThat(socket.awaitClosed(5_000)).isTrue();
+        passwordService.close();
+        worker.shutdown();
+        assertThat(sessionThreads).containsExactly("worker");
+    }
+
+    @Test
+    void sendContinueWhenBodyIsRead() {
+        // given
+        final String body = "account=nobody&password=password";
+        final String httpRequest = String.join("\r\n",
+                "POST /login HTTP/1.1 ",
+                "Host: localhost:8080 ",
+                "Content-Type: application/x-www-form-urlencoded ",
+                "Content-Length: " + body.length() + " ",
+                "Expect: 100-continue ",
+                "",
+                body);
+
+        final var socket = new StubSocket(httpRequest);
+        final var passwordService = new PasswordService(new PasswordEncoder(1_000), 1, 1);
+        final var requestMapping = new RequestMapping()
+                .add("/login", new LoginController(new InMemoryUserRepository(), passwordService));
+        final var processor = new Http11Processor(socket, requestMapping, new StandardManager());
+
+        // when
+        processor.process(socket);
+        passwordService.close();
+
+        // then
+        assertThat(socket.output()).startsWith("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 302 Found \r\n");
+        assertThat(socket.output()).contains("Location: /401.html");
+        assertThat(socket.output()).doesNotContain("Connection: close");
+    }
+
+    @Test
+    void rejectWithoutContinueWhenBodyIsNotRead() {
+        // given
+        final String httpRequest = String.join("\r\n",
+                "POST /index.html HTTP/1.1 ",
+                "Host: localhost:8080 ",
+                "Content-Length: 1048576 ",
+                "Expect: 100-continue ",
+                "",
+                "");
+
+        final var socket = new StubSocket(httpRequest);
+        final var registry = new MetricRegistry();
+        final var processor = new Http11Processor(socket, new RequestMapping(), new StandardManager(),
+                Runnable::run, new RequestMetrics(registry));
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(socket.output()).startsWith("HTTP/1.1 405 Method Not Allowed \r\n");
+        assertThat(socket.output()).contains("Connection: close \r\n");
+        assertThat(socket.output()).doesNotContain("100 Continue");
+        assertThat(registry.scrape()).contains("http_server_request_bodies_skipped_total 1");
+    }
+
+    @Test
+    void rejectBodyOverMaxSizeAsPayloadTooLarge() {
+        // given
+        final String httpRequest = String.join("\r\n",
+                "POST /register HTTP/1.1 ",
+                "Host: localhost:8080 ",
+                "Content-Length: 10485761 ",
+                "",
+                "");
+        final var socket = new StubSocket(httpRequest);
+        final var processor = new Http11Processor(socket);
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(socket.output()).startsWith("HTTP/1.1 413 Payload Too Large \r\n");
+        assertThat(socket.output()).contains("Connection: close \r\n");
+    }
+
+    @Test
+    void rejectMalformedParameterAsBadRequest() {
+        // given
+        final var requestMapping = new RequestMapping().add("/search", new AbstractController() {
+            @Override
+            protected void doGet(final HttpRequest request, final HttpResponse response) {
+                request.getParameter("q");
+            }
+        });
+        final var socket = new StubSocket("GET /search?q=%zz HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        final var processor = new Http11Processor(socket, requestMapping, new StandardManager());
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(socket.output()).startsWith("HTTP/1.1 400 Bad Request \r\n");
+    }
+
+    @Test
+    void rejectTruncatedDeferredBodyAsBadRequest() {
+        // given
+        final var requestMapping = new RequestMapping().add("/upload", new AbstractController() {
+            @Override
+            protected void doPost(final HttpRequest request, final HttpResponse response) {
+                request.getBody();
+            }
+        });
+        final String httpRequest = String.join("\r\n",
+                "POST /upload HTTP/1.1 ",
+                "Host: localhost:8080 ",
+                "Content-Length: 100 ",
+                "Expect: 100-continue ",
+                "",
+                "too short");
+        final var socket = new StubSocket(httpRequest);
+        final var processor = new Http11Processor(socket, requestMapping, new StandardManager());
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(socket.output()).startsWith("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 400 Bad Request \r\n");
+    }
+
+    @Test
+    void answerUnavailableWhenCompletedRequestCannotBeFinishedOnExecutor() throws InterruptedException {
+        // given
+        final var requestMapping = new RequestMapping().add("/work", new AbstractController() {
+            @Override
+            protected void doGet(final HttpRequest request, final HttpResponse response) {
+                request.startAsync(response).complete();
+            }
+        });
+        final var socket = new StubSocket("GET /work HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        final var processor = new Http11Processor(socket, requestMapping, new StandardManager(), runnable -> {
+            throw new RejectedExecutionException("stopping");
+        });
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(socket.awaitClosed(1_000)).isTrue();
+        assertThat(socket.output()).startsWith("HTTP/1.1 503 Service Unavailable \r\n");
+    }
+
+    @Test
+    void recordRequestMetrics() {
+        // given
+        final var metricRegistry = new MetricRegistry();
+        final var requestMetrics = new RequestMetrics(metricRegistry);
+        final var requestMapping = new RequestMapping().add("/metrics", new MetricsController(metricRegistry));
+        final var socket = new StubSocket("GET /index.html HTTP/1.1\r\nHost: localhost:8080\r\n\r\n");
+        new Http11Processor(socket, requestMapping, new StandardManager(), Runnable::run, requestMetrics)
+                .process(socket);
+        final var scrapeSocket = new StubSocket("GET /metrics HTTP/1.1\r\nHost: localhost:8080\r\n\r\n");
+
+        // when
+        new Http11Processor(scrapeSocket, requestMapping, new StandardManager(), Runnable::run, requestMetrics)
+                .process(scrapeSocket);
+
+        // then
+        assertThat(scrapeSocket.output()).startsWith("HTTP/1.1 200 OK \r\n");
+        assertThat(scrapeSocket.output()).contains(
+                "Content-Type: text/plain;version=0.0.4;charset=utf-8",
+                "http_server_requests_total{route=\"static\",status=\"200\"} 1\n",
+                "http_server_request_duration_seconds_count{route=\"static\",status=\"200\"} 1\n",
+                "http_server_active_connections 1\n");
+        assertThat(requestMetrics.getActiveConnections()).isEqualTo(0);
+    }
+
+    @Test
+    void traceRequestPathWithoutQueryString() {
+        // given
+        final var socket = new StubSocket(
+                "GET /index.html?account=gugu&password=secret HTTP/1.1\r\nHost: localhost:8080\r\n\r\n");
+        final var tracer = new SlowRequestTracer(0, 0, 4);
+        final var processor = new Http11Processor(socket, new RequestMapping(), new StandardManager());
+        processor.setTracer(tracer);
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(tracer.getTraces().get(0).getPath()).isEqualTo("/index.html");
+        assertThat(tracer.dump()).doesNotContain("secret");
+    }
+
+    @Test
+    void traceRequestPhases() throws InterruptedException {
+        // given
+        final String body = "account=gugu&password=password";
+        final var socket = new StubSocket(String.join("\r\n",
+                "POST /login HTTP/1.1 ",
+                "Content-Type: application/x-www-form-urlencoded ",
+                "Content-Length: " + body.length() + " ",
+                "",
+                body));
+        final var passwordService = new PasswordService(new PasswordEncoder(1_000), 1, 1);
+        final var userRepository = new TracingUserRepository(new InMemoryUserRepository());
+        final var requestMapping = new RequestMapping()
+                .add("/login", new LoginController(userRepository, passwordService));
+        final var tracer = new SlowRequestTracer(0, 0, 4);
+        final var processor = new Http11Processor(socket, requestMapping, new StandardManager());
+        processor.setTracer(tracer);
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(socket.awaitClosed(5_000)).isTrue();
+        passwordService.close();
+        final List<RequestTrace> traces = tracer.getTraces();
+        assertThat(traces).hasSize(1);
+        final RequestTrace trace = traces.get(0);
+        assertThat(trace.getMethod()).isEqualTo("POST");
+        assertThat(trace.getPath()).isEqualTo("/login");
+        assertThat(trace.getStatus()).isEqualTo(302);
+        assertThat(trace.get(RequestTrace.Phase.PARSE)).isGreaterThan(0L);
+        assertThat(trace.get(RequestTrace.Phase.REPOSITORY)).isGreaterThan(0L);
+        assertThat(trace.get(RequestTrace.Phase.SESSION)).isGreaterThan(0L);
+        assertThat(trace.get(RequestTrace.Phase.SERVICE)).isGreaterThan(trace.get(RequestTrace.Phase.REPOSITORY));
+        assertThat(trace.getTotalNanos()).isGreaterThan(trace.get(RequestTrace.Phase.SERVICE));
+    }
+
+    @Test
+    void dropRequestPastItsDeadlineWithoutServicingIt() throws InterruptedException {
+        // given
+        final var serviced = new AtomicBoolean();
+        final var requestMapping = new RequestMapping().add("/work", new AbstractController() {
+            @Override
+            protected void doGet(final HttpRequest request, final HttpResponse response) {
+                serviced.set(true);
+            }
+        });
+        final var socket = new StubSocket("GET /work HTTP/1.1\r\nHost: localhost\r\n" + Deadline.HEADER
+                + ": 1\r\n\r\n");
+        final var registry = new MetricRegistry();
+        final var processor = new Http11Processor(socket, requestMapping, new StandardManager(),
+                Runnable::run, new RequestMetrics(registry));
+        // waited in the queue past its budget
+        Thread.sleep(10);
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(socket.output()).startsWith("HTTP/1.1 503 Service Unavailable \r\n");
+        assertThat(serviced.get()).isFalse();
+        assertThat(registry.scrape()).contains("http_server_requests_expired_total 1");
+    }
+
+    @Test
+    void failRequestWhoseHandlerRunsOutOfTime() {
+        // given
+        final var remaining = new long[1];
+        final var requestMapping = new RequestMapping().add("/work", new AbstractController() {
+            @Override
+            protected void doGet(final HttpRequest request, final HttpResponse response) throws Exception {
+                remaining[0] = Deadline.current().remainingNanos();
+                Thread.sleep(100);
+                Deadline.checkCurrent();
+                response.setBody("done");
+            }
+        });
+        final var socket = new StubSocket("GET /work HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        final var processor = new Http11Processor(socket, requestMapping, new StandardManager());
+        processor.setRequestTimeout(50, null);
+
+        // when
+        processor.process(socket);
+
+        // then
+        assertThat(remaining[0]).isGreaterThan(0L);
+        assertThat(remaining[0]).isLessThan(TimeUnit.MILLISECONDS.toNanos(51));
+        assertThat(socket.output()).startsWith("HTTP/1.1 503 Service Unavailable \r\n");
+        assertThat(Deadline.current()).isNull();
+    }
+
+    @Test
+    void cancelAsyncRequestAtItsDeadline() throws InterruptedException {
+        // given
+        final var cancelled = new CountDownLatch(1);
+        final var requestMapping = new RequestMapping().add("/work", new AbstractController() {
+            @Override
+            protected void doGet(final HttpRequest request, final HttpResponse response) {
+                request.startAsync(response).onCancel(cancelled::countDown);
+            }
+        });
+        final var socket = new StubSocket("GET /work HTTP/1.1\r\nHost: localhost\r\n" + Deadline.HEADER
+                + ": 50\r\n\r\n");
+        final var timer = Executors.newSingleThreadScheduledExecutor();
+        final var processor = new Http11Processor(socket, requestMapping, new StandardManager());
+        processor.setRequestTimeout(10_000, timer);
+
+        try {
+            // when
+            processor.process(socket);
+
+            // then
+            assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(socket.awaitClosed(5_000)).isTrue();
+            assertThat(socket.output()).startsWith("HTTP/1.1 503 Service Unavailable \r\n");
+        } finally {
+            timer.shutdownNow();
+        }
+    }
 }
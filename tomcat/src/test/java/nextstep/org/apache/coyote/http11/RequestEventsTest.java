@@ -0,0 +1,55 @@
+package nextstep.org.apache.coyote.http11;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.coyote.http11.Http11Processor;
+import org.junit.jupiter.api.Test;
+import support.StubSocket;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestEventsTest {
+
+    @Test
+    void emitEventsForEachPhase() throws IOException {
+        // given
+        final var socket = new StubSocket("GET /index.html HTTP/1.1\r\nHost: localhost:8080\r\n\r\n");
+        final Path dump = Files.createTempFile("requests", ".jfr");
+        final List<RecordedEvent> events;
+        try (final var recording = new Recording()) {
+            recording.enable("org.apache.coyote.RequestParse");
+            recording.enable("org.apache.coyote.RequestDispatch");
+            recording.enable("org.apache.coyote.ResponseWrite");
+            recording.enable("org.apache.catalina.ConnectionClose");
+            recording.start();
+
+            // when
+            new Http11Processor(socket).process(socket);
+
+            recording.stop();
+            recording.dump(dump);
+            events = RecordingFile.readAllEvents(dump).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("org.apache."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+
+        // then
+        assertThat(events.stream().map(event -> event.getEventType().getName()).collect(Collectors.toList()))
+                .containsExactly("org.apache.coyote.RequestParse", "org.apache.coyote.RequestDispatch",
+                        "org.apache.coyote.ResponseWrite", "org.apache.catalina.ConnectionClose");
+        final RecordedEvent close = events.get(3);
+        assertThat(close.getString("path")).isEqualTo("/index.html");
+        assertThat(close.getInt("status")).isEqualTo(200);
+        assertThat(close.getLong("bytesWritten")).isGreaterThan(5_000L);
+        assertThat(events.get(1).getString("route")).isEqualTo("static");
+    }
+}
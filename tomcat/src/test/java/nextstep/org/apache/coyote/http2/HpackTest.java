@@ -0,0 +1,129 @@
+package nextstep.org.apache.coyote.http2;
+
+import org.apache.coyote.http2.HeaderField;
+import org.apache.coyote.http2.HeaderListSizeException;
+import org.apache.coyote.http2.HpackDecoder;
+import org.apache.coyote.http2.HpackEncoder;
+import org.apache.coyote.http2.HpackException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HpackTest {
+
+    private static final int TABLE_SIZE = 4096;
+
+    private static byte[] hex(final String hex) {
+        final String digits = hex.replace(" ", "");
+        final byte[] bytes = new byte[digits.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(digits.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static List<String> decode(final HpackDecoder decoder, final byte[] block) throws HpackException {
+        return decoder.decode(block, block.length).stream()
+                .map(HeaderField::toString)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void decodeRequestsWithHuffmanCoding() throws HpackException {
+        // given: RFC 7541 appendix C.4, three requests on one connection
+        final var decoder = new HpackDecoder(TABLE_SIZE);
+
+        // when
+        final List<String> first = decode(decoder, hex("8286 8441 8cf1 e3c2 e5f2 3a6b a0ab 90f4 ff"));
+        final List<String> second = decode(decoder, hex("8286 84be 5886 a8eb 1064 9cbf"));
+        final List<String> third = decode(decoder,
+                hex("8287 85bf 4088 25a8 49e9 5ba9 7d7f 8925 a849 e95b b8e8 b4bf"));
+
+        // then
+        assertThat(first).containsExactly(":method: GET", ":scheme: http", ":path: /",
+                ":authority: www.example.com");
+        assertThat(second).containsExactly(":method: GET", ":scheme: http", ":path: /",
+                ":authority: www.example.com", "cache-control: no-cache");
+        assertThat(third).containsExactly(":method: GET", ":scheme: https", ":path: /index.html",
+                ":authority: www.example.com", "custom-key: custom-value");
+    }
+
+    @Test
+    void encodeFieldsSentAgainAsIndexes() throws HpackException {
+        // given
+        final var encoder = new HpackEncoder();
+        final var decoder = new HpackDecoder(TABLE_SIZE);
+        final List<HeaderField> fields = List.of(
+                new HeaderField(":status", "200"),
+                new HeaderField("content-type", "text/html;charset=utf-8"),
+                new HeaderField("content-length", "5564"),
+                new HeaderField("set-cookie", "JSESSIONID=656cef62-e3c4-40bc-a8df-94732920ed46"));
+
+        // when
+        final byte[] first = encoder.encode(fields);
+        final byte[] second = encoder.encode(fields);
+
+        // then
+        final List<String> expected = List.of(":status: 200", "content-type: text/html;charset=utf-8",
+                "content-length: 5564", "set-cookie: JSESSIONID=656cef62-e3c4-40bc-a8df-94732920ed46");
+        assertThat(decode(decoder, first)).isEqualTo(expected);
+        assertThat(decode(decoder, second)).isEqualTo(expected);
+        assertThat(second.length).isLessThan(first.length);
+    }
+
+    @Test
+    void sendTableSizeUpdateBeforeNextBlock() throws HpackException {
+        // given
+        final var encoder = new HpackEncoder();
+        final var decoder = new HpackDecoder(TABLE_SIZE);
+        final List<HeaderField> fields = List.of(new HeaderField("x-custom", "value"));
+        decode(decoder, encoder.encode(fields));
+
+        // when
+        encoder.setMaxTableSize(0);
+        final byte[] block = encoder.encode(fields);
+
+        // then
+        assertThat(block[0] & 0xe0).isEqualTo(0x20);
+        assertThat(decode(decoder, block)).containsExactly("x-custom: value");
+    }
+
+    @Test
+    void rejectHeaderListOverMaxSizeButKeepTableInStep() throws HpackException {
+        // given: a list of two fields of 32 + 15 bytes each
+        final var encoder = new HpackEncoder();
+        final var decoder = new HpackDecoder(TABLE_SIZE, 64);
+        final List<HeaderField> fields = List.of(new HeaderField("x-custom", "value-1"),
+                new HeaderField("x-other", "value-22"));
+        final byte[] first = encoder.encode(fields);
+
+        // when, then
+        assertThatThrownBy(() -> decode(decoder, first))
+                .isInstanceOf(HeaderListSizeException.class);
+        assertThat(decode(decoder, encoder.encode(List.of(fields.get(1))))).containsExactly("x-other: value-22");
+    }
+
+    @Test
+    void rejectIndexOutOfTable() {
+        // given
+        final var decoder = new HpackDecoder(TABLE_SIZE);
+
+        // when, then
+        assertThatThrownBy(() -> decode(decoder, hex("be")))
+                .isInstanceOf(HpackException.class);
+    }
+
+    @Test
+    void rejectHuffmanPaddingOverSevenBits() {
+        // given: "a" (00011) padded with a full byte of ones
+        final var decoder = new HpackDecoder(TABLE_SIZE);
+
+        // when, then
+        assertThatThrownBy(() -> decode(decoder, hex("40 81 1f 82 1f ff")))
+                .isInstanceOf(HpackException.class);
+    }
+}
@@ -0,0 +1,218 @@
+package nextstep.org.apache.coyote.http2;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.controller.AbstractController;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.session.StandardManager;
+import org.apache.coyote.http11.HttpRequest;
+import org.apache.coyote.http11.HttpResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Http2ConnectionTest {
+
+    private static final int LARGE_BODY_SIZE = 200_000;
+
+    private Connector connector;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() {
+        final byte[] large = new byte[LARGE_BODY_SIZE];
+        Arrays.fill(large, (byte) 'x');
+        final var requestMapping = new RequestMapping()
+                .add("/large", new AbstractController() {
+                    @Override
+                    protected void doGet(final HttpRequest request, final HttpResponse response) {
+                        response.setBody(large);
+                    }
+                })
+                .add("/echo", new AbstractController() {
+                    @Override
+                    protected void doPost(final HttpRequest request, final HttpResponse response) {
+                        response.setHeader("X-Protocol", request.getProtocol());
+                        response.setBody(request.getBody());
+                    }
+                });
+        connector = new Connector(0, 100, 8, requestMapping, new StandardManager());
+        connector.setHttp2Enabled(true);
+        connector.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connector.stop();
+    }
+
+    private URI uri(final String path) {
+        return URI.create("http://localhost:" + connector.getLocalPort() + path);
+    }
+
+    @Test
+    void upgradeToH2c() throws Exception {
+        // when
+        final var response = client.send(java.net.http.HttpRequest.newBuilder(uri("/index.html")).build(),
+                BodyHandlers.ofString());
+
+        // then
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.version()).isEqualTo(HttpClient.Version.HTTP_2);
+        assertThat(response.body()).contains("대시보드");
+    }
+
+    @Test
+    void serveStreamsWhileConnectionsHoldEveryWorker() throws Exception {
+        // given: the only worker reads the frames of the connection
+        final var single = new Connector(0, 100, 1, new RequestMapping(), new StandardManager());
+        single.setHttp2Enabled(true);
+        single.start();
+
+        try {
+            // when
+            final var response = client.send(java.net.http.HttpRequest.newBuilder(
+                                    URI.create("http://localhost:" + single.getLocalPort() + "/index.html"))
+                            .timeout(Duration.ofSeconds(5))
+                            .build(),
+                    BodyHandlers.ofString());
+
+            // then
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.version()).isEqualTo(HttpClient.Version.HTTP_2);
+        } finally {
+            single.stop();
+        }
+    }
+
+    @Test
+    void multiplexStreamsOverFlowControlWindow() throws Exception {
+        // given: the first request upgrades the connection the others share
+        client.send(java.net.http.HttpRequest.newBuilder(uri("/index.html")).build(), BodyHandlers.discarding());
+
+        // when
+        final List<CompletableFuture<java.net.http.HttpResponse<byte[]>>> responses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            responses.add(client.sendAsync(java.net.http.HttpRequest.newBuilder(uri("/large")).build(),
+                    BodyHandlers.ofByteArray()));
+        }
+        final var echo = client.send(java.net.http.HttpRequest.newBuilder(uri("/echo"))
+                .POST(BodyPublishers.ofString("hello h2")).build(), BodyHandlers.ofString());
+
+        // then
+        for (final var future : responses) {
+            final var response = future.join();
+            assertThat(response.version()).isEqualTo(HttpClient.Version.HTTP_2);
+            assertThat(response.body().length).isEqualTo(LARGE_BODY_SIZE);
+        }
+        assertThat(echo.body()).isEqualTo("hello h2");
+        assertThat(echo.headers().firstValue("x-protocol").orElse(null)).isEqualTo("HTTP/2.0");
+    }
+
+    @Test
+    void answerPriorKnowledgePrefaceAndPing() throws IOException {
+        // given
+        try (final var socket = new Socket(InetAddress.getLoopbackAddress(), connector.getLocalPort())) {
+            socket.setSoTimeout(5_000);
+            final OutputStream out = socket.getOutputStream();
+            final var in = new DataInputStream(socket.getInputStream());
+
+            // when
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.write(new byte[]{0, 0, 0, 0x4, 0, 0, 0, 0, 0});
+            out.write(new byte[]{0, 0, 8, 0x6, 0, 0, 0, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8});
+            out.flush();
+
+            // then: the server SETTINGS, the ACK of ours and the PING ACK
+            assertThat(readFrame(in)).isEqualTo("type=4 flags=0 length=12");
+            assertThat(readFrame(in)).isEqualTo("type=4 flags=1 length=0");
+            assertThat(readFrame(in)).isEqualTo("type=6 flags=1 length=8");
+        }
+    }
+
+    @Test
+    void resetStreamWhoseHeaderListIsTooLarge() throws IOException {
+        // given: one 4000 byte field added to the table, then referred to twenty times
+        final var block = new ByteArrayOutputStream();
+        block.write(new byte[]{0x40, 0x01, 'x', 0x7f, (byte) 0xa1, 0x1e});
+        block.write(new byte[4000]);
+        for (int i = 0; i < 20; i++) {
+            block.write(0xbe);
+        }
+        try (final var socket = new Socket(InetAddress.getLoopbackAddress(), connector.getLocalPort())) {
+            socket.setSoTimeout(5_000);
+            final OutputStream out = socket.getOutputStream();
+            final var in = new DataInputStream(socket.getInputStream());
+
+            // when
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.write(new byte[]{0, 0, 0, 0x4, 0, 0, 0, 0, 0});
+            out.write(new byte[]{0, (byte) (block.size() >> 8), (byte) block.size(), 0x1, 0x5, 0, 0, 0, 1});
+            block.writeTo(out);
+            out.write(new byte[]{0, 0, 8, 0x6, 0, 0, 0, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8});
+            out.flush();
+
+            // then: the stream is reset and the connection goes on
+            assertThat(readFrame(in)).isEqualTo("type=4 flags=0 length=12");
+            assertThat(readFrame(in)).isEqualTo("type=4 flags=1 length=0");
+            assertThat(readFrame(in)).isEqualTo("type=3 flags=0 length=4");
+            assertThat(readFrame(in)).isEqualTo("type=6 flags=1 length=8");
+        }
+    }
+
+    @Test
+    void releaseStreamsResetBeforeTheirRequestIsComplete() throws IOException {
+        // given: GET / in static table entries
+        final byte[] block = {(byte) 0x82, (byte) 0x86, (byte) 0x84};
+        try (final var socket = new Socket(InetAddress.getLoopbackAddress(), connector.getLocalPort())) {
+            socket.setSoTimeout(5_000);
+            final OutputStream out = socket.getOutputStream();
+            final var in = new DataInputStream(socket.getInputStream());
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.write(new byte[]{0, 0, 0, 0x4, 0, 0, 0, 0, 0});
+
+            // when: more HEADERS without END_STREAM, each cancelled, than streams may be open
+            int streamId = 1;
+            for (int i = 0; i < 101; i++, streamId += 2) {
+                out.write(new byte[]{0, 0, (byte) block.length, 0x1, 0x4, 0, 0, 0, (byte) streamId});
+                out.write(block);
+                out.write(new byte[]{0, 0, 4, 0x3, 0, 0, 0, 0, (byte) streamId, 0, 0, 0, 0x8});
+            }
+            out.write(new byte[]{0, 0, (byte) block.length, 0x1, 0x5, 0, 0, 0, (byte) streamId});
+            out.write(block);
+            out.flush();
+
+            // then: the last stream is answered instead of refused
+            assertThat(readFrame(in)).isEqualTo("type=4 flags=0 length=12");
+            assertThat(readFrame(in)).isEqualTo("type=4 flags=1 length=0");
+            assertThat(readFrame(in)).startsWith("type=1 ");
+        }
+    }
+
+    private static String readFrame(final DataInputStream in) throws IOException {
+        final byte[] header = new byte[9];
+        in.readFully(header);
+        final int length = ((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff);
+        in.readFully(new byte[length]);
+        return "type=" + header[3] + " flags=" + header[4] + " length=" + length;
+    }
+}
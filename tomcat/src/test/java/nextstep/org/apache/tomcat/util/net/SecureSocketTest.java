@@ -0,0 +1,221 @@
+package nextstep.org.apache.tomcat.util.net;
+
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.controller.RequestMapping;
+import org.apache.catalina.session.StandardManager;
+import org.apache.tomcat.util.net.SSLHostConfig;
+import org.apache.tomcat.util.net.SecureSocket;
+import org.apache.tomcat.util.net.SecureSocketFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecureSocketTest {
+
+    private static final String PASSWORD = "changeit";
+
+    private static Path keystore;
+
+    /**
+     * A self-signed certificate for localhost, made once with the keytool of
+     * the running JDK.
+     */
+    private static synchronized Path keystore() throws IOException, InterruptedException {
+        if (keystore != null) {
+            return keystore;
+        }
+        final Path file = Files.createTempDirectory("tls").resolve("keystore.p12");
+        final Path keytool = Path.of(System.getProperty("java.home"), "bin", "keytool");
+        final Process process = new ProcessBuilder(keytool.toString(), "-genkeypair", "-alias", "localhost",
+                "-keyalg", "EC", "-groupname", "secp256r1", "-dname", "CN=localhost",
+                "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-validity", "1", "-storetype", "PKCS12",
+                "-keystore", file.toString(), "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .redirectErrorStream(true)
+                .start();
+        process.getInputStream().transferTo(OutputStream.nullOutputStream());
+        if (process.waitFor() != 0) {
+            throw new IOException("keytool failed");
+        }
+        keystore = file;
+        return file;
+    }
+
+    private static SSLContext clientContext() throws Exception {
+        final KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        try (final InputStream in = Files.newInputStream(keystore())) {
+            trustStore.load(in, PASSWORD.toCharArray());
+        }
+        final TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(trustStore);
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+
+    private static Connector startConnector(final boolean http2Enabled) throws Exception {
+        final var connector = new Connector(0, 100, 8, new RequestMapping(), new StandardManager());
+        connector.setHttp2Enabled(http2Enabled);
+        connector.setSSLHostConfig(new SSLHostConfig(keystore(), PASSWORD));
+        connector.start();
+        return connector;
+    }
+
+    @Test
+    void negotiateH2WithAlpn() throws Exception {
+        // given
+        final var connector = startConnector(true);
+        final var client = HttpClient.newBuilder()
+                .sslContext(clientContext())
+                .version(HttpClient.Version.HTTP_2)
+                .build();
+
+        try {
+            // when
+            final var response = client.send(HttpRequest.newBuilder(
+                    URI.create("https://localhost:" + connector.getLocalPort() + "/index.html")).build(),
+                    BodyHandlers.ofString());
+
+            // then
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.version()).isEqualTo(HttpClient.Version.HTTP_2);
+            assertThat(response.body()).contains("대시보드");
+        } finally {
+            connector.stop();
+        }
+    }
+
+    @Test
+    void serveHttp11WithoutHttp2() throws Exception {
+        // given
+        final var connector = startConnector(false);
+        final var client = HttpClient.newBuilder()
+                .sslContext(clientContext())
+                .version(HttpClient.Version.HTTP_2)
+                .build();
+
+        try {
+            // when
+            final var response = client.send(HttpRequest.newBuilder(
+                    URI.create("https://localhost:" + connector.getLocalPort() + "/index.html")).build(),
+                    BodyHandlers.ofString());
+
+            // then
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.version()).isEqualTo(HttpClient.Version.HTTP_1_1);
+        } finally {
+            connector.stop();
+        }
+    }
+
+    @Test
+    void resumeSessionOnReconnect() throws Exception {
+        // given
+        final var factory = new SecureSocketFactory(new SSLHostConfig(keystore(), PASSWORD), List.of("http/1.1"));
+        final SSLContext clientContext = clientContext();
+
+        try (final var serverSocket = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            final CompletableFuture<Void> server = CompletableFuture.runAsync(() -> echo(factory, serverSocket, 2));
+
+            // when
+            final String first = exchange(clientContext, serverSocket.getLocalPort(), "first");
+            final String second = exchange(clientContext, serverSocket.getLocalPort(), "second");
+            server.join();
+
+            // then
+            assertThat(first).isEqualTo("first");
+            assertThat(second).isEqualTo("second");
+            assertThat(factory.getHandshakes()).isEqualTo(2L);
+            assertThat(factory.getResumedHandshakes()).isEqualTo(1L);
+            assertThat(factory.getFailedHandshakes()).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    void closeWithoutWaitingForStalledWriter() throws Exception {
+        // given
+        final var factory = new SecureSocketFactory(new SSLHostConfig(keystore(), PASSWORD), List.of("http/1.1"));
+
+        try (final var serverSocket = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+             final var client = (SSLSocket) clientContext().getSocketFactory()
+                     .createSocket("localhost", serverSocket.getLocalPort())) {
+            final CompletableFuture<Void> handshake = CompletableFuture.runAsync(() -> {
+                try {
+                    client.startHandshake();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            final SecureSocket socket = factory.wrap(serverSocket.accept());
+            // the client never reads, so the writer blocks once the socket buffers are full
+            final CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+                final byte[] chunk = new byte[64 * 1024];
+                try {
+                    while (true) {
+                        socket.getOutputStream().write(chunk, 0, chunk.length);
+                    }
+                } catch (IOException e) {
+                    // closed under it
+                }
+            });
+            handshake.get(5, TimeUnit.SECONDS);
+            Thread.sleep(500);
+
+            // when
+            final long start = System.nanoTime();
+            socket.close();
+
+            // then
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5_000L);
+            writer.get(5, TimeUnit.SECONDS);
+            assertThat(socket.isClosed()).isTrue();
+        }
+    }
+
+    private static void echo(final SecureSocketFactory factory, final ServerSocket serverSocket,
+                             final int connections) {
+        for (int i = 0; i < connections; i++) {
+            try (final SecureSocket socket = factory.wrap(serverSocket.accept())) {
+                final byte[] buffer = new byte[64];
+                final int count = socket.getInputStream().read(buffer, 0, buffer.length);
+                socket.getOutputStream().write(buffer, 0, count);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static String exchange(final SSLContext clientContext, final int port, final String message)
+            throws IOException {
+        try (final var socket = (SSLSocket) clientContext.getSocketFactory().createSocket("localhost", port)) {
+            socket.setSoTimeout(5_000);
+            final SSLParameters parameters = socket.getSSLParameters();
+            parameters.setApplicationProtocols(new String[]{"http/1.1"});
+            socket.setSSLParameters(parameters);
+            socket.getOutputStream().write(message.getBytes(StandardCharsets.UTF_8));
+            final byte[] reply = socket.getInputStream().readAllBytes();
+            return new String(reply, StandardCharsets.UTF_8);
+        }
+    }
+}
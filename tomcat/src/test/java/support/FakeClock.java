@@ -0,0 +1,39 @@
+package support;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+public class FakeClock extends Clock {
+
+    private volatile long millis;
+
+    public FakeClock(final long millis) {
+        this.millis = millis;
+    }
+
+    public void advance(final long amount) {
+        millis += amount;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+}
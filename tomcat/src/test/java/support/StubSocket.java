@@ -8,11 +8,14 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class StubSocket extends Socket {
 
     private final String request;
     private final ByteArrayOutputStream outputStream;
+    private final CountDownLatch closed = new CountDownLatch(1);
 
     public StubSocket(final String request) {
         this.request = request;
@@ -51,4 +54,13 @@ public class StubSocket extends Socket {
     public String output() {
         return outputStream.toString(StandardCharsets.UTF_8);
     }
+
+    @Override
+    public void close() {
+        closed.countDown();
+    }
+
+    public boolean awaitClosed(final long timeoutMillis) throws InterruptedException {
+        return closed.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
 }